@@ -67,3 +67,12 @@ ab -n 8000 -c 100 -k -g expressjs.dat http://localhost:8000/middleware
 
 # plot
 gnuplot plot-middleware.p
+
+echo "Waiting 5 seconds before running 4th test"
+sleep 5
+
+# route middleware chain, compare the server started with and without -conf {"directDispatch": 16}
+ab -n 8000 -c 100 -k -g yoke.dat http://localhost:8080/route-middleware
+echo "Waiting 5 seconds before measurement..."
+sleep 5
+ab -n 8000 -c 100 -k -g yoke.dat http://localhost:8080/route-middleware
@@ -21,6 +21,16 @@ public class YokeBench extends Verticle {
             }
         };
 
+        // 0 keeps the default runOnContext dispatch, e.g. -conf {"directDispatch": 16} enables direct calls
+        final int directDispatch = container.config().getInteger("directDispatch", 0);
+
+        final Middleware hello = new Middleware() {
+            @Override
+            public void handle(YokeRequest request, Handler<Object> next) {
+                request.response().end("Hello World\n");
+            }
+        };
+
         new Yoke(this)
                 .use(new BodyParser())
                 .use("/middleware", foo)
@@ -28,6 +38,8 @@ public class YokeBench extends Verticle {
                 .use("/middleware", foo)
                 .use("/middleware", foo)
                 .use(new Router()
+                        .directDispatch(directDispatch)
+                        .get("/route-middleware", foo, foo, foo, hello)
                         .get("/", new Handler<YokeRequest>() {
                             @Override
                             public void handle(YokeRequest request) {
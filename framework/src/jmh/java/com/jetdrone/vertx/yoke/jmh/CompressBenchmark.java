@@ -0,0 +1,74 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.jmh;
+
+import com.jetdrone.vertx.yoke.middleware.filters.DeflaterWriterFilter;
+import com.jetdrone.vertx.yoke.middleware.filters.GZipWriterFilter;
+import com.jetdrone.vertx.yoke.middleware.filters.WriterFilter;
+import org.openjdk.jmh.annotations.*;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * # CompressBenchmark
+ *
+ * Compresses a large JSON body written in 8KB chunks with the buffering GZipWriterFilter and the streaming
+ * DeflaterWriterFilter. Run with `-prof gc` to compare allocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompressBenchmark {
+
+    private static final Pattern FILTER = Pattern.compile("json|text|javascript");
+
+    @Param({"1048576"})
+    public int size;
+
+    private Buffer[] chunks;
+    private final MockHttpServerResponse response = new MockHttpServerResponse();
+
+    @Setup
+    public void setup() {
+        final JsonArray array = new JsonArray();
+        int i = 0;
+        while (array.encode().length() < size) {
+            for (int j = 0; j < 100; j++, i++) {
+                array.addObject(new JsonObject().putNumber("id", i).putString("name", "user" + i).putBoolean("active", i % 2 == 0));
+            }
+        }
+
+        final Buffer body = new Buffer(array.encode());
+        chunks = new Buffer[(body.length() + 8191) / 8192];
+        for (int c = 0; c < chunks.length; c++) {
+            chunks[c] = body.getBuffer(c * 8192, Math.min(body.length(), (c + 1) * 8192));
+        }
+    }
+
+    private long run(WriterFilter filter) {
+        for (int c = 0; c < chunks.length - 1; c++) {
+            filter.write(chunks[c]);
+        }
+        return filter.end(chunks[chunks.length - 1]).length() + response.written;
+    }
+
+    @Benchmark
+    public long gzipStream() throws IOException {
+        return run(new GZipWriterFilter(FILTER));
+    }
+
+    @Benchmark
+    public long deflaterFilter() {
+        response.reset();
+        return run(new DeflaterWriterFilter(FILTER, response, true, -1, 1024));
+    }
+}
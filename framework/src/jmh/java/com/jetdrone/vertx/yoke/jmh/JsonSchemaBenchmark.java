@@ -0,0 +1,151 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.jmh;
+
+import com.jetdrone.vertx.yoke.json.CompiledSchema;
+import com.jetdrone.vertx.yoke.json.JsonSchema;
+import com.jetdrone.vertx.yoke.json.JsonSchemaResolver;
+import org.openjdk.jmh.annotations.*;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * # JsonSchemaBenchmark
+ *
+ * Validation of an order with 30 fields (customer, address, 5 line items) as `BodyParser` hands it over, a
+ * `JsonObject`:
+ *
+ * * `interpreted`: `JsonSchema.conformsSchema`, the schema maps are read on every validation,
+ * * `compiled`: a `CompiledSchema` as used by the `@JsonSchema` annotation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JsonSchemaBenchmark {
+
+    private JsonSchemaResolver.Schema schema;
+    private CompiledSchema compiled;
+    private JsonObject order;
+
+    private static JsonObject type(String type) {
+        return new JsonObject().putString("type", type);
+    }
+
+    private static JsonObject schema() {
+        final JsonObject address = new JsonObject()
+                .putString("type", "object")
+                .putArray("required", new JsonArray().addString("street").addString("city").addString("country"))
+                .putObject("properties", new JsonObject()
+                        .putObject("street", type("string").putNumber("minLength", 1).putNumber("maxLength", 100))
+                        .putObject("number", type("string"))
+                        .putObject("city", type("string").putNumber("minLength", 1))
+                        .putObject("postalCode", type("string").putString("pattern", "^[0-9]{4}\\s?[A-Z]{2}$"))
+                        .putObject("region", type("string"))
+                        .putObject("country", type("string").putArray("enum", new JsonArray().addString("NL").addString("PT").addString("DE").addString("BE"))));
+
+        final JsonObject customer = new JsonObject()
+                .putString("type", "object")
+                .putArray("required", new JsonArray().addString("id").addString("email"))
+                .putObject("properties", new JsonObject()
+                        .putObject("id", type("integer").putNumber("minimum", 1))
+                        .putObject("firstName", type("string").putNumber("maxLength", 50))
+                        .putObject("lastName", type("string").putNumber("maxLength", 50))
+                        .putObject("email", type("string").putString("format", "email"))
+                        .putObject("website", type("string").putString("format", "uri"))
+                        .putObject("vip", type("boolean"))
+                        .putObject("address", address));
+
+        final JsonObject item = new JsonObject()
+                .putString("type", "object")
+                .putArray("required", new JsonArray().addString("sku").addString("qty").addString("price"))
+                .putObject("properties", new JsonObject()
+                        .putObject("sku", type("string").putString("pattern", "^SKU-[0-9]{6}$"))
+                        .putObject("title", type("string").putNumber("maxLength", 200))
+                        .putObject("qty", type("integer").putNumber("minimum", 1).putNumber("maximum", 100))
+                        .putObject("price", type("number").putNumber("minimum", 0).putBoolean("exclusiveMinimum", true))
+                        .putObject("tags", type("array").putBoolean("uniqueItems", true).putObject("items", type("string"))));
+
+        return new JsonObject()
+                .putString("type", "object")
+                .putArray("required", new JsonArray().addString("id").addString("customer").addString("items"))
+                .putObject("properties", new JsonObject()
+                        .putObject("id", type("string").putString("pattern", "^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$"))
+                        .putObject("created", type("string").putString("format", "date-time"))
+                        .putObject("currency", type("string").putArray("enum", new JsonArray().addString("EUR").addString("USD").addString("GBP")))
+                        .putObject("status", type("string").putArray("enum", new JsonArray().addString("new").addString("paid").addString("shipped")))
+                        .putObject("total", type("number").putNumber("minimum", 0))
+                        .putObject("notes", type("string").putNumber("maxLength", 1000))
+                        .putObject("channel", type("string").putArray("enum", new JsonArray().addString("web").addString("mobile").addString("store")))
+                        .putObject("coupon", type("string").putString("pattern", "^[A-Z0-9]{6,10}$"))
+                        .putObject("giftWrap", type("boolean"))
+                        .putObject("priority", type("integer").putNumber("minimum", 0).putNumber("maximum", 9))
+                        .putObject("customer", customer)
+                        .putObject("items", type("array").putNumber("minItems", 1).putNumber("maxItems", 50).putObject("items", item)));
+    }
+
+    private static JsonObject order() {
+        final JsonArray items = new JsonArray();
+        for (int i = 0; i < 5; i++) {
+            items.addObject(new JsonObject()
+                    .putString("sku", "SKU-" + (100000 + i))
+                    .putString("title", "Item number " + i)
+                    .putNumber("qty", i + 1)
+                    .putNumber("price", 9.99 + i)
+                    .putArray("tags", new JsonArray().addString("sale").addString("new")));
+        }
+
+        return new JsonObject()
+                .putString("id", "3f2504e0-4f89-11d3-9a0c-0305e82c3301")
+                .putString("created", "2014-07-08T16:41:41.532Z")
+                .putString("currency", "EUR")
+                .putString("status", "paid")
+                .putNumber("total", 84.95)
+                .putString("notes", "Leave at the door")
+                .putString("channel", "web")
+                .putString("coupon", "SUMMER2014")
+                .putBoolean("giftWrap", false)
+                .putNumber("priority", 3)
+                .putObject("customer", new JsonObject()
+                        .putNumber("id", 42)
+                        .putString("firstName", "Paulo")
+                        .putString("lastName", "Lopes")
+                        .putString("email", "paulo@jetdrone.com")
+                        .putString("website", "http://www.jetdrone.com")
+                        .putBoolean("vip", true)
+                        .putObject("address", new JsonObject()
+                                .putString("street", "Damrak")
+                                .putString("number", "1")
+                                .putString("city", "Amsterdam")
+                                .putString("postalCode", "1012 LG")
+                                .putString("region", "North Holland")
+                                .putString("country", "NL")))
+                .putArray("items", items);
+    }
+
+    @Setup
+    public void setup() {
+        schema = new JsonSchemaResolver.Schema(schema(), null);
+        compiled = JsonSchema.compile(new JsonSchemaResolver.Schema(schema(), null));
+        order = order();
+
+        if (!JsonSchema.conformsSchema(order, schema) || !compiled.isValid(order)) {
+            throw new IllegalStateException("order does not validate");
+        }
+    }
+
+    @Benchmark
+    public boolean interpreted() {
+        return JsonSchema.conformsSchema(order, schema);
+    }
+
+    @Benchmark
+    public boolean compiled() {
+        return compiled.isValid(order);
+    }
+}
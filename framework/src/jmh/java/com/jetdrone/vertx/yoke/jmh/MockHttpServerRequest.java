@@ -0,0 +1,152 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.jmh;
+
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.MultiMap;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.CaseInsensitiveMultiMap;
+import org.vertx.java.core.http.HttpServerFileUpload;
+import org.vertx.java.core.http.HttpServerRequest;
+import org.vertx.java.core.http.HttpServerResponse;
+import org.vertx.java.core.http.HttpVersion;
+import org.vertx.java.core.net.NetSocket;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+
+/**
+ * Reusable in memory request so benchmarks only measure what Yoke allocates.
+ */
+final class MockHttpServerRequest implements HttpServerRequest {
+
+    private static final InetSocketAddress ADDRESS = new InetSocketAddress("127.0.0.1", 8080);
+
+    final MultiMap headers = new CaseInsensitiveMultiMap();
+    final MultiMap params = new CaseInsensitiveMultiMap();
+    final MockHttpServerResponse response = new MockHttpServerResponse();
+
+    String method = "GET";
+    String path = "/";
+
+    MockHttpServerRequest reset(String method, String path) {
+        this.method = method;
+        this.path = path;
+        params.clear();
+        response.reset();
+        return this;
+    }
+
+    @Override
+    public HttpVersion version() {
+        return HttpVersion.HTTP_1_1;
+    }
+
+    @Override
+    public String method() {
+        return method;
+    }
+
+    @Override
+    public String uri() {
+        return path;
+    }
+
+    @Override
+    public String path() {
+        return path;
+    }
+
+    @Override
+    public String query() {
+        return null;
+    }
+
+    @Override
+    public HttpServerResponse response() {
+        return response;
+    }
+
+    @Override
+    public MultiMap headers() {
+        return headers;
+    }
+
+    @Override
+    public MultiMap params() {
+        return params;
+    }
+
+    @Override
+    public InetSocketAddress remoteAddress() {
+        return ADDRESS;
+    }
+
+    @Override
+    public InetSocketAddress localAddress() {
+        return ADDRESS;
+    }
+
+    @Override
+    public javax.security.cert.X509Certificate[] peerCertificateChain() {
+        return null;
+    }
+
+    @Override
+    public URI absoluteURI() {
+        return URI.create("http://localhost:8080" + path);
+    }
+
+    @Override
+    public HttpServerRequest bodyHandler(Handler<Buffer> bodyHandler) {
+        bodyHandler.handle(new Buffer(0));
+        return this;
+    }
+
+    @Override
+    public NetSocket netSocket() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public HttpServerRequest expectMultiPart(boolean expect) {
+        return this;
+    }
+
+    @Override
+    public HttpServerRequest uploadHandler(Handler<HttpServerFileUpload> uploadHandler) {
+        return this;
+    }
+
+    @Override
+    public MultiMap formAttributes() {
+        return null;
+    }
+
+    @Override
+    public HttpServerRequest endHandler(Handler<Void> endHandler) {
+        endHandler.handle(null);
+        return this;
+    }
+
+    @Override
+    public HttpServerRequest dataHandler(Handler<Buffer> handler) {
+        return this;
+    }
+
+    @Override
+    public HttpServerRequest pause() {
+        return this;
+    }
+
+    @Override
+    public HttpServerRequest resume() {
+        return this;
+    }
+
+    @Override
+    public HttpServerRequest exceptionHandler(Handler<Throwable> handler) {
+        return this;
+    }
+}
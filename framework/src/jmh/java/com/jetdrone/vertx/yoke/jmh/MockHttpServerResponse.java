@@ -0,0 +1,221 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.jmh;
+
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.MultiMap;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.CaseInsensitiveMultiMap;
+import org.vertx.java.core.http.HttpServerResponse;
+
+/**
+ * Reusable in memory response, it only records the status code and how many bytes were written.
+ */
+final class MockHttpServerResponse implements HttpServerResponse {
+
+    final MultiMap headers = new CaseInsensitiveMultiMap();
+    final MultiMap trailers = new CaseInsensitiveMultiMap();
+
+    int statusCode;
+    String statusMessage;
+    long written;
+    boolean ended;
+    boolean chunked;
+
+    void reset() {
+        headers.clear();
+        trailers.clear();
+        statusCode = 200;
+        statusMessage = "OK";
+        written = 0;
+        ended = false;
+        chunked = false;
+    }
+
+    @Override
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    @Override
+    public HttpServerResponse setStatusCode(int statusCode) {
+        this.statusCode = statusCode;
+        return this;
+    }
+
+    @Override
+    public String getStatusMessage() {
+        return statusMessage;
+    }
+
+    @Override
+    public HttpServerResponse setStatusMessage(String statusMessage) {
+        this.statusMessage = statusMessage;
+        return this;
+    }
+
+    @Override
+    public HttpServerResponse setChunked(boolean chunked) {
+        this.chunked = chunked;
+        return this;
+    }
+
+    @Override
+    public boolean isChunked() {
+        return chunked;
+    }
+
+    @Override
+    public MultiMap headers() {
+        return headers;
+    }
+
+    @Override
+    public HttpServerResponse putHeader(String name, String value) {
+        headers.set(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpServerResponse putHeader(CharSequence name, CharSequence value) {
+        headers.set(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpServerResponse putHeader(String name, Iterable<String> values) {
+        headers.set(name, values);
+        return this;
+    }
+
+    @Override
+    public HttpServerResponse putHeader(CharSequence name, Iterable<CharSequence> values) {
+        headers.set(name, values);
+        return this;
+    }
+
+    @Override
+    public MultiMap trailers() {
+        return trailers;
+    }
+
+    @Override
+    public HttpServerResponse putTrailer(String name, String value) {
+        trailers.set(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpServerResponse putTrailer(CharSequence name, CharSequence value) {
+        trailers.set(name, value);
+        return this;
+    }
+
+    @Override
+    public HttpServerResponse putTrailer(String name, Iterable<String> values) {
+        trailers.set(name, values);
+        return this;
+    }
+
+    @Override
+    public HttpServerResponse putTrailer(CharSequence name, Iterable<CharSequence> values) {
+        trailers.set(name, values);
+        return this;
+    }
+
+    @Override
+    public HttpServerResponse closeHandler(Handler<Void> handler) {
+        return this;
+    }
+
+    @Override
+    public HttpServerResponse write(Buffer chunk) {
+        written += chunk.length();
+        return this;
+    }
+
+    @Override
+    public HttpServerResponse write(String chunk, String enc) {
+        written += chunk.length();
+        return this;
+    }
+
+    @Override
+    public HttpServerResponse write(String chunk) {
+        written += chunk.length();
+        return this;
+    }
+
+    @Override
+    public void end(String chunk) {
+        write(chunk);
+        end();
+    }
+
+    @Override
+    public void end(String chunk, String enc) {
+        write(chunk, enc);
+        end();
+    }
+
+    @Override
+    public void end(Buffer chunk) {
+        write(chunk);
+        end();
+    }
+
+    @Override
+    public void end() {
+        ended = true;
+    }
+
+    @Override
+    public HttpServerResponse sendFile(String filename) {
+        end();
+        return this;
+    }
+
+    @Override
+    public HttpServerResponse sendFile(String filename, String notFoundFile) {
+        end();
+        return this;
+    }
+
+    @Override
+    public HttpServerResponse sendFile(String filename, Handler<AsyncResult<Void>> resultHandler) {
+        end();
+        return this;
+    }
+
+    @Override
+    public HttpServerResponse sendFile(String filename, String notFoundFile, Handler<AsyncResult<Void>> resultHandler) {
+        end();
+        return this;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public HttpServerResponse setWriteQueueMaxSize(int maxSize) {
+        return this;
+    }
+
+    @Override
+    public boolean writeQueueFull() {
+        return false;
+    }
+
+    @Override
+    public HttpServerResponse drainHandler(Handler<Void> handler) {
+        return this;
+    }
+
+    @Override
+    public HttpServerResponse exceptionHandler(Handler<Throwable> handler) {
+        return this;
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.jmh;
+
+import com.jetdrone.vertx.yoke.store.RedisSessionStore;
+import com.jetdrone.vertx.yoke.test.FakeRedis;
+import org.openjdk.jmh.annotations.*;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.VertxFactory;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * # RedisSessionStoreBenchmark
+ *
+ * A burst of concurrent session reads, as issued by the requests handled in one event loop tick, against the in
+ * process `FakeRedis`. Compares one bus message per read with the pipelined store.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RedisSessionStoreBenchmark {
+
+    private static final int SESSIONS = 1000;
+    private static final int BURST = 64;
+
+    @Param({"false", "true"})
+    public boolean pipelined;
+
+    private Vertx vertx;
+    private RedisSessionStore store;
+
+    @Setup
+    public void setup() throws Exception {
+        vertx = VertxFactory.newVertx();
+        vertx.eventBus().registerHandler("redis", new FakeRedis());
+
+        final CountDownLatch latch = new CountDownLatch(SESSIONS);
+
+        vertx.runOnContext(new Handler<Void>() {
+            @Override
+            public void handle(Void event) {
+                store = pipelined ? new RedisSessionStore(vertx, "redis", "sess:") : new RedisSessionStore(vertx.eventBus(), "redis", "sess:");
+
+                for (int i = 0; i < SESSIONS; i++) {
+                    store.set("s" + i, new JsonObject().putNumber("id", i).putString("user", "user" + i), new Handler<Object>() {
+                        @Override
+                        public void handle(Object error) {
+                            latch.countDown();
+                        }
+                    });
+                }
+            }
+        });
+
+        latch.await(30, TimeUnit.SECONDS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        vertx.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void get() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(BURST);
+
+        vertx.runOnContext(new Handler<Void>() {
+            @Override
+            public void handle(Void event) {
+                for (int i = 0; i < BURST; i++) {
+                    store.get("s" + (i * 7919 % SESSIONS), new Handler<JsonObject>() {
+                        @Override
+                        public void handle(JsonObject session) {
+                            latch.countDown();
+                        }
+                    });
+                }
+            }
+        });
+
+        latch.await();
+    }
+}
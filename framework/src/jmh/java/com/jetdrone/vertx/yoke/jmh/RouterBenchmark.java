@@ -0,0 +1,107 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.jmh;
+
+import com.jetdrone.vertx.yoke.core.impl.RouteTrie;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * # RouterBenchmark
+ *
+ * Compares the segment trie used by the Router for simple patterns against a linear scan over the regular
+ * expressions the Router generates for the same patterns (the lookup strategy used for regex bindings).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RouterBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int routes;
+
+    private final List<Pattern> patterns = new ArrayList<>();
+    private final RouteTrie<Integer> trie = new RouteTrie<>();
+    private final List<Integer> result = new ArrayList<>();
+
+    private String[] paths;
+    private int next;
+
+    @Setup
+    public void setup() {
+        paths = new String[routes];
+
+        for (int i = 0; i < routes; i++) {
+            // mix of depths and param positions, similar to a REST api
+            String pattern;
+            switch (i % 3) {
+                case 0:
+                    pattern = "/api/resource" + i;
+                    paths[i] = "/api/resource" + i;
+                    break;
+                case 1:
+                    pattern = "/api/resource" + i + "/:id";
+                    paths[i] = "/api/resource" + i + "/12345";
+                    break;
+                default:
+                    pattern = "/api/resource" + i + "/:id/items/:item";
+                    paths[i] = "/api/resource" + i + "/12345/items/abc";
+                    break;
+            }
+
+            patterns.add(compile(pattern));
+            trie.add(pattern, i);
+        }
+    }
+
+    /**
+     * Same transformation as Router.addPattern
+     */
+    private static Pattern compile(String input) {
+        Matcher m = Pattern.compile(":([A-Za-z][A-Za-z0-9_]*)").matcher(input);
+        StringBuffer sb = new StringBuffer();
+        while (m.find()) {
+            m.appendReplacement(sb, "(?<$1>[^\\/]+)");
+        }
+        m.appendTail(sb);
+        if (sb.charAt(sb.length() - 1) != '/') {
+            sb.append("\\/?$");
+        }
+        return Pattern.compile(sb.toString());
+    }
+
+    private String nextPath() {
+        String path = paths[next];
+        next = (next + 1) % paths.length;
+        return path;
+    }
+
+    @Benchmark
+    public int scan() {
+        final String path = nextPath();
+        // stop at the first match, as a terminal route would
+        for (int i = 0; i < patterns.size(); i++) {
+            if (patterns.get(i).matcher(path).matches()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Benchmark
+    public int trie() {
+        final String path = nextPath();
+        result.clear();
+        trie.find(path, result);
+        return result.isEmpty() ? -1 : result.get(0);
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.jmh;
+
+import com.jetdrone.vertx.yoke.store.BinarySessionCodec;
+import com.jetdrone.vertx.yoke.store.JsonSessionCodec;
+import com.jetdrone.vertx.yoke.store.SessionCodec;
+import org.openjdk.jmh.annotations.*;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * # SessionCodecBenchmark
+ *
+ * Encode and decode cost of a session with a shopping cart for:
+ *
+ * * `string`: the whole session as one JSON string (the layout used before the field level stores),
+ * * `json`: one JSON string per top level field (`JsonSessionCodec`),
+ * * `binary`: one byte array per top level field (`BinarySessionCodec`).
+ *
+ * The setup also prints the heap retained by 10k encoded sessions held in concurrent maps, the way
+ * `SharedDataSessionStore` keeps them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SessionCodecBenchmark {
+
+    private static final int SESSIONS = 10000;
+
+    @Param({"string", "json", "binary"})
+    public String codec;
+
+    private JsonObject session;
+    private Object encoded;
+
+    private SessionCodec<Object> fieldCodec;
+
+    private static JsonObject session(String id) {
+        final JsonArray items = new JsonArray();
+        for (int i = 0; i < 20; i++) {
+            items.addObject(new JsonObject()
+                    .putString("sku", "SKU-" + (100000 + i))
+                    .putString("title", "Item number " + i)
+                    .putNumber("qty", i % 3 + 1)
+                    .putNumber("price", 9.99 + i));
+        }
+
+        return new JsonObject()
+                .putString("id", id)
+                .putObject("cookie", new JsonObject().putNumber("maxAge", 1800000).putString("path", "/"))
+                .putString("user", "paulo")
+                .putNumber("visits", 42)
+                .putNumber("lastSeen", System.currentTimeMillis())
+                .putArray("roles", new JsonArray().addString("user").addString("editor"))
+                .putObject("cart", new JsonObject().putArray("items", items).putString("currency", "EUR"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Setup
+    public void setup() {
+        switch (codec) {
+            case "json":
+                fieldCodec = (SessionCodec<Object>) (SessionCodec<?>) new JsonSessionCodec();
+                break;
+            case "binary":
+                fieldCodec = (SessionCodec<Object>) (SessionCodec<?>) new BinarySessionCodec();
+                break;
+        }
+
+        session = session(UUID.randomUUID().toString());
+        encoded = encode(session);
+
+        printRetainedHeap();
+    }
+
+    private Object encode(JsonObject session) {
+        if (fieldCodec == null) {
+            return session.encode();
+        }
+
+        final Map<String, Object> fields = new ConcurrentHashMap<>();
+        for (String field : session.getFieldNames()) {
+            fields.put(field, fieldCodec.encode(session.getField(field)));
+        }
+        return fields;
+    }
+
+    @SuppressWarnings("unchecked")
+    private JsonObject decode(Object encoded) {
+        if (fieldCodec == null) {
+            return new JsonObject((String) encoded);
+        }
+        return fieldCodec.decode((Map<String, Object>) encoded);
+    }
+
+    private void printRetainedHeap() {
+        final Object[] sessions = new Object[SESSIONS];
+        final JsonObject[] source = new JsonObject[SESSIONS];
+        for (int i = 0; i < SESSIONS; i++) {
+            source[i] = session(UUID.randomUUID().toString());
+        }
+
+        final long before = usedHeap();
+        for (int i = 0; i < SESSIONS; i++) {
+            sessions[i] = encode(source[i]);
+        }
+        final long after = usedHeap();
+
+        // keep the sessions reachable until the heap has been measured
+        if (sessions[SESSIONS - 1] == null) {
+            throw new IllegalStateException();
+        }
+
+        System.out.println();
+        System.out.println("Retained heap for " + SESSIONS + " " + codec + " sessions: " + (after - before) / 1024 + " KB");
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Benchmark
+    public Object encode() {
+        return encode(session);
+    }
+
+    @Benchmark
+    public JsonObject decode() {
+        return decode(encoded);
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.jmh;
+
+import com.jetdrone.vertx.yoke.engine.FreshnessPolicy;
+import com.jetdrone.vertx.yoke.engine.StringPlaceholderEngine;
+import org.openjdk.jmh.annotations.*;
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.VertxFactory;
+import org.vertx.java.core.buffer.Buffer;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * # TemplateCacheBenchmark
+ *
+ * Concurrent renders of cached templates on a single shared engine instance, the way an engine registered once is
+ * reached from several verticle instances. The freshness policy is `NEVER` so the benchmark measures the cache and the
+ * render, not the file system.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(4)
+public class TemplateCacheBenchmark {
+
+    @Param({"10", "1000"})
+    public int templates;
+
+    private Vertx vertx;
+    private StringPlaceholderEngine engine;
+    private String[] files;
+    private final Map<String, Object> context = new HashMap<>();
+
+    private static final Handler<AsyncResult<Buffer>> DISCARD = new Handler<AsyncResult<Buffer>>() {
+        @Override
+        public void handle(AsyncResult<Buffer> event) {
+            if (event.failed()) {
+                throw new RuntimeException(event.cause());
+            }
+        }
+    };
+
+    @Setup
+    public void setup() throws Exception {
+        vertx = VertxFactory.newVertx();
+        engine = new StringPlaceholderEngine("");
+        engine.setFreshnessPolicy(FreshnessPolicy.NEVER);
+        engine.setVertx(vertx);
+
+        context.put("name", "Yoke");
+
+        final File dir = Files.createTempDirectory("templates").toFile();
+        files = new String[templates];
+
+        final CountDownLatch latch = new CountDownLatch(templates);
+
+        for (int i = 0; i < templates; i++) {
+            File file = new File(dir, "template" + i + ".shtml");
+            Files.write(file.toPath(), ("<html><body><h1>Hello ${name}!</h1><p>template " + i + "</p></body></html>").getBytes("UTF-8"));
+            files[i] = file.getAbsolutePath();
+
+            // load all templates in the cache
+            engine.render(files[i], context, new Handler<AsyncResult<Buffer>>() {
+                @Override
+                public void handle(AsyncResult<Buffer> event) {
+                    latch.countDown();
+                }
+            });
+        }
+
+        latch.await(30, TimeUnit.SECONDS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        vertx.stop();
+    }
+
+    @Benchmark
+    public void render() {
+        engine.render(files[ThreadLocalRandom.current().nextInt(templates)], context, DISCARD);
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.jmh;
+
+import com.jetdrone.vertx.yoke.core.Context;
+import com.jetdrone.vertx.yoke.core.YokeException;
+import com.jetdrone.vertx.yoke.middleware.YokeRequest;
+import com.jetdrone.vertx.yoke.middleware.YokeResponse;
+import com.jetdrone.vertx.yoke.util.Validator;
+import com.jetdrone.vertx.yoke.util.validation.Assertion;
+import com.jetdrone.vertx.yoke.util.validation.Type;
+import org.openjdk.jmh.annotations.*;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.jetdrone.vertx.yoke.util.Validator.that;
+
+/**
+ * # ValidatorBenchmark
+ *
+ * A `Validator` with 8 assertions on params and a nested JSON body, against a valid request and a request failing
+ * 4 of them:
+ *
+ * * `valid` / `invalid`: first failure only,
+ * * `invalidAll`: all failures collected,
+ * * `invalidThrowing`: the assertions called through `ok`, one exception per failure.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ValidatorBenchmark {
+
+    private Assertion[] assertions;
+    private Validator validator;
+    private Validator collecting;
+
+    private YokeRequest valid;
+    private YokeRequest invalid;
+
+    // a request with the given parsed body, BodyParser is not needed
+    private static YokeRequest request(final JsonObject json) {
+        final MockHttpServerRequest request = new MockHttpServerRequest().reset("POST", "/orders/2014-07-08T16:41:41.532Z");
+        request.headers.set("content-type", "application/json");
+        request.headers.set("content-length", "100");
+        request.params.set("from", "2014-07-08T16:41:41.532Z");
+        request.params.set("page", "12");
+
+        final Context context = new Context(new HashMap<String, Object>());
+
+        return new YokeRequest(request, new YokeResponse(request.response, context, null), context, null) {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <V> V body() {
+                return (V) json;
+            }
+        };
+    }
+
+    @Setup
+    public void setup() {
+        assertions = new Assertion[] {
+                that("param:from").is(Type.DateTime),
+                that("param:page").is(Type.String),
+                that("body:order.customer.email").is(Type.Email),
+                that("body:order.customer.name").between(1, 50),
+                that("body:order.quantity").between(1, 100),
+                that("body:order.?coupon.?code").is(Type.Alphanumeric),
+                that("body:order.status").equals("new"),
+                that("body:order.express").is(Type.Boolean)
+        };
+
+        validator = new Validator(assertions);
+        collecting = new Validator(assertions);
+        collecting.setFailOnFirstError(false);
+
+        valid = request(new JsonObject().putObject("order", new JsonObject()
+                .putObject("customer", new JsonObject()
+                        .putString("email", "paulo@jetdrone.com")
+                        .putString("name", "Paulo"))
+                .putNumber("quantity", 3)
+                .putString("status", "new")
+                .putBoolean("express", true)));
+
+        invalid = request(new JsonObject().putObject("order", new JsonObject()
+                .putObject("customer", new JsonObject()
+                        .putString("email", "paulo@")
+                        .putString("name", "Paulo"))
+                .putNumber("quantity", 300)
+                .putString("status", "unknown")
+                .putString("express", "yes")));
+
+        if (!validator.isValid(valid) || collecting.validate(invalid).size() != 4) {
+            throw new IllegalStateException("unexpected validation result");
+        }
+    }
+
+    @Benchmark
+    public boolean valid() {
+        return validator.isValid(valid);
+    }
+
+    @Benchmark
+    public String invalid() {
+        return validator.check(invalid);
+    }
+
+    @Benchmark
+    public List<String> invalidAll() {
+        return collecting.validate(invalid);
+    }
+
+    @Benchmark
+    public int invalidThrowing() {
+        int failures = 0;
+        for (Assertion assertion : assertions) {
+            try {
+                assertion.ok(invalid);
+            } catch (YokeException e) {
+                failures++;
+            }
+        }
+        return failures;
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.jmh;
+
+import com.jetdrone.vertx.yoke.Middleware;
+import com.jetdrone.vertx.yoke.Yoke;
+import com.jetdrone.vertx.yoke.middleware.YokeRequest;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.*;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.VertxFactory;
+import org.vertx.java.core.http.HttpServer;
+import org.vertx.java.core.http.HttpServerRequest;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * # YokeChainBenchmark
+ *
+ * Dispatch cost of the Yoke middleware chain for a request that skips most mounted middleware. Run with
+ * `-PjmhArgs="YokeChainBenchmark -prof gc"` to see the allocation rate per request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class YokeChainBenchmark {
+
+    private Vertx vertx;
+    private Handler<HttpServerRequest> handler;
+    private final MockHttpServerRequest request = new MockHttpServerRequest();
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        vertx = VertxFactory.newVertx();
+
+        final Middleware end = new Middleware() {
+            @Override
+            public void handle(@NotNull YokeRequest request, @NotNull Handler<Object> next) {
+                request.response().end();
+            }
+        };
+
+        final Yoke yoke = new Yoke(vertx);
+
+        for (String mount : new String[] {"/static", "/admin", "/assets", "/login"}) {
+            yoke.use(mount, pass(), pass(), pass(), pass());
+        }
+
+        yoke.use(pass(), pass());
+        yoke.use("/api", end);
+
+        // only the request handler is needed from the server
+        final Object[] captured = new Object[1];
+        HttpServer server = (HttpServer) Proxy.newProxyInstance(HttpServer.class.getClassLoader(), new Class<?>[] {HttpServer.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("requestHandler".equals(method.getName()) && args != null) {
+                    captured[0] = args[0];
+                }
+                return proxy;
+            }
+        });
+
+        yoke.listen(server);
+        handler = (Handler<HttpServerRequest>) captured[0];
+    }
+
+    // a new instance each time, the same instance cannot be registered twice on JMX under the same mount
+    private static Middleware pass() {
+        return new Middleware() {
+            @Override
+            public void handle(@NotNull YokeRequest request, @NotNull Handler<Object> next) {
+                next.handle(null);
+            }
+        };
+    }
+
+    @TearDown
+    public void tearDown() {
+        vertx.stop();
+    }
+
+    @Benchmark
+    public boolean dispatch() {
+        handler.handle(request.reset("GET", "/api/users"));
+        return request.response.ended;
+    }
+}
@@ -4,11 +4,16 @@
 package com.jetdrone.vertx.yoke;
 
 import com.jetdrone.vertx.yoke.core.Context;
+import com.jetdrone.vertx.yoke.core.HopTimer;
 import com.jetdrone.vertx.yoke.core.MountedMiddleware;
 import com.jetdrone.vertx.yoke.core.RequestWrapper;
 import com.jetdrone.vertx.yoke.core.impl.DefaultRequestWrapper;
+import com.jetdrone.vertx.yoke.core.impl.TemplateCache;
+import com.jetdrone.vertx.yoke.engine.AbstractEngine;
+import com.jetdrone.vertx.yoke.engine.AbstractEngineSync;
 import com.jetdrone.vertx.yoke.jmx.ContextMBean;
 import com.jetdrone.vertx.yoke.jmx.MiddlewareMBean;
+import com.jetdrone.vertx.yoke.jmx.TemplateCacheMBean;
 import com.jetdrone.vertx.yoke.middleware.AbstractMiddleware;
 import com.jetdrone.vertx.yoke.middleware.YokeRequest;
 import com.jetdrone.vertx.yoke.security.KeyStoreSecurity;
@@ -178,11 +183,52 @@ public class Yoke {
      */
     private final List<MountedMiddleware> middlewareList = new ArrayList<>();
 
+    /**
+     * Immutable snapshot of the middleware list grouped by mount point, rebuilt every time the list changes so the
+     * request handler never needs to synchronize with #use
+     */
+    private volatile MountGroup[] chain = new MountGroup[0];
+
     /**
      * Special middleware used for error handling
      */
     private Middleware errorHandler;
 
+    /**
+     * Consecutive middleware sharing the same mount point. When the request path does not start with the mount the
+     * whole group is skipped with a single check.
+     */
+    private static final class MountGroup {
+        final String mount;
+        final MountedMiddleware[] middleware;
+
+        MountGroup(String mount, List<MountedMiddleware> middleware) {
+            this.mount = mount;
+            this.middleware = middleware.toArray(new MountedMiddleware[middleware.size()]);
+        }
+    }
+
+    private void compile() {
+        final List<MountGroup> groups = new ArrayList<>();
+        final List<MountedMiddleware> current = new ArrayList<>();
+        String mount = null;
+
+        for (MountedMiddleware mm : middlewareList) {
+            if (mount != null && !mount.equals(mm.mount)) {
+                groups.add(new MountGroup(mount, current));
+                current.clear();
+            }
+            mount = mm.mount;
+            current.add(mm);
+        }
+
+        if (mount != null) {
+            groups.add(new MountGroup(mount, current));
+        }
+
+        chain = groups.toArray(new MountGroup[groups.size()]);
+    }
+
     /**
      * Adds a Middleware to the chain. If the middleware is an Error Handler Middleware then it is
      * treated differently and only the last error handler is kept.
@@ -221,6 +267,7 @@ public class Yoke {
                 ((AbstractMiddleware) m).init(this, route);
             }
         }
+        compile();
         return this;
     }
 
@@ -260,6 +307,7 @@ public class Yoke {
                 handler.handle(request);
             }
         }));
+        compile();
         return this;
     }
 
@@ -295,6 +343,25 @@ public class Yoke {
             extension = "." + extension;
         }
         engineMap.put(extension, engine);
+
+        // register the template cache statistics on JMX
+        TemplateCache<?> cache = null;
+        if (engine instanceof AbstractEngine) {
+            cache = ((AbstractEngine<?>) engine).templateCache();
+        } else if (engine instanceof AbstractEngineSync) {
+            cache = ((AbstractEngineSync<?>) engine).templateCache();
+        }
+
+        if (cache != null) {
+            try {
+                mbs.registerMBean(new TemplateCacheMBean(cache), new ObjectName("com.jetdrone.yoke:type=Engine@" + hashCode() + ",extension=" + ObjectName.quote(extension) + ",name=" + engine.getClass().getSimpleName() + "@" + engine.hashCode()));
+            } catch (InstanceAlreadyExistsException e) {
+                // ignore
+            } catch (MalformedObjectNameException | MBeanRegistrationException | NotCompliantMBeanException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
         return this;
     }
 
@@ -470,78 +537,120 @@ public class Yoke {
                     request.response().putHeader("x-powered-by", "yoke");
                 }
 
-                new Handler<Object>() {
-                    int currentMiddleware = -1;
-
-                    @Override
-                    public void handle(Object error) {
-                        if (error == null) {
-                            currentMiddleware++;
-                            if (currentMiddleware < middlewareList.size()) {
-                                final MountedMiddleware mountedMiddleware = middlewareList.get(currentMiddleware);
-
-                                if (!mountedMiddleware.enabled) {
-                                    // the middleware is disabled
-                                    handle(null);
-                                } else {
-                                    if (request.path().startsWith(mountedMiddleware.mount)) {
-                                        mountedMiddleware.middleware.handle(request, this);
-                                    } else {
-                                        // the middleware was not mounted on this uri, skip to the next entry
-                                        handle(null);
-                                    }
-                                }
-                            } else {
-                                HttpServerResponse response = request.response();
-                                // reached the end and no handler was able to answer the request
-                                response.setStatusCode(404);
-                                response.setStatusMessage(HttpResponseStatus.valueOf(404).reasonPhrase());
-                                if (errorHandler != null) {
-                                    errorHandler.handle(request, null);
-                                } else {
-                                    response.end(HttpResponseStatus.valueOf(404).reasonPhrase());
-                                }
-                            }
-                        } else {
-                            request.put("error", error);
-                            if (errorHandler != null) {
-                                errorHandler.handle(request, null);
-                            } else {
-                                HttpServerResponse response = request.response();
-
-                                int errorCode;
-                                // if the error was set on the response use it
-                                if (response.getStatusCode() >= 400) {
-                                    errorCode = response.getStatusCode();
-                                } else {
-                                    // if it was set as the error object use it
-                                    if (error instanceof Number) {
-                                        errorCode = ((Number) error).intValue();
-                                    } else if (error instanceof YokeException) {
-                                        errorCode = ((YokeException) error).getErrorCode().intValue();
-                                    } else if (error instanceof JsonObject) {
-                                        errorCode = ((JsonObject) error).getInteger("errorCode", 500);
-                                    } else if (error instanceof Map) {
-                                        Integer tmp = (Integer) ((Map) error).get("errorCode");
-                                        errorCode = tmp != null ? tmp : 500;
-                                    } else {
-                                        // default error code
-                                        errorCode = 500;
-                                    }
-                                }
-
-                                response.setStatusCode(errorCode);
-                                response.setStatusMessage(HttpResponseStatus.valueOf(errorCode).reasonPhrase());
-                                response.end(HttpResponseStatus.valueOf(errorCode).reasonPhrase());
-                            }
-                        }
-                    }
-                }.handle(null);
+                new Chain(request, chain).handle(null);
             }
         });
         return this;
     }
 
+    /**
+     * Walks the middleware chain for a single request. The chain is the snapshot taken when the request arrived, later
+     * calls to #use only affect new requests. The time spent in each middleware is recorded in its latency histogram.
+     */
+    private final class Chain implements Handler<Object> {
+
+        private final YokeRequest request;
+        private final MountGroup[] groups;
+        private final HopTimer timer;
+
+        private int group = 0;
+        private int current = -1;
+
+        private Chain(YokeRequest request, MountGroup[] groups) {
+            this.request = request;
+            this.groups = groups;
+
+            timer = new HopTimer(request.response());
+            request.response().endHandler(timer);
+        }
+
+        @Override
+        public void handle(Object error) {
+            // the previous middleware is done, the next one starts now
+            final long now = timer.stop(error != null);
+
+            if (error != null) {
+                error(error);
+                return;
+            }
+
+            final String path = request.path();
+
+            while (group < groups.length) {
+                final MountGroup mountGroup = groups[group];
+
+                if (current == -1 && !path.startsWith(mountGroup.mount)) {
+                    // the group was not mounted on this uri, skip all its entries
+                    group++;
+                    continue;
+                }
+
+                current++;
+                if (current < mountGroup.middleware.length) {
+                    final MountedMiddleware mountedMiddleware = mountGroup.middleware[current];
+
+                    if (mountedMiddleware.enabled) {
+                        timer.start(mountedMiddleware.latency, now);
+                        mountedMiddleware.middleware.handle(request, this);
+                        return;
+                    }
+                    // the middleware is disabled
+                } else {
+                    group++;
+                    current = -1;
+                }
+            }
+
+            notFound();
+        }
+
+        private void notFound() {
+            HttpServerResponse response = request.response();
+            // reached the end and no handler was able to answer the request
+            response.setStatusCode(404);
+            response.setStatusMessage(HttpResponseStatus.valueOf(404).reasonPhrase());
+            if (errorHandler != null) {
+                errorHandler.handle(request, null);
+            } else {
+                response.end(HttpResponseStatus.valueOf(404).reasonPhrase());
+            }
+        }
+
+        private void error(Object error) {
+            request.put("error", error);
+            if (errorHandler != null) {
+                errorHandler.handle(request, null);
+            } else {
+                HttpServerResponse response = request.response();
+
+                int errorCode;
+                // if the error was set on the response use it
+                if (response.getStatusCode() >= 400) {
+                    errorCode = response.getStatusCode();
+                } else {
+                    // if it was set as the error object use it
+                    if (error instanceof Number) {
+                        errorCode = ((Number) error).intValue();
+                    } else if (error instanceof YokeException) {
+                        errorCode = ((YokeException) error).getErrorCode().intValue();
+                    } else if (error instanceof JsonObject) {
+                        errorCode = ((JsonObject) error).getInteger("errorCode", 500);
+                    } else if (error instanceof Map) {
+                        Integer tmp = (Integer) ((Map) error).get("errorCode");
+                        errorCode = tmp != null ? tmp : 500;
+                    } else {
+                        // default error code
+                        errorCode = 500;
+                    }
+                }
+
+                response.setStatusCode(errorCode);
+                response.setStatusMessage(HttpResponseStatus.valueOf(errorCode).reasonPhrase());
+                response.end(HttpResponseStatus.valueOf(errorCode).reasonPhrase());
+            }
+        }
+    }
+
     /**
      * Deploys required middleware from a config json element.
      *
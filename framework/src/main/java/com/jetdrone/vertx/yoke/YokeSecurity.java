@@ -6,6 +6,7 @@ import org.jetbrains.annotations.NotNull;
 import javax.crypto.*;
 import javax.xml.bind.DatatypeConverter;
 import java.security.*;
+import java.util.Arrays;
 
 public abstract class YokeSecurity {
 
@@ -26,6 +27,14 @@ public abstract class YokeSecurity {
      */
     public abstract Key getKey(final @NotNull String alias);
 
+    /**
+     * Returns the public key paired with the private key of the alias, used to verify signatures
+     * @return PublicKey implementation or null if the alias has no public key
+     */
+    public PublicKey getPublicKey(final @NotNull String alias) {
+        return null;
+    }
+
     /**
      * Creates a new Cipher
      * @return Cipher implementation
@@ -49,6 +58,9 @@ public abstract class YokeSecurity {
 
     /**
      * Returns the original value is the signature is correct. Null otherwise.
+     *
+     * The signature is decoded and compared with the MAC byte by byte in constant time, the time taken does not tell
+     * how much of a forged signature was right.
      */
     public static String unsign(@NotNull String val, @NotNull Mac mac) {
         int idx = val.lastIndexOf('.');
@@ -57,13 +69,60 @@ public abstract class YokeSecurity {
             return null;
         }
 
+        final byte[] signature = base64Decode(val, idx + 1);
+        if (signature == null) {
+            return null;
+        }
+
         String str = val.substring(0, idx);
-        if (val.equals(sign(str, mac))) {
+        if (MessageDigest.isEqual(signature, mac.doFinal(str.getBytes()))) {
             return str;
         }
         return null;
     }
 
+    private static final byte[] BASE64INDEX = new byte[128];
+
+    static {
+        Arrays.fill(BASE64INDEX, (byte) -1);
+        final String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64INDEX[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    /**
+     * Decodes the unpadded base64 from start to the end of the string as written by `Utils.base64`.
+     * @return the bytes or null if it is not valid base64
+     */
+    private static byte[] base64Decode(String str, int start) {
+        final int len = str.length() - start;
+        if (len % 4 == 1) {
+            return null;
+        }
+
+        final byte[] bytes = new byte[len * 3 / 4];
+        int acc = 0;
+        int bits = 0;
+        int n = 0;
+
+        for (int i = start; i < str.length(); i++) {
+            final char c = str.charAt(i);
+            final int v = c < 128 ? BASE64INDEX[c] : -1;
+            if (v == -1) {
+                return null;
+            }
+            acc = (acc << 6 | v) & 0xffffff;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                bytes[n++] = (byte) (acc >>> bits);
+            }
+        }
+
+        return bytes;
+    }
+
     public static String encrypt(@NotNull String val, @NotNull Cipher cipher) {
         try {
             byte[] encVal = cipher.doFinal(val.getBytes());
@@ -28,21 +28,21 @@ public class JsonSchemaProcessorHandler extends AbstractAnnotationHandler<Router
         }
 
         if (Processor.isCompatible(method, POST.class, YokeRequest.class, Handler.class)) {
-            router.post(Processor.getAnnotation(method, POST.class).value(), wrap(JsonSchemaResolver.resolveSchema(jsonSchema.value())));
+            router.post(Processor.getAnnotation(method, POST.class).value(), wrap(com.jetdrone.vertx.yoke.json.JsonSchema.compile(jsonSchema.value())));
         }
         if (Processor.isCompatible(method, PUT.class, YokeRequest.class, Handler.class)) {
-            router.put(Processor.getAnnotation(method, PUT.class).value(), wrap(JsonSchemaResolver.resolveSchema(jsonSchema.value())));
+            router.put(Processor.getAnnotation(method, PUT.class).value(), wrap(com.jetdrone.vertx.yoke.json.JsonSchema.compile(jsonSchema.value())));
         }
         if (Processor.isCompatible(method, PATCH.class, YokeRequest.class, Handler.class)) {
-            router.patch(Processor.getAnnotation(method, PATCH.class).value(), wrap(JsonSchemaResolver.resolveSchema(jsonSchema.value())));
+            router.patch(Processor.getAnnotation(method, PATCH.class).value(), wrap(com.jetdrone.vertx.yoke.json.JsonSchema.compile(jsonSchema.value())));
         }
     }
 
-    private static Middleware wrap(final JsonSchemaResolver.Schema schema) {
+    private static Middleware wrap(final CompiledSchema schema) {
         return new Middleware() {
             @Override
             public void handle(@NotNull final YokeRequest request, @NotNull final Handler<Object> next) {
-                if (!com.jetdrone.vertx.yoke.json.JsonSchema.conformsSchema(request.body(), schema)) {
+                if (schema != null && !schema.isValid(request.body())) {
                     next.handle(400);
                     return;
                 }
@@ -0,0 +1,216 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * # AccessLogWriter
+ *
+ * Appends log lines to a file without doing I/O on the calling thread. Lines go into a bounded lock-free ring buffer
+ * (any number of producers, one consumer) and a background thread writes them out in batches, flushing after each
+ * batch.
+ *
+ * When the buffer is full the `Overflow` policy decides: `DROP` (the default) discards the line and counts it in
+ * `dropped()`, `BLOCK` waits for the writer to make room, which stalls the event loop for as long as the disk is
+ * slow.
+ *
+ * One writer can be shared by all verticles logging to the same file. `close()` writes the remaining lines and closes
+ * the file.
+ *
+ * <pre>
+ * AccessLogWriter access = new AccessLogWriter("access.log");
+ * yoke.use(new Logger(Logger.Format.DEFAULT, access));
+ * </pre>
+ */
+public final class AccessLogWriter implements Closeable {
+
+    public enum Overflow {
+        DROP,
+        BLOCK
+    }
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int BATCH = 256;
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final int mask;
+    private final AtomicReferenceArray<String> lines;
+    // sequence of each slot, tells producers and the consumer whose turn it is
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    // only touched by the writer thread
+    private long head;
+
+    private final Overflow overflow;
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Writer out;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    public AccessLogWriter(@NotNull String file) throws IOException {
+        this(file, 8192, Overflow.DROP);
+    }
+
+    /**
+     * @param capacity number of lines the buffer holds, rounded up to a power of 2
+     */
+    public AccessLogWriter(@NotNull String file, int capacity, @NotNull Overflow overflow) throws IOException {
+        this(new OutputStreamWriter(new FileOutputStream(file, true), UTF8), capacity, overflow);
+    }
+
+    public AccessLogWriter(@NotNull Writer out, int capacity, @NotNull Overflow overflow) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+
+        final int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+
+        this.mask = size - 1;
+        this.lines = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+
+        this.overflow = overflow;
+        this.out = new BufferedWriter(out, 64 * 1024);
+
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "yoke-access-log");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues a line, the line separator is added by the writer. Returns false if the line was dropped.
+     */
+    public boolean write(@NotNull String line) {
+        if (closed) {
+            dropped.incrementAndGet();
+            return false;
+        }
+
+        while (!offer(line)) {
+            if (overflow == Overflow.DROP || closed) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            LockSupport.parkNanos(1000);
+        }
+
+        return true;
+    }
+
+    /**
+     * Number of lines dropped because the buffer was full or the writer closed.
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    private boolean offer(String line) {
+        for (;;) {
+            final long t = tail.get();
+            final int index = (int) t & mask;
+            final long diff = sequences.get(index) - t;
+
+            if (diff == 0) {
+                if (tail.compareAndSet(t, t + 1)) {
+                    lines.lazySet(index, line);
+                    // publishes the line to the writer
+                    sequences.lazySet(index, t + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                // full
+                return false;
+            }
+            // else another producer took the slot, retry
+        }
+    }
+
+    private String poll() {
+        final int index = (int) head & mask;
+
+        if (sequences.get(index) != head + 1) {
+            // empty, or the producer of the slot has not published yet
+            return null;
+        }
+
+        final String line = lines.get(index);
+        lines.lazySet(index, null);
+        // hands the slot back to the producers one lap later
+        sequences.lazySet(index, head + mask + 1);
+        head++;
+        return line;
+    }
+
+    private int writeBatch() throws IOException {
+        int count = 0;
+        String line;
+
+        while (count < BATCH && (line = poll()) != null) {
+            out.write(line);
+            out.write('\n');
+            count++;
+        }
+
+        if (count > 0) {
+            out.flush();
+        }
+
+        return count;
+    }
+
+    private void drain() {
+        try {
+            while (!closed) {
+                if (writeBatch() == 0) {
+                    LockSupport.parkNanos(this, IDLE_NANOS);
+                }
+            }
+            // lines queued before close
+            while (writeBatch() > 0) {
+                // continue
+            }
+        } catch (IOException e) {
+            // nothing can be logged anymore, count everything still queued as dropped
+            closed = true;
+            while (poll() != null) {
+                dropped.incrementAndGet();
+            }
+        } finally {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.core;
+
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.http.HttpServerResponse;
+
+/**
+ * # HopTimer
+ *
+ * Times the hops of a request through a chain, one at a time. A hop starts when the request is handed to a middleware
+ * and stops when the middleware calls the next handler or, for the middleware producing the response, when the
+ * response ends. A hop is an error when the middleware passed an error to the next handler or the response ended with
+ * a 5xx status.
+ *
+ * The timer must be registered as end handler of the response.
+ */
+public final class HopTimer implements Handler<Void> {
+
+    private final HttpServerResponse response;
+
+    private LatencyHistogram histogram;
+    private long start;
+
+    public HopTimer(HttpServerResponse response) {
+        this.response = response;
+    }
+
+    /**
+     * Starts timing a hop, a hop still running is stopped first.
+     */
+    public void start(LatencyHistogram histogram) {
+        start(histogram, stop(false));
+    }
+
+    /**
+     * Starts timing a hop at the given time, usually the time returned by `stop` so a chain reads the clock once per
+     * hop.
+     *
+     * @param now value of `System.nanoTime()`
+     */
+    public void start(LatencyHistogram histogram, long now) {
+        this.histogram = histogram;
+        start = now;
+    }
+
+    /**
+     * Stops the running hop, if any.
+     *
+     * @return the current value of `System.nanoTime()`
+     */
+    public long stop(boolean error) {
+        final long now = System.nanoTime();
+
+        if (histogram != null) {
+            histogram.record(now - start, error);
+            histogram = null;
+        }
+
+        return now;
+    }
+
+    /**
+     * The response has ended.
+     */
+    @Override
+    public void handle(Void event) {
+        stop(response.getStatusCode() >= 500);
+    }
+}
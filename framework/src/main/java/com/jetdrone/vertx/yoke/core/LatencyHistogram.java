@@ -0,0 +1,176 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.core;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * # LatencyHistogram
+ *
+ * Latency distribution in nanoseconds with log-linear buckets: values below 16 ns have their own bucket, every power of
+ * two above is split in 16 buckets, so a percentile is off by at most 1/16 (6.25%) of the real value. Values above
+ * 2^41 ns (about 36 minutes) are counted in the last bucket.
+ *
+ * Every thread recording values has its own buckets, written only by that thread with ordered stores, so recording
+ * takes no locks and does not contend with the other event loops. A `Snapshot` merges the buckets of all threads.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40;
+
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) << SUB_BITS;
+
+    // the error count and the sum of all values are kept after the buckets
+    private static final int ERRORS = BUCKETS;
+    private static final int SUM = BUCKETS + 1;
+
+    private final List<AtomicLongArray> recorders = new CopyOnWriteArrayList<>();
+
+    private final ThreadLocal<AtomicLongArray> recorder = new ThreadLocal<AtomicLongArray>() {
+        @Override
+        protected AtomicLongArray initialValue() {
+            final AtomicLongArray buckets = new AtomicLongArray(BUCKETS + 2);
+            recorders.add(buckets);
+            return buckets;
+        }
+    };
+
+    static int index(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return nanos < 0 ? 0 : (int) nanos;
+        }
+
+        final int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+
+        return ((exponent - SUB_BITS + 1) << SUB_BITS) + (int) ((nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Largest value counted in the bucket
+     */
+    static long highestValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        final int shift = (index >>> SUB_BITS) - 1;
+        final long lowest = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Records a latency, must be called from the thread that measured it.
+     *
+     * @param nanos latency in nanoseconds
+     * @param error true if the measured operation failed
+     */
+    public void record(long nanos, boolean error) {
+        final AtomicLongArray buckets = recorder.get();
+        final int index = index(nanos);
+
+        // single writer, an ordered store is enough for the readers
+        buckets.lazySet(index, buckets.get(index) + 1);
+        buckets.lazySet(SUM, buckets.get(SUM) + nanos);
+        if (error) {
+            buckets.lazySet(ERRORS, buckets.get(ERRORS) + 1);
+        }
+    }
+
+    /**
+     * Merges the values recorded by all threads so far.
+     */
+    public Snapshot snapshot() {
+        final long[] counts = new long[BUCKETS];
+        long errors = 0;
+        long sum = 0;
+
+        for (AtomicLongArray buckets : recorders) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += buckets.get(i);
+            }
+            errors += buckets.get(ERRORS);
+            sum += buckets.get(SUM);
+        }
+
+        return new Snapshot(counts, errors, sum);
+    }
+
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long errors;
+        private final long sum;
+
+        private Snapshot(long[] counts, long errors, long sum) {
+            this.counts = counts;
+            this.errors = errors;
+            this.sum = sum;
+
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            this.count = total;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long errors() {
+            return errors;
+        }
+
+        /**
+         * Sum of all values in nanoseconds
+         */
+        public long sum() {
+            return sum;
+        }
+
+        /**
+         * Latency in nanoseconds below which the given fraction of the values fall, 0 when there are no values.
+         *
+         * @param quantile between 0 and 1, e.g.: 0.99
+         */
+        public long percentile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+
+            final long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return highestValue(i);
+                }
+            }
+
+            return highestValue(counts.length - 1);
+        }
+
+        /**
+         * Number of values less than or equal to the given latency in nanoseconds, up to the bucket resolution.
+         */
+        public long countAtOrBelow(long nanos) {
+            final int last = index(nanos);
+            long seen = 0;
+
+            for (int i = 0; i <= last; i++) {
+                seen += counts[i];
+            }
+
+            return seen;
+        }
+    }
+}
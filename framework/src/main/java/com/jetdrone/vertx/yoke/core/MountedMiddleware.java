@@ -10,6 +10,8 @@ public final class MountedMiddleware {
     public final String mount;
     public final Middleware middleware;
     public boolean enabled = true;
+    // time spent in the middleware per request
+    public final LatencyHistogram latency = new LatencyHistogram();
 
     /**
      * Constructs a new Mounted Middleware
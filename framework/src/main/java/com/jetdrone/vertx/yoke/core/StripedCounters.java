@@ -0,0 +1,55 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.core;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * # StripedCounters
+ *
+ * A fixed number of counters. Every thread updates its own copy with ordered stores, no locks and no contention between
+ * event loops. The copies are only added up when the counters are read.
+ */
+public final class StripedCounters {
+
+    private final int size;
+    private final List<AtomicLongArray> stripes = new CopyOnWriteArrayList<>();
+
+    private final ThreadLocal<AtomicLongArray> stripe = new ThreadLocal<AtomicLongArray>() {
+        @Override
+        protected AtomicLongArray initialValue() {
+            final AtomicLongArray counters = new AtomicLongArray(size);
+            stripes.add(counters);
+            return counters;
+        }
+    };
+
+    public StripedCounters(int size) {
+        this.size = size;
+    }
+
+    /**
+     * Adds to a counter, the delta can be negative.
+     */
+    public void add(int index, long delta) {
+        final AtomicLongArray counters = stripe.get();
+        // single writer, an ordered store is enough for the readers
+        counters.lazySet(index, counters.get(index) + delta);
+    }
+
+    /**
+     * Current value of all counters.
+     */
+    public long[] sum() {
+        final long[] sum = new long[size];
+        for (AtomicLongArray counters : stripes) {
+            for (int i = 0; i < size; i++) {
+                sum[i] += counters.get(i);
+            }
+        }
+        return sum;
+    }
+}
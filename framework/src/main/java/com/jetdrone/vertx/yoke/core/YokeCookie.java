@@ -3,7 +3,7 @@
  */
 package com.jetdrone.vertx.yoke.core;
 
-import com.jetdrone.vertx.yoke.YokeSecurity;
+import com.jetdrone.vertx.yoke.security.CookieSigner;
 import io.netty.handler.codec.http.Cookie;
 import io.netty.handler.codec.http.DefaultCookie;
 import org.jetbrains.annotations.NotNull;
@@ -17,13 +17,13 @@ import java.util.Set;
 public class YokeCookie implements Cookie {
 
     private final Cookie nettyCookie;
-    private final Mac mac;
+    private final CookieSigner signer;
     private String value;
     private boolean signed;
 
-    public YokeCookie(@NotNull final Cookie nettyCookie, final Mac mac) {
+    public YokeCookie(@NotNull final Cookie nettyCookie, final CookieSigner signer) {
         this.nettyCookie = nettyCookie;
-        this.mac = mac;
+        this.signer = signer;
 
         // get the original value
         value = nettyCookie.getValue();
@@ -31,21 +31,29 @@ public class YokeCookie implements Cookie {
         if (value.startsWith("s:")) {
             signed = true;
             // if it is signed get the unsigned value
-            if (mac == null) {
+            if (signer == null) {
                 // this is an error
                 value = null;
             } else {
-                value = YokeSecurity.unsign(value.substring(2), mac);
+                value = signer.unsign(value.substring(2));
             }
         }
     }
 
+    public YokeCookie(@NotNull final Cookie nettyCookie, final Mac mac) {
+        this(nettyCookie, mac == null ? null : new CookieSigner(mac));
+    }
+
+    public YokeCookie(@NotNull final String name, final CookieSigner signer) {
+        this(new DefaultCookie(name, ""), signer);
+    }
+
     public YokeCookie(@NotNull final String name, final Mac mac) {
         this(new DefaultCookie(name, ""), mac);
     }
 
     public YokeCookie(@NotNull final String name, @NotNull final String value) {
-        this(new DefaultCookie(name, value), null);
+        this(new DefaultCookie(name, value), (CookieSigner) null);
     }
 
     // extensions
@@ -54,8 +62,8 @@ public class YokeCookie implements Cookie {
     }
 
     public void sign() {
-        if (mac != null) {
-            nettyCookie.setValue("s:" + YokeSecurity.sign(value, mac));
+        if (signer != null) {
+            nettyCookie.setValue("s:" + signer.sign(value));
             signed = true;
         } else {
             signed = false;
@@ -0,0 +1,190 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.core.impl;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * # AssetCache
+ *
+ * Byte bounded LRU cache for static assets. Every entry keeps the file metadata and the precomputed response headers,
+ * small files also keep their body (and optionally a gzip variant) so they can be served without touching the file
+ * system.
+ *
+ * The cache is thread safe, like `TemplateCache` reads never lock: a lookup is a concurrent map read plus a volatile
+ * write of the access stamp, the eviction of the least recently used entries is the only synchronized part.
+ */
+public final class AssetCache {
+
+    // rough per entry overhead (map node, entry object, header strings)
+    private static final int ENTRY_OVERHEAD = 256;
+
+    /**
+     * Cached asset.
+     */
+    public static final class Entry {
+        public final String file;
+        public final long size;
+        public final long lastModified;
+        public final String etag;
+        public final String lastModifiedHeader;
+        public final String contentType;
+        public final String charset;
+        // file content, null if the file is too large to be kept in memory
+        public final byte[] body;
+        // gzip variant of the body, null if not available
+        public final byte[] gzip;
+        // size and modification time of the precompressed .br and .gz files next to the asset, -1 if there is none
+        public final long brSize;
+        public final long brModified;
+        public final long gzSize;
+        public final long gzModified;
+
+        // access stamp for the LRU eviction
+        volatile long accessed;
+
+        public Entry(String file, long size, long lastModified, String etag, String lastModifiedHeader, String contentType, String charset, byte[] body, byte[] gzip, long brSize, long brModified, long gzSize, long gzModified) {
+            this.file = file;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.etag = etag;
+            this.lastModifiedHeader = lastModifiedHeader;
+            this.contentType = contentType;
+            this.charset = charset;
+            this.body = body;
+            this.gzip = gzip;
+            this.brSize = brSize;
+            this.brModified = brModified;
+            this.gzSize = gzSize;
+            this.gzModified = gzModified;
+        }
+
+        int weight() {
+            return ENTRY_OVERHEAD + file.length() * 2 + (body == null ? 0 : body.length) + (gzip == null ? 0 : gzip.length);
+        }
+    }
+
+    /**
+     * Eviction candidate, the access stamp is copied so that sorting is not affected by concurrent reads.
+     */
+    private static final class Candidate {
+        final Entry entry;
+        final long accessed;
+
+        Candidate(Entry entry) {
+            this.entry = entry;
+            this.accessed = entry.accessed;
+        }
+    }
+
+    private static final Comparator<Candidate> LRU = new Comparator<Candidate>() {
+        @Override
+        public int compare(Candidate o1, Candidate o2) {
+            return Long.compare(o1.accessed, o2.accessed);
+        }
+    };
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final long maxBytes;
+    private final AtomicLong bytes = new AtomicLong();
+
+    public AssetCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Looks up an asset and marks it as recently used.
+     *
+     * @param file file path
+     * @return the entry or null
+     */
+    public Entry get(@NotNull String file) {
+        final Entry entry = entries.get(file);
+        if (entry != null) {
+            entry.accessed = System.nanoTime();
+        }
+        return entry;
+    }
+
+    /**
+     * Stores an asset evicting the least recently used entries until the cache fits the byte budget. Entries larger
+     * than the budget are not stored.
+     *
+     * @param entry asset to store
+     */
+    public void put(@NotNull Entry entry) {
+        final int weight = entry.weight();
+        if (weight > maxBytes) {
+            return;
+        }
+
+        entry.accessed = System.nanoTime();
+
+        final Entry old = entries.put(entry.file, entry);
+        final long total = bytes.addAndGet(weight - (old == null ? 0 : old.weight()));
+
+        if (total > maxBytes) {
+            evict();
+        }
+    }
+
+    private synchronized void evict() {
+        // another thread might have evicted already
+        if (bytes.get() <= maxBytes) {
+            return;
+        }
+
+        final List<Candidate> candidates = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            candidates.add(new Candidate(entry));
+        }
+        Collections.sort(candidates, LRU);
+
+        for (Candidate candidate : candidates) {
+            if (bytes.get() <= maxBytes) {
+                break;
+            }
+            // only remove the entry if it was not replaced in the mean time
+            if (entries.remove(candidate.entry.file, candidate.entry)) {
+                bytes.addAndGet(-candidate.entry.weight());
+            }
+        }
+    }
+
+    /**
+     * Removes an asset from the cache.
+     *
+     * @param file file path
+     */
+    public void remove(@NotNull String file) {
+        final Entry old = entries.remove(file);
+        if (old != null) {
+            bytes.addAndGet(-old.weight());
+        }
+    }
+
+    /**
+     * Snapshot of the cached entries, used for revalidation.
+     *
+     * @return list of entries
+     */
+    public List<Entry> entries() {
+        return new ArrayList<>(entries.values());
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long bytes() {
+        return bytes.get();
+    }
+}
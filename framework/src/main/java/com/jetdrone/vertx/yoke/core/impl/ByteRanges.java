@@ -0,0 +1,109 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.core.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * # ByteRanges
+ *
+ * Parser for the HTTP `Range` request header (byte ranges only).
+ */
+public final class ByteRanges {
+
+    /**
+     * Requests with more ranges than this are served in full
+     */
+    public static final int MAX_RANGES = 16;
+
+    private ByteRanges() {}
+
+    /**
+     * Parses a Range header against a representation of the given size.
+     *
+     * A header that is malformed, uses another unit, has too many ranges or asks for more bytes than the full
+     * representation is ignored (null) and the full content should be sent. A valid header where no range overlaps the
+     * content returns an empty list, which should be answered with `416 Range Not Satisfiable`.
+     *
+     * @param header Range header value
+     * @param size   size of the representation
+     * @return list of inclusive [first, last] byte positions, empty if not satisfiable or null to ignore the header
+     */
+    public static List<long[]> parse(String header, long size) {
+        if (header == null || !header.regionMatches(true, 0, "bytes=", 0, 6)) {
+            return null;
+        }
+
+        final String[] specs = header.substring(6).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+
+        final List<long[]> ranges = new ArrayList<>(specs.length);
+        boolean valid = false;
+        long total = 0;
+
+        for (String spec : specs) {
+            spec = spec.trim();
+            if (spec.length() == 0) {
+                continue;
+            }
+
+            final int dash = spec.indexOf('-');
+            if (dash == -1) {
+                return null;
+            }
+            valid = true;
+
+            final long first;
+            final long last;
+
+            try {
+                if (dash == 0) {
+                    // suffix range: last n bytes
+                    long n = Long.parseLong(spec.substring(1));
+                    if (n < 0) {
+                        return null;
+                    }
+                    if (n == 0 || size == 0) {
+                        continue;
+                    }
+                    first = Math.max(0, size - n);
+                    last = size - 1;
+                } else {
+                    first = Long.parseLong(spec.substring(0, dash));
+                    if (dash == spec.length() - 1) {
+                        last = size - 1;
+                    } else {
+                        long end = Long.parseLong(spec.substring(dash + 1));
+                        if (end < first) {
+                            return null;
+                        }
+                        last = Math.min(end, size - 1);
+                    }
+                    if (first >= size) {
+                        continue;
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+
+            if (first < 0) {
+                return null;
+            }
+
+            total += last - first + 1;
+            ranges.add(new long[] {first, last});
+        }
+
+        // overlapping ranges asking for more than the whole content are not worth it
+        if (!valid || total > size) {
+            return null;
+        }
+
+        return ranges;
+    }
+}
@@ -0,0 +1,530 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.core.impl;
+
+import org.jetbrains.annotations.NotNull;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.json.DecodeException;
+
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * # JsonStreamParser
+ *
+ * Incremental (push) JSON parser. Data is fed in chunks as it arrives from the network and decoded straight into the
+ * same untyped structure `JSON.decode` produces: `LinkedHashMap`, `ArrayList`, `String`, `Integer`/`Long`/`BigInteger`,
+ * `Double`, `Boolean` and `null`. Chunks can be split anywhere, including in the middle of a multi byte character.
+ *
+ * C style comments are allowed, the same as `JSON.decode`.
+ *
+ * If an element handler is given and the document is an array, every element of the top level array is handed to it
+ * once complete and is not kept, so arbitrarily large arrays can be processed with constant memory.
+ *
+ * Instances are not thread safe and parse a single document.
+ */
+public final class JsonStreamParser {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // expecting a value
+    private static final int VALUE = 0;
+    // expecting a value or the end of an empty array
+    private static final int FIRST_VALUE = 1;
+    // expecting an object key
+    private static final int KEY = 2;
+    // expecting an object key or the end of an empty object
+    private static final int FIRST_KEY = 3;
+    private static final int COLON = 4;
+    // expecting a comma or the end of the current container
+    private static final int AFTER = 5;
+    private static final int STRING = 6;
+    private static final int ESCAPE = 7;
+    private static final int UNICODE = 8;
+    private static final int NUMBER = 9;
+    private static final int LITERAL = 10;
+    // the document is complete, only white space and comments allowed
+    private static final int DONE = 11;
+    // after a '/'
+    private static final int COMMENT = 12;
+    private static final int LINE_COMMENT = 13;
+    private static final int BLOCK_COMMENT = 14;
+    // after a '*' in a block comment
+    private static final int BLOCK_COMMENT_END = 15;
+
+    private static final BigInteger MIN_LONG = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger MAX_LONG = BigInteger.valueOf(Long.MAX_VALUE);
+
+    private final Handler<Object> elementHandler;
+
+    // open containers and the pending keys of the open objects
+    private final List<Object> stack = new ArrayList<>();
+    private final List<String> keys = new ArrayList<>();
+
+    private int state = VALUE;
+    // state to return to after a comment
+    private int resume;
+
+    // current string (UTF-8) or number
+    private byte[] chars = new byte[64];
+    private int length;
+    private boolean isKey;
+    private boolean isFloat;
+
+    // unicode escapes
+    private int unicode;
+    private int unicodeDigits;
+    private char highSurrogate;
+
+    private String literal;
+    private int literalIndex;
+    private Object literalValue;
+
+    private Object root;
+    private long position;
+
+    public JsonStreamParser() {
+        this(null);
+    }
+
+    /**
+     * @param elementHandler receives the elements of a top level array instead of keeping them, may be null
+     */
+    public JsonStreamParser(Handler<Object> elementHandler) {
+        this.elementHandler = elementHandler;
+    }
+
+    /**
+     * Parses the next chunk of the document.
+     *
+     * @param data   buffer
+     * @param offset start of the chunk
+     * @param len    length of the chunk
+     * @throws DecodeException if the data is not valid JSON
+     */
+    public void feed(@NotNull byte[] data, int offset, int len) {
+        final int end = offset + len;
+
+        for (int i = offset; i < end; i++) {
+            final byte b = data[i];
+            position++;
+
+            switch (state) {
+                case STRING:
+                    if (b == '"') {
+                        endString();
+                    } else if (b == '\\') {
+                        state = ESCAPE;
+                    } else if (b >= 0 && b < 0x20) {
+                        throw error("Illegal unquoted character in string");
+                    } else {
+                        flushSurrogate();
+                        append(b);
+                    }
+                    break;
+                case ESCAPE:
+                    escape(b);
+                    break;
+                case UNICODE:
+                    unicode(b);
+                    break;
+                case NUMBER:
+                    if ((b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E') {
+                        if (b == '.' || b == 'e' || b == 'E') {
+                            isFloat = true;
+                        }
+                        append(b);
+                    } else {
+                        endNumber();
+                        // the delimiter belongs to the next token
+                        i--;
+                        position--;
+                    }
+                    break;
+                case LITERAL:
+                    if (b != literal.charAt(literalIndex)) {
+                        throw error("Unrecognized token");
+                    }
+                    if (++literalIndex == literal.length()) {
+                        value(literalValue);
+                    }
+                    break;
+                case COMMENT:
+                    if (b == '/') {
+                        state = LINE_COMMENT;
+                    } else if (b == '*') {
+                        state = BLOCK_COMMENT;
+                    } else {
+                        throw error("Unexpected character after '/'");
+                    }
+                    break;
+                case LINE_COMMENT:
+                    if (b == '\n' || b == '\r') {
+                        state = resume;
+                    }
+                    break;
+                case BLOCK_COMMENT:
+                    if (b == '*') {
+                        state = BLOCK_COMMENT_END;
+                    }
+                    break;
+                case BLOCK_COMMENT_END:
+                    if (b == '/') {
+                        state = resume;
+                    } else if (b != '*') {
+                        state = BLOCK_COMMENT;
+                    }
+                    break;
+                default:
+                    structural(b);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Completes the parsing.
+     *
+     * @return the decoded document, if an element handler was used and the document was an array, the array is empty
+     * @throws DecodeException if the document is incomplete
+     */
+    public Object end() {
+        if (state == NUMBER) {
+            endNumber();
+        }
+        if (state == LINE_COMMENT && resume == DONE) {
+            state = DONE;
+        }
+        if (state != DONE) {
+            throw error("Unexpected end-of-input");
+        }
+        return root;
+    }
+
+    private void structural(byte b) {
+        if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+            return;
+        }
+
+        if (b == '/') {
+            resume = state;
+            state = COMMENT;
+            return;
+        }
+
+        switch (state) {
+            case FIRST_VALUE:
+                if (b == ']') {
+                    endContainer();
+                    return;
+                }
+                startValue(b);
+                return;
+            case VALUE:
+                startValue(b);
+                return;
+            case FIRST_KEY:
+                if (b == '}') {
+                    endContainer();
+                    return;
+                }
+                startKey(b);
+                return;
+            case KEY:
+                startKey(b);
+                return;
+            case COLON:
+                if (b != ':') {
+                    throw error("Was expecting a colon to separate field name and value");
+                }
+                state = VALUE;
+                return;
+            case AFTER:
+                final boolean inObject = stack.get(stack.size() - 1) instanceof Map;
+                if (b == ',') {
+                    state = inObject ? KEY : VALUE;
+                } else if ((inObject && b == '}') || (!inObject && b == ']')) {
+                    endContainer();
+                } else {
+                    throw error("Was expecting comma to separate " + (inObject ? "OBJECT" : "ARRAY") + " entries");
+                }
+                return;
+            default:
+                throw error("Unexpected character after the end of the document");
+        }
+    }
+
+    private void startValue(byte b) {
+        switch (b) {
+            case '{':
+                stack.add(new LinkedHashMap<String, Object>());
+                state = FIRST_KEY;
+                break;
+            case '[':
+                stack.add(new ArrayList<>());
+                state = FIRST_VALUE;
+                break;
+            case '"':
+                isKey = false;
+                length = 0;
+                state = STRING;
+                break;
+            case 't':
+                startLiteral("true", Boolean.TRUE);
+                break;
+            case 'f':
+                startLiteral("false", Boolean.FALSE);
+                break;
+            case 'n':
+                startLiteral("null", null);
+                break;
+            default:
+                if (b == '-' || (b >= '0' && b <= '9')) {
+                    length = 0;
+                    isFloat = false;
+                    append(b);
+                    state = NUMBER;
+                } else {
+                    throw error("Unexpected character ('" + (char) b + "')");
+                }
+                break;
+        }
+    }
+
+    private void startKey(byte b) {
+        if (b != '"') {
+            throw error("Was expecting double-quote to start field name");
+        }
+        isKey = true;
+        length = 0;
+        state = STRING;
+    }
+
+    private void startLiteral(String literal, Object value) {
+        this.literal = literal;
+        this.literalIndex = 1;
+        this.literalValue = value;
+        state = LITERAL;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void value(Object value) {
+        if (stack.isEmpty()) {
+            root = value;
+            state = DONE;
+            return;
+        }
+
+        final Object top = stack.get(stack.size() - 1);
+
+        if (top instanceof Map) {
+            ((Map<String, Object>) top).put(keys.remove(keys.size() - 1), value);
+        } else if (elementHandler != null && stack.size() == 1) {
+            elementHandler.handle(value);
+        } else {
+            ((List<Object>) top).add(value);
+        }
+
+        state = AFTER;
+    }
+
+    private void endContainer() {
+        value(stack.remove(stack.size() - 1));
+    }
+
+    private void endString() {
+        flushSurrogate();
+        final String value = new String(chars, 0, length, UTF8);
+        if (isKey) {
+            keys.add(value);
+            state = COLON;
+        } else {
+            value(value);
+        }
+    }
+
+    private void endNumber() {
+        if (!isNumber()) {
+            throw error("Invalid numeric value");
+        }
+
+        final String text = new String(chars, 0, length, UTF8);
+
+        if (isFloat) {
+            value(Double.valueOf(text));
+            return;
+        }
+
+        // same widening as the untyped Jackson deserializer
+        if (length < 10) {
+            value(Integer.valueOf(text));
+            return;
+        }
+
+        final BigInteger big = new BigInteger(text);
+        if (big.bitLength() < 32) {
+            value(big.intValue());
+        } else if (big.compareTo(MIN_LONG) >= 0 && big.compareTo(MAX_LONG) <= 0) {
+            value(big.longValue());
+        } else {
+            value(big);
+        }
+    }
+
+    /**
+     * Validates the number grammar: -?(0|[1-9][0-9]*)(\.[0-9]+)?([eE][+-]?[0-9]+)?
+     */
+    private boolean isNumber() {
+        int i = 0;
+
+        if (chars[i] == '-') {
+            i++;
+        }
+        if (i == length || !digit(chars[i])) {
+            return false;
+        }
+        if (chars[i] == '0') {
+            i++;
+        } else {
+            while (i < length && digit(chars[i])) {
+                i++;
+            }
+        }
+        if (i < length && chars[i] == '.') {
+            i++;
+            if (i == length || !digit(chars[i])) {
+                return false;
+            }
+            while (i < length && digit(chars[i])) {
+                i++;
+            }
+        }
+        if (i < length && (chars[i] == 'e' || chars[i] == 'E')) {
+            i++;
+            if (i < length && (chars[i] == '+' || chars[i] == '-')) {
+                i++;
+            }
+            if (i == length || !digit(chars[i])) {
+                return false;
+            }
+            while (i < length && digit(chars[i])) {
+                i++;
+            }
+        }
+
+        return i == length;
+    }
+
+    private static boolean digit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private void escape(byte b) {
+        state = STRING;
+
+        if (b == 'u') {
+            unicode = 0;
+            unicodeDigits = 0;
+            state = UNICODE;
+            return;
+        }
+
+        flushSurrogate();
+
+        switch (b) {
+            case '"':
+            case '\\':
+            case '/':
+                append(b);
+                break;
+            case 'b':
+                append((byte) '\b');
+                break;
+            case 'f':
+                append((byte) '\f');
+                break;
+            case 'n':
+                append((byte) '\n');
+                break;
+            case 'r':
+                append((byte) '\r');
+                break;
+            case 't':
+                append((byte) '\t');
+                break;
+            default:
+                throw error("Unrecognized character escape '" + (char) b + "'");
+        }
+    }
+
+    private void unicode(byte b) {
+        final int digit = Character.digit((char) b, 16);
+        if (digit == -1) {
+            throw error("Expected a hex-digit for character escape sequence");
+        }
+
+        unicode = (unicode << 4) | digit;
+
+        if (++unicodeDigits == 4) {
+            state = STRING;
+            final char c = (char) unicode;
+
+            if (Character.isHighSurrogate(c)) {
+                flushSurrogate();
+                highSurrogate = c;
+            } else if (Character.isLowSurrogate(c) && highSurrogate != 0) {
+                appendCodePoint(Character.toCodePoint(highSurrogate, c));
+                highSurrogate = 0;
+            } else {
+                flushSurrogate();
+                appendCodePoint(c);
+            }
+        }
+    }
+
+    /**
+     * A high surrogate without its low surrogate cannot be represented in UTF-8
+     */
+    private void flushSurrogate() {
+        if (highSurrogate != 0) {
+            appendCodePoint(0xFFFD);
+            highSurrogate = 0;
+        }
+    }
+
+    private void appendCodePoint(int cp) {
+        if (cp < 0x80) {
+            append((byte) cp);
+        } else if (cp < 0x800) {
+            append((byte) (0xC0 | (cp >> 6)));
+            append((byte) (0x80 | (cp & 0x3F)));
+        } else if (cp < 0x10000) {
+            append((byte) (0xE0 | (cp >> 12)));
+            append((byte) (0x80 | ((cp >> 6) & 0x3F)));
+            append((byte) (0x80 | (cp & 0x3F)));
+        } else {
+            append((byte) (0xF0 | (cp >> 18)));
+            append((byte) (0x80 | ((cp >> 12) & 0x3F)));
+            append((byte) (0x80 | ((cp >> 6) & 0x3F)));
+            append((byte) (0x80 | (cp & 0x3F)));
+        }
+    }
+
+    private void append(byte b) {
+        if (length == chars.length) {
+            final byte[] grown = new byte[chars.length * 2];
+            System.arraycopy(chars, 0, grown, 0, length);
+            chars = grown;
+        }
+        chars[length++] = b;
+    }
+
+    private DecodeException error(String message) {
+        return new DecodeException(message + " at position " + position);
+    }
+}
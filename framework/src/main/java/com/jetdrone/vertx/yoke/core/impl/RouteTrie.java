@@ -0,0 +1,257 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.core.impl;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Segment trie for simple route patterns.
+ *
+ * A simple pattern is a path starting with `/` where every segment is either a literal without regular expression
+ * meta characters or a single `:name` token, for example `/users/:id/posts`. Lookup walks the trie one path segment
+ * at a time so the cost depends on the depth of the path and not on the number of registered patterns.
+ *
+ * The matching rules are the same as the regular expressions the Router generates for these patterns: a `:name`
+ * segment matches any non empty segment and a trailing slash on the request path is ignored unless the pattern
+ * itself ends with a slash.
+ *
+ * @param <T> Value bound to a pattern
+ */
+public final class RouteTrie<T> {
+
+    private static final Pattern PARAM = Pattern.compile(":[A-Za-z][A-Za-z0-9_]*");
+    private static final String META = "\\^$.|?*+()[]{}:";
+
+    private static final class Node<T> {
+        // static segments
+        private Map<String, Node<T>> literals;
+        // :param segment
+        private Node<T> param;
+        // patterns ending at this node, request trailing slash is optional
+        private List<T> loose;
+        // patterns ending at this node with a trailing slash, request trailing slash is required
+        private List<T> strict;
+
+        private Node<T> literal(String segment) {
+            if (literals == null) {
+                literals = new HashMap<>();
+            }
+            Node<T> node = literals.get(segment);
+            if (node == null) {
+                node = new Node<>();
+                literals.put(segment, node);
+            }
+            return node;
+        }
+
+        private Node<T> param() {
+            if (param == null) {
+                param = new Node<>();
+            }
+            return param;
+        }
+    }
+
+    private final Node<T> root = new Node<>();
+
+    /**
+     * Verifies if a pattern can be represented in the trie.
+     *
+     * @param pattern route pattern as given to the Router
+     * @return true if all segments are either plain literals or :params
+     */
+    public static boolean isSimple(@NotNull String pattern) {
+        if (pattern.length() == 0 || pattern.charAt(0) != '/') {
+            return false;
+        }
+
+        int start = 1;
+        int len = pattern.length();
+
+        while (start < len) {
+            int end = pattern.indexOf('/', start);
+            if (end == -1) {
+                end = len;
+            }
+            // empty segments in the middle of the pattern are not supported
+            if (end == start) {
+                return false;
+            }
+            if (pattern.charAt(start) == ':') {
+                if (!PARAM.matcher(pattern.substring(start, end)).matches()) {
+                    return false;
+                }
+            } else {
+                for (int i = start; i < end; i++) {
+                    if (META.indexOf(pattern.charAt(i)) != -1) {
+                        return false;
+                    }
+                }
+            }
+            start = end + 1;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the position of each :param in a simple pattern.
+     *
+     * @param pattern route pattern as given to the Router
+     * @return map of param name to segment index (0 based, not counting the leading slash)
+     */
+    public static Map<String, Integer> params(@NotNull String pattern) {
+        final Map<String, Integer> params = new HashMap<>();
+        int index = 0;
+        int start = 1;
+        int len = pattern.length();
+
+        while (start < len) {
+            int end = pattern.indexOf('/', start);
+            if (end == -1) {
+                end = len;
+            }
+            if (pattern.charAt(start) == ':') {
+                params.put(pattern.substring(start + 1, end), index);
+            }
+            index++;
+            start = end + 1;
+        }
+
+        return params;
+    }
+
+    /**
+     * Extracts a segment from a request path.
+     *
+     * @param path request path
+     * @param index segment index (0 based, not counting the leading slash)
+     * @return the segment or null if the path is shorter
+     */
+    public static String segment(@NotNull String path, int index) {
+        int start = 1;
+        int len = path.length();
+
+        while (start <= len) {
+            int end = path.indexOf('/', start);
+            if (end == -1) {
+                end = len;
+            }
+            if (index == 0) {
+                return path.substring(start, end);
+            }
+            index--;
+            start = end + 1;
+        }
+
+        return null;
+    }
+
+    /**
+     * Binds a value to a simple pattern. Callers should verify the pattern with #isSimple first.
+     *
+     * @param pattern route pattern
+     * @param value value to return on lookups
+     */
+    public void add(@NotNull String pattern, @NotNull T value) {
+        if (!isSimple(pattern)) {
+            throw new IllegalArgumentException("Not a simple pattern: " + pattern);
+        }
+
+        Node<T> node = root;
+        int start = 1;
+        int len = pattern.length();
+
+        while (start < len) {
+            int end = pattern.indexOf('/', start);
+            if (end == -1) {
+                end = len;
+            }
+            if (pattern.charAt(start) == ':') {
+                node = node.param();
+            } else {
+                node = node.literal(pattern.substring(start, end));
+            }
+            start = end + 1;
+        }
+
+        if (pattern.charAt(len - 1) == '/') {
+            if (node.strict == null) {
+                node.strict = new ArrayList<>(1);
+            }
+            node.strict.add(value);
+        } else {
+            if (node.loose == null) {
+                node.loose = new ArrayList<>(1);
+            }
+            node.loose.add(value);
+        }
+    }
+
+    /**
+     * Collects all values whose pattern matches the given path. The order of the results is not defined.
+     *
+     * @param path request path
+     * @param result collection to add the matches to
+     */
+    public void find(@NotNull String path, @NotNull Collection<T> result) {
+        if (path.length() == 0 || path.charAt(0) != '/') {
+            return;
+        }
+        find(root, path, 1, result);
+    }
+
+    private static <T> void find(Node<T> node, String path, int start, Collection<T> result) {
+        final int len = path.length();
+
+        if (start == len) {
+            // the path ends with a slash
+            if (node.strict != null) {
+                result.addAll(node.strict);
+            }
+            if (node.loose != null) {
+                result.addAll(node.loose);
+            }
+            return;
+        }
+
+        int end = path.indexOf('/', start);
+        if (end == -1) {
+            end = len;
+        }
+
+        // empty segments never match
+        if (end == start) {
+            return;
+        }
+
+        if (node.literals != null) {
+            Node<T> next = node.literals.get(path.substring(start, end));
+            if (next != null) {
+                descend(next, path, end, result);
+            }
+        }
+
+        if (node.param != null) {
+            descend(node.param, path, end, result);
+        }
+    }
+
+    private static <T> void descend(Node<T> node, String path, int end, Collection<T> result) {
+        if (end == path.length()) {
+            if (node.loose != null) {
+                result.addAll(node.loose);
+            }
+        } else {
+            find(node, path, end + 1, result);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.core.impl;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * # TemplateCache
+ *
+ * Thread safe cache for template sources and their compiled form, bounded by the total size of the raw sources (in
+ * characters). Engine instances can be shared by several verticles and worker threads, so reads never lock: a lookup
+ * is a concurrent map read plus a volatile write of the access stamp.
+ *
+ * When the bound is exceeded the least recently used entries are evicted, down to 90% of the bound so that a full cache
+ * does not pay for an eviction pass on every insert.
+ *
+ * @param <T> Compiled template
+ */
+public final class TemplateCache<T> {
+
+    /**
+     * Cache entry, the raw value is immutable and the compiled value is set once the template is compiled.
+     */
+    public static final class Entry<T> {
+
+        public final long lastModified;
+        public final String raw;
+        public volatile T compiled;
+
+        // access stamp for the LRU eviction (System.nanoTime, a shared counter would be contended by all readers)
+        volatile long accessed;
+
+        public Entry(Date lastModified, String raw) {
+            this.lastModified = lastModified.getTime();
+            this.raw = raw;
+        }
+
+        public boolean isFresh(Date newDate) {
+            return newDate.getTime() <= lastModified;
+        }
+
+        long weight() {
+            return raw == null ? 0 : raw.length();
+        }
+    }
+
+    /**
+     * Eviction candidate, the access stamp is copied so that sorting is not affected by concurrent reads.
+     */
+    private static final class Candidate<T> {
+        final String key;
+        final Entry<T> entry;
+        final long accessed;
+
+        Candidate(String key, Entry<T> entry) {
+            this.key = key;
+            this.entry = entry;
+            this.accessed = entry.accessed;
+        }
+    }
+
+    private static final Comparator<Candidate<?>> LRU = new Comparator<Candidate<?>>() {
+        @Override
+        public int compare(Candidate<?> o1, Candidate<?> o2) {
+            return Long.compare(o1.accessed, o2.accessed);
+        }
+    };
+
+    private final ConcurrentHashMap<String, Entry<T>> entries = new ConcurrentHashMap<>();
+    private final long maxWeight;
+
+    private final AtomicLong weight = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxWeight maximum number of characters of raw source to keep in the cache
+     */
+    public TemplateCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Looks up an entry, counting a hit or a miss and marking it as recently used.
+     *
+     * @param key template file
+     * @return the entry or null
+     */
+    public Entry<T> get(@NotNull String key) {
+        final Entry<T> entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+            entry.accessed = System.nanoTime();
+        }
+        return entry;
+    }
+
+    /**
+     * Looks up an entry without affecting the statistics or the eviction order.
+     *
+     * @param key template file
+     * @return the entry or null
+     */
+    public Entry<T> peek(@NotNull String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Adds or replaces an entry and evicts old entries if the cache grows over its bound.
+     *
+     * @param key   template file
+     * @param entry entry to store
+     */
+    public void put(@NotNull String key, @NotNull Entry<T> entry) {
+        entry.accessed = System.nanoTime();
+
+        final Entry<T> old = entries.put(key, entry);
+        long total = weight.addAndGet(entry.weight() - (old == null ? 0 : old.weight()));
+
+        if (total > maxWeight) {
+            evict();
+        }
+    }
+
+    /**
+     * Sets the compiled form of a cached template, if the template is still cached.
+     *
+     * @param key      template file
+     * @param compiled compiled template
+     */
+    public void putCompiled(@NotNull String key, T compiled) {
+        final Entry<T> entry = entries.get(key);
+        if (entry != null) {
+            entry.compiled = compiled;
+        }
+    }
+
+    /**
+     * Removes an entry.
+     *
+     * @param key template file
+     */
+    public void remove(@NotNull String key) {
+        final Entry<T> old = entries.remove(key);
+        if (old != null) {
+            weight.addAndGet(-old.weight());
+        }
+    }
+
+    private synchronized void evict() {
+        // another thread might have evicted already
+        if (weight.get() <= maxWeight) {
+            return;
+        }
+
+        final long target = maxWeight - maxWeight / 10;
+        final List<Candidate<T>> candidates = new ArrayList<>(entries.size());
+        for (Map.Entry<String, Entry<T>> e : entries.entrySet()) {
+            candidates.add(new Candidate<>(e.getKey(), e.getValue()));
+        }
+        Collections.sort(candidates, LRU);
+
+        for (Candidate<T> candidate : candidates) {
+            if (weight.get() <= target) {
+                break;
+            }
+            // only remove the entry if it was not replaced in the mean time
+            if (entries.remove(candidate.key, candidate.entry)) {
+                weight.addAndGet(-candidate.entry.weight());
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long weight() {
+        return weight.get();
+    }
+
+    public long maxWeight() {
+        return maxWeight;
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public long evictions() {
+        return evictions.get();
+    }
+}
@@ -15,6 +15,16 @@ import java.util.TimeZone;
  */
 public final class ThreadLocalUTCDateFormat extends ThreadLocal<DateFormat> {
 
+    private final String pattern;
+
+    public ThreadLocalUTCDateFormat() {
+        this("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+    }
+
+    public ThreadLocalUTCDateFormat(String pattern) {
+        this.pattern = pattern;
+    }
+
     public final String format(Date date) {
         return get().format(date);
     }
@@ -29,7 +39,7 @@ public final class ThreadLocalUTCDateFormat extends ThreadLocal<DateFormat> {
 
     @Override
     protected DateFormat initialValue() {
-        final DateFormat df = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        final DateFormat df = new SimpleDateFormat(pattern);
         df.setTimeZone(TimeZone.getTimeZone("UTC"));
 
         return df;
@@ -4,7 +4,7 @@
 package com.jetdrone.vertx.yoke.engine;
 
 import com.jetdrone.vertx.yoke.Engine;
-import com.jetdrone.vertx.yoke.core.impl.LRUCache;
+import com.jetdrone.vertx.yoke.core.impl.TemplateCache;
 import com.jetdrone.vertx.yoke.core.YokeAsyncResult;
 import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.AsyncResultHandler;
@@ -28,13 +28,51 @@ public abstract class AbstractEngine<T> implements Engine {
 
     protected Vertx vertx;
 
-    private final LRUCache<String, T> cache = new LRUCache<>(1024);
+    /**
+     * Default bound for the template cache, in characters of template source
+     */
+    public static final long DEFAULT_CACHE_SIZE = 16 * 1024 * 1024;
+
+    private final TemplateCache<T> cache;
+
+    private FreshnessPolicy freshnessPolicy = FreshnessPolicy.ALWAYS;
+
+    public AbstractEngine() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize bound for the template cache, in characters of template source
+     */
+    public AbstractEngine(long cacheSize) {
+        cache = new TemplateCache<>(cacheSize);
+    }
+
+    /**
+     * The template cache, used to expose its statistics on JMX
+     *
+     * @return cache
+     */
+    public TemplateCache<T> templateCache() {
+        return cache;
+    }
 
     @Override
     public void setVertx(Vertx vertx) {
         this.vertx = vertx;
     }
 
+    /**
+     * Sets when cached templates are verified against the file system, by default on every render.
+     *
+     * @param freshnessPolicy the policy
+     * @return self
+     */
+    public AbstractEngine<T> setFreshnessPolicy(FreshnessPolicy freshnessPolicy) {
+        this.freshnessPolicy = freshnessPolicy;
+        return this;
+    }
+
     @Override
     public String contentType() {
         return "text/html";
@@ -46,13 +84,22 @@ public abstract class AbstractEngine<T> implements Engine {
     }
 
     /**
-     * Verifies if a file in the filesystem is still fresh against the cache. Errors are treated as not fresh.
+     * Verifies if a file in the filesystem is still fresh against the cache. Errors are treated as not fresh. The
+     * file system is only queried when the freshness policy requires it.
      *
      * @param filename File to look for
      * @param next next asynchronous handler
      */
     public void isFresh(final String filename, final Handler<Boolean> next) {
+        // the only lookup that counts as a cache hit or miss
+        if (cache.get(filename) != null && !freshnessPolicy.mustCheck(filename)) {
+            next.handle(true);
+            return;
+        }
+
         final FileSystem fileSystem = vertx.fileSystem();
+        // taken before the stat, a change during it is not taken as seen
+        final long token = freshnessPolicy.checking(filename);
 
         fileSystem.props(filename, new AsyncResultHandler<FileProps>() {
             @Override
@@ -60,7 +107,8 @@ public abstract class AbstractEngine<T> implements Engine {
                 if (asyncResult.failed()) {
                     next.handle(false);
                 } else {
-                    LRUCache.CacheEntry<String, T> cacheEntry = cache.get(filename);
+                    freshnessPolicy.checked(filename, token);
+                    TemplateCache.Entry<T> cacheEntry = cache.peek(filename);
                     final Date lastModified = asyncResult.result().lastModifiedTime();
 
                     if (cacheEntry == null) {
@@ -81,6 +129,7 @@ public abstract class AbstractEngine<T> implements Engine {
 
     private void loadToCache(final String filename, final Handler<Throwable> next) {
         final FileSystem fileSystem = vertx.fileSystem();
+        final long token = freshnessPolicy.checking(filename);
 
         fileSystem.props(filename, new AsyncResultHandler<FileProps>() {
             @Override
@@ -98,7 +147,8 @@ public abstract class AbstractEngine<T> implements Engine {
                             } else {
                                 // cache the result
                                 String result = asyncResult.result().toString(contentEncoding());
-                                cache.put(filename, new LRUCache.CacheEntry<String, T>(lastModified, result));
+                                cache.put(filename, new TemplateCache.Entry<T>(lastModified, result));
+                                freshnessPolicy.checked(filename, token);
                                 next.handle(null);
                             }
                         }
@@ -152,7 +202,10 @@ public abstract class AbstractEngine<T> implements Engine {
      * @return last modified time in millis
      */
     public long lastModified(final String filename) {
-        LRUCache.CacheEntry<String, T> cacheEntry = cache.get(filename);
+        TemplateCache.Entry<T> cacheEntry = cache.peek(filename);
+        if (cacheEntry == null) {
+            return -1;
+        }
         return cacheEntry.lastModified;
     }
 
@@ -160,7 +213,13 @@ public abstract class AbstractEngine<T> implements Engine {
      * Gets the content of the file from cache this is a synchronous operation since there is no blocking or I/O
      */
     private String getFileFromCache(String filename) {
-        return cache.get(filename).raw;
+        TemplateCache.Entry<T> cachedTemplate = cache.peek(filename);
+
+        if (cachedTemplate == null) {
+            return null;
+        }
+
+        return cachedTemplate.raw;
     }
 
     /**
@@ -168,7 +227,7 @@ public abstract class AbstractEngine<T> implements Engine {
      */
     public T getTemplateFromCache(String filename) {
     	
-    	LRUCache.CacheEntry<String, T> cachedTemplate = cache.get(filename);
+    	TemplateCache.Entry<T> cachedTemplate = cache.peek(filename);
     	
     	// this is to avoid null pointer exception in case of the layout composite template
     	if (cachedTemplate == null) return null;
@@ -4,7 +4,7 @@
 package com.jetdrone.vertx.yoke.engine;
 
 import com.jetdrone.vertx.yoke.Engine;
-import com.jetdrone.vertx.yoke.core.impl.LRUCache;
+import com.jetdrone.vertx.yoke.core.impl.TemplateCache;
 import org.vertx.java.core.Vertx;
 import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.file.FileProps;
@@ -23,13 +23,51 @@ public abstract class AbstractEngineSync<T> implements Engine {
 
     protected Vertx vertx;
 
-    private final LRUCache<String, T> cache = new LRUCache<>(1024);
+    /**
+     * Default bound for the template cache, in characters of template source
+     */
+    public static final long DEFAULT_CACHE_SIZE = 16 * 1024 * 1024;
+
+    private final TemplateCache<T> cache;
+
+    private FreshnessPolicy freshnessPolicy = FreshnessPolicy.ALWAYS;
+
+    public AbstractEngineSync() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize bound for the template cache, in characters of template source
+     */
+    public AbstractEngineSync(long cacheSize) {
+        cache = new TemplateCache<>(cacheSize);
+    }
+
+    /**
+     * The template cache, used to expose its statistics on JMX
+     *
+     * @return cache
+     */
+    public TemplateCache<T> templateCache() {
+        return cache;
+    }
 
     @Override
     public void setVertx(Vertx vertx) {
         this.vertx = vertx;
     }
 
+    /**
+     * Sets when cached templates are verified against the file system, by default on every render.
+     *
+     * @param freshnessPolicy the policy
+     * @return self
+     */
+    public AbstractEngineSync<T> setFreshnessPolicy(FreshnessPolicy freshnessPolicy) {
+        this.freshnessPolicy = freshnessPolicy;
+        return this;
+    }
+
     @Override
     public String contentType() {
         return "text/html";
@@ -41,16 +79,25 @@ public abstract class AbstractEngineSync<T> implements Engine {
     }
 
     /**
-     * Verifies if a file in the filesystem is still fresh against the cache. Errors are treated as not fresh.
+     * Verifies if a file in the filesystem is still fresh against the cache. Errors are treated as not fresh. The
+     * file system is only queried when the freshness policy requires it.
      *
      * @param filename File to look for
      */
     public boolean isFresh(final String filename) {
+        // the only lookup that counts as a cache hit or miss
+        if (cache.get(filename) != null && !freshnessPolicy.mustCheck(filename)) {
+            return true;
+        }
+
         final FileSystem fileSystem = vertx.fileSystem();
+        // taken before the stat, a change during it is not taken as seen
+        final long token = freshnessPolicy.checking(filename);
 
         try {
             FileProps fileProps = fileSystem.propsSync(filename);
-            LRUCache.CacheEntry<String, T> cacheEntry = cache.get(filename);
+            freshnessPolicy.checked(filename, token);
+            TemplateCache.Entry<T> cacheEntry = cache.peek(filename);
             final Date lastModified = fileProps.lastModifiedTime();
 
             if (cacheEntry == null) {
@@ -73,7 +120,7 @@ public abstract class AbstractEngineSync<T> implements Engine {
      * @param filename File to look for
      */
     public long lastModified(final String filename) {
-        LRUCache.CacheEntry<String, T> cacheEntry = cache.get(filename);
+        TemplateCache.Entry<T> cacheEntry = cache.peek(filename);
         if (cacheEntry == null) {
             return -1;
         }
@@ -84,12 +131,14 @@ public abstract class AbstractEngineSync<T> implements Engine {
         final FileSystem fileSystem = vertx.fileSystem();
 
         if (fileSystem.existsSync(filename)) {
+            final long token = freshnessPolicy.checking(filename);
             FileProps fileProps = fileSystem.propsSync(filename);
             final Date lastModified = fileProps.lastModifiedTime();
             // load from the file system
             Buffer content = fileSystem.readFileSync(filename);
             // cache the result
-            cache.put(filename, new LRUCache.CacheEntry<String, T>(lastModified, content.toString(contentEncoding())));
+            cache.put(filename, new TemplateCache.Entry<T>(lastModified, content.toString(contentEncoding())));
+            freshnessPolicy.checked(filename, token);
         }
     }
 
@@ -116,13 +165,13 @@ public abstract class AbstractEngineSync<T> implements Engine {
      * Gets the content of the file from cache this is a synchronous operation since there is no blocking or I/O
      */
     private String getFileFromCache(String filename) {
-        LRUCache.CacheEntry<String, T> cachedTemplate = cache.get(filename);
+        TemplateCache.Entry<T> cachedTemplate = cache.peek(filename);
 
         if (cachedTemplate == null) {
             return null;
         }
 
-        return cache.get(filename).raw;
+        return cachedTemplate.raw;
     }
 
     /**
@@ -130,7 +179,7 @@ public abstract class AbstractEngineSync<T> implements Engine {
      */
     public T getTemplateFromCache(String filename) {
 
-        LRUCache.CacheEntry<String, T> cachedTemplate = cache.get(filename);
+        TemplateCache.Entry<T> cachedTemplate = cache.peek(filename);
 
         // this is to avoid null pointer exception in case of the layout composite template
         if (cachedTemplate == null) {
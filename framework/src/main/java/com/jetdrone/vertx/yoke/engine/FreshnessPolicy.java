@@ -0,0 +1,218 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.engine;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * # FreshnessPolicy
+ *
+ * Decides when a cached template must be verified against the file system. Engines ask the policy before every render
+ * and only stat the template file when it says so.
+ *
+ * * `ALWAYS` verifies on every render (the default, useful during development),
+ * * `NEVER` trusts the cache once a template is loaded (production),
+ * * `every(ms)` verifies each template at most once in the given interval,
+ * * `watch(dir)` verifies templates only after the file system reports a change in the directory.
+ *
+ * A verification starts with `checking`, before the file is read, and ends with `checked` and the token `checking`
+ * returned. A change that lands while the file is read is then not taken as seen.
+ *
+ * <pre>
+ * new StringPlaceholderEngine("views").setFreshnessPolicy(FreshnessPolicy.every(5000));
+ * </pre>
+ */
+public abstract class FreshnessPolicy implements Closeable {
+
+    /**
+     * Verify the template file on every render.
+     */
+    public static final FreshnessPolicy ALWAYS = new FreshnessPolicy() {
+        @Override
+        public boolean mustCheck(@NotNull String filename) {
+            return true;
+        }
+    };
+
+    /**
+     * Never verify a cached template, changes require a restart.
+     */
+    public static final FreshnessPolicy NEVER = new FreshnessPolicy() {
+        @Override
+        public boolean mustCheck(@NotNull String filename) {
+            return false;
+        }
+    };
+
+    /**
+     * Tells if a cached template must be verified against the file system before it is used.
+     *
+     * @param filename template file
+     * @return true if the engine should stat the file
+     */
+    public abstract boolean mustCheck(@NotNull String filename);
+
+    /**
+     * Notifies the policy that a template is about to be verified (or loaded) from the file system.
+     *
+     * @param filename template file
+     * @return token to pass to `checked` once the file was read
+     */
+    public long checking(@NotNull String filename) {
+        return 0;
+    }
+
+    /**
+     * Notifies the policy that a template was verified (or loaded) from the file system.
+     *
+     * @param filename template file
+     * @param token the value `checking` returned when the verification started
+     */
+    public void checked(@NotNull String filename, long token) {
+        // NOOP
+    }
+
+    /**
+     * Releases the resources of the policy, e.g. the watch service of `watch(dir)`.
+     */
+    @Override
+    public void close() {
+        // NOOP
+    }
+
+    /**
+     * Verify each template at most once every given interval.
+     *
+     * @param interval time in ms between verifications of the same template
+     * @return policy
+     */
+    public static FreshnessPolicy every(final long interval) {
+        return new FreshnessPolicy() {
+
+            private final Map<String, Long> lastChecked = new ConcurrentHashMap<>();
+
+            @Override
+            public boolean mustCheck(@NotNull String filename) {
+                final Long last = lastChecked.get(filename);
+                return last == null || System.currentTimeMillis() - last >= interval;
+            }
+
+            @Override
+            public long checking(@NotNull String filename) {
+                return System.currentTimeMillis();
+            }
+
+            @Override
+            public void checked(@NotNull String filename, long token) {
+                lastChecked.put(filename, token);
+            }
+        };
+    }
+
+    /**
+     * Verify templates only after a change is reported in the given directory (or any of its sub directories) by the
+     * platform `WatchService`. The watch runs on a daemon thread until the policy is closed.
+     *
+     * Any change marks all templates to be verified once, so the directory and the template paths do not need to be
+     * written the same way. The directory should be the one the engine loads its templates from.
+     *
+     * @param directory directory to watch
+     * @return policy
+     */
+    public static FreshnessPolicy watch(@NotNull final String directory) {
+        final WatchService watchService;
+        final Path root = Paths.get(directory);
+
+        try {
+            watchService = root.getFileSystem().newWatchService();
+            register(watchService, root);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        // generation counter, increased on every change
+        final AtomicLong generation = new AtomicLong();
+        final Map<String, Long> lastChecked = new ConcurrentHashMap<>();
+
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (;;) {
+                    final WatchKey key;
+                    try {
+                        key = watchService.take();
+                    } catch (InterruptedException | ClosedWatchServiceException e) {
+                        return;
+                    }
+
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                            // new sub directories need to be watched too
+                            final Path child = ((Path) key.watchable()).resolve((Path) event.context());
+                            if (Files.isDirectory(child)) {
+                                try {
+                                    register(watchService, child);
+                                } catch (IOException | ClosedWatchServiceException e) {
+                                    // the directory is gone already, or the policy was closed
+                                }
+                            }
+                        }
+                    }
+
+                    generation.incrementAndGet();
+                    key.reset();
+                }
+            }
+        }, "yoke-template-watch");
+
+        thread.setDaemon(true);
+        thread.start();
+
+        return new FreshnessPolicy() {
+            @Override
+            public boolean mustCheck(@NotNull String filename) {
+                final Long last = lastChecked.get(filename);
+                return last == null || last != generation.get();
+            }
+
+            @Override
+            public long checking(@NotNull String filename) {
+                return generation.get();
+            }
+
+            @Override
+            public void checked(@NotNull String filename, long token) {
+                lastChecked.put(filename, token);
+            }
+
+            @Override
+            public void close() {
+                try {
+                    // ends the watch thread
+                    watchService.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        };
+    }
+
+    private static void register(final WatchService watchService, final Path dir) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attrs) throws IOException {
+                path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
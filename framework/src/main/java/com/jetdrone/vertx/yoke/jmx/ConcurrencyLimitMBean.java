@@ -0,0 +1,82 @@
+package com.jetdrone.vertx.yoke.jmx;
+
+import com.jetdrone.vertx.yoke.middleware.ConcurrencyLimit;
+
+import javax.management.*;
+
+public final class ConcurrencyLimitMBean implements DynamicMBean {
+
+    private static final String[] ATTRIBUTES = {"limit", "inFlight", "queued", "rejected"};
+
+    private final ConcurrencyLimit limit;
+
+    public ConcurrencyLimitMBean(ConcurrencyLimit limit) {
+        this.limit = limit;
+    }
+
+    @Override
+    public Object getAttribute(String name) throws AttributeNotFoundException {
+        switch (name) {
+            case "limit":
+                return limit.getLimit();
+            case "inFlight":
+                return limit.getInFlight();
+            case "queued":
+                return limit.getQueued();
+            case "rejected":
+                return limit.getRejected();
+            default:
+                throw new AttributeNotFoundException("No such property: " + name);
+        }
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("No such property: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] names) {
+        AttributeList list = new AttributeList();
+        for (String name : names) {
+            try {
+                list.add(new Attribute(name, getAttribute(name)));
+            } catch (AttributeNotFoundException e) {
+                // ignore
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList list) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String name, Object[] args, String[] sig) throws MBeanException, ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(name));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        MBeanAttributeInfo[] attrs = new MBeanAttributeInfo[ATTRIBUTES.length];
+        for (int i = 0; i < ATTRIBUTES.length; i++) {
+            attrs[i] = new MBeanAttributeInfo(
+                    ATTRIBUTES[i],
+                    i == 3 ? "java.lang.Long" : "java.lang.Integer",
+                    "Concurrency Limit " + ATTRIBUTES[i],
+                    true,   // isReadable
+                    false,   // isWritable
+                    false); // isIs
+        }
+
+        return new MBeanInfo(
+                this.getClass().getName(),
+                "Concurrency Limit MBean",
+                attrs,
+                null,   // constructors
+                null,   // operations
+                null);  // notifications
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.jmx;
+
+import com.jetdrone.vertx.yoke.core.LatencyHistogram;
+
+import javax.management.MBeanAttributeInfo;
+
+/**
+ * Latency attributes shared by the route and middleware MBeans. Percentiles are in microseconds.
+ */
+final class LatencyAttributes {
+
+    // no instantiation
+    private LatencyAttributes() {}
+
+    static final String[] NAMES = {"count", "errors", "p50", "p90", "p99", "p999"};
+
+    static boolean isLatency(String name) {
+        for (String n : NAMES) {
+            if (n.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static Object get(LatencyHistogram.Snapshot snapshot, String name) {
+        switch (name) {
+            case "count":
+                return snapshot.count();
+            case "errors":
+                return snapshot.errors();
+            case "p50":
+                return micros(snapshot.percentile(0.5));
+            case "p90":
+                return micros(snapshot.percentile(0.9));
+            case "p99":
+                return micros(snapshot.percentile(0.99));
+            case "p999":
+                return micros(snapshot.percentile(0.999));
+            default:
+                throw new IllegalArgumentException(name);
+        }
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+
+    static MBeanAttributeInfo[] info() {
+        return new MBeanAttributeInfo[] {
+                new MBeanAttributeInfo("count", "java.lang.Long", "Requests handled", true, false, false),
+                new MBeanAttributeInfo("errors", "java.lang.Long", "Requests failed or answered with 5xx", true, false, false),
+                new MBeanAttributeInfo("p50", "java.lang.Double", "Median latency in microseconds", true, false, false),
+                new MBeanAttributeInfo("p90", "java.lang.Double", "90th percentile latency in microseconds", true, false, false),
+                new MBeanAttributeInfo("p99", "java.lang.Double", "99th percentile latency in microseconds", true, false, false),
+                new MBeanAttributeInfo("p999", "java.lang.Double", "99.9th percentile latency in microseconds", true, false, false)
+        };
+    }
+}
@@ -1,5 +1,6 @@
 package com.jetdrone.vertx.yoke.jmx;
 
+import com.jetdrone.vertx.yoke.core.LatencyHistogram;
 import com.jetdrone.vertx.yoke.core.MountedMiddleware;
 
 import javax.management.*;
@@ -22,6 +23,9 @@ public final class MiddlewareMBean implements DynamicMBean {
             case "enabled":
                 return middleware.enabled;
             default:
+                if (LatencyAttributes.isLatency(name)) {
+                    return LatencyAttributes.get(middleware.latency.snapshot(), name);
+                }
                 throw new AttributeNotFoundException("No such property: " + name);
         }
     }
@@ -44,8 +48,17 @@ public final class MiddlewareMBean implements DynamicMBean {
     @Override
     public synchronized AttributeList getAttributes(String[] names) {
         AttributeList list = new AttributeList();
+        // the latency attributes are read from a single snapshot
+        LatencyHistogram.Snapshot snapshot = null;
         for (String name : names) {
             try {
+                if (LatencyAttributes.isLatency(name)) {
+                    if (snapshot == null) {
+                        snapshot = middleware.latency.snapshot();
+                    }
+                    list.add(new Attribute(name, LatencyAttributes.get(snapshot, name)));
+                    continue;
+                }
                 switch (name) {
                     case "mount":
                         list.add(new Attribute("mount", getAttribute(name)));
@@ -100,10 +113,15 @@ public final class MiddlewareMBean implements DynamicMBean {
                         true), // isIs
         };
 
+        MBeanAttributeInfo[] latencyAttrs = LatencyAttributes.info();
+        MBeanAttributeInfo[] all = new MBeanAttributeInfo[attrs.length + latencyAttrs.length];
+        System.arraycopy(attrs, 0, all, 0, attrs.length);
+        System.arraycopy(latencyAttrs, 0, all, attrs.length, latencyAttrs.length);
+
         return new MBeanInfo(
                 this.getClass().getName(),
                 "Middleware Manager MBean",
-                attrs,
+                all,
                 null,   // constructors
                 null,   // operations
                 null);  // notifications
@@ -1,6 +1,7 @@
 package com.jetdrone.vertx.yoke.jmx;
 
 import com.jetdrone.vertx.yoke.Middleware;
+import com.jetdrone.vertx.yoke.core.LatencyHistogram;
 
 import javax.management.*;
 import java.util.List;
@@ -10,11 +11,13 @@ import java.util.regex.Pattern;
 public final class RouteMBean implements DynamicMBean {
 
     private final List<Middleware> middleware;
+    private final LatencyHistogram latency;
 
     private final Pattern middlewarePattern = Pattern.compile("middleware\\[(\\d+)\\]");
 
-    public RouteMBean(List<Middleware> middleware) {
+    public RouteMBean(List<Middleware> middleware, LatencyHistogram latency) {
         this.middleware = middleware;
+        this.latency = latency;
     }
 
     @Override
@@ -24,6 +27,10 @@ public final class RouteMBean implements DynamicMBean {
             return middleware.get(Integer.parseInt(m.group(1))).getClass().getName();
         }
 
+        if (LatencyAttributes.isLatency(name)) {
+            return LatencyAttributes.get(latency.snapshot(), name);
+        }
+
         throw new AttributeNotFoundException("No such property: " + name);
     }
 
@@ -35,9 +42,18 @@ public final class RouteMBean implements DynamicMBean {
     @Override
     public AttributeList getAttributes(String[] attributes) {
         AttributeList list = new AttributeList();
+        // the latency attributes are read from a single snapshot
+        LatencyHistogram.Snapshot snapshot = null;
         for (String attribute : attributes) {
             try {
-                list.add(new Attribute(attribute, getAttribute(attribute)));
+                if (LatencyAttributes.isLatency(attribute)) {
+                    if (snapshot == null) {
+                        snapshot = latency.snapshot();
+                    }
+                    list.add(new Attribute(attribute, LatencyAttributes.get(snapshot, attribute)));
+                } else {
+                    list.add(new Attribute(attribute, getAttribute(attribute)));
+                }
             }catch (AttributeNotFoundException e) {
                 // ignore
             }
@@ -69,7 +85,8 @@ public final class RouteMBean implements DynamicMBean {
 
     private MBeanAttributeInfo[] getAttributes() {
 
-        MBeanAttributeInfo[] attrs = new MBeanAttributeInfo[middleware.size()];
+        MBeanAttributeInfo[] latencyAttrs = LatencyAttributes.info();
+        MBeanAttributeInfo[] attrs = new MBeanAttributeInfo[middleware.size() + latencyAttrs.length];
 
         for (int i = 0; i < middleware.size(); i++) {
             attrs[i] = new MBeanAttributeInfo(
@@ -81,6 +98,8 @@ public final class RouteMBean implements DynamicMBean {
                     false);
         }
 
+        System.arraycopy(latencyAttrs, 0, attrs, middleware.size(), latencyAttrs.length);
+
         return attrs;
     }
 }
@@ -0,0 +1,86 @@
+package com.jetdrone.vertx.yoke.jmx;
+
+import com.jetdrone.vertx.yoke.core.impl.TemplateCache;
+
+import javax.management.*;
+
+public final class TemplateCacheMBean implements DynamicMBean {
+
+    private static final String[] ATTRIBUTES = {"size", "weight", "maxWeight", "hits", "misses", "evictions"};
+
+    private final TemplateCache<?> cache;
+
+    public TemplateCacheMBean(TemplateCache<?> cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public Object getAttribute(String name) throws AttributeNotFoundException {
+        switch (name) {
+            case "size":
+                return cache.size();
+            case "weight":
+                return cache.weight();
+            case "maxWeight":
+                return cache.maxWeight();
+            case "hits":
+                return cache.hits();
+            case "misses":
+                return cache.misses();
+            case "evictions":
+                return cache.evictions();
+            default:
+                throw new AttributeNotFoundException("No such property: " + name);
+        }
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("No such property: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] names) {
+        AttributeList list = new AttributeList();
+        for (String name : names) {
+            try {
+                list.add(new Attribute(name, getAttribute(name)));
+            } catch (AttributeNotFoundException e) {
+                // ignore
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList list) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String name, Object[] args, String[] sig) throws MBeanException, ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(name));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        MBeanAttributeInfo[] attrs = new MBeanAttributeInfo[ATTRIBUTES.length];
+        for (int i = 0; i < ATTRIBUTES.length; i++) {
+            attrs[i] = new MBeanAttributeInfo(
+                    ATTRIBUTES[i],
+                    i == 0 ? "java.lang.Integer" : "java.lang.Long",
+                    "Template Cache " + ATTRIBUTES[i],
+                    true,   // isReadable
+                    false,   // isWritable
+                    false); // isIs
+        }
+
+        return new MBeanInfo(
+                this.getClass().getName(),
+                "Template Cache MBean",
+                attrs,
+                null,   // constructors
+                null,   // operations
+                null);  // notifications
+    }
+}
@@ -0,0 +1,479 @@
+package com.jetdrone.vertx.yoke.json;
+
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * # CompiledSchema
+ *
+ * A schema turned into a tree of validators: keywords are read once, regular expressions compiled, enums put in hash
+ * sets and child schemas compiled ahead. Validation follows the same rules as `JsonSchema.conformsSchema` without
+ * looking anything up in the schema maps and without converting `JsonObject`/`JsonArray` instances to maps and lists.
+ *
+ * A compiled schema is immutable and can be shared by all event loops. References (`$ref`) are resolved on first use,
+ * so recursive schemas compile.
+ */
+public final class CompiledSchema {
+
+    private enum Type {
+        NULL, ARRAY, STRING, NUMBER, INTEGER, BOOLEAN, OBJECT
+    }
+
+    // $ref
+    private final JsonSchemaResolver.Schema refParent;
+    private final String ref;
+    private volatile CompiledSchema resolved;
+
+    // any
+    private final Type type;
+    private final boolean required;
+    private final Object defaultValue;
+    private final Set<Object> enumeration;
+    private final CompiledSchema not;
+
+    // string
+    private final Integer minLength;
+    private final Integer maxLength;
+    private final Pattern pattern;
+    private final String format;
+    private final Pattern formatPattern;
+
+    // number and integer
+    private final Number divisibleBy;
+    private final Number minimum;
+    private final boolean exclusiveMinimum;
+    private final Number maximum;
+    private final boolean exclusiveMaximum;
+
+    // array
+    private final int maxTupleItems;
+    private final Integer minItems;
+    private final Integer maxItems;
+    private final boolean uniqueItems;
+    private final CompiledSchema items;
+
+    // object
+    private final String[] requiredProperties;
+    private final Integer minProperties;
+    private final Integer maxProperties;
+    private final String[] dependencyNames;
+    private final Object[] dependencies;
+    private final String[] propertyNames;
+    private final CompiledSchema[] properties;
+
+    @SuppressWarnings("unchecked")
+    CompiledSchema(JsonSchemaResolver.Schema schema) {
+        if (schema.containsKey("$ref")) {
+            // nothing else applies
+            refParent = schema.getParent();
+            ref = schema.get("$ref");
+            type = null;
+            required = false;
+            defaultValue = null;
+            enumeration = null;
+            not = null;
+            minLength = maxLength = null;
+            pattern = formatPattern = null;
+            format = null;
+            divisibleBy = minimum = maximum = null;
+            exclusiveMinimum = exclusiveMaximum = false;
+            maxTupleItems = -1;
+            minItems = maxItems = null;
+            uniqueItems = false;
+            items = null;
+            requiredProperties = dependencyNames = propertyNames = null;
+            minProperties = maxProperties = null;
+            dependencies = null;
+            properties = null;
+            return;
+        }
+
+        refParent = null;
+        ref = null;
+
+        final String typeName = schema.get("type");
+        if (typeName == null) {
+            type = null;
+        } else {
+            switch (typeName) {
+                case "null":
+                    type = Type.NULL;
+                    break;
+                case "array":
+                    type = Type.ARRAY;
+                    break;
+                case "string":
+                    type = Type.STRING;
+                    break;
+                case "number":
+                    type = Type.NUMBER;
+                    break;
+                case "integer":
+                    type = Type.INTEGER;
+                    break;
+                case "boolean":
+                    type = Type.BOOLEAN;
+                    break;
+                case "object":
+                    type = Type.OBJECT;
+                    break;
+                default:
+                    throw new RuntimeException("Unsupported type: " + typeName);
+            }
+        }
+
+        final Object req = schema.get("required");
+        required = Boolean.TRUE.equals(req);
+        defaultValue = schema.get("default");
+
+        final List<Object> _enum = schema.get("enum");
+        if (_enum != null) {
+            enumeration = new HashSet<>(Math.max(16, (int) (_enum.size() / .75f) + 1));
+            enumeration.addAll(_enum);
+        } else {
+            enumeration = null;
+        }
+
+        not = child(schema.get("not"), null);
+
+        minLength = schema.get("minLength");
+        maxLength = schema.get("maxLength");
+        final Object regex = schema.get("pattern");
+        pattern = regex instanceof Pattern ? (Pattern) regex : regex != null ? Pattern.compile((String) regex) : null;
+        format = schema.get("format");
+        // formats can be registered later, unknown ones are looked up again when validating
+        formatPattern = format != null ? StringValidator.getPattern(format) : null;
+
+        divisibleBy = schema.get("divisibleBy");
+        minimum = schema.get("minimum");
+        exclusiveMinimum = Boolean.TRUE.equals(schema.get("exclusiveMinimum"));
+        maximum = schema.get("maximum");
+        exclusiveMaximum = Boolean.TRUE.equals(schema.get("exclusiveMaximum"));
+
+        final Object itemsSchema = schema.get("items");
+        final Object additionalItems = schema.get("additionalItems");
+        maxTupleItems = Boolean.FALSE.equals(additionalItems) && itemsSchema instanceof List ? ((List) itemsSchema).size() : -1;
+        minItems = schema.get("minItems");
+        maxItems = schema.get("maxItems");
+        uniqueItems = Boolean.TRUE.equals(schema.get("uniqueItems"));
+        items = child(itemsSchema, schema);
+
+        if (req instanceof List) {
+            requiredProperties = ((List<String>) req).toArray(new String[((List) req).size()]);
+        } else {
+            requiredProperties = null;
+        }
+        minProperties = schema.get("minProperties");
+        maxProperties = schema.get("maxProperties");
+
+        final Map<String, Object> deps = schema.get("dependencies");
+        if (deps != null) {
+            dependencyNames = new String[deps.size()];
+            dependencies = new Object[deps.size()];
+            int i = 0;
+            for (Map.Entry<String, Object> entry : deps.entrySet()) {
+                dependencyNames[i] = entry.getKey();
+                if (entry.getValue() instanceof List) {
+                    final List<String> names = (List<String>) entry.getValue();
+                    dependencies[i] = names.toArray(new String[names.size()]);
+                } else {
+                    dependencies[i] = child(entry.getValue(), null);
+                }
+                i++;
+            }
+        } else {
+            dependencyNames = null;
+            dependencies = null;
+        }
+
+        final Map<String, Object> props = schema.get("properties");
+        if (props != null) {
+            propertyNames = new String[props.size()];
+            properties = new CompiledSchema[props.size()];
+            int i = 0;
+            for (Map.Entry<String, Object> entry : props.entrySet()) {
+                propertyNames[i] = entry.getKey();
+                properties[i] = child(entry.getValue(), schema);
+                i++;
+            }
+        } else {
+            propertyNames = null;
+            properties = null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CompiledSchema child(Object value, JsonSchemaResolver.Schema parent) {
+        if (!(value instanceof Map)) {
+            return null;
+        }
+        // a new schema so the source schema is never modified
+        final JsonSchemaResolver.Schema schema = new JsonSchemaResolver.Schema((Map<String, Object>) value);
+        schema.setParent(parent);
+        return new CompiledSchema(schema);
+    }
+
+    /**
+     * Validates a value, `null` means the value is absent.
+     */
+    public boolean isValid(Object instance) {
+        if (ref != null) {
+            CompiledSchema target = resolved;
+            if (target == null) {
+                // racing threads resolve to the same cached schema
+                target = JsonSchema.compile(JsonSchemaResolver.resolveSchema(ref, refParent));
+                resolved = target;
+            }
+            return target == null || target.isValid(instance);
+        }
+
+        if (instance == null && required) {
+            return false;
+        }
+
+        // apply default value
+        final Object value = instance == null ? defaultValue : instance;
+
+        if (value != null) {
+            if (enumeration != null && !enumeration.contains(value)) {
+                return false;
+            }
+            if (not != null && not.isValid(value)) {
+                return false;
+            }
+        }
+
+        if (type == null) {
+            return true;
+        }
+
+        switch (type) {
+            case NULL:
+                // the default value does not count for null
+                return instance == null;
+            case ARRAY:
+                return isValidArray(value);
+            case STRING:
+                return isValidString(value);
+            case NUMBER:
+                return isValidNumber(value);
+            case INTEGER:
+                return isValidInteger(value);
+            case BOOLEAN:
+                return value == null || value instanceof Boolean;
+            case OBJECT:
+                return isValidObject(value);
+            default:
+                return true;
+        }
+    }
+
+    private boolean isValidString(Object instance) {
+        if (instance == null) {
+            return true;
+        }
+        if (!(instance instanceof String)) {
+            return false;
+        }
+
+        final String string = (String) instance;
+
+        if (minLength != null && string.length() < minLength) {
+            return false;
+        }
+        if (maxLength != null && string.length() > maxLength) {
+            return false;
+        }
+        if (pattern != null && !pattern.matcher(string).matches()) {
+            return false;
+        }
+        if (format != null) {
+            Pattern regex = formatPattern;
+            if (regex == null) {
+                regex = StringValidator.getPattern(format);
+                if (regex == null) {
+                    throw new RuntimeException("Unsupported format: " + format);
+                }
+            }
+            if (!regex.matcher(string).matches()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isValidNumber(Object instance) {
+        if (instance == null) {
+            return true;
+        }
+        if (!(instance instanceof Number)) {
+            return false;
+        }
+
+        final double number = ((Number) instance).doubleValue();
+
+        if (divisibleBy != null && number % divisibleBy.doubleValue() != 0) {
+            return false;
+        }
+        if (minimum != null && (exclusiveMinimum ? number <= minimum.doubleValue() : number < minimum.doubleValue())) {
+            return false;
+        }
+        if (maximum != null && (exclusiveMaximum ? maximum.doubleValue() <= number : maximum.doubleValue() < number)) {
+            return false;
+        }
+
+        return true;
+    }
+
+    private boolean isValidInteger(Object instance) {
+        if (instance == null) {
+            return true;
+        }
+        if (!(instance instanceof Integer)) {
+            return false;
+        }
+
+        final int number = (Integer) instance;
+
+        if (divisibleBy != null && number % divisibleBy.intValue() != 0) {
+            return false;
+        }
+        if (minimum != null && (exclusiveMinimum ? number <= minimum.intValue() : number < minimum.intValue())) {
+            return false;
+        }
+        if (maximum != null && (exclusiveMaximum ? maximum.intValue() <= number : maximum.intValue() < number)) {
+            return false;
+        }
+
+        return true;
+    }
+
+    private boolean isValidArray(Object instance) {
+        if (instance == null) {
+            return true;
+        }
+
+        final Collection<?> array;
+        if (instance instanceof List) {
+            array = (List<?>) instance;
+        } else if (instance instanceof JsonArray) {
+            array = null;
+        } else {
+            return false;
+        }
+
+        final int size = array != null ? array.size() : ((JsonArray) instance).size();
+
+        if (maxTupleItems != -1 && size > maxTupleItems) {
+            return false;
+        }
+        if (maxItems != null && size > maxItems) {
+            return false;
+        }
+        if (minItems != null && size < minItems) {
+            return false;
+        }
+        if (uniqueItems) {
+            // plain values so equal objects are equal for the set
+            final Collection<?> values = array != null ? array : ((JsonArray) instance).toList();
+            final Set<Object> set = new HashSet<>(Math.max(16, (int) (size / .75f) + 1));
+            for (Object o : values) {
+                if (!set.add(o)) {
+                    return false;
+                }
+            }
+        }
+        if (items != null) {
+            final Iterable<?> values = array != null ? array : (JsonArray) instance;
+            for (Object item : values) {
+                if (!items.isValid(item)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean isValidObject(Object instance) {
+        final Map<String, Object> map;
+        final JsonObject json;
+
+        if (instance == null) {
+            map = null;
+            json = null;
+        } else if (instance instanceof Map) {
+            map = (Map<String, Object>) instance;
+            json = null;
+        } else if (instance instanceof JsonObject) {
+            map = null;
+            json = (JsonObject) instance;
+        } else {
+            return false;
+        }
+
+        if (map == null && json == null) {
+            // required takes precedence if instance is null
+            return requiredProperties == null || requiredProperties.length == 0;
+        }
+
+        final int size = map != null ? map.size() : json.size();
+
+        if (maxProperties != null && size > maxProperties) {
+            return false;
+        }
+        if (minProperties != null && size < minProperties) {
+            return false;
+        }
+        if (requiredProperties != null) {
+            for (String field : requiredProperties) {
+                if (!has(map, json, field)) {
+                    return false;
+                }
+            }
+        }
+        if (dependencies != null) {
+            for (int i = 0; i < dependencies.length; i++) {
+                if (has(map, json, dependencyNames[i])) {
+                    if (dependencies[i] instanceof String[]) {
+                        for (String dependency : (String[]) dependencies[i]) {
+                            if (!has(map, json, dependency)) {
+                                return false;
+                            }
+                        }
+                    } else if (dependencies[i] != null) {
+                        if (!((CompiledSchema) dependencies[i]).isValid(get(map, json, dependencyNames[i]))) {
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+        if (properties != null) {
+            for (int i = 0; i < properties.length; i++) {
+                if (properties[i] != null && !properties[i].isValid(get(map, json, propertyNames[i]))) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean has(Map<String, Object> map, JsonObject json, String field) {
+        return map != null ? map.containsKey(field) : json.containsField(field);
+    }
+
+    private static Object get(Map<String, Object> map, JsonObject json, String field) {
+        return map != null ? map.get(field) : json.getField(field);
+    }
+}
@@ -45,6 +45,31 @@ public final class JsonSchema {
         return true;
     }
 
+    /**
+     * Compiles the schema with the given reference, see `compile(Schema)`.
+     */
+    public static CompiledSchema compile(String schemaRef) {
+        return compile(resolve(schemaRef));
+    }
+
+    /**
+     * Compiles a schema into a validator that can be shared by all threads. The validator is kept with the schema so
+     * resolved schemas are only compiled once.
+     */
+    public static CompiledSchema compile(JsonSchemaResolver.Schema schema) {
+        if (schema == null) {
+            return null;
+        }
+
+        CompiledSchema compiled = schema.getCompiled();
+        if (compiled == null) {
+            // compiling twice on a race is harmless, both validators are equivalent
+            compiled = new CompiledSchema(schema);
+            schema.setCompiled(compiled);
+        }
+        return compiled;
+    }
+
     private static boolean isNull(Object value) {
         return value == null;
     }
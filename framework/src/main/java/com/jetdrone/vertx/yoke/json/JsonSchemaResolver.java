@@ -7,6 +7,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 public final class JsonSchemaResolver {
@@ -17,6 +18,8 @@ public final class JsonSchemaResolver {
 
         private Schema parent;
         private final String resolvedId;
+        // compiled on first use by JsonSchema.compile
+        private transient volatile CompiledSchema compiled;
 
         public Schema(JsonObject json, String resolvedId) {
             super(json.toMap());
@@ -45,6 +48,14 @@ public final class JsonSchemaResolver {
             return (T) super.get(key);
         }
 
+        CompiledSchema getCompiled() {
+            return compiled;
+        }
+
+        void setCompiled(CompiledSchema compiled) {
+            this.compiled = compiled;
+        }
+
         public String getLocation() {
             if (parent != null) {
                 return parent.getLocation() + "@" + resolvedId;
@@ -56,7 +67,9 @@ public final class JsonSchemaResolver {
 
     private static final Pattern ABSOLUTE = Pattern.compile("^.*://.*");
 
-    private static Map<String, Schema> loadedSchemas = new HashMap<>();
+    // read without locking, loads are serialized so a schema is only loaded and registered once
+    private static final Map<String, Schema> loadedSchemas = new ConcurrentHashMap<>();
+    private static final Object LOAD_LOCK = new Object();
 
     public static Schema resolveSchema(String uri) {
         return resolveSchema(uri, null);
@@ -64,10 +77,18 @@ public final class JsonSchemaResolver {
 
     public static Schema resolveSchema(String uri, Schema parentSchema) {
         uri = resolveUri(uri, parentSchema);
-        if (!loadedSchemas.containsKey(uri)) {
-            tryToLoad(uri);
+
+        Schema schema = loadedSchemas.get(uri);
+        if (schema == null) {
+            synchronized (LOAD_LOCK) {
+                schema = loadedSchemas.get(uri);
+                if (schema == null) {
+                    tryToLoad(uri);
+                    schema = loadedSchemas.get(uri);
+                }
+            }
         }
-        return loadedSchemas.get(uri);
+        return schema;
     }
 
     private static String resolveUri(String uri, Schema parent) {
@@ -1,12 +1,12 @@
 package com.jetdrone.vertx.yoke.json;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 public final class StringValidator {
 
-    private static final Map<String, Pattern> PATTERNS = new HashMap<>();
+    private static final Map<String, Pattern> PATTERNS = new ConcurrentHashMap<>();
 
     static {
         addPattern("date-time", Pattern.compile("^\\d{4}-(?:0[0-9]|1[0-2])-[0-9]{2}T\\d{2}:\\d{2}:\\d{2}(\\.\\d{3})?Z$"));
@@ -21,6 +21,10 @@ public final class StringValidator {
         PATTERNS.put(name, pattern);
     }
 
+    static Pattern getPattern(String name) {
+        return PATTERNS.get(name);
+    }
+
     public static boolean isValid(Object instance, JsonSchemaResolver.Schema schema) {
         if (!isString(instance)) {
             return false;
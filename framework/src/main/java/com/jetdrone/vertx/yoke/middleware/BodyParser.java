@@ -3,15 +3,20 @@
  */
 package com.jetdrone.vertx.yoke.middleware;
 
-import com.jetdrone.vertx.yoke.core.JSON;
 import com.jetdrone.vertx.yoke.core.YokeFileUpload;
+import com.jetdrone.vertx.yoke.core.impl.JsonStreamParser;
+import io.netty.buffer.ByteBuf;
 import org.jetbrains.annotations.NotNull;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.http.HttpServerFileUpload;
 import org.vertx.java.core.json.DecodeException;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
 
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /** # BodyParser
  *
@@ -19,6 +24,10 @@ import java.util.HashMap;
  *
  * Once data has been parsed the result is visible in the field `body` of the request.
  *
+ * JSON is decoded incrementally as the data arrives, the raw body is never held in memory. For bulk endpoints an
+ * #arrayElementHandler can be registered, the elements of a top level JSON array are then handed to it one by one
+ * and not kept in the body.
+ *
  * If the content type was *multipart/form-data* and there were uploaded files the files are ```files()``` returns
  * `Map&lt;String, HttpServerFileUpload&gt;`.
  *
@@ -34,6 +43,22 @@ public class BodyParser extends AbstractMiddleware {
      */
     private final String uploadDir;
 
+    /**
+     * Receives the elements of top level JSON arrays, while they are being parsed.
+     */
+    public interface ArrayElementHandler {
+        /**
+         * @param request the request being parsed
+         * @param element the parsed element, objects are JsonObject and arrays JsonArray
+         */
+        void handle(@NotNull YokeRequest request, Object element);
+    }
+
+    /**
+     * Optional handler for elements of top level JSON arrays
+     */
+    private ArrayElementHandler arrayElementHandler;
+
     /** Instantiates a Body parser with a configurable upload directory.
      *
      * <pre>
@@ -58,6 +83,25 @@ public class BodyParser extends AbstractMiddleware {
         this(System.getProperty("java.io.tmpdir"));
     }
 
+    /** Streams the elements of top level JSON arrays to a handler instead of collecting them into the body, so bulk
+     * uploads are processed with constant memory. The request body is then an empty array.
+     *
+     * <pre>
+     *      yoke.use("/ingest", new BodyParser().arrayElementHandler(new BodyParser.ArrayElementHandler() {
+     *          public void handle(YokeRequest request, Object element) {
+     *              // store the element
+     *          }
+     *      }));
+     * </pre>
+     *
+     * @param handler element handler
+     * @return self
+     */
+    public BodyParser arrayElementHandler(@NotNull ArrayElementHandler handler) {
+        this.arrayElementHandler = handler;
+        return this;
+    }
+
     /** Handler for the parser. When the request method is GET or HEAD this is a Noop middleware.
      * If not the middleware verifies if there is a body and according to its headers tries to
      * parse it as JSON, form data or multi part upload.
@@ -79,7 +123,10 @@ public class BodyParser extends AbstractMiddleware {
             final boolean isJSON = contentType != null && contentType.contains("application/json");
             final boolean isMULTIPART = contentType != null && contentType.contains("multipart/form-data");
             final boolean isURLENCODEC = contentType != null && contentType.contains("application/x-www-form-urlencoded");
-            final Buffer buffer = (!isMULTIPART && !isURLENCODEC) ? new Buffer(0) : null;
+            final Buffer buffer = (!isJSON && !isMULTIPART && !isURLENCODEC) ? new Buffer(0) : null;
+            final JsonStreamParser parser = isJSON ? createParser(request) : null;
+            // number of bytes received
+            final long[] size = {0};
 
             // enable the parsing at Vert.x level
             request.expectMultiPart(true);
@@ -119,28 +166,26 @@ public class BodyParser extends AbstractMiddleware {
             }
 
             request.dataHandler(new Handler<Buffer>() {
-                long size = 0;
                 final long limit = request.bodyLengthLimit();
 
                 @Override
                 public void handle(Buffer event) {
-                    if (limit != -1) {
-                        size += event.length();
-                        if (size < limit) {
-                            if (!isMULTIPART && !isURLENCODEC) {
-                                buffer.appendBuffer(event);
-                            }
-                        } else {
-                            request.dataHandler(null);
-                            request.endHandler(null);
+                    size[0] += event.length();
 
-                            request.put("canceled", true);
-                            next.handle(413);
-                        }
-                    } else {
-                        if (!isMULTIPART && !isURLENCODEC) {
-                            buffer.appendBuffer(event);
+                    // enforce the limit as the data arrives
+                    if (limit != -1 && size[0] >= limit) {
+                        cancel(request, next, 413);
+                        return;
+                    }
+
+                    if (parser != null) {
+                        try {
+                            feed(parser, event);
+                        } catch (DecodeException e) {
+                            cancel(request, next, 400);
                         }
+                    } else if (buffer != null) {
+                        buffer.appendBuffer(event);
                     }
                 }
             });
@@ -149,10 +194,9 @@ public class BodyParser extends AbstractMiddleware {
                 @Override
                 public void handle(Void _void) {
                     if (isJSON) {
-                        if (buffer != null && buffer.length() > 0) {
+                        if (size[0] > 0) {
                             try {
-                                String content = buffer.toString();
-                                request.setBody(JSON.decode(content));
+                                request.setBody(parser.end());
                             } catch (DecodeException e) {
                                 next.handle(400);
                                 return;
@@ -160,7 +204,7 @@ public class BodyParser extends AbstractMiddleware {
                             if (!request.get("canceled", false)) {
                                 next.handle(null);
                             }
-                        } else if (buffer != null && buffer.length() == 0) {
+                        } else {
                             // special case for IE and Safari than even for 0 content length, send content type header
                             if (request.contentLength() == 0) {
                                 request.setBody(null);
@@ -171,8 +215,6 @@ public class BodyParser extends AbstractMiddleware {
                             } else {
                                 next.handle(400);
                             }
-                        } else {
-                            next.handle(400);
                         }
                     } else {
                         if (buffer != null) {
@@ -186,4 +228,42 @@ public class BodyParser extends AbstractMiddleware {
             });
         }
     }
+
+    private JsonStreamParser createParser(final YokeRequest request) {
+        if (arrayElementHandler == null) {
+            return new JsonStreamParser();
+        }
+
+        return new JsonStreamParser(new Handler<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public void handle(Object element) {
+                if (element instanceof Map) {
+                    element = new JsonObject((Map<String, Object>) element);
+                } else if (element instanceof List) {
+                    element = new JsonArray((List<Object>) element);
+                }
+                arrayElementHandler.handle(request, element);
+            }
+        });
+    }
+
+    private static void feed(final JsonStreamParser parser, final Buffer buffer) {
+        final ByteBuf buf = buffer.getByteBuf();
+        if (buf.hasArray()) {
+            // avoid copying the data
+            parser.feed(buf.array(), buf.arrayOffset() + buf.readerIndex(), buf.readableBytes());
+        } else {
+            byte[] data = buffer.getBytes();
+            parser.feed(data, 0, data.length);
+        }
+    }
+
+    private static void cancel(final YokeRequest request, final Handler<Object> next, final int status) {
+        request.dataHandler(null);
+        request.endHandler(null);
+
+        request.put("canceled", true);
+        next.handle(status);
+    }
 }
@@ -4,13 +4,12 @@
 package com.jetdrone.vertx.yoke.middleware;
 
 import com.jetdrone.vertx.yoke.Middleware;
-import com.jetdrone.vertx.yoke.middleware.filters.DeflateWriterFilter;
-import com.jetdrone.vertx.yoke.middleware.filters.GZipWriterFilter;
+import com.jetdrone.vertx.yoke.middleware.filters.DeflaterWriterFilter;
 import org.jetbrains.annotations.NotNull;
 import org.vertx.java.core.Handler;
 
-import java.io.IOException;
 import java.util.regex.Pattern;
+import java.util.zip.Deflater;
 
 /**
  * # Compress
@@ -21,6 +20,9 @@ import java.util.regex.Pattern;
  *
  * You can specify which content types are compressable and by default json/text/javascript
  * are enabled.
+ *
+ * Compression is streamed, data is compressed as it is written and sent to the client in chunks, responses smaller
+ * than the threshold are sent uncompressed.
  */
 public class Compress implements Middleware {
 
@@ -29,13 +31,40 @@ public class Compress implements Middleware {
      */
     private final Pattern filter;
 
+    /**
+     * Deflater compression level
+     */
+    private final int level;
+
+    /**
+     * Minimum body size in bytes to compress
+     */
+    private final int threshold;
+
+    /**
+     * Creates a new Compression Middleware given a regular expression of allowed mime types, a compression level and
+     * a minimum body size.
+     *
+     * @param filter Regular expression to specify which mime types are allowed to be compressed
+     * @param level compression level 0-9 or -1 for the default level
+     * @param threshold responses with less bytes than this value are not compressed
+     */
+    public Compress(@NotNull final Pattern filter, int level, int threshold) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        this.filter = filter;
+        this.level = level;
+        this.threshold = threshold;
+    }
+
     /**
      * Creates a new Compression Middleware given a regular expression of allowed mime types
      *
      * @param filter Regular expression to specify which mime types are allowed to be compressed
      */
     public Compress(@NotNull final Pattern filter) {
-        this.filter = filter;
+        this(filter, Deflater.DEFAULT_COMPRESSION, 0);
     }
 
     /**
@@ -67,20 +96,28 @@ public class Compress implements Middleware {
             return;
         }
 
-        try {
-            // default to gzip
-            if ("*".equals(accept.trim())) {
-                response.setFilter(new GZipWriterFilter(filter));
-            } else {
-                if (accept.contains("gzip")) {
-                    response.setFilter(new GZipWriterFilter(filter));
-                } else if (accept.contains("deflate")) {
-                    response.setFilter(new DeflateWriterFilter(filter));
-                }
-            }
+        final boolean gzip;
+
+        // default to gzip
+        if ("*".equals(accept.trim()) || accept.contains("gzip")) {
+            gzip = true;
+        } else if (accept.contains("deflate")) {
+            gzip = false;
+        } else {
             next.handle(null);
-        } catch (IOException ioe) {
-            next.handle(ioe);
+            return;
         }
+
+        final DeflaterWriterFilter writerFilter = new DeflaterWriterFilter(filter, response.nativeResponse(), gzip, level, threshold);
+        response.setFilter(writerFilter);
+        // the deflater goes back to the pool even if the client closes the connection mid response
+        response.endHandler(new Handler<Void>() {
+            @Override
+            public void handle(Void event) {
+                writerFilter.close();
+            }
+        });
+
+        next.handle(null);
     }
 }
@@ -0,0 +1,255 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.middleware;
+
+import com.jetdrone.vertx.yoke.Middleware;
+import com.jetdrone.vertx.yoke.Yoke;
+import com.jetdrone.vertx.yoke.jmx.ConcurrencyLimitMBean;
+import org.jetbrains.annotations.NotNull;
+import org.vertx.java.core.Handler;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+
+/** # ConcurrencyLimit
+ *
+ * Caps the number of requests in flight behind it. Mount it in front of expensive handlers, with `yoke.use(mount, ...)`
+ * for a mount or as the first middleware of a route for a route. Requests over the limit wait in a bounded queue
+ * until a request completes or until `queueTimeout` ms have passed, requests that do not fit in the queue or time out
+ * are passed to ```next.handle(503)```.
+ *
+ * The limit adapts to the latency of the requests (from the moment they leave the queue to the end of the response).
+ * Every `window` completions the average latency of the window is compared to a long term average: while the latency
+ * stays within `tolerance` times the long term average the limit grows by its square root, when it rises above the
+ * limit shrinks with the ratio, at most by half. The changes are smoothed and kept between `minLimit` and `maxLimit`.
+ * The limit does not grow while less than half of it is in use.
+ *
+ * As Yoke itself an instance belongs to one verticle, its state is only touched from its event loop. The current limit,
+ * requests in flight and queued and the rejections are exposed on JMX.
+ *
+ * Place it after BodyParser, the request is not paused while queued.
+ *
+ * <pre>
+ * yoke.use(new Router()
+ *     .post("/reports", new ConcurrencyLimit().setMaxQueue(20), reports));
+ * </pre>
+ */
+public class ConcurrencyLimit extends AbstractMiddleware {
+
+    // number of windows the long term latency averages over
+    private static final int LONG_WINDOWS = 100;
+
+    private final class Waiter implements Handler<Long> {
+        private final YokeRequest request;
+        private final Handler<Object> next;
+        private long timerId;
+
+        private Waiter(YokeRequest request, Handler<Object> next) {
+            this.request = request;
+            this.next = next;
+        }
+
+        @Override
+        public void handle(Long timerId) {
+            // deadline
+            if (queue.remove(this)) {
+                queued = queue.size();
+                rejected++;
+                next.handle(503);
+            }
+        }
+    }
+
+    private int minLimit = 1;
+    private int maxLimit = 200;
+    private int maxQueue = 50;
+    private long queueTimeout = 1000;
+    private int window = 10;
+    private double tolerance = 1.5;
+    private double smoothing = 0.2;
+
+    private double limit;
+    private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+
+    // latency of the current window, ns
+    private long windowSum;
+    private int windowCount;
+    private double longRtt;
+
+    // exported on JMX
+    private volatile int currentLimit;
+    private volatile int inFlight;
+    private volatile int queued;
+    private volatile long rejected;
+
+    public ConcurrencyLimit(int initialLimit) {
+        this.limit = initialLimit;
+        this.currentLimit = initialLimit;
+    }
+
+    public ConcurrencyLimit() {
+        this(20);
+    }
+
+    /**
+     * Lower bound of the limit, default 1.
+     */
+    public ConcurrencyLimit setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+        return this;
+    }
+
+    /**
+     * Upper bound of the limit, default 200.
+     */
+    public ConcurrencyLimit setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+        return this;
+    }
+
+    /**
+     * Number of requests that can wait for a slot, default 50. 0 rejects as soon as the limit is reached.
+     */
+    public ConcurrencyLimit setMaxQueue(int maxQueue) {
+        this.maxQueue = maxQueue;
+        return this;
+    }
+
+    /**
+     * Time in ms a request waits for a slot before it is rejected, default 1000.
+     */
+    public ConcurrencyLimit setQueueTimeout(long queueTimeout) {
+        this.queueTimeout = queueTimeout;
+        return this;
+    }
+
+    /**
+     * Number of completed requests between adjustments of the limit, default 10.
+     */
+    public ConcurrencyLimit setWindow(int window) {
+        this.window = window;
+        return this;
+    }
+
+    /**
+     * How much the latency may rise above the long term average before the limit shrinks, default 1.5.
+     */
+    public ConcurrencyLimit setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+        return this;
+    }
+
+    @Override
+    public Middleware init(@NotNull final Yoke yoke, @NotNull final String mount) {
+        super.init(yoke, mount);
+
+        limit = Math.max(minLimit, Math.min(maxLimit, limit));
+        currentLimit = (int) limit;
+
+        try {
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            mbs.registerMBean(new ConcurrencyLimitMBean(this), new ObjectName("com.jetdrone.yoke:type=ConcurrencyLimit@" + yoke.hashCode() + ",mount=" + ObjectName.quote(mount) + ",name=" + getClass().getSimpleName() + "@" + hashCode()));
+        } catch (InstanceAlreadyExistsException e) {
+            // ignore
+        } catch (MalformedObjectNameException | MBeanRegistrationException | NotCompliantMBeanException e) {
+            throw new RuntimeException(e);
+        }
+
+        return this;
+    }
+
+    public int getLimit() {
+        return currentLimit;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    @Override
+    public void handle(@NotNull final YokeRequest request, @NotNull final Handler<Object> next) {
+        if (inFlight < currentLimit) {
+            start(request, next);
+            return;
+        }
+
+        if (queue.size() >= maxQueue) {
+            rejected++;
+            next.handle(503);
+            return;
+        }
+
+        final Waiter waiter = new Waiter(request, next);
+        waiter.timerId = vertx().setTimer(queueTimeout, waiter);
+        queue.add(waiter);
+        queued = queue.size();
+    }
+
+    private void start(final YokeRequest request, final Handler<Object> next) {
+        inFlight++;
+        final long start = System.nanoTime();
+
+        // also called when the client goes away before the end, the slot is not held by a dead connection
+        request.response().endHandler(new Handler<Void>() {
+            @Override
+            public void handle(Void event) {
+                inFlight--;
+                sample(System.nanoTime() - start);
+                dequeue();
+            }
+        });
+
+        next.handle(null);
+    }
+
+    private void dequeue() {
+        Waiter waiter;
+        while (inFlight < currentLimit && (waiter = queue.poll()) != null) {
+            queued = queue.size();
+            vertx().cancelTimer(waiter.timerId);
+            start(waiter.request, waiter.next);
+        }
+    }
+
+    private void sample(long rtt) {
+        windowSum += rtt;
+        if (++windowCount < window) {
+            return;
+        }
+
+        final double shortRtt = (double) windowSum / windowCount;
+        windowSum = 0;
+        windowCount = 0;
+
+        if (longRtt == 0) {
+            longRtt = shortRtt;
+        } else {
+            longRtt += (shortRtt - longRtt) / LONG_WINDOWS;
+            // the latency dropped for good (e.g. a cold start), do not wait for the average to catch up
+            if (longRtt > 2 * shortRtt) {
+                longRtt *= 0.95;
+            }
+        }
+
+        final double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+
+        // only grow when the limit is what holds the requests back
+        if (inFlight < limit / 2) {
+            newLimit = Math.min(newLimit, limit);
+        }
+
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - smoothing) + newLimit * smoothing));
+        currentLimit = (int) limit;
+    }
+}
@@ -5,6 +5,7 @@ package com.jetdrone.vertx.yoke.middleware;
 
 import com.jetdrone.vertx.yoke.Middleware;
 import com.jetdrone.vertx.yoke.core.YokeCookie;
+import com.jetdrone.vertx.yoke.security.CookieSigner;
 import io.netty.handler.codec.http.Cookie;
 import io.netty.handler.codec.http.CookieDecoder;
 import org.jetbrains.annotations.NotNull;
@@ -22,14 +23,29 @@ import java.util.TreeSet;
  * If a cooke value starts with *s:* it means that it is a signed cookie. In this case the value is expected to be
  * *s:&lt;cookie&gt;.&lt;signature&gt;*. The signature is *HMAC + SHA256*.
  *
- * When the Cookie parser is initialized with a secret then that value is used to verify if a cookie is valid.
+ * When the Cookie parser is initialized with a secret then that value is used to verify if a cookie is valid. A
+ * `CookieSigner` with several keys accepts cookies signed with any of them.
  */
 public class CookieParser implements Middleware {
 
     /**
      * Message Signer
      */
-    private final Mac mac;
+    private final CookieSigner signer;
+
+    /**
+     * Instantiates a CookieParser with a given signer.
+     *
+     * <pre>
+     * Yoke yoke = new Yoke(...);
+     * yoke.use(new CookieParser(new CookieSigner(yoke.security(), "HmacSHA256")));
+     * </pre>
+     *
+     * @param signer CookieSigner
+     */
+    public CookieParser(final CookieSigner signer) {
+        this.signer = signer;
+    }
 
     /**
      * Instantiates a CookieParser with a given Mac.
@@ -42,7 +58,7 @@ public class CookieParser implements Middleware {
      * @param mac Mac
      */
     public CookieParser(final Mac mac) {
-        this.mac = mac;
+        this(mac == null ? null : new CookieSigner(mac));
     }
 
     /**
@@ -54,7 +70,7 @@ public class CookieParser implements Middleware {
      * </pre>
      */
     public CookieParser() {
-        this(null);
+        this((CookieSigner) null);
     }
 
     @Override
@@ -66,7 +82,7 @@ public class CookieParser implements Middleware {
             Set<YokeCookie> cookies = new TreeSet<>();
 
             for (Cookie cookie : nettyCookies) {
-                YokeCookie yokeCookie = new YokeCookie(cookie, mac);
+                YokeCookie yokeCookie = new YokeCookie(cookie, signer);
                 String value = yokeCookie.getUnsignedValue();
                 // value cannot be null in a cookie if the signature is mismatch then this value will be null
                 // in that case the cookie has been tampered
@@ -7,12 +7,14 @@ import org.jetbrains.annotations.NotNull;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.json.JsonObject;
 
-import java.util.regex.Pattern;
-
+/**
+ * # JWT
+ *
+ * Authenticates requests with a `Authorization: Bearer [token]` header. The token is verified with the keys of the
+ * `YokeSecurity` of the application and its claims are available as the request context value `jwt`.
+ */
 public class JWT extends AbstractMiddleware {
 
-    private static final Pattern BEARER = Pattern.compile("^Bearer$", Pattern.CASE_INSENSITIVE);
-
     public interface JWTHandler {
         public void handle(JsonObject token, Handler<Object> result);
     }
@@ -72,13 +74,11 @@ public class JWT extends AbstractMiddleware {
         final String authorization = request.getHeader("authorization");
 
         if (authorization != null) {
-            String[] parts = authorization.split(" ");
-            if (parts.length == 2) {
-                final String scheme = parts[0],
-                             credentials = parts[1];
-
-                if (BEARER.matcher(scheme).matches()) {
-                    token = credentials;
+            final int sp = authorization.indexOf(' ');
+            if (sp != -1 && authorization.indexOf(' ', sp + 1) == -1) {
+                // Bearer, case insensitive
+                if (sp == 6 && authorization.regionMatches(true, 0, "Bearer", 0, 6)) {
+                    token = authorization.substring(sp + 1);
                 }
             } else {
                 next.handle(new YokeException(401, "Format is Authorization: Bearer [token]"));
@@ -89,7 +89,13 @@ public class JWT extends AbstractMiddleware {
             return;
         }
 
+        if (token == null) {
+            next.handle(new YokeException(401, "Format is Authorization: Bearer [token]"));
+            return;
+        }
+
         try {
+            // verified tokens are cached, a client repeating its token is not verified again
             final JsonObject jwtToken = jwt.decode(token);
 
             final long now = System.currentTimeMillis();
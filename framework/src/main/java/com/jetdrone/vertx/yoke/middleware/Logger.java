@@ -4,6 +4,7 @@
 package com.jetdrone.vertx.yoke.middleware;
 
 import com.jetdrone.vertx.yoke.Middleware;
+import com.jetdrone.vertx.yoke.core.AccessLogWriter;
 import com.jetdrone.vertx.yoke.core.impl.ThreadLocalUTCDateFormat;
 import org.jetbrains.annotations.NotNull;
 import org.vertx.java.core.Handler;
@@ -24,6 +25,9 @@ import java.util.Date;
  * The logging depends on Vert.x logger settings and the severity of the error, so for errors with status greater or
  * equal to 500 the fatal severity is used, for status greater or equal to 400 the error severity is used, for status
  * greater or equal to 300 warn is used and for status above 100 info is used.
+ *
+ * With an AccessLogWriter the lines skip the Vert.x logger: they are queued and written to a file by a background
+ * thread, see AccessLogWriter for what happens when the writer cannot keep up.
  */
 public class Logger implements Middleware {
 
@@ -33,6 +37,29 @@ public class Logger implements Middleware {
      */
     private final ThreadLocalUTCDateFormat ISODATE;
 
+    /** Lines are built in one builder per event loop
+     */
+    private static final ThreadLocal<StringBuilder> BUILDER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
+
+    /** The formatted date up to the seconds, per event loop
+     */
+    private static final class Second {
+        long second;
+        String prefix;
+    }
+
+    private static final ThreadLocal<Second> SECOND = new ThreadLocal<Second>() {
+        @Override
+        protected Second initialValue() {
+            return new Second();
+        }
+    };
+
     /**
      * The possible out of the box formats.
      */
@@ -50,13 +77,28 @@ public class Logger implements Middleware {
      */
     private final Format format;
 
-    public Logger(final boolean immediate, @NotNull Format format) {
+    /** when set lines go to the writer instead of the Vert.x logger
+     */
+    private final AccessLogWriter writer;
+
+    public Logger(final boolean immediate, @NotNull Format format, AccessLogWriter writer) {
         this.immediate = immediate;
         this.format = format;
+        this.writer = writer;
 
         ISODATE = new ThreadLocalUTCDateFormat();
     }
 
+    public Logger(final boolean immediate, @NotNull Format format) {
+        this(immediate, format, null);
+    }
+
+    /** Access log mode, lines are written to a file by the writer in the background.
+     */
+    public Logger(@NotNull Format format, @NotNull AccessLogWriter writer) {
+        this(false, format, writer);
+    }
+
     public Logger(@NotNull Format format) {
         this(false, format);
     }
@@ -98,45 +140,75 @@ public class Logger implements Middleware {
         }
 
         int status = request.response().getStatusCode();
-        String message = null;
+
+        final StringBuilder message = BUILDER.get();
+        message.setLength(0);
 
         switch (format) {
             case DEFAULT:
-                Object referrer = request.getHeader("referrer", "");
-                Object userAgent = request.getHeader("user-agent", "");
-
-                message = String.format("%s - - [%s] \"%s %s %s\" %d %d \"%s\" \"%s\"",
-                        remoteClient,
-                        ISODATE.format(new Date(timestamp)),
-                        method,
-                        uri,
-                        version,
-                        status,
-                        contentLength,
-                        referrer,
-                        userAgent);
+                String referrer = request.getHeader("referrer", "");
+                String userAgent = request.getHeader("user-agent", "");
+
+                message.append(remoteClient).append(" - - [");
+                appendDate(message, timestamp);
+                message.append("] \"")
+                        .append(method).append(' ')
+                        .append(uri).append(' ')
+                        .append(version).append("\" ")
+                        .append(status).append(' ')
+                        .append(contentLength).append(" \"")
+                        .append(referrer).append("\" \"")
+                        .append(userAgent).append('"');
                 break;
             case SHORT:
-                message = String.format("%s - %s %s %s %d %d - %d ms",
-                        remoteClient,
-                        method,
-                        uri,
-                        version,
-                        status,
-                        contentLength,
-                        (System.currentTimeMillis() - timestamp));
+                message.append(remoteClient).append(" - ")
+                        .append(method).append(' ')
+                        .append(uri).append(' ')
+                        .append(version).append(' ')
+                        .append(status).append(' ')
+                        .append(contentLength).append(" - ")
+                        .append(System.currentTimeMillis() - timestamp).append(" ms");
                 break;
             case TINY:
-                message = String.format("%s %s %d %d - %d ms",
-                        method,
-                        uri,
-                        status,
-                        contentLength,
-                        (System.currentTimeMillis() - timestamp));
+                message.append(method).append(' ')
+                        .append(uri).append(' ')
+                        .append(status).append(' ')
+                        .append(contentLength).append(" - ")
+                        .append(System.currentTimeMillis() - timestamp).append(" ms");
                 break;
         }
 
-        logMessage(status, message);
+        if (writer != null) {
+            writer.write(message.toString());
+        } else {
+            logMessage(status, message.toString());
+        }
+    }
+
+    /**
+     * Appends the timestamp in the ISODATE format. The part up to the seconds is formatted once per second and thread.
+     */
+    private void appendDate(StringBuilder sb, long timestamp) {
+        final long second = timestamp / 1000;
+        final Second cached = SECOND.get();
+
+        if (cached.prefix == null || cached.second != second) {
+            final String date = ISODATE.format(new Date(second * 1000));
+            cached.second = second;
+            // drop the "000Z"
+            cached.prefix = date.substring(0, date.length() - 4);
+        }
+
+        final int millis = (int) (timestamp - second * 1000);
+
+        sb.append(cached.prefix);
+        if (millis < 100) {
+            sb.append('0');
+        }
+        if (millis < 10) {
+            sb.append('0');
+        }
+        sb.append(millis).append('Z');
     }
 
     protected void logMessage(int status, String message)
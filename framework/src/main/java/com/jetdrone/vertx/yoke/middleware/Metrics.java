@@ -0,0 +1,230 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.middleware;
+
+import com.jetdrone.vertx.yoke.core.LatencyHistogram;
+import com.jetdrone.vertx.yoke.core.StripedCounters;
+import org.jetbrains.annotations.NotNull;
+import org.vertx.java.core.Handler;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * # Metrics
+ *
+ * Collects request metrics and serves them in the Prometheus text exposition format on ```GET /metrics```:
+ *
+ * * ```yoke_requests_total```: requests by method, route and status class (```2xx```, ```4xx```...),
+ * * ```yoke_requests_in_flight```: requests started but not yet ended,
+ * * ```yoke_request_bytes_total``` and ```yoke_response_bytes_total```: body bytes by method and route,
+ * * ```yoke_request_duration_seconds```: latency histogram by method and route.
+ *
+ * The route is the pattern of the matching `Router` binding (e.g.: ```/users/:id```), so the number of series does not
+ * grow with the number of paths, and is empty for requests not handled by a router. Counters are kept per event loop
+ * and only added up when scraped, so counting a request takes no locks.
+ *
+ * The middleware must be used before the middleware it measures.
+ *
+ * <pre>
+ * Yoke yoke = new Yoke(...);
+ * yoke.use(new Metrics());
+ * yoke.use(new Router()...);
+ * </pre>
+ */
+public class Metrics extends AbstractMiddleware {
+
+    // upper bounds in seconds, the Prometheus client defaults
+    private static final String[] BUCKETS = {".005", ".01", ".025", ".05", ".1", ".25", ".5", "1", "2.5", "5", "10"};
+    private static final long[] BUCKET_NANOS = new long[BUCKETS.length];
+
+    static {
+        for (int i = 0; i < BUCKETS.length; i++) {
+            BUCKET_NANOS[i] = (long) (Double.parseDouble(BUCKETS[i]) * 1e9);
+        }
+    }
+
+    private static final String[] STATUS = {"1xx", "2xx", "3xx", "4xx", "5xx"};
+    private static final int BYTES_IN = STATUS.length;
+    private static final int BYTES_OUT = STATUS.length + 1;
+
+    /**
+     * ## Registry
+     *
+     * Metrics of all the requests seen by the middleware sharing it. A registry can be shared by all verticles of a
+     * module so a single scrape covers every event loop.
+     */
+    public static final class Registry {
+
+        // method -> route -> series
+        private final ConcurrentMap<String, ConcurrentMap<String, Series>> series = new ConcurrentHashMap<>();
+        private final StripedCounters inFlight = new StripedCounters(1);
+
+        private Series series(String method, String route) {
+            ConcurrentMap<String, Series> routes = series.get(method);
+            if (routes == null) {
+                routes = new ConcurrentHashMap<>();
+                final ConcurrentMap<String, Series> previous = series.putIfAbsent(method, routes);
+                if (previous != null) {
+                    routes = previous;
+                }
+            }
+
+            Series s = routes.get(route);
+            if (s == null) {
+                s = new Series();
+                final Series previous = routes.putIfAbsent(route, s);
+                if (previous != null) {
+                    s = previous;
+                }
+            }
+            return s;
+        }
+
+        /**
+         * Current metrics in the text exposition format.
+         */
+        public String scrape() {
+            // stable output: sorted by method then route
+            final Map<String, Map<String, Series>> sorted = new TreeMap<>();
+            for (Map.Entry<String, ConcurrentMap<String, Series>> e : series.entrySet()) {
+                sorted.put(e.getKey(), new TreeMap<>(e.getValue()));
+            }
+
+            final Map<String, long[]> counters = new TreeMap<>();
+            final Map<String, LatencyHistogram.Snapshot> latencies = new TreeMap<>();
+            for (Map.Entry<String, Map<String, Series>> m : sorted.entrySet()) {
+                for (Map.Entry<String, Series> r : m.getValue().entrySet()) {
+                    final String labels = "method=\"" + escape(m.getKey()) + "\",route=\"" + escape(r.getKey()) + "\"";
+                    counters.put(labels, r.getValue().counters.sum());
+                    latencies.put(labels, r.getValue().latency.snapshot());
+                }
+            }
+
+            final StringBuilder sb = new StringBuilder(256 + counters.size() * 1024);
+
+            sb.append("# HELP yoke_requests_total Total number of requests.\n");
+            sb.append("# TYPE yoke_requests_total counter\n");
+            for (Map.Entry<String, long[]> e : counters.entrySet()) {
+                for (int i = 0; i < STATUS.length; i++) {
+                    if (e.getValue()[i] != 0) {
+                        sb.append("yoke_requests_total{").append(e.getKey()).append(",status=\"").append(STATUS[i]).append("\"} ").append(e.getValue()[i]).append('\n');
+                    }
+                }
+            }
+
+            sb.append("# HELP yoke_requests_in_flight Number of requests being handled.\n");
+            sb.append("# TYPE yoke_requests_in_flight gauge\n");
+            sb.append("yoke_requests_in_flight ").append(inFlight.sum()[0]).append('\n');
+
+            sb.append("# HELP yoke_request_bytes_total Total number of request body bytes.\n");
+            sb.append("# TYPE yoke_request_bytes_total counter\n");
+            for (Map.Entry<String, long[]> e : counters.entrySet()) {
+                sb.append("yoke_request_bytes_total{").append(e.getKey()).append("} ").append(e.getValue()[BYTES_IN]).append('\n');
+            }
+
+            sb.append("# HELP yoke_response_bytes_total Total number of response body bytes.\n");
+            sb.append("# TYPE yoke_response_bytes_total counter\n");
+            for (Map.Entry<String, long[]> e : counters.entrySet()) {
+                sb.append("yoke_response_bytes_total{").append(e.getKey()).append("} ").append(e.getValue()[BYTES_OUT]).append('\n');
+            }
+
+            sb.append("# HELP yoke_request_duration_seconds Request latency.\n");
+            sb.append("# TYPE yoke_request_duration_seconds histogram\n");
+            for (Map.Entry<String, LatencyHistogram.Snapshot> e : latencies.entrySet()) {
+                final LatencyHistogram.Snapshot snapshot = e.getValue();
+                for (int i = 0; i < BUCKETS.length; i++) {
+                    sb.append("yoke_request_duration_seconds_bucket{").append(e.getKey()).append(",le=\"").append(BUCKETS[i]).append("\"} ").append(snapshot.countAtOrBelow(BUCKET_NANOS[i])).append('\n');
+                }
+                sb.append("yoke_request_duration_seconds_bucket{").append(e.getKey()).append(",le=\"+Inf\"} ").append(snapshot.count()).append('\n');
+                sb.append("yoke_request_duration_seconds_sum{").append(e.getKey()).append("} ").append(snapshot.sum() / 1e9).append('\n');
+                sb.append("yoke_request_duration_seconds_count{").append(e.getKey()).append("} ").append(snapshot.count()).append('\n');
+            }
+
+            return sb.toString();
+        }
+    }
+
+    private static final class Series {
+        // status classes, bytes in, bytes out
+        private final StripedCounters counters = new StripedCounters(STATUS.length + 2);
+        private final LatencyHistogram latency = new LatencyHistogram();
+    }
+
+    private static final Registry DEFAULT = new Registry();
+
+    private final String path;
+    private final Registry registry;
+
+    /**
+     * Serves the metrics on the given path from the given registry.
+     *
+     * <pre>
+     * Yoke yoke = new Yoke(...);
+     * yoke.use(new Metrics("/admin/metrics", new Metrics.Registry()));
+     * </pre>
+     */
+    public Metrics(@NotNull final String path, @NotNull final Registry registry) {
+        this.path = path;
+        this.registry = registry;
+    }
+
+    /**
+     * Serves the metrics on the given path from the registry shared by all instances in the classloader.
+     */
+    public Metrics(@NotNull final String path) {
+        this(path, DEFAULT);
+    }
+
+    /**
+     * Serves the metrics on ```/metrics``` from the registry shared by all instances in the classloader.
+     */
+    public Metrics() {
+        this("/metrics");
+    }
+
+    private static String escape(String value) {
+        if (value.indexOf('\\') == -1 && value.indexOf('"') == -1 && value.indexOf('\n') == -1) {
+            return value;
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    @Override
+    public void handle(@NotNull final YokeRequest request, @NotNull final Handler<Object> next) {
+        final YokeResponse response = request.response();
+
+        if ("GET".equals(request.method()) && path.equals(request.normalizedPath())) {
+            response.putHeader("content-type", "text/plain; version=0.0.4; charset=utf-8");
+            response.end(registry.scrape());
+            return;
+        }
+
+        final long start = System.nanoTime();
+        registry.inFlight.add(0, 1);
+
+        // also called when the client goes away before the end
+        response.endHandler(new Handler<Void>() {
+            @Override
+            public void handle(Void event) {
+                registry.inFlight.add(0, -1);
+
+                final String route = request.get("route", "");
+                final Series series = registry.series(request.method(), route);
+
+                final int status = response.getStatusCode() / 100 - 1;
+                final long in = request.bytesRead();
+
+                series.counters.add(Math.max(0, Math.min(status, STATUS.length - 1)), 1);
+                series.counters.add(BYTES_IN, in == 0 ? Math.max(0, request.contentLength()) : in);
+                series.counters.add(BYTES_OUT, response.bytesWritten());
+                series.latency.record(System.nanoTime() - start, status >= 4);
+            }
+        });
+
+        next.handle(null);
+    }
+}
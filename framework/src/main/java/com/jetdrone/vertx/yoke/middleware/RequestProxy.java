@@ -5,11 +5,18 @@ package com.jetdrone.vertx.yoke.middleware;
 
 import org.jetbrains.annotations.NotNull;
 import org.vertx.java.core.Handler;
+import org.vertx.java.core.MultiMap;
+import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.http.HttpClient;
 import org.vertx.java.core.VoidHandler;
-import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.http.HttpClientRequest;
 import org.vertx.java.core.http.HttpClientResponse;
+import org.vertx.java.core.streams.Pump;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 /** # RequestProxy
  *
@@ -18,71 +25,356 @@ import org.vertx.java.core.http.HttpClientResponse;
  *
  * In order to handler the proxy request properly, Bodyparser should be disabled for the
  * path matched by RequestProxy.
+ *
+ * Every upstream has its own keep-alive client with a pool of connections, created on the first request so it belongs
+ * to the event loop of the verticle. Bodies are pumped in both directions: reading pauses while the other side cannot
+ * keep up, and when the client goes away the rest of the upstream response is dropped. With several upstreams
+ * requests are balanced round-robin or to the upstream with the least requests in flight, and an upstream failing
+ * `maxFailures` times in a row (connection errors, resets, timeouts) is left out for `ejectTime` ms.
+ *
+ * As the clients, an instance must not be shared between verticles.
+ *
+ * <pre>
+ * Yoke yoke = new Yoke(...);
+ * yoke.use(new RequestProxy("/api", false, "10.0.0.1:8080", "10.0.0.2:8080")
+ *     .setBalancing(RequestProxy.Balancing.LEAST_IN_FLIGHT)
+ *     .setMaxPoolSize(20));
+ * </pre>
  */
 public class RequestProxy extends AbstractMiddleware {
 
+    public enum Balancing {
+        ROUND_ROBIN,
+        LEAST_IN_FLIGHT
+    }
+
+    // hop-by-hop headers are never forwarded (RFC 2616 13.5.1)
+    private static final Set<String> HOP_BY_HOP = new HashSet<>(Arrays.asList(
+            "connection", "keep-alive", "proxy-authenticate", "proxy-authorization", "te", "trailers",
+            "transfer-encoding", "upgrade"));
+
+    private final class Upstream {
+        private final String host;
+        private final int port;
+
+        private HttpClient client;
+
+        private int inFlight;
+        private int failures;
+        private long ejectedUntil;
+
+        private Upstream(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+
+        private HttpClient client() {
+            if (client == null) {
+                client = vertx().createHttpClient()
+                        .setHost(host)
+                        .setPort(port)
+                        .setKeepAlive(true)
+                        .setMaxPoolSize(maxPoolSize)
+                        .setPipelining(pipelining)
+                        .setConnectTimeout(connectTimeout);
+
+                if (secure) {
+                    client.setSSL(true);
+                }
+            }
+            return client;
+        }
+    }
+
+    /**
+     * One proxied request, ends exactly once with success or failure.
+     */
+    private final class Exchange implements Handler<Throwable> {
+        private final Upstream upstream;
+        private final YokeRequest request;
+        private final Handler<Object> next;
+
+        private HttpClientResponse response;
+        private boolean done;
+
+        private Exchange(Upstream upstream, YokeRequest request, Handler<Object> next) {
+            this.upstream = upstream;
+            this.request = request;
+            this.next = next;
+            upstream.inFlight++;
+        }
+
+        private void end() {
+            if (!done) {
+                done = true;
+                upstream.inFlight--;
+                upstream.failures = 0;
+                request.response().end();
+            }
+        }
+
+        /**
+         * The client went away, the rest of the response is dropped so the connection goes back to the pool fully read.
+         */
+        private void abort() {
+            if (!done) {
+                done = true;
+                upstream.inFlight--;
+                if (response != null) {
+                    discard(response);
+                }
+            }
+        }
+
+        @Override
+        public void handle(Throwable t) {
+            if (done) {
+                return;
+            }
+            done = true;
+            upstream.inFlight--;
+
+            if (++upstream.failures >= maxFailures) {
+                upstream.failures = 0;
+                upstream.ejectedUntil = System.currentTimeMillis() + ejectTime;
+            }
+
+            if (response != null) {
+                // part of the response is gone already, the client can only learn from a truncated response
+                request.response().close();
+            } else {
+                next.handle(502);
+            }
+        }
+    }
+
     private final String prefix;
-    private final String host;
-    private final int port;
     private final boolean secure;
+    private final Upstream[] upstreams;
+
+    private Balancing balancing = Balancing.ROUND_ROBIN;
+    private int maxPoolSize = 10;
+    private boolean pipelining = false;
+    private int connectTimeout = 5000;
+    private long timeout = 0;
+    private int maxFailures = 3;
+    private long ejectTime = 10000;
+
+    private int nextUpstream;
+
+    /**
+     * Proxies to one or more upstreams given as *host:port*.
+     */
+    public RequestProxy(@NotNull final String prefix, final boolean secure, @NotNull final String... upstreams) {
+        if (upstreams.length == 0) {
+            throw new IllegalArgumentException("At least one upstream is required");
+        }
 
-    public RequestProxy(@NotNull final String prefix, @NotNull final String host, final int port, final boolean secure) {
         this.prefix = prefix;
-        this.host = host;
-        this.port = port;
         this.secure = secure;
+        this.upstreams = new Upstream[upstreams.length];
+
+        for (int i = 0; i < upstreams.length; i++) {
+            final int sep = upstreams[i].lastIndexOf(':');
+            if (sep == -1) {
+                this.upstreams[i] = new Upstream(upstreams[i], secure ? 443 : 80);
+            } else {
+                this.upstreams[i] = new Upstream(upstreams[i].substring(0, sep), Integer.parseInt(upstreams[i].substring(sep + 1)));
+            }
+        }
+    }
+
+    public RequestProxy(@NotNull final String prefix, @NotNull final String host, final int port, final boolean secure) {
+        this(prefix, secure, host + ":" + port);
     }
 
     public RequestProxy(@NotNull final String prefix, final int port, final boolean secure) {
         this(prefix, "localhost", port, secure);
     }
 
+    public RequestProxy setBalancing(@NotNull Balancing balancing) {
+        this.balancing = balancing;
+        return this;
+    }
+
+    /**
+     * Maximum number of connections to each upstream, default 10.
+     */
+    public RequestProxy setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+        return this;
+    }
+
+    /**
+     * Sends requests on a connection before the previous responses have been received, default false.
+     */
+    public RequestProxy setPipelining(boolean pipelining) {
+        this.pipelining = pipelining;
+        return this;
+    }
+
+    /**
+     * Connect timeout in ms, default 5000.
+     */
+    public RequestProxy setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        return this;
+    }
+
+    /**
+     * Fails a request when the upstream sends no data for the given ms, 0 (the default) waits forever.
+     */
+    public RequestProxy setTimeout(long timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * Number of consecutive failures that eject an upstream, default 3.
+     */
+    public RequestProxy setMaxFailures(int maxFailures) {
+        this.maxFailures = maxFailures;
+        return this;
+    }
+
+    /**
+     * Time in ms an ejected upstream does not get requests, default 10000.
+     */
+    public RequestProxy setEjectTime(long ejectTime) {
+        this.ejectTime = ejectTime;
+        return this;
+    }
+
+    /**
+     * Requests in flight to all upstreams.
+     */
+    public int getInFlight() {
+        int inFlight = 0;
+        for (Upstream upstream : upstreams) {
+            inFlight += upstream.inFlight;
+        }
+        return inFlight;
+    }
+
+    private Upstream pick() {
+        final long now = System.currentTimeMillis();
+        final int start = nextUpstream;
+        nextUpstream = (nextUpstream + 1) % upstreams.length;
+
+        Upstream best = null;
+        for (int i = 0; i < upstreams.length; i++) {
+            final Upstream upstream = upstreams[(start + i) % upstreams.length];
+            if (upstream.ejectedUntil > now) {
+                continue;
+            }
+            if (balancing == Balancing.ROUND_ROBIN) {
+                return upstream;
+            }
+            if (best == null || upstream.inFlight < best.inFlight) {
+                best = upstream;
+            }
+        }
+
+        if (best == null) {
+            // all ejected, try the first one to come back
+            for (Upstream upstream : upstreams) {
+                if (best == null || upstream.ejectedUntil < best.ejectedUntil) {
+                    best = upstream;
+                }
+            }
+        }
+
+        return best;
+    }
+
+    private static void discard(HttpClientResponse response) {
+        // a socket taken with netSocket() would never leave the pool
+        response.dataHandler(new Handler<Buffer>() {
+            @Override
+            public void handle(Buffer data) {
+            }
+        });
+        response.resume();
+    }
+
+    private static void copyHeaders(MultiMap from, MultiMap to) {
+        for (Map.Entry<String, String> header : from) {
+            if (!HOP_BY_HOP.contains(header.getKey().toLowerCase())) {
+                to.add(header.getKey(), header.getValue());
+            }
+        }
+    }
+
     @Override
     public void handle(@NotNull final YokeRequest req, @NotNull final Handler<Object> next) {
         if (!req.uri().startsWith(prefix)) {
-          next.handle(null);
-          return;
-        }
-        final String newUri = req.uri().replaceFirst(prefix, "");
-        final HttpClient client = vertx().createHttpClient().setHost(host).setPort(port);
-
-        if (secure) {
-            client.setSSL(true);
-        }
-        
-        final HttpClientRequest cReq = client.request(req.method(), newUri, new Handler<HttpClientResponse>() {
-          public void handle(HttpClientResponse cRes) {
-            req.response().setStatusCode(cRes.statusCode());
-            req.response().headers().set(cRes.headers());
-            req.response().setChunked(true);
-            cRes.dataHandler(new Handler<Buffer>() {
-              public void handle(Buffer data) {
-                req.response().write(data);
-              }
-            });
-            cRes.endHandler(new VoidHandler() {
-              public void handle() {
-                req.response().end();
-              }
-            });
-            cRes.exceptionHandler(new Handler<Throwable>() {
-              public void handle(Throwable t) {
-                next.handle(t);
-              }
-            });
-          }
+            next.handle(null);
+            return;
+        }
+
+        String newUri = req.uri().substring(prefix.length());
+        if (newUri.length() == 0 || newUri.charAt(0) != '/') {
+            newUri = "/" + newUri;
+        }
+
+        final YokeResponse res = req.response();
+        final Exchange exchange = new Exchange(pick(), req, next);
+
+        // also called when the client goes away, the pumps would wait forever for a drain
+        res.endHandler(new Handler<Void>() {
+            @Override
+            public void handle(Void event) {
+                exchange.abort();
+            }
         });
-        cReq.headers().set(req.headers());
-        cReq.setChunked(true);
-        req.dataHandler(new Handler<Buffer>() {
-          public void handle(Buffer data) {
-            cReq.write(data);
-          }
+
+        final HttpClientRequest cReq = exchange.upstream.client().request(req.method(), newUri, new Handler<HttpClientResponse>() {
+            @Override
+            public void handle(HttpClientResponse cRes) {
+                if (exchange.done) {
+                    // the client left while the request was sent
+                    discard(cRes);
+                    return;
+                }
+                exchange.response = cRes;
+
+                res.setStatusCode(cRes.statusCode());
+                res.setStatusMessage(cRes.statusMessage());
+                copyHeaders(cRes.headers(), res.headers());
+                if (!res.headers().contains("content-length")) {
+                    res.setChunked(true);
+                }
+
+                cRes.exceptionHandler(exchange);
+                cRes.endHandler(new VoidHandler() {
+                    @Override
+                    public void handle() {
+                        exchange.end();
+                    }
+                });
+                Pump.createPump(cRes, res).start();
+            }
         });
+
+        cReq.exceptionHandler(exchange);
+        if (timeout > 0) {
+            cReq.setTimeout(timeout);
+        }
+
+        copyHeaders(req.headers(), cReq.headers());
+
+        if (req.hasBody()) {
+            if (!cReq.headers().contains("content-length")) {
+                cReq.setChunked(true);
+            }
+            Pump.createPump(req, cReq).start();
+        }
+
         req.endHandler(new VoidHandler() {
-          public void handle() {
-            cReq.end();
-          }
+            @Override
+            public void handle() {
+                cReq.end();
+            }
         });
     }
 }
@@ -6,13 +6,15 @@ package com.jetdrone.vertx.yoke.middleware;
 import com.jetdrone.vertx.yoke.Middleware;
 import com.jetdrone.vertx.yoke.Yoke;
 import com.jetdrone.vertx.yoke.annotations.*;
+import com.jetdrone.vertx.yoke.core.HopTimer;
+import com.jetdrone.vertx.yoke.core.LatencyHistogram;
+import com.jetdrone.vertx.yoke.core.impl.RouteTrie;
 import com.jetdrone.vertx.yoke.jmx.RouteMBean;
 import com.jetdrone.vertx.yoke.util.AsyncIterator;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.MultiMap;
-import org.vertx.java.core.Vertx;
 
 import javax.management.*;
 import java.lang.management.ManagementFactory;
@@ -37,18 +39,33 @@ import java.util.regex.Pattern;
  */
 public class Router extends AbstractMiddleware {
 
-    private final List<PatternBinding> getBindings = new ArrayList<>();
-    private final List<PatternBinding> putBindings = new ArrayList<>();
-    private final List<PatternBinding> postBindings = new ArrayList<>();
-    private final List<PatternBinding> deleteBindings = new ArrayList<>();
-    private final List<PatternBinding> optionsBindings = new ArrayList<>();
-    private final List<PatternBinding> headBindings = new ArrayList<>();
-    private final List<PatternBinding> traceBindings = new ArrayList<>();
-    private final List<PatternBinding> connectBindings = new ArrayList<>();
-    private final List<PatternBinding> patchBindings = new ArrayList<>();
+    private final Bindings getBindings = new Bindings();
+    private final Bindings putBindings = new Bindings();
+    private final Bindings postBindings = new Bindings();
+    private final Bindings deleteBindings = new Bindings();
+    private final Bindings optionsBindings = new Bindings();
+    private final Bindings headBindings = new Bindings();
+    private final Bindings traceBindings = new Bindings();
+    private final Bindings connectBindings = new Bindings();
+    private final Bindings patchBindings = new Bindings();
 
     private final Map<String, Middleware> paramProcessors = new HashMap<>();
 
+    /**
+     * Current nesting of direct middleware calls on this thread
+     */
+    private static final ThreadLocal<int[]> callDepth = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    /**
+     * Maximum nesting of direct calls before yielding to the event loop, 0 means always yield
+     */
+    private int maxCallDepth = 0;
+
     /**
      * Create a new Router Middleware.
      *
@@ -65,7 +82,29 @@ public class Router extends AbstractMiddleware {
     public Router() {
     }
 
-    private void init(Yoke yoke, String mount, List<PatternBinding> bindings) {
+    /**
+     * Enables direct dispatch of route middleware.
+     *
+     * By default every middleware and param processor of a matched route is scheduled with `vertx.runOnContext` so
+     * a long chain never blocks the event loop. With direct dispatch the next middleware is called on the current
+     * stack, and the router only yields to the event loop once `maxCallDepth` nested calls are reached, which
+     * protects against stack overflows on long synchronous chains.
+     *
+     * <pre>
+     * new Router().directDispatch(16)
+     * </pre>
+     *
+     * @param maxCallDepth maximum nested direct calls, 0 disables direct dispatch
+     */
+    public Router directDispatch(int maxCallDepth) {
+        if (maxCallDepth < 0) {
+            throw new IllegalArgumentException("maxCallDepth cannot be negative");
+        }
+        this.maxCallDepth = maxCallDepth;
+        return this;
+    }
+
+    private void init(Yoke yoke, String mount, Bindings bindings) {
         for (PatternBinding binding : bindings) {
             for (Middleware m : binding.middleware) {
                 if (m instanceof AbstractMiddleware && !((AbstractMiddleware) m).isInitialized()) {
@@ -661,7 +700,7 @@ public class Router extends AbstractMiddleware {
         });
     }
 
-    private void addPattern(String verb, String input, Middleware[] handler, List<PatternBinding> bindings) {
+    private void addPattern(String verb, String input, Middleware[] handler, Bindings bindings) {
         // We need to search for any :<token name> tokens in the String and replace them with named capture groups
         Matcher m =  Pattern.compile(":([A-Za-z][A-Za-z0-9_]*)").matcher(input);
         StringBuffer sb = new StringBuffer();
@@ -692,7 +731,9 @@ public class Router extends AbstractMiddleware {
         }
 
         if (!exists) {
-            PatternBinding binding = new PatternBinding(hashCode(), verb, input, regex, groups, handler);
+            // simple patterns are resolved by segment lookup, the regex is only kept for JMX and identity
+            Map<String, Integer> segments = RouteTrie.isSimple(input) ? RouteTrie.params(input) : null;
+            PatternBinding binding = new PatternBinding(hashCode(), verb, input, regex, groups, segments, handler);
             bindings.add(binding);
         }
 
@@ -704,7 +745,7 @@ public class Router extends AbstractMiddleware {
         }
     }
 
-    private void addRegEx(String verb, Pattern regex, Middleware handler[], List<PatternBinding> bindings) {
+    private void addRegEx(String verb, Pattern regex, Middleware handler[], Bindings bindings) {
         boolean exists = false;
         // verify if the binding already exists, if yes add to it
         for (PatternBinding pb : bindings) {
@@ -716,7 +757,7 @@ public class Router extends AbstractMiddleware {
         }
 
         if (!exists) {
-            PatternBinding binding = new PatternBinding(hashCode(), verb, null, regex, null, handler);
+            PatternBinding binding = new PatternBinding(hashCode(), verb, null, regex, null, null, handler);
             bindings.add(binding);
         }
 
@@ -728,9 +769,9 @@ public class Router extends AbstractMiddleware {
         }
     }
 
-    private void route(final YokeRequest request, final Handler<Object> next, final List<PatternBinding> bindings) {
+    private void route(final YokeRequest request, final Handler<Object> next, final Bindings bindings) {
 
-        new AsyncIterator<PatternBinding>(bindings) {
+        new AsyncIterator<PatternBinding>(bindings.candidates(request.path())) {
             @Override
             public void handle(final PatternBinding binding) {
                 if (hasNext()) {
@@ -752,11 +793,28 @@ public class Router extends AbstractMiddleware {
         };
     }
 
-    private void route(final YokeRequest request, final PatternBinding binding, final Handler<Object> next) {
-        final Matcher m = binding.pattern.matcher(request.path());
-        final Vertx vertx = vertx();
-        
-        if (m.matches()) {
+    private void route(final YokeRequest request, final PatternBinding binding, final Handler<Object> done) {
+        final String path = request.path();
+        // candidates from the trie are known to match, only regular expressions need to be evaluated
+        final Matcher m = binding.segments == null ? binding.pattern.matcher(path) : null;
+
+        if (m == null || m.matches()) {
+            // time the binding until it passes the request on or the response ends
+            final HopTimer timer = new HopTimer(request.response());
+            request.response().endHandler(timer);
+            timer.start(binding.latency);
+
+            // the route pattern rather than the path, e.g.: to label metrics without one series per id
+            request.put("route", binding.route != null ? binding.route : binding.pattern.pattern());
+
+            final Handler<Object> next = new Handler<Object>() {
+                @Override
+                public void handle(Object err) {
+                    timer.stop(err != null);
+                    done.handle(err);
+                }
+            };
+
             final MultiMap params = request.params();
 
             if (binding.paramNames != null) {
@@ -765,23 +823,21 @@ public class Router extends AbstractMiddleware {
                     @Override
                     public void handle(String param) {
                         if (hasNext()) {
-                            params.set(param, m.group(param));
+                            if (m != null) {
+                                params.set(param, m.group(param));
+                            } else {
+                                params.set(param, RouteTrie.segment(path, binding.segments.get(param)));
+                            }
                             final Middleware paramMiddleware = paramProcessors.get(param);
                             if (paramMiddleware != null) {
-                                // do not block main loop
-                                vertx.runOnContext(new Handler<Void>() {
+                                dispatch(paramMiddleware, request, new Handler<Object>() {
                                     @Override
-                                    public void handle(Void event) {
-                                        paramMiddleware.handle(request, new Handler<Object>() {
-                                            @Override
-                                            public void handle(Object err) {
-                                                if (err == null) {
-                                                    next();
-                                                } else {
-                                                    next.handle(err);
-                                                }
-                                            }
-                                        });
+                                    public void handle(Object err) {
+                                        if (err == null) {
+                                            next();
+                                        } else {
+                                            next.handle(err);
+                                        }
                                     }
                                 });
                             } else {
@@ -793,20 +849,14 @@ public class Router extends AbstractMiddleware {
                                 @Override
                                 public void handle(final Middleware middleware) {
                                     if (hasNext()) {
-                                        // do not block main loop
-                                        vertx.runOnContext(new Handler<Void>() {
+                                        dispatch(middleware, request, new Handler<Object>() {
                                             @Override
-                                            public void handle(Void event) {
-                                                middleware.handle(request, new Handler<Object>() {
-                                                    @Override
-                                                    public void handle(Object err) {
-                                                        if (err == null) {
-                                                            next();
-                                                        } else {
-                                                            next.handle(err);
-                                                        }
-                                                    }
-                                                });
+                                            public void handle(Object err) {
+                                                if (err == null) {
+                                                    next();
+                                                } else {
+                                                    next.handle(err);
+                                                }
                                             }
                                         });
                                     } else {
@@ -828,20 +878,14 @@ public class Router extends AbstractMiddleware {
                     @Override
                     public void handle(final Middleware middleware) {
                         if (hasNext()) {
-                            // do not block main loop
-                            vertx.runOnContext(new Handler<Void>() {
+                            dispatch(middleware, request, new Handler<Object>() {
                                 @Override
-                                public void handle(Void event) {
-                                    middleware.handle(request, new Handler<Object>() {
-                                        @Override
-                                        public void handle(Object err) {
-                                            if (err == null) {
-                                                next();
-                                            } else {
-                                                next.handle(err);
-                                            }
-                                        }
-                                    });
+                                public void handle(Object err) {
+                                    if (err == null) {
+                                        next();
+                                    } else {
+                                        next.handle(err);
+                                    }
                                 }
                             });
                         } else {
@@ -851,7 +895,81 @@ public class Router extends AbstractMiddleware {
                 };
             }
         } else {
-            next.handle(null);
+            done.handle(null);
+        }
+    }
+
+    private void dispatch(final Middleware middleware, final YokeRequest request, final Handler<Object> next) {
+        final int[] depth = callDepth.get();
+
+        if (depth[0] < maxCallDepth) {
+            depth[0]++;
+            try {
+                middleware.handle(request, next);
+            } finally {
+                depth[0]--;
+            }
+        } else {
+            // do not block main loop
+            vertx().runOnContext(new Handler<Void>() {
+                @Override
+                public void handle(Void event) {
+                    middleware.handle(request, next);
+                }
+            });
+        }
+    }
+
+    /**
+     * Bindings for a single HTTP verb. Simple string patterns are kept in a segment trie, everything else (regular
+     * expressions and patterns with regex syntax) is kept in a list that is scanned on every request.
+     */
+    private static final class Bindings implements Iterable<PatternBinding> {
+
+        private static final Comparator<PatternBinding> ORDER = new Comparator<PatternBinding>() {
+            @Override
+            public int compare(PatternBinding o1, PatternBinding o2) {
+                return Integer.compare(o1.order, o2.order);
+            }
+        };
+
+        // all bindings in registration order
+        private final List<PatternBinding> bindings = new ArrayList<>();
+        private final RouteTrie<PatternBinding> trie = new RouteTrie<>();
+        private final List<PatternBinding> regex = new ArrayList<>();
+
+        private void add(@NotNull PatternBinding binding) {
+            binding.order = bindings.size();
+            bindings.add(binding);
+
+            if (binding.segments != null) {
+                trie.add(binding.route, binding);
+            } else {
+                regex.add(binding);
+            }
+        }
+
+        /**
+         * Returns the bindings that can match the path in registration order. Bindings from the trie do match,
+         * regular expression bindings still need to be evaluated.
+         */
+        private List<PatternBinding> candidates(@NotNull String path) {
+            final List<PatternBinding> candidates = new ArrayList<>(regex);
+            final int size = candidates.size();
+
+            trie.find(path, candidates);
+
+            // the regex list is already ordered, only sort when the trie added to it
+            if (candidates.size() > size && candidates.size() > 1) {
+                Collections.sort(candidates, ORDER);
+            }
+
+            return candidates;
+        }
+
+        @Override
+        public Iterator<PatternBinding> iterator() {
+            return bindings.iterator();
         }
     }
 
@@ -865,13 +983,22 @@ public class Router extends AbstractMiddleware {
 
         private final List<Middleware> middleware = new ArrayList<>();
         private final Set<String> paramNames;
+        // segment index of each named param when the route is resolved by the trie
+        private final Map<String, Integer> segments;
+
+        // position in the verb bindings
+        private int order;
+
+        // time spent in the binding per request
+        private final LatencyHistogram latency = new LatencyHistogram();
 
         private final ObjectName objectName;
 
-        private PatternBinding(int hasCode, @NotNull String verb, @Nullable String route, @NotNull Pattern pattern, @Nullable Set<String> paramNames, @NotNull Middleware[] middleware) {
+        private PatternBinding(int hasCode, @NotNull String verb, @Nullable String route, @NotNull Pattern pattern, @Nullable Set<String> paramNames, @Nullable Map<String, Integer> segments, @NotNull Middleware[] middleware) {
             this.route = route;
             this.pattern = pattern;
             this.paramNames = paramNames;
+            this.segments = segments;
             Collections.addAll(this.middleware, middleware);
 
             // register on JMX
@@ -888,7 +1015,7 @@ public class Router extends AbstractMiddleware {
             }
 
             try {
-                mbs.registerMBean(new RouteMBean(this.middleware), objectName);
+                mbs.registerMBean(new RouteMBean(this.middleware, latency), objectName);
             } catch (InstanceAlreadyExistsException e) {
                 // ignore
             } catch (MBeanRegistrationException | NotCompliantMBeanException e) {
@@ -910,7 +1037,7 @@ public class Router extends AbstractMiddleware {
 
             // re register if present
             try {
-                mbs.registerMBean(new RouteMBean(this.middleware), objectName);
+                mbs.registerMBean(new RouteMBean(this.middleware, latency), objectName);
             } catch (InstanceAlreadyExistsException e) {
                 // ignore
             } catch (MBeanRegistrationException | NotCompliantMBeanException e) {
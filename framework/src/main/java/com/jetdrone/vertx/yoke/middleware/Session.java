@@ -10,6 +10,7 @@ import org.vertx.java.core.Handler;
 
 import com.jetdrone.vertx.yoke.Middleware;
 import com.jetdrone.vertx.yoke.core.YokeCookie;
+import com.jetdrone.vertx.yoke.security.CookieSigner;
 import com.jetdrone.vertx.yoke.store.json.SessionObject;
 
 /**
@@ -17,19 +18,23 @@ import com.jetdrone.vertx.yoke.store.json.SessionObject;
  */
 public class Session implements Middleware {
 
-    private final Mac hmacSHA256;
+    private final CookieSigner signer;
 
     private final String name;
     private final String path;
     private final Boolean httpOnly;
     private final long maxAge;
 
-    public Session(@NotNull final String name, @NotNull final String path, final boolean httpOnly, final long maxAge, @NotNull final Mac mac) {
+    public Session(@NotNull final String name, @NotNull final String path, final boolean httpOnly, final long maxAge, @NotNull final CookieSigner signer) {
         this.name = name;
         this.path = path;
         this.httpOnly = httpOnly;
         this.maxAge = maxAge;
-        hmacSHA256 = mac;
+        this.signer = signer;
+    }
+
+    public Session(@NotNull final String name, @NotNull final String path, final boolean httpOnly, final long maxAge, @NotNull final Mac mac) {
+        this(name, path, httpOnly, maxAge, new CookieSigner(mac));
     }
 
     public Session(@NotNull final String path, final boolean httpOnly, final long maxAge, @NotNull final Mac mac) {
@@ -48,10 +53,14 @@ public class Session implements Middleware {
         this("yoke.sess", "/", true, 60 * 60 * 1000, mac);
     }
 
+    public Session(@NotNull final CookieSigner signer) {
+        this("yoke.sess", "/", true, 60 * 60 * 1000, signer);
+    }
+
     @Override
     public void handle(@NotNull final YokeRequest request, @NotNull final Handler<Object> next) {
         // default session
-        final YokeCookie cookie = new YokeCookie(name, hmacSHA256);
+        final YokeCookie cookie = new YokeCookie(name, signer);
         cookie.setPath(path);
         cookie.setHttpOnly(httpOnly);
         cookie.setMaxAge(maxAge);
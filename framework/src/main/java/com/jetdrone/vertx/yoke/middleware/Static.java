@@ -3,30 +3,58 @@
  */
 package com.jetdrone.vertx.yoke.middleware;
 
+import com.jetdrone.vertx.yoke.Middleware;
 import com.jetdrone.vertx.yoke.MimeType;
+import com.jetdrone.vertx.yoke.Yoke;
+import com.jetdrone.vertx.yoke.core.impl.AssetCache;
+import com.jetdrone.vertx.yoke.core.impl.ByteRanges;
+import com.jetdrone.vertx.yoke.core.impl.ThreadLocalUTCDateFormat;
 import com.jetdrone.vertx.yoke.util.Utils;
+import io.netty.buffer.Unpooled;
 import org.jetbrains.annotations.NotNull;
 import org.vertx.java.core.*;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.file.AsyncFile;
 import org.vertx.java.core.file.FileProps;
 import org.vertx.java.core.file.FileSystem;
 import org.vertx.java.core.json.JsonArray;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.TimeZone;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * # Static
  *
  * Static file server with the given ```root``` path. Optionaly will also generate index pages for directory listings.
+ *
+ * An optional in memory cache can be enabled with #cache. Cached assets are served without any file system access,
+ * their headers are computed once and small files are kept in memory (optionally with a precomputed gzip variant, see
+ * #precompress). Cached entries are revalidated against the file system on a timer instead of on every request.
+ *
+ * With #compressedSiblings enabled, files are served from a prebuilt `.br` or `.gz` file next to them when the client
+ * accepts that encoding, so large assets keep the zero copy sendFile and are still transferred compressed.
+ *
+ * Uncompressed responses support byte ranges (`Range` and `If-Range`), answering with `206 Partial Content` and
+ * `multipart/byteranges` for multiple ranges. Partial content is streamed from the file without loading it.
+ *
+ * <pre>
+ * new Yoke(...)
+ *   .use(new Static("webroot").cache(16 * 1024 * 1024, 256 * 1024, 5000).precompress(Pattern.compile("text|javascript")));
+ * </pre>
  */
 public class Static extends AbstractMiddleware {
 
     /**
-     * SimpleDateFormat to format date objects into ISO format.
+     * Formats date objects into the HTTP date format, one formatter per thread.
      */
-    private final SimpleDateFormat ISODATE;
+    private static final ThreadLocalUTCDateFormat ISODATE = new ThreadLocalUTCDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz");
 
     /**
      * Cache for the HTML template of the directory listing page
@@ -53,6 +81,61 @@ public class Static extends AbstractMiddleware {
      */
     private final boolean includeHidden;
 
+    /**
+     * In memory asset cache, null when disabled
+     */
+    private AssetCache cache;
+
+    /**
+     * Files larger than this are cached without their content and sent with sendFile
+     */
+    private long maxFileSize;
+
+    /**
+     * Interval in ms between revalidations of the cached assets, 0 to never revalidate
+     */
+    private long revalidate;
+
+    /**
+     * Content types that get a precomputed gzip variant in the cache
+     */
+    private Pattern precompress;
+
+    /**
+     * Serve prebuilt .br/.gz files next to the requested file
+     */
+    private boolean compressedSiblings;
+
+    /**
+     * Encodings of the prebuilt sibling files in order of preference and their file extensions
+     */
+    private static final String[] ENCODINGS = {"br", "gzip"};
+    private static final String[] EXTENSIONS = {".br", ".gz"};
+
+    /**
+     * Size of the reads when streaming byte ranges
+     */
+    private static final int RANGE_CHUNK = 64 * 1024;
+
+    /**
+     * Formatted date header of a second
+     */
+    private static final class DateHeader {
+        final long second;
+        final String value;
+
+        DateHeader(long second, String value) {
+            this.second = second;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Date header, refreshed once per second. Replaced as a whole so threads sharing the middleware never see the
+     * value of another second.
+     */
+    private volatile DateHeader dateHeader = new DateHeader(-1, null);
+
     /**
      * Create a new Static File Server Middleware
      *
@@ -78,9 +161,6 @@ public class Static extends AbstractMiddleware {
         this.includeHidden = includeHidden;
         this.directoryListing = directoryListing;
         this.directoryTemplate = Utils.readResourceToBuffer(getClass(), "directory.html").toString();
-
-        ISODATE = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz");
-        ISODATE.setTimeZone(TimeZone.getTimeZone("UTC"));
     }
 
     /**
@@ -113,6 +193,61 @@ public class Static extends AbstractMiddleware {
         this(root, 86400000, false, false);
     }
 
+    /**
+     * Enables the in memory asset cache.
+     *
+     * @param maxBytes    memory budget for the cache, least recently used assets are evicted when it is exceeded
+     * @param maxFileSize files up to this size keep their content in memory, larger files only keep their metadata
+     * @param revalidate  interval in ms to verify the cached assets against the file system, 0 to never revalidate
+     * @return self
+     */
+    public Static cache(final long maxBytes, final long maxFileSize, final long revalidate) {
+        this.cache = new AssetCache(maxBytes);
+        this.maxFileSize = maxFileSize;
+        this.revalidate = revalidate;
+        return this;
+    }
+
+    /**
+     * Precompute gzip variants of the cached assets whose content type matches the given pattern. Clients that accept
+     * gzip get the compressed variant without any per request compression.
+     *
+     * @param filter Regular expression to specify which mime types are precompressed
+     * @return self
+     */
+    public Static precompress(@NotNull final Pattern filter) {
+        this.precompress = filter;
+        return this;
+    }
+
+    /**
+     * Serve prebuilt compressed files. When the client accepts `br` or `gzip` and a file with the same name plus `.br`
+     * or `.gz` exists, that file is sent with the matching `content-encoding` instead of the original.
+     *
+     * @param enable true to look for compressed siblings
+     * @return self
+     */
+    public Static compressedSiblings(final boolean enable) {
+        this.compressedSiblings = enable;
+        return this;
+    }
+
+    @Override
+    public Middleware init(@NotNull final Yoke yoke, @NotNull final String mount) {
+        super.init(yoke, mount);
+
+        if (cache != null && revalidate > 0) {
+            vertx().setPeriodic(revalidate, new Handler<Long>() {
+                @Override
+                public void handle(Long timerId) {
+                    revalidate();
+                }
+            });
+        }
+
+        return this;
+    }
+
     /**
      * Create all required header so content can be cache by Caching servers or Browsers
      *
@@ -120,15 +255,19 @@ public class Static extends AbstractMiddleware {
      * @param props
      */
     private void writeHeaders(final YokeRequest request, final FileProps props) {
+        writeHeaders(request, etag(props), ISODATE.format(props.lastModifiedTime()));
+    }
+
+    private void writeHeaders(final YokeRequest request, final String etag, final String lastModified) {
 
         MultiMap headers = request.response().headers();
 
         if (!headers.contains("etag")) {
-            headers.set("etag", "\"" + props.size() + "-" + props.lastModifiedTime().getTime() + "\"");
+            headers.set("etag", etag);
         }
 
         if (!headers.contains("date")) {
-            headers.set("date", ISODATE.format(new Date()));
+            headers.set("date", now());
         }
 
         if (!headers.contains("cache-control")) {
@@ -136,8 +275,25 @@ public class Static extends AbstractMiddleware {
         }
 
         if (!headers.contains("last-modified")) {
-            headers.set("last-modified", ISODATE.format(props.lastModifiedTime()));
+            headers.set("last-modified", lastModified);
+        }
+    }
+
+    private static String etag(final FileProps props) {
+        return "\"" + props.size() + "-" + props.lastModifiedTime().getTime() + "\"";
+    }
+
+    /**
+     * The date header has a resolution of seconds so there is no need to format it on every request
+     */
+    private String now() {
+        final long second = System.currentTimeMillis() / 1000;
+        DateHeader header = dateHeader;
+        if (second != header.second) {
+            header = new DateHeader(second, ISODATE.format(new Date(second * 1000)));
+            dateHeader = header;
         }
+        return header.value;
     }
 
     /**
@@ -146,19 +302,543 @@ public class Static extends AbstractMiddleware {
      * @param request
      * @param file
      * @param props
+     * @param next
      */
-    private void sendFile(final YokeRequest request, final String file, final FileProps props) {
+    private void sendFile(final YokeRequest request, final String file, final FileProps props, final Handler<Object> next) {
+        if (compressedSiblings) {
+            sendSibling(request, file, props.size(), 0, next);
+        } else {
+            sendFile(request, file, file, props.size(), null, next);
+        }
+    }
+
+    /**
+     * Write a file into the response body
+     *
+     * @param request
+     * @param file     the requested file, used for the content type
+     * @param path     the file to send, either the requested file or a compressed sibling
+     * @param size     size of the file to send
+     * @param encoding content encoding of the file to send, null if not compressed
+     * @param next
+     */
+    private void sendFile(final YokeRequest request, final String file, final String path, final long size, final String encoding, final Handler<Object> next) {
+        final YokeResponse response = request.response();
         // write content type
         String contentType = MimeType.getMime(file);
         String charset = MimeType.getCharset(contentType);
-        request.response().setContentType(contentType, charset);
-        request.response().putHeader("Content-Length", Long.toString(props.size()));
+        response.setContentType(contentType, charset);
+
+        if (encoding != null) {
+            // already compressed, a Compress filter must not compress it again
+            response.setFilter(null);
+            response.putHeader("content-encoding", encoding);
+        } else {
+            response.putHeader("accept-ranges", "bytes");
+            final List<long[]> ranges = ranges(request, size);
+            if (ranges != null) {
+                sendRanges(request, path, null, size, ranges, next);
+                return;
+            }
+        }
+
+        response.putHeader("Content-Length", Long.toString(size));
 
         // head support
         if ("HEAD".equals(request.method())) {
-            request.response().end();
+            response.end();
+        } else {
+            response.sendFile(path);
+        }
+    }
+
+    /**
+     * Looks for a compressed sibling the client accepts, starting at the given encoding, and sends it. If there is none
+     * the original file is sent.
+     *
+     * @param request
+     * @param file
+     * @param size  size of the original file
+     * @param index first encoding to try
+     * @param next
+     */
+    private void sendSibling(final YokeRequest request, final String file, final long size, final int index, final Handler<Object> next) {
+        final String accept = request.getHeader("accept-encoding");
+        request.response().putHeader("vary", "accept-encoding");
+
+        for (int i = index; i < ENCODINGS.length; i++) {
+            if (accepts(accept, ENCODINGS[i])) {
+                final int current = i;
+                final String sibling = file + EXTENSIONS[i];
+
+                fileSystem().props(sibling, new AsyncResultHandler<FileProps>() {
+                    @Override
+                    public void handle(AsyncResult<FileProps> props) {
+                        if (props.succeeded() && props.result().isRegularFile()) {
+                            sendFile(request, file, sibling, props.result().size(), ENCODINGS[current], next);
+                        } else {
+                            sendSibling(request, file, size, current + 1, next);
+                        }
+                    }
+                });
+                return;
+            }
+        }
+
+        sendFile(request, file, file, size, null, next);
+    }
+
+    /**
+     * Collects the size and modification time of the compressed siblings of a file, -1 for the missing ones.
+     *
+     * @param file
+     * @param siblings size and modification time pairs found so far, indexed as ENCODINGS
+     * @param index    next encoding to look up
+     * @param handler  called with all the pairs
+     */
+    private void findSiblings(final String file, final long[] siblings, final int index, final Handler<long[]> handler) {
+        if (index == ENCODINGS.length) {
+            handler.handle(siblings);
+            return;
+        }
+
+        fileSystem().props(file + EXTENSIONS[index], new AsyncResultHandler<FileProps>() {
+            @Override
+            public void handle(AsyncResult<FileProps> props) {
+                if (props.succeeded() && props.result().isRegularFile()) {
+                    siblings[index * 2] = props.result().size();
+                    siblings[index * 2 + 1] = props.result().lastModifiedTime().getTime();
+                } else {
+                    siblings[index * 2] = -1;
+                    siblings[index * 2 + 1] = -1;
+                }
+                findSiblings(file, siblings, index + 1, handler);
+            }
+        });
+    }
+
+    /**
+     * Verifies if a content coding is acceptable according to an accept-encoding header.
+     *
+     * @param accept accept-encoding header value, may be null
+     * @param coding content coding
+     * @return true if the coding is listed with a non zero quality
+     */
+    private static boolean accepts(final String accept, final String coding) {
+        if (accept == null) {
+            return false;
+        }
+
+        for (String token : accept.split(",")) {
+            String[] parts = token.split(";");
+            if (coding.equalsIgnoreCase(parts[0].trim())) {
+                for (int i = 1; i < parts.length; i++) {
+                    String param = parts[i].trim();
+                    if (param.startsWith("q=")) {
+                        try {
+                            return Double.parseDouble(param.substring(2)) > 0;
+                        } catch (NumberFormatException e) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Reads a file into the cache and sends it
+     *
+     * @param request
+     * @param file
+     * @param props
+     * @param next
+     */
+    private void cacheFile(final YokeRequest request, final String file, final FileProps props, final Handler<Object> next) {
+        final String contentType = MimeType.getMime(file);
+        final String charset = MimeType.getCharset(contentType);
+        final String etag = etag(props);
+        final String lastModified = ISODATE.format(props.lastModifiedTime());
+
+        if (props.size() > maxFileSize) {
+            if (compressedSiblings) {
+                findSiblings(file, new long[ENCODINGS.length * 2], 0, new Handler<long[]>() {
+                    @Override
+                    public void handle(long[] siblings) {
+                        final AssetCache.Entry entry = new AssetCache.Entry(file, props.size(), props.lastModifiedTime().getTime(),
+                                etag, lastModified, contentType, charset, null, null, siblings[0], siblings[1], siblings[2], siblings[3]);
+                        cache.put(entry);
+                        sendEntry(request, entry, next);
+                    }
+                });
+            } else {
+                final AssetCache.Entry entry = new AssetCache.Entry(file, props.size(), props.lastModifiedTime().getTime(),
+                        etag, lastModified, contentType, charset, null, null, -1, -1, -1, -1);
+                cache.put(entry);
+                sendEntry(request, entry, next);
+            }
+            return;
+        }
+
+        fileSystem().readFile(file, new AsyncResultHandler<Buffer>() {
+            @Override
+            public void handle(AsyncResult<Buffer> asyncResult) {
+                if (asyncResult.failed()) {
+                    next.handle(asyncResult.cause());
+                    return;
+                }
+
+                final byte[] body = asyncResult.result().getBytes();
+                byte[] gzip = null;
+
+                if (precompress != null && precompress.matcher(contentType).find()) {
+                    gzip = gzip(body);
+                }
+
+                final AssetCache.Entry entry = new AssetCache.Entry(file, body.length, props.lastModifiedTime().getTime(),
+                        etag, lastModified, contentType, charset, body, gzip, -1, -1, -1, -1);
+                cache.put(entry);
+                sendEntry(request, entry, next);
+            }
+        });
+    }
+
+    /**
+     * Write a cached asset into the response body
+     *
+     * @param request
+     * @param entry
+     * @param next
+     */
+    private void sendEntry(final YokeRequest request, final AssetCache.Entry entry, final Handler<Object> next) {
+        final YokeResponse response = request.response();
+        response.setContentType(entry.contentType, entry.charset);
+
+        if (entry.body == null) {
+            final String accept = request.getHeader("accept-encoding");
+
+            if (compressedSiblings) {
+                response.putHeader("vary", "accept-encoding");
+            }
+
+            if (entry.brSize >= 0 && accepts(accept, "br")) {
+                sendFile(request, entry.file, entry.file + ".br", entry.brSize, "br", next);
+            } else if (entry.gzSize >= 0 && accepts(accept, "gzip")) {
+                sendFile(request, entry.file, entry.file + ".gz", entry.gzSize, "gzip", next);
+            } else {
+                sendFile(request, entry.file, entry.file, entry.size, null, next);
+            }
+            return;
+        }
+
+        byte[] body = entry.body;
+
+        if (entry.gzip != null) {
+            response.putHeader("vary", "accept-encoding");
+            final String accept = request.getHeader("accept-encoding");
+            if (accepts(accept, "gzip") || (accept != null && "*".equals(accept.trim()))) {
+                // already compressed, a Compress filter must not compress it again
+                response.setFilter(null);
+                response.putHeader("content-encoding", "gzip");
+                body = entry.gzip;
+            }
+        }
+
+        if (body == entry.body) {
+            response.putHeader("accept-ranges", "bytes");
+            final List<long[]> ranges = ranges(request, body.length);
+            if (ranges != null) {
+                sendRanges(request, entry.file, body, body.length, ranges, next);
+                return;
+            }
+        }
+
+        response.putHeader("Content-Length", Integer.toString(body.length));
+
+        if ("HEAD".equals(request.method())) {
+            response.end();
         } else {
-            request.response().sendFile(file);
+            // wrap instead of copy, the channel releases its own buffer and the cached array stays untouched
+            response.end(new Buffer(Unpooled.wrappedBuffer(body)));
+        }
+    }
+
+    /**
+     * Evaluates the Range and If-Range headers of a request. The response must already have its validators (etag and
+     * last-modified) set.
+     *
+     * @param request
+     * @param size size of the content
+     * @return the ranges to send, empty if not satisfiable or null to send the full content
+     */
+    private static List<long[]> ranges(final YokeRequest request, final long size) {
+        if (!"GET".equals(request.method())) {
+            return null;
+        }
+
+        final String range = request.getHeader("range");
+        if (range == null) {
+            return null;
+        }
+
+        final String ifRange = request.getHeader("if-range");
+        if (ifRange != null) {
+            if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+                // only strong entity tags can be used for ranges
+                if (!ifRange.equals(request.response().getHeader("etag"))) {
+                    return null;
+                }
+            } else if (!ifRange.equals(request.response().getHeader("last-modified"))) {
+                return null;
+            }
+        }
+
+        return ByteRanges.parse(range, size);
+    }
+
+    /**
+     * Sends a 206 Partial Content response (or a 416 if no range can be satisfied). The content comes from memory if
+     * the body is given, otherwise it is streamed from the file.
+     *
+     * @param request
+     * @param path   the file to read from
+     * @param body   the content if kept in memory, or null
+     * @param size   size of the full content
+     * @param ranges the ranges to send
+     * @param next
+     */
+    private void sendRanges(final YokeRequest request, final String path, final byte[] body, final long size, final List<long[]> ranges, final Handler<Object> next) {
+        final YokeResponse response = request.response();
+        // partial content is sent as is
+        response.setFilter(null);
+
+        if (ranges.isEmpty()) {
+            response.setStatusCode(416);
+            response.putHeader("content-range", "bytes */" + size);
+            response.end();
+            return;
+        }
+
+        final Buffer[] heads;
+        final Buffer tail;
+        long length = 0;
+
+        if (ranges.size() == 1) {
+            final long[] range = ranges.get(0);
+            response.putHeader("content-range", "bytes " + range[0] + "-" + range[1] + "/" + size);
+            heads = null;
+            tail = null;
+        } else {
+            final String boundary = UUID.randomUUID().toString();
+            final String contentType = response.getHeader("content-type");
+            response.putHeader("content-type", "multipart/byteranges; boundary=" + boundary);
+
+            heads = new Buffer[ranges.size()];
+            for (int i = 0; i < heads.length; i++) {
+                final long[] range = ranges.get(i);
+                heads[i] = new Buffer((i == 0 ? "" : "\r\n") + "--" + boundary + "\r\n" +
+                        "Content-Type: " + contentType + "\r\n" +
+                        "Content-Range: bytes " + range[0] + "-" + range[1] + "/" + size + "\r\n\r\n");
+                length += heads[i].length();
+            }
+            tail = new Buffer("\r\n--" + boundary + "--\r\n");
+            length += tail.length();
+        }
+
+        for (long[] range : ranges) {
+            length += range[1] - range[0] + 1;
+        }
+
+        response.setStatusCode(206);
+        response.putHeader("Content-Length", Long.toString(length));
+
+        if (body != null) {
+            final Buffer buffer = new Buffer((int) length);
+            for (int i = 0; i < ranges.size(); i++) {
+                final long[] range = ranges.get(i);
+                if (heads != null) {
+                    buffer.appendBuffer(heads[i]);
+                }
+                buffer.appendBytes(body, (int) range[0], (int) (range[1] - range[0] + 1));
+            }
+            if (tail != null) {
+                buffer.appendBuffer(tail);
+            }
+            response.end(buffer);
+            return;
+        }
+
+        fileSystem().open(path, null, true, false, false, new AsyncResultHandler<AsyncFile>() {
+            @Override
+            public void handle(AsyncResult<AsyncFile> asyncResult) {
+                if (asyncResult.failed()) {
+                    next.handle(asyncResult.cause());
+                } else {
+                    new RangeWriter(response, asyncResult.result(), ranges, heads, tail).pump();
+                }
+            }
+        });
+    }
+
+    /**
+     * Streams byte ranges from a file into a response, one chunk at a time, respecting the response write queue.
+     */
+    private static final class RangeWriter implements Handler<Void> {
+
+        private final YokeResponse response;
+        private final AsyncFile file;
+        private final List<long[]> ranges;
+        private final Buffer[] heads;
+        private final Buffer tail;
+
+        private int index;
+        private long position = -1;
+        private boolean draining;
+        private boolean closed;
+
+        RangeWriter(YokeResponse response, AsyncFile file, List<long[]> ranges, Buffer[] heads, Buffer tail) {
+            this.response = response;
+            this.file = file;
+            this.ranges = ranges;
+            this.heads = heads;
+            this.tail = tail;
+
+            // also called when the client goes away, the drain would never come
+            response.endHandler(new Handler<Void>() {
+                @Override
+                public void handle(Void event) {
+                    close();
+                }
+            });
+        }
+
+        private void close() {
+            if (!closed) {
+                closed = true;
+                file.close();
+            }
+        }
+
+        @Override
+        public void handle(Void event) {
+            // drain handler
+            if (draining) {
+                draining = false;
+                pump();
+            }
+        }
+
+        void pump() {
+            if (closed) {
+                return;
+            }
+
+            if (response.writeQueueFull()) {
+                draining = true;
+                response.drainHandler(this);
+                return;
+            }
+
+            if (index == ranges.size()) {
+                if (tail != null) {
+                    response.write(tail);
+                }
+                close();
+                response.end();
+                return;
+            }
+
+            final long[] range = ranges.get(index);
+
+            if (position == -1) {
+                if (heads != null) {
+                    response.write(heads[index]);
+                }
+                position = range[0];
+            }
+
+            final int len = (int) Math.min(RANGE_CHUNK, range[1] - position + 1);
+
+            file.read(new Buffer(len), 0, position, len, new AsyncResultHandler<Buffer>() {
+                @Override
+                public void handle(AsyncResult<Buffer> asyncResult) {
+                    if (closed) {
+                        // the client went away during the read
+                        return;
+                    }
+
+                    if (asyncResult.failed()) {
+                        // headers are already sent, the only option is to abort the response
+                        close();
+                        response.close();
+                        return;
+                    }
+
+                    response.write(asyncResult.result());
+                    position += len;
+                    if (position > range[1]) {
+                        index++;
+                        position = -1;
+                    }
+                    pump();
+                }
+            });
+        }
+    }
+
+    /**
+     * Compresses a body, returns null if compression does not make it smaller
+     */
+    private static byte[] gzip(final byte[] body) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 2 + 32);
+        try {
+            final GZIPOutputStream out = new GZIPOutputStream(bytes) {
+                {
+                    def.setLevel(Deflater.BEST_COMPRESSION);
+                }
+            };
+            out.write(body);
+            out.close();
+        } catch (IOException e) {
+            return null;
+        }
+
+        return bytes.size() < body.length ? bytes.toByteArray() : null;
+    }
+
+    /**
+     * Verifies all cached assets against the file system, assets that changed or were removed are evicted and will be
+     * loaded again on the next request. The compressed siblings of an asset are verified too, as their sizes are sent
+     * as Content-Length.
+     */
+    private void revalidate() {
+        final FileSystem fileSystem = fileSystem();
+
+        for (final AssetCache.Entry entry : cache.entries()) {
+            fileSystem.props(entry.file, new AsyncResultHandler<FileProps>() {
+                @Override
+                public void handle(AsyncResult<FileProps> props) {
+                    if (props.failed() || !props.result().isRegularFile() ||
+                            props.result().size() != entry.size ||
+                            props.result().lastModifiedTime().getTime() != entry.lastModified) {
+                        cache.remove(entry.file);
+                    } else if (compressedSiblings && entry.body == null) {
+                        findSiblings(entry.file, new long[ENCODINGS.length * 2], 0, new Handler<long[]>() {
+                            @Override
+                            public void handle(long[] siblings) {
+                                // changed, removed or added siblings
+                                if (siblings[0] != entry.brSize || siblings[1] != entry.brModified ||
+                                        siblings[2] != entry.gzSize || siblings[3] != entry.gzModified) {
+                                    cache.remove(entry.file);
+                                }
+                            }
+                        });
+                    }
+                }
+            });
         }
     }
 
@@ -347,6 +1027,21 @@ public class Static extends AbstractMiddleware {
                 }
             }
 
+            if (cache != null) {
+                final AssetCache.Entry entry = cache.get(file);
+                if (entry != null) {
+                    // served from memory, no file system access
+                    writeHeaders(request, entry.etag, entry.lastModifiedHeader);
+                    if (isFresh(request)) {
+                        request.response().setStatusCode(304);
+                        request.response().end();
+                    } else {
+                        sendEntry(request, entry, next);
+                    }
+                    return;
+                }
+            }
+
             final FileSystem fileSystem = vertx().fileSystem();
 
             fileSystem.exists(file, new AsyncResultHandler<Boolean>() {
@@ -387,8 +1082,10 @@ public class Static extends AbstractMiddleware {
                                             if (isFresh(request)) {
                                                 request.response().setStatusCode(304);
                                                 request.response().end();
+                                            } else if (cache != null) {
+                                                cacheFile(request, file, props.result(), next);
                                             } else {
-                                                sendFile(request, file, props.result());
+                                                sendFile(request, file, props.result(), next);
                                             }
                                         }
                                     }
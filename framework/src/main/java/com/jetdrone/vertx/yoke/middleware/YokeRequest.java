@@ -35,6 +35,7 @@ import org.vertx.java.core.net.NetSocket;
 import com.jetdrone.vertx.yoke.core.Context;
 import com.jetdrone.vertx.yoke.core.YokeCookie;
 import com.jetdrone.vertx.yoke.core.YokeFileUpload;
+import com.jetdrone.vertx.yoke.store.DeltaSessionStore;
 import com.jetdrone.vertx.yoke.store.SessionStore;
 import com.jetdrone.vertx.yoke.store.json.SessionObject;
 
@@ -90,6 +91,8 @@ public class YokeRequest implements HttpServerRequest {
     private Set<YokeCookie> cookies;
     // control flags
     private boolean expectMultiPartCalled = false;
+    // body bytes handed to the data and body handlers
+    private long bytesRead;
 
     public YokeRequest(@NotNull final HttpServerRequest request, @NotNull final YokeResponse response, @NotNull final Context context, @NotNull final SessionStore store) {
         this.context = context;
@@ -263,6 +266,12 @@ public class YokeRequest implements HttpServerRequest {
         }
     }
 
+    /** Returns the number of body bytes received so far by the data or body handlers.
+     */
+    public long bytesRead() {
+        return bytesRead;
+    }
+
     /** The request body and eventually a parsed version of it in json or map */
     @SuppressWarnings("unchecked")
     public <V> V body() {
@@ -362,7 +371,7 @@ public class YokeRequest implements HttpServerRequest {
                         if (responseStatus >= 200 && responseStatus < 400) {
                         	SessionObject session = get("session");
                             if (session != null && session.isChanged()) {
-                                store.set(sessionId, session.jsonObject(), new Handler<Object>() {
+                                final Handler<Object> callback = new Handler<Object>() {
                                     @Override
                                     public void handle(Object error) {
                                         if (error != null) {
@@ -370,7 +379,14 @@ public class YokeRequest implements HttpServerRequest {
                                             System.err.println(error);
                                         }
                                     }
-                                });
+                                };
+
+                                // only the modified fields need to be written
+                                if (store instanceof DeltaSessionStore) {
+                                    ((DeltaSessionStore) store).update(sessionId, session.jsonObject(), session.changedFields(), callback);
+                                } else {
+                                    store.set(sessionId, session.jsonObject(), callback);
+                                }
                             }
                         }
                     }
@@ -804,8 +820,18 @@ public class YokeRequest implements HttpServerRequest {
     }
 
     @Override
-    public YokeRequest bodyHandler(Handler<Buffer> bodyHandler) {
-        request.bodyHandler(bodyHandler);
+    public YokeRequest bodyHandler(final Handler<Buffer> bodyHandler) {
+        if (bodyHandler == null) {
+            request.bodyHandler(null);
+        } else {
+            request.bodyHandler(new Handler<Buffer>() {
+                @Override
+                public void handle(Buffer body) {
+                    bytesRead += body.length();
+                    bodyHandler.handle(body);
+                }
+            });
+        }
         return this;
     }
 
@@ -843,8 +869,18 @@ public class YokeRequest implements HttpServerRequest {
     }
 
     @Override
-    public YokeRequest dataHandler(Handler<Buffer> handler) {
-        request.dataHandler(handler);
+    public YokeRequest dataHandler(final Handler<Buffer> handler) {
+        if (handler == null) {
+            request.dataHandler(null);
+        } else {
+            request.dataHandler(new Handler<Buffer>() {
+                @Override
+                public void handle(Buffer chunk) {
+                    bytesRead += chunk.length();
+                    handler.handle(chunk);
+                }
+            });
+        }
         return this;
     }
 
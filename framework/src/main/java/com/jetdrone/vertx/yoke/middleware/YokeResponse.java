@@ -43,10 +43,16 @@ public class YokeResponse implements HttpServerResponse {
     private List<Handler<Void>> headersHandler;
     private boolean headersHandlerTriggered;
     private List<Handler<Void>> endHandler;
+    private boolean endHandlerTriggered;
+    // the native close handler is installed once and calls the user one
+    private Handler<Void> closeHandler;
+    private boolean closeHandlerInstalled;
 
     // writer filter
     private WriterFilter filter;
     private boolean hasBody;
+    // body bytes handed to the connection, after the filter
+    private long bytesWritten;
 
     public YokeResponse(HttpServerResponse response, Context context, Map<String, Engine> engines) {
         this.response = response;
@@ -64,6 +70,23 @@ public class YokeResponse implements HttpServerResponse {
         this.filter = filter;
     }
 
+    HttpServerResponse nativeResponse() {
+        return response;
+    }
+
+    /**
+     * Number of body bytes written so far, after compression. Files and streams sent to the response are not counted.
+     */
+    public long bytesWritten() {
+        // streaming filters write compressed chunks themselves
+        return filter == null ? bytesWritten : bytesWritten + filter.bytesWritten();
+    }
+
+    private Buffer count(Buffer chunk) {
+        bytesWritten += chunk.length();
+        return chunk;
+    }
+
     // extension to default interface
 
     public YokeResponse setContentType(String contentType) {
@@ -272,11 +295,31 @@ public class YokeResponse implements HttpServerResponse {
         }
     }
 
+    /**
+     * Handlers called once, when the response ends or when the connection closes before it ended.
+     */
     public void endHandler(Handler<Void> handler) {
         if (endHandler == null) {
             endHandler = new ArrayList<>();
         }
         endHandler.add(handler);
+        installCloseHandler();
+    }
+
+    private void installCloseHandler() {
+        if (!closeHandlerInstalled) {
+            closeHandlerInstalled = true;
+            response.closeHandler(new Handler<Void>() {
+                @Override
+                public void handle(Void event) {
+                    if (closeHandler != null) {
+                        closeHandler.handle(null);
+                    }
+                    // the client went away, the response will not end
+                    triggerEndHandlers();
+                }
+            });
+        }
     }
 
     private void triggerHeadersHandlers() {
@@ -312,7 +355,8 @@ public class YokeResponse implements HttpServerResponse {
     }
 
     private void triggerEndHandlers() {
-        if (endHandler != null) {
+        if (!endHandlerTriggered && endHandler != null) {
+            endHandlerTriggered = true;
             for (Handler<Void> handler : endHandler) {
                 handler.handle(null);
             }
@@ -414,7 +458,8 @@ public class YokeResponse implements HttpServerResponse {
 
     @Override
     public YokeResponse closeHandler(Handler<Void> handler) {
-        response.closeHandler(handler);
+        closeHandler = handler;
+        installCloseHandler();
         return this;
     }
 
@@ -423,7 +468,7 @@ public class YokeResponse implements HttpServerResponse {
         hasBody = true;
         triggerHeadersHandlers();
         if (filter == null) {
-            response.write(chunk);
+            response.write(count(chunk));
         } else {
             filter.write(chunk);
         }
@@ -452,7 +497,8 @@ public class YokeResponse implements HttpServerResponse {
         hasBody = true;
         triggerHeadersHandlers();
         if (filter == null) {
-            response.write(chunk, enc);
+            // encoded here instead of by the connection so the size is known
+            response.write(count(new Buffer(chunk, enc)));
         } else {
             filter.write(chunk, enc);
         }
@@ -464,7 +510,7 @@ public class YokeResponse implements HttpServerResponse {
         hasBody = true;
         triggerHeadersHandlers();
         if (filter == null) {
-            response.write(chunk);
+            response.write(count(new Buffer(chunk)));
         } else {
             filter.write(chunk);
         }
@@ -476,9 +522,9 @@ public class YokeResponse implements HttpServerResponse {
         hasBody = true;
         triggerHeadersHandlers();
         if (filter == null) {
-            response.end(chunk);
+            response.end(count(new Buffer(chunk)));
         } else {
-            response.end(filter.end(chunk));
+            response.end(count(filter.end(chunk)));
         }
         triggerEndHandlers();
     }
@@ -488,9 +534,9 @@ public class YokeResponse implements HttpServerResponse {
         hasBody = true;
         triggerHeadersHandlers();
         if (filter == null) {
-            response.end(chunk, enc);
+            response.end(count(new Buffer(chunk, enc)));
         } else {
-            response.end(filter.end(chunk, enc));
+            response.end(count(filter.end(chunk, enc)));
         }
         triggerEndHandlers();
     }
@@ -499,14 +545,19 @@ public class YokeResponse implements HttpServerResponse {
     public void end(@NotNull Buffer chunk) {
         hasBody = true;
         triggerHeadersHandlers();
-        response.end(filter == null ? chunk : filter.end(chunk));
+        response.end(count(filter == null ? chunk : filter.end(chunk)));
         triggerEndHandlers();
     }
 
     @Override
     public void end() {
         triggerHeadersHandlers();
-        response.end();
+        if (filter != null && hasBody) {
+            // flush whatever the filter still holds
+            response.end(count(filter.end(new Buffer(0))));
+        } else {
+            response.end();
+        }
         triggerEndHandlers();
     }
 
@@ -80,4 +80,10 @@ public abstract class AbstractWriterFilter implements WriterFilter {
     public boolean canFilter(@NotNull final String contentType) {
         return filter.matcher(contentType).find();
     }
+
+    @Override
+    public long bytesWritten() {
+        // everything is returned by end
+        return 0;
+    }
 }
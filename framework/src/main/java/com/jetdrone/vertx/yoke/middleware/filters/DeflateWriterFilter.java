@@ -8,7 +8,7 @@ import org.jetbrains.annotations.NotNull;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.regex.Pattern;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.DeflaterOutputStream;
 
 /**
  * # DeflateWriterFilter
@@ -21,11 +21,16 @@ public class DeflateWriterFilter extends AbstractWriterFilter {
 
     @Override
     public OutputStream createOutputStream() throws IOException {
-        return new GZIPOutputStream(new OutputStream() {
+        return new DeflaterOutputStream(new OutputStream() {
             @Override
             public void write(int i) throws IOException {
                 buffer.appendByte((byte) i);
             }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                buffer.appendBytes(b, off, len);
+            }
         });
     }
 
@@ -0,0 +1,331 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.middleware.filters;
+
+import io.netty.buffer.ByteBuf;
+import org.jetbrains.annotations.NotNull;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.HttpServerResponse;
+
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * # DeflaterWriterFilter
+ *
+ * Streaming compression filter for `gzip` and `deflate` (zlib) encodings. Compressed data is written to the response
+ * as soon as the deflater produces it, so the full body is never held in memory. Once the response grows over the
+ * threshold it is sent chunked.
+ *
+ * Bodies smaller than the threshold are sent uncompressed and the `content-encoding` header is removed.
+ *
+ * Deflater instances are expensive to create (native memory), so they are pooled per thread (event loop) and returned
+ * to the pool when the response ends, or by `close()` when the connection closes before the end.
+ */
+public class DeflaterWriterFilter implements WriterFilter {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // gzip header: magic, CM=deflate, no flags, no mtime, no XFL, OS=unknown
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private static final int POOL_SIZE = 32;
+    private static final int CHUNK_SIZE = 8192;
+
+    /**
+     * Deflaters of one thread, raw deflate for gzip and zlib for deflate
+     */
+    private static final class Pool {
+        final ArrayDeque<Deflater> gzip = new ArrayDeque<>();
+        final ArrayDeque<Deflater> zlib = new ArrayDeque<>();
+
+        ArrayDeque<Deflater> get(boolean gzip) {
+            return gzip ? this.gzip : zlib;
+        }
+    }
+
+    private static final ThreadLocal<Pool> pool = new ThreadLocal<Pool>() {
+        @Override
+        protected Pool initialValue() {
+            return new Pool();
+        }
+    };
+
+    /**
+     * Per thread scratch space for the deflater output
+     */
+    private static final ThreadLocal<byte[]> scratch = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[CHUNK_SIZE];
+        }
+    };
+
+    private static Deflater acquire(boolean gzip, int level) {
+        Deflater deflater = pool.get().get(gzip).poll();
+        if (deflater == null) {
+            // gzip uses raw deflate data, header and trailer are written by this filter
+            deflater = new Deflater(level, gzip);
+        } else {
+            deflater.setLevel(level);
+        }
+        return deflater;
+    }
+
+    private static void release(Deflater deflater, boolean gzip) {
+        final ArrayDeque<Deflater> deque = pool.get().get(gzip);
+        if (deque.size() < POOL_SIZE) {
+            deflater.reset();
+            deque.offer(deflater);
+        } else {
+            deflater.end();
+        }
+    }
+
+    private final Pattern filter;
+    private final HttpServerResponse response;
+    private final boolean gzip;
+    private final int level;
+    private final int threshold;
+
+    // raw data held until the threshold is reached
+    private Buffer pending;
+    private Deflater deflater;
+    private CRC32 crc;
+    // compressed bytes written to the response by write
+    private long bytesWritten;
+    private boolean closed;
+
+    /**
+     * Creates a new streaming compression filter.
+     *
+     * @param filter    Regular expression to specify which mime types are allowed to be compressed
+     * @param response  The response where compressed data is written to
+     * @param gzip      true for gzip encoding, false for deflate (zlib)
+     * @param level     compression level 0-9 or -1 for the default level
+     * @param threshold minimum body size in bytes to compress
+     */
+    public DeflaterWriterFilter(@NotNull final Pattern filter, @NotNull final HttpServerResponse response, boolean gzip, int level, int threshold) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        this.filter = filter;
+        this.response = response;
+        this.gzip = gzip;
+        this.level = level;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public String encoding() {
+        return gzip ? "gzip" : "deflate";
+    }
+
+    @Override
+    public boolean canFilter(final String contentType) {
+        return contentType != null && filter.matcher(contentType).find();
+    }
+
+    @Override
+    public long bytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Returns the deflater to the pool when the response will not end, e.g. the client closed the connection. Later
+     * writes are discarded. Does nothing once the response ended.
+     */
+    public void close() {
+        if (!closed) {
+            closed = true;
+            pending = null;
+            if (deflater != null) {
+                release(deflater, gzip);
+                deflater = null;
+            }
+        }
+    }
+
+    @Override
+    public void write(@NotNull final Buffer buffer) {
+        final ByteBuf buf = buffer.getByteBuf();
+        if (buf.hasArray()) {
+            // avoid copying the data
+            write(buf.array(), buf.arrayOffset() + buf.readerIndex(), buf.readableBytes());
+        } else {
+            byte[] data = buffer.getBytes();
+            write(data, 0, data.length);
+        }
+    }
+
+    @Override
+    public void write(@NotNull final String chunk) {
+        byte[] data = chunk.getBytes(UTF8);
+        write(data, 0, data.length);
+    }
+
+    @Override
+    public void write(@NotNull final String chunk, @NotNull final String enc) {
+        byte[] data = chunk.getBytes(Charset.forName(enc));
+        write(data, 0, data.length);
+    }
+
+    @Override
+    public Buffer end(@NotNull final Buffer buffer) {
+        return end(buffer.getBytes());
+    }
+
+    @Override
+    public Buffer end(@NotNull final String chunk) {
+        return end(chunk.getBytes(UTF8));
+    }
+
+    @Override
+    public Buffer end(@NotNull final String chunk, @NotNull final String enc) {
+        return end(chunk.getBytes(Charset.forName(enc)));
+    }
+
+    private void write(byte[] data, int offset, int length) {
+        if (closed) {
+            return;
+        }
+
+        final Buffer out;
+
+        if (deflater == null) {
+            final int held = pending == null ? 0 : pending.length();
+
+            if (held + length < threshold) {
+                if (pending == null) {
+                    pending = new Buffer();
+                }
+                pending.appendBytes(data, offset, length);
+                return;
+            }
+
+            // threshold reached, the body is going to be compressed and streamed
+            response.headers().remove("content-length");
+            response.setChunked(true);
+
+            deflater = acquire(gzip, level);
+            out = start();
+            if (pending != null) {
+                byte[] bytes = pending.getBytes();
+                deflate(bytes, 0, bytes.length, out);
+                pending = null;
+            }
+        } else {
+            out = new Buffer(length / 2 + 64);
+        }
+
+        deflate(data, offset, length, out);
+        if (out.length() > 0) {
+            bytesWritten += out.length();
+            response.write(out);
+        }
+    }
+
+    private Buffer end(byte[] data) {
+        if (closed) {
+            return new Buffer(0);
+        }
+
+        final Buffer out;
+
+        if (deflater == null) {
+            int total = data.length + (pending == null ? 0 : pending.length());
+
+            if (total < threshold) {
+                // too small to be worth compressing
+                response.headers().remove("content-encoding");
+                if (pending == null) {
+                    return new Buffer(data);
+                }
+                return pending.appendBytes(data);
+            }
+
+            if (pending != null) {
+                data = pending.appendBytes(data).getBytes();
+                pending = null;
+            }
+
+            // the content-length would be the uncompressed size, let it be computed again
+            response.headers().remove("content-length");
+            deflater = acquire(gzip, level);
+            out = start();
+        } else {
+            out = new Buffer(data.length / 2 + 64);
+        }
+
+        try {
+            deflate(data, 0, data.length, out);
+            finish(out);
+        } finally {
+            release(deflater, gzip);
+            deflater = null;
+            closed = true;
+        }
+
+        return out;
+    }
+
+    /**
+     * Creates the output buffer for the first compressed bytes, gzip output starts with its header.
+     */
+    private Buffer start() {
+        final Buffer out = new Buffer(CHUNK_SIZE);
+        if (gzip) {
+            crc = new CRC32();
+            out.appendBytes(GZIP_HEADER);
+        }
+        return out;
+    }
+
+    private void deflate(byte[] data, int offset, int length, Buffer out) {
+        if (length == 0) {
+            return;
+        }
+        if (crc != null) {
+            crc.update(data, offset, length);
+        }
+
+        final byte[] chunk = scratch.get();
+
+        deflater.setInput(data, offset, length);
+        while (!deflater.needsInput()) {
+            int len = deflater.deflate(chunk, 0, chunk.length, Deflater.NO_FLUSH);
+            if (len > 0) {
+                out.appendBytes(chunk, 0, len);
+            }
+        }
+    }
+
+    private void finish(Buffer out) {
+        final byte[] chunk = scratch.get();
+
+        deflater.finish();
+        while (!deflater.finished()) {
+            int len = deflater.deflate(chunk, 0, chunk.length, Deflater.NO_FLUSH);
+            if (len > 0) {
+                out.appendBytes(chunk, 0, len);
+            }
+        }
+
+        if (gzip) {
+            // trailer: crc32 and input size, little endian
+            writeIntLE(out, (int) crc.getValue());
+            writeIntLE(out, (int) deflater.getBytesRead());
+        }
+    }
+
+    private static void writeIntLE(Buffer out, int value) {
+        out.appendByte((byte) value);
+        out.appendByte((byte) (value >> 8));
+        out.appendByte((byte) (value >> 16));
+        out.appendByte((byte) (value >> 24));
+    }
+}
@@ -26,6 +26,11 @@ public class GZipWriterFilter extends AbstractWriterFilter {
             public void write(int i) throws IOException {
                 buffer.appendByte((byte) i);
             }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                buffer.appendBytes(b, off, len);
+            }
         });
     }
 
@@ -28,4 +28,9 @@ public interface WriterFilter {
     Buffer end(String chunk, String enc);
 
     boolean canFilter(String contentType);
+
+    /**
+     * Number of bytes the filter wrote to the response itself, the buffers returned by end are not included.
+     */
+    long bytesWritten();
 }
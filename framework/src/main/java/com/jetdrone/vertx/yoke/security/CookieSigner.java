@@ -0,0 +1,112 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.security;
+
+import com.jetdrone.vertx.yoke.YokeSecurity;
+import org.jetbrains.annotations.NotNull;
+
+import javax.crypto.Mac;
+
+/**
+ * # CookieSigner
+ *
+ * Signs values as *&lt;value&gt;.&lt;signature&gt;* and verifies them with one or more HMAC keys. The first key signs,
+ * all keys verify, so a secret can be rotated without invalidating the cookies already issued: put the new key first
+ * and keep the old one until the cookies it signed have expired.
+ *
+ * A `Mac` is not thread safe, every thread gets its own instances so a signer can be shared by all verticles.
+ *
+ * <pre>
+ * Yoke yoke = new Yoke(...);
+ * CookieSigner signer = new CookieSigner(yoke.security(), "cookie-2014-02", "cookie-2014-01");
+ * yoke.use(new CookieParser(signer));
+ * yoke.use(new Session(signer));
+ * </pre>
+ */
+public final class CookieSigner {
+
+    private static abstract class PerThreadMac extends ThreadLocal<Mac> {
+    }
+
+    private final PerThreadMac[] macs;
+
+    /**
+     * Signs with `mac` and also verifies with the `previous` ones. The given instances are only cloned, every thread
+     * (the one creating the signer too) signs with clones of its own.
+     */
+    public CookieSigner(@NotNull final Mac mac, final Mac... previous) {
+        macs = new PerThreadMac[previous.length + 1];
+        macs[0] = perThread(mac);
+        for (int i = 0; i < previous.length; i++) {
+            macs[i + 1] = perThread(previous[i]);
+        }
+    }
+
+    /**
+     * Signs with the key of `alias` and also verifies with the keys of the `previous` aliases.
+     */
+    public CookieSigner(@NotNull final YokeSecurity security, @NotNull final String alias, final String... previous) {
+        macs = new PerThreadMac[previous.length + 1];
+        macs[0] = perThread(security, alias);
+        for (int i = 0; i < previous.length; i++) {
+            macs[i + 1] = perThread(security, previous[i]);
+        }
+    }
+
+    private static Mac copy(Mac mac) {
+        try {
+            return (Mac) mac.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static PerThreadMac perThread(final Mac mac) {
+        // never used to sign, the caller may keep using its instance
+        final Mac template = copy(mac);
+
+        return new PerThreadMac() {
+            @Override
+            protected Mac initialValue() {
+                synchronized (template) {
+                    return copy(template);
+                }
+            }
+        };
+    }
+
+    private static PerThreadMac perThread(final YokeSecurity security, final String alias) {
+        // fails early on unknown aliases
+        final Mac first = security.getMac(alias);
+
+        final PerThreadMac mac = new PerThreadMac() {
+            @Override
+            protected Mac initialValue() {
+                return security.getMac(alias);
+            }
+        };
+        mac.set(first);
+        return mac;
+    }
+
+    /**
+     * Signs a value with the current key.
+     */
+    public String sign(@NotNull String val) {
+        return YokeSecurity.sign(val, macs[0].get());
+    }
+
+    /**
+     * Returns the original value if it was signed with any of the keys. Null otherwise.
+     */
+    public String unsign(@NotNull String val) {
+        for (PerThreadMac mac : macs) {
+            final String str = YokeSecurity.unsign(val, mac.get());
+            if (str != null) {
+                return str;
+            }
+        }
+        return null;
+    }
+}
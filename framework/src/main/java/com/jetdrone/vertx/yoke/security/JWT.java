@@ -2,96 +2,375 @@ package com.jetdrone.vertx.yoke.security;
 
 import com.jetdrone.vertx.yoke.YokeSecurity;
 import org.vertx.java.core.json.JsonObject;
-import org.vertx.java.core.json.impl.Base64;
 
 import javax.crypto.Mac;
-import java.security.Signature;
-import java.security.SignatureException;
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.*;
+import java.security.interfaces.ECKey;
+import java.security.interfaces.RSAKey;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * # JWT
+ *
+ * Encodes and decodes JSON Web Tokens signed with HS256, HS384, HS512, RS256, RS384, RS512, ES256, ES384 or ES512.
+ *
+ * The key is looked up in the `YokeSecurity` under the algorithm name when the token header has no `kid`. A `kid`
+ * only names a key once it is added with `addKey(kid, alias)`, tokens with any other `kid` are rejected, so a token
+ * cannot pick the cookie secret or any other key of the `YokeSecurity`. Keys are rotated by signing new tokens with a
+ * new `kid` while the old key still verifies the tokens already issued, `removeKey` retires it. HMAC algorithms use the
+ * secret key of the alias, RSA and EC algorithms sign with the private key and verify with the public key of the
+ * alias, a key of another type is not used.
+ *
+ * An instance can be shared by all event loops, the `Mac` and `Signature` instances are kept per thread. Verified
+ * tokens are remembered (by signature) until their `exp` so a client sending the same token over and over is only
+ * verified once, until the key that verified it is removed or `clearCache` is called.
+ */
 public final class JWT {
 
+    // JWS algorithm to JCA algorithm
+    private static final Map<String, String> ALGORITHMS = new HashMap<>();
+
+    static {
+        ALGORITHMS.put("HS256", "HmacSHA256");
+        ALGORITHMS.put("HS384", "HmacSHA384");
+        ALGORITHMS.put("HS512", "HmacSHA512");
+        ALGORITHMS.put("RS256", "SHA256withRSA");
+        ALGORITHMS.put("RS384", "SHA384withRSA");
+        ALGORITHMS.put("RS512", "SHA512withRSA");
+        ALGORITHMS.put("ES256", "SHA256withECDSA");
+        ALGORITHMS.put("ES384", "SHA384withECDSA");
+        ALGORITHMS.put("ES512", "SHA512withECDSA");
+    }
+
+    // bounds the key map, whatever the number of kids added over time
+    private static final int MAX_KEYS = 64;
+
+    private static final char[] BASE64URL = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+    private static final byte[] BASE64URL_INDEX = new byte[128];
+
+    static {
+        Arrays.fill(BASE64URL_INDEX, (byte) -1);
+        for (int i = 0; i < BASE64URL.length; i++) {
+            BASE64URL_INDEX[BASE64URL[i]] = (byte) i;
+        }
+        // be lenient with tokens encoded with the standard alphabet
+        BASE64URL_INDEX['+'] = 62;
+        BASE64URL_INDEX['/'] = 63;
+    }
+
     private static interface Crypto {
         byte[] sign(byte[] payload);
         boolean verify(byte[] signature, byte[] payload);
     }
 
     private static final class CryptoMac implements Crypto {
-        private final Mac mac;
+        private final ThreadLocal<Mac> mac;
+
+        private CryptoMac(final String algorithm, final Key key) {
+            // fails early when the key cannot be used with the algorithm
+            final Mac first = newMac(algorithm, key);
+
+            mac = new ThreadLocal<Mac>() {
+                @Override
+                protected Mac initialValue() {
+                    return newMac(algorithm, key);
+                }
+            };
+            mac.set(first);
+        }
 
-        private CryptoMac(final Mac mac) {
-            this.mac = mac;
+        private static Mac newMac(String algorithm, Key key) {
+            try {
+                final Mac mac = Mac.getInstance(algorithm);
+                mac.init(key);
+                return mac;
+            } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+                throw new RuntimeException(e);
+            }
         }
 
         @Override
         public byte[] sign(byte[] payload) {
-            return mac.doFinal(payload);
+            return mac.get().doFinal(payload);
         }
 
         @Override
         public boolean verify(byte[] signature, byte[] payload) {
-            return Arrays.equals(signature, mac.doFinal(payload));
+            // constant time compare
+            return MessageDigest.isEqual(signature, mac.get().doFinal(payload));
         }
     }
 
     private static final class CryptoSignature implements Crypto {
-        private final Signature sig;
+        private final ThreadLocal<Signature> signer;
+        private final ThreadLocal<Signature> verifier;
+        // JWS ECDSA signatures are R and S of this many bytes each instead of DER, 0 for RSA
+        private final int ecSize;
+
+        private CryptoSignature(final String algorithm, final PrivateKey privateKey, final PublicKey publicKey, int ecSize) {
+            this.ecSize = ecSize;
+
+            if (privateKey != null) {
+                final Signature first = newSigner(algorithm, privateKey);
+                signer = new ThreadLocal<Signature>() {
+                    @Override
+                    protected Signature initialValue() {
+                        return newSigner(algorithm, privateKey);
+                    }
+                };
+                signer.set(first);
+            } else {
+                signer = null;
+            }
 
-        private CryptoSignature(final Signature signature) {
-            this.sig = signature;
+            if (publicKey != null) {
+                final Signature first = newVerifier(algorithm, publicKey);
+                verifier = new ThreadLocal<Signature>() {
+                    @Override
+                    protected Signature initialValue() {
+                        return newVerifier(algorithm, publicKey);
+                    }
+                };
+                verifier.set(first);
+            } else {
+                verifier = null;
+            }
+        }
+
+        private static Signature newSigner(String algorithm, PrivateKey key) {
+            try {
+                final Signature signature = Signature.getInstance(algorithm);
+                signature.initSign(key);
+                return signature;
+            } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private static Signature newVerifier(String algorithm, PublicKey key) {
+            try {
+                final Signature signature = Signature.getInstance(algorithm);
+                signature.initVerify(key);
+                return signature;
+            } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+                throw new RuntimeException(e);
+            }
         }
 
         @Override
         public byte[] sign(byte[] payload) {
+            if (signer == null) {
+                throw new RuntimeException("No private key to sign with");
+            }
+
+            final Signature sig = signer.get();
             try {
                 sig.update(payload);
-                return sig.sign();
+                final byte[] signature = sig.sign();
+                return ecSize > 0 ? toJose(signature, ecSize) : signature;
             } catch (SignatureException e) {
+                // the instance state is unknown, start with a fresh one
+                signer.remove();
                 throw new RuntimeException(e);
             }
         }
 
         @Override
         public boolean verify(byte[] signature, byte[] payload) {
+            if (verifier == null) {
+                throw new RuntimeException("No public key to verify with");
+            }
+
+            if (ecSize > 0) {
+                if (signature.length != 2 * ecSize) {
+                    return false;
+                }
+                signature = toDer(signature);
+            }
+
+            final Signature sig = verifier.get();
             try {
                 sig.update(payload);
                 return sig.verify(signature);
             } catch (SignatureException e) {
-                throw new RuntimeException(e);
+                // malformed signature, the instance state is unknown, start with a fresh one
+                verifier.remove();
+                return false;
             }
         }
     }
 
-    private final Map<String, Crypto> CRYPTO_MAP;
+    private static final class Verified {
+        final String token;
+        final String kid;
+        final JsonObject payload;
+        final long expires;
+
+        Verified(String token, String kid, JsonObject payload, long expires) {
+            this.token = token;
+            this.kid = kid;
+            this.payload = payload;
+            this.expires = expires;
+        }
+    }
+
+    private final YokeSecurity security;
+    // kid to alias, the only kids accepted
+    private final ConcurrentMap<String, String> kids = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Crypto> cryptos = new ConcurrentHashMap<>();
+    // signature to verified token, null when caching is disabled
+    private final Map<String, Verified> verified;
+
+    /**
+     * @param security  source of the keys
+     * @param cacheSize maximum number of verified tokens to remember, 0 to verify every token
+     */
+    public JWT(final YokeSecurity security, final int cacheSize) {
+        this.security = security;
+
+        if (cacheSize > 0) {
+            verified = new LinkedHashMap<String, Verified>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Verified> eldest) {
+                    return size() > cacheSize;
+                }
+            };
+        } else {
+            verified = null;
+        }
+    }
 
     public JWT(final YokeSecurity security) {
+        this(security, 1024);
+    }
 
-        Map<String, Crypto> tmp = new HashMap<>();
-        try {
-            tmp.put("HS256", new CryptoMac(security.getMac("HS256")));
-        } catch (RuntimeException e) {
-            // Algorithm not supported
+    /**
+     * Accepts tokens with the given `kid`, signed with the key stored under the alias.
+     */
+    public JWT addKey(final String kid, final String alias) {
+        kids.put(kid, alias);
+        forget(kid);
+        return this;
+    }
+
+    /**
+     * Rejects tokens with the given `kid` from now on, including the verified tokens remembered for it.
+     */
+    public JWT removeKey(final String kid) {
+        kids.remove(kid);
+        forget(kid);
+        return this;
+    }
+
+    /**
+     * Forgets the verified tokens, e.g. after a key changed in the `YokeSecurity`.
+     */
+    public void clearCache() {
+        if (verified != null) {
+            synchronized (verified) {
+                verified.clear();
+            }
         }
-        try {
-            tmp.put("HS384", new CryptoMac(security.getMac("HS384")));
-        } catch (RuntimeException e) {
-            // Algorithm not supported
+    }
+
+    private void forget(final String kid) {
+        for (String id : cryptos.keySet()) {
+            if (id.substring(id.indexOf(':') + 1).equals(kid)) {
+                cryptos.remove(id);
+            }
         }
-        try {
-            tmp.put("HS512", new CryptoMac(security.getMac("HS512")));
-        } catch (RuntimeException e) {
-            // Algorithm not supported
+
+        if (verified != null) {
+            synchronized (verified) {
+                final Iterator<Verified> entries = verified.values().iterator();
+                while (entries.hasNext()) {
+                    if (kid.equals(entries.next().kid)) {
+                        entries.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    private Crypto crypto(final String algorithm, final String kid) {
+        final String alias;
+        if (kid == null) {
+            alias = algorithm;
+        } else {
+            alias = kids.get(kid);
+            if (alias == null) {
+                throw new RuntimeException("Unknown key id");
+            }
         }
+
+        final String id = kid == null ? algorithm : algorithm + ":" + kid;
+
+        Crypto crypto = cryptos.get(id);
+        if (crypto == null) {
+            crypto = createCrypto(algorithm, alias);
+            if (crypto != null && cryptos.size() < MAX_KEYS) {
+                final Crypto previous = cryptos.putIfAbsent(id, crypto);
+                if (previous != null) {
+                    crypto = previous;
+                }
+            }
+        }
+
+        return crypto;
+    }
+
+    private Crypto createCrypto(final String algorithm, final String alias) {
+        final String jca = ALGORITHMS.get(algorithm);
+
+        if (jca == null) {
+            return null;
+        }
+
         try {
-            tmp.put("RS256", new CryptoSignature(security.getSignature("RS256")));
+            final Key key = security.getKey(alias);
+
+            if (algorithm.startsWith("HS")) {
+                // never a private or public key used as an HMAC secret
+                return key instanceof SecretKey ? new CryptoMac(jca, key) : null;
+            }
+
+            final Class<?> type = algorithm.startsWith("RS") ? RSAKey.class : ECKey.class;
+            final PrivateKey privateKey = key instanceof PrivateKey && type.isInstance(key) ? (PrivateKey) key : null;
+            PublicKey publicKey = security.getPublicKey(alias);
+            if (!type.isInstance(publicKey)) {
+                publicKey = null;
+            }
+
+            if (privateKey == null && publicKey == null) {
+                return null;
+            }
+
+            return new CryptoSignature(jca, privateKey, publicKey, ecSize(algorithm));
         } catch (RuntimeException e) {
-            // Algorithm not supported
+            // Algorithm or key not supported
+            return null;
         }
+    }
 
-        CRYPTO_MAP = Collections.unmodifiableMap(tmp);
+    private static int ecSize(String algorithm) {
+        switch (algorithm) {
+            case "ES256":
+                return 32;
+            case "ES384":
+                return 48;
+            case "ES512":
+                return 66;
+            default:
+                return 0;
+        }
     }
 
     public JsonObject decode(final String token) {
@@ -99,83 +378,278 @@ public final class JWT {
     }
 
     public JsonObject decode(final String token, boolean noVerify) {
-        String[] segments = token.split("\\.");
-        if (segments.length != 3) {
+        final int dot1 = token.indexOf('.');
+        final int dot2 = dot1 == -1 ? -1 : token.indexOf('.', dot1 + 1);
+
+        if (dot2 == -1 || token.indexOf('.', dot2 + 1) != -1) {
             throw new RuntimeException("Not enough or too many segments");
         }
 
-        // All segment should be base64
-        String headerSeg = segments[0];
-        String payloadSeg = segments[1];
-        String signatureSeg = segments[2];
+        String signatureSeg = null;
+
+        if (!noVerify && verified != null) {
+            signatureSeg = token.substring(dot2 + 1);
+            final JsonObject payload = cached(signatureSeg, token);
+            if (payload != null) {
+                return payload;
+            }
+        }
 
         // base64 decode and parse JSON
-        JsonObject header = new JsonObject(base64urlDecode(headerSeg));
-        JsonObject payload = new JsonObject(base64urlDecode(payloadSeg));
+        final JsonObject header = new JsonObject(base64urlDecodeString(token, 0, dot1));
+        final JsonObject payload = new JsonObject(base64urlDecodeString(token, dot1 + 1, dot2));
 
         if (!noVerify) {
-            Crypto crypto = CRYPTO_MAP.get(header.getString("alg"));
+            final String algorithm = header.getString("alg");
+            final String kid = header.getString("kid");
+            final Crypto crypto = algorithm == null ? null : crypto(algorithm, kid);
 
             if (crypto == null) {
                 throw new RuntimeException("Algorithm not supported");
             }
 
-            // verify signature. `sign` will return base64 string.
-            String signingInput = headerSeg + "." + payloadSeg;
-
-            if (!crypto.verify(Base64.decode(base64urlUnescape(signatureSeg), Base64.DONT_BREAK_LINES), signingInput.getBytes())) {
+            // the signing input is the header and payload segments as they were received
+            if (!crypto.verify(base64urlDecode(token, dot2 + 1, token.length()), ascii(token, dot2))) {
                 throw new RuntimeException("Signature verification failed");
             }
+
+            if (verified != null) {
+                remember(signatureSeg, token, kid, payload);
+            }
         }
 
         return payload;
     }
 
+    private JsonObject cached(final String signature, final String token) {
+        final Verified entry;
+        synchronized (verified) {
+            entry = verified.get(signature);
+        }
+
+        // the signature alone does not cover a token with a different header or payload
+        if (entry == null || !entry.token.equals(token)) {
+            return null;
+        }
+
+        if (entry.expires <= System.currentTimeMillis()) {
+            synchronized (verified) {
+                verified.remove(signature);
+            }
+            return null;
+        }
+
+        // the caller is free to modify the payload
+        return entry.payload.copy();
+    }
+
+    private void remember(final String signature, final String token, final String kid, final JsonObject payload) {
+        long expires = Long.MAX_VALUE;
+
+        final Object exp = payload.getField("exp");
+        if (exp instanceof Number) {
+            expires = ((Number) exp).longValue();
+            if (expires <= System.currentTimeMillis()) {
+                return;
+            }
+        }
+
+        final Verified entry = new Verified(token, kid, payload.copy(), expires);
+        synchronized (verified) {
+            verified.put(signature, entry);
+        }
+    }
+
     public String encode(JsonObject payload) {
         return encode(payload, "HS256");
     }
 
     public String encode(JsonObject payload, String algorithm) {
-        Crypto crypto = CRYPTO_MAP.get(algorithm);
+        return encode(payload, algorithm, null);
+    }
+
+    /**
+     * Encodes the payload signed with the key added for `kid`, the `kid` is added to the header.
+     */
+    public String encode(JsonObject payload, String algorithm, String kid) {
+        final Crypto crypto = crypto(algorithm, kid);
 
         if (crypto == null) {
             throw new RuntimeException("Algorithm not supported");
         }
 
         // header, typ is fixed value.
-        JsonObject header = new JsonObject()
+        final JsonObject header = new JsonObject()
                 .putString("typ", "JWT")
                 .putString("alg", algorithm);
 
+        if (kid != null) {
+            header.putString("kid", kid);
+        }
 
         // create segments, all segment should be base64 string
-        String headerSegment = base64urlEncode(header.encode());
-        String payloadSegment = base64urlEncode(payload.encode());
-        String signingInput = headerSegment + "." + payloadSegment;
-        String signSegment = base64urlEscape(Base64.encodeBytes(crypto.sign(signingInput.getBytes()), Base64.DONT_BREAK_LINES));
+        final StringBuilder token = new StringBuilder(256);
+        base64urlEncode(header.encode().getBytes(StandardCharsets.UTF_8), token);
+        token.append('.');
+        base64urlEncode(payload.encode().getBytes(StandardCharsets.UTF_8), token);
 
-        return headerSegment + "." + payloadSegment + "." + signSegment;
+        final byte[] signature = crypto.sign(ascii(token, token.length()));
+        token.append('.');
+        base64urlEncode(signature, token);
+
+        return token.toString();
     }
 
-    private static String base64urlDecode(String str) {
-        return new String(Base64.decode(base64urlUnescape(str), Base64.DONT_BREAK_LINES));
+    // the token characters up to end, tokens are ASCII
+    private static byte[] ascii(CharSequence token, int end) {
+        final byte[] bytes = new byte[end];
+        for (int i = 0; i < end; i++) {
+            bytes[i] = (byte) token.charAt(i);
+        }
+        return bytes;
     }
 
-    private static String base64urlUnescape(String str) {
-        int padding = 5 - str.length() % 4;
-        StringBuilder sb = new StringBuilder(str.length() + padding);
-        sb.append(str);
-        for (int i = 0; i < padding; i++) {
-            sb.append('=');
+    private static void base64urlEncode(byte[] data, StringBuilder sb) {
+        sb.ensureCapacity(sb.length() + (data.length * 4 + 2) / 3);
+
+        int i = 0;
+        for (; i + 2 < data.length; i += 3) {
+            final int v = (data[i] & 0xff) << 16 | (data[i + 1] & 0xff) << 8 | (data[i + 2] & 0xff);
+            sb.append(BASE64URL[v >>> 18])
+                    .append(BASE64URL[(v >>> 12) & 0x3f])
+                    .append(BASE64URL[(v >>> 6) & 0x3f])
+                    .append(BASE64URL[v & 0x3f]);
+        }
+
+        // no padding
+        switch (data.length - i) {
+            case 1: {
+                final int v = (data[i] & 0xff) << 16;
+                sb.append(BASE64URL[v >>> 18])
+                        .append(BASE64URL[(v >>> 12) & 0x3f]);
+                break;
+            }
+            case 2: {
+                final int v = (data[i] & 0xff) << 16 | (data[i + 1] & 0xff) << 8;
+                sb.append(BASE64URL[v >>> 18])
+                        .append(BASE64URL[(v >>> 12) & 0x3f])
+                        .append(BASE64URL[(v >>> 6) & 0x3f]);
+                break;
+            }
+        }
+    }
+
+    private static byte[] base64urlDecode(String str, int start, int end) {
+        // padding is optional
+        while (end > start && str.charAt(end - 1) == '=') {
+            end--;
+        }
+
+        final int len = end - start;
+        if (len % 4 == 1) {
+            throw new RuntimeException("Invalid base64url length");
+        }
+
+        final byte[] bytes = new byte[len * 3 / 4];
+        int acc = 0;
+        int bits = 0;
+        int n = 0;
+
+        for (int i = start; i < end; i++) {
+            final char c = str.charAt(i);
+            final int v = c < 128 ? BASE64URL_INDEX[c] : -1;
+            if (v == -1) {
+                throw new RuntimeException("Invalid base64url character");
+            }
+            acc = (acc << 6 | v) & 0xffffff;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                bytes[n++] = (byte) (acc >>> bits);
+            }
         }
-        return sb.toString().replaceAll("\\-", "+").replaceAll("_", "/");
+
+        return bytes;
     }
 
-    private static String base64urlEncode(String str) {
-        return base64urlEscape(Base64.encodeBytes(str.getBytes(), Base64.DONT_BREAK_LINES));
+    private static String base64urlDecodeString(String str, int start, int end) {
+        return new String(base64urlDecode(str, start, end), StandardCharsets.UTF_8);
     }
 
-    private static String base64urlEscape(String str) {
-        return str.replaceAll("\\+", "-").replaceAll("/", "_").replaceAll("=", "");
+    /**
+     * DER encoded ECDSA signature (SEQUENCE of the INTEGERs R and S) to the JWS form, R and S as unsigned big endian
+     * numbers of size bytes.
+     */
+    private static byte[] toJose(byte[] der, int size) {
+        // SEQUENCE, the length takes 2 bytes from 128 bytes on (P-521)
+        int offset = der[1] == (byte) 0x81 ? 3 : 2;
+
+        final byte[] jose = new byte[2 * size];
+
+        for (int i = 0; i < 2; i++) {
+            if (der[offset] != 0x02) {
+                throw new RuntimeException("Invalid ECDSA signature");
+            }
+            int len = der[offset + 1];
+            int pos = offset + 2;
+            offset = pos + len;
+
+            // drop the sign byte
+            while (len > size && der[pos] == 0) {
+                pos++;
+                len--;
+            }
+            if (len > size) {
+                throw new RuntimeException("Invalid ECDSA signature");
+            }
+            System.arraycopy(der, pos, jose, i * size + size - len, len);
+        }
+
+        return jose;
+    }
+
+    /**
+     * JWS ECDSA signature to DER, the inverse of `toJose`.
+     */
+    private static byte[] toDer(byte[] jose) {
+        final int size = jose.length / 2;
+
+        // minimal INTEGER encoding: no leading zeros, a zero byte when the high bit is set
+        int rStart = 0;
+        while (rStart < size - 1 && jose[rStart] == 0) {
+            rStart++;
+        }
+        int sStart = size;
+        while (sStart < jose.length - 1 && jose[sStart] == 0) {
+            sStart++;
+        }
+        final int rPad = jose[rStart] < 0 ? 1 : 0;
+        final int sPad = jose[sStart] < 0 ? 1 : 0;
+        final int rLen = size - rStart + rPad;
+        final int sLen = jose.length - sStart + sPad;
+
+        final int seqLen = 2 + rLen + 2 + sLen;
+        final int header = seqLen > 127 ? 3 : 2;
+        final byte[] der = new byte[header + seqLen];
+
+        int i = 0;
+        der[i++] = 0x30;
+        if (header == 3) {
+            der[i++] = (byte) 0x81;
+        }
+        der[i++] = (byte) seqLen;
+
+        der[i++] = 0x02;
+        der[i++] = (byte) rLen;
+        i += rPad;
+        System.arraycopy(jose, rStart, der, i, size - rStart);
+        i += size - rStart;
+
+        der[i++] = 0x02;
+        der[i++] = (byte) sLen;
+        i += sPad;
+        System.arraycopy(jose, sStart, der, i, jose.length - sStart);
+
+        return der;
     }
 }
@@ -5,6 +5,7 @@ import org.jetbrains.annotations.NotNull;
 
 import javax.crypto.*;
 import java.security.*;
+import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.util.*;
 
@@ -96,4 +97,18 @@ public final class KeyStoreSecurity extends YokeSecurity {
     public Key getKey(final @NotNull String alias) {
         return keys.get(alias);
     }
+
+    /**
+     * Returns the public key of the certificate stored under the alias
+     * @return PublicKey implementation or null if there is no certificate
+     */
+    @Override
+    public PublicKey getPublicKey(final @NotNull String alias) {
+        try {
+            final Certificate certificate = keyStore.getCertificate(alias);
+            return certificate == null ? null : certificate.getPublicKey();
+        } catch (KeyStoreException e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
@@ -0,0 +1,310 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.store;
+
+import org.vertx.java.core.json.DecodeException;
+import org.vertx.java.core.json.EncodeException;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * # BinarySessionCodec
+ *
+ * Compact binary encoding of JSON values. Every value starts with a one byte tag. Integers use zig-zag varints.
+ * Doubles and floats use their IEEE 754 bits. Strings, binaries, objects and arrays are prefixed with a varint length
+ * (bytes for strings and binaries, entries for objects and arrays).
+ *
+ * Decoding builds the `JsonObject` directly, no text is parsed. The encoded form is usually smaller than the JSON
+ * text, and a `byte[]` takes one byte per character where a `String` can take two.
+ */
+public class BinarySessionCodec implements SessionCodec<byte[]> {
+
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte FLOAT = 6;
+    private static final byte STRING = 7;
+    private static final byte BINARY = 8;
+    private static final byte OBJECT = 9;
+    private static final byte ARRAY = 10;
+    private static final byte BIG_INTEGER = 11;
+    private static final byte BIG_DECIMAL = 12;
+
+    @Override
+    public byte[] encode(Object value) {
+        final Writer writer = new Writer();
+        writer.value(value);
+        return writer.toByteArray();
+    }
+
+    @Override
+    public JsonObject decode(Map<String, byte[]> fields) {
+        if (fields.isEmpty()) {
+            return null;
+        }
+
+        final JsonObject json = new JsonObject();
+        for (Map.Entry<String, byte[]> field : fields.entrySet()) {
+            final Reader reader = new Reader(field.getValue());
+            json.putValue(field.getKey(), reader.value());
+            if (reader.pos != reader.buf.length) {
+                throw new DecodeException("Trailing bytes in field " + field.getKey());
+            }
+        }
+        return json;
+    }
+
+    private static final class Writer {
+        private byte[] buf = new byte[64];
+        private int len;
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, len);
+        }
+
+        private void ensure(int n) {
+            if (len + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + n));
+            }
+        }
+
+        private void write(byte b) {
+            ensure(1);
+            buf[len++] = b;
+        }
+
+        private void varint(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf[len++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[len++] = (byte) v;
+        }
+
+        private void fixed(long v, int bytes) {
+            ensure(bytes);
+            for (int i = bytes - 1; i >= 0; i--) {
+                buf[len++] = (byte) (v >>> (i * 8));
+            }
+        }
+
+        private void string(String s) {
+            final int chars = s.length();
+            for (int i = 0; i < chars; i++) {
+                if (s.charAt(i) >= 0x80) {
+                    // not worth a hand written encoder for the rare non ASCII string
+                    final byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+                    varint(utf8.length);
+                    ensure(utf8.length);
+                    System.arraycopy(utf8, 0, buf, len, utf8.length);
+                    len += utf8.length;
+                    return;
+                }
+            }
+            // ASCII, one byte per char
+            varint(chars);
+            ensure(chars);
+            for (int i = 0; i < chars; i++) {
+                buf[len++] = (byte) s.charAt(i);
+            }
+        }
+
+        void value(Object value) {
+            if (value == null) {
+                write(NULL);
+            } else if (value instanceof String) {
+                write(STRING);
+                string((String) value);
+            } else if (value instanceof Boolean) {
+                write((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                final int i = ((Number) value).intValue();
+                write(INT);
+                varint(((i << 1) ^ (i >> 31)) & 0xFFFFFFFFL);
+            } else if (value instanceof Long) {
+                final long l = (Long) value;
+                write(LONG);
+                varint((l << 1) ^ (l >> 63));
+            } else if (value instanceof Double) {
+                write(DOUBLE);
+                fixed(Double.doubleToLongBits((Double) value), 8);
+            } else if (value instanceof Float) {
+                write(FLOAT);
+                fixed(Float.floatToIntBits((Float) value), 4);
+            } else if (value instanceof BigInteger) {
+                write(BIG_INTEGER);
+                string(value.toString());
+            } else if (value instanceof BigDecimal) {
+                write(BIG_DECIMAL);
+                string(value.toString());
+            } else if (value instanceof JsonObject) {
+                // toMap() would copy the whole tree
+                final JsonObject json = (JsonObject) value;
+                write(OBJECT);
+                varint(json.size());
+                for (String field : json.getFieldNames()) {
+                    string(field);
+                    value(json.getField(field));
+                }
+            } else if (value instanceof JsonArray) {
+                final JsonArray json = (JsonArray) value;
+                write(ARRAY);
+                varint(json.size());
+                for (Object item : json) {
+                    value(item);
+                }
+            } else if (value instanceof Map) {
+                object((Map<?, ?>) value);
+            } else if (value instanceof Iterable) {
+                array((Iterable<?>) value);
+            } else if (value instanceof byte[]) {
+                final byte[] bytes = (byte[]) value;
+                write(BINARY);
+                varint(bytes.length);
+                ensure(bytes.length);
+                System.arraycopy(bytes, 0, buf, len, bytes.length);
+                len += bytes.length;
+            } else {
+                throw new EncodeException("Cannot encode " + value.getClass().getName());
+            }
+        }
+
+        private void object(Map<?, ?> map) {
+            write(OBJECT);
+            varint(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                string((String) entry.getKey());
+                value(entry.getValue());
+            }
+        }
+
+        private void array(Iterable<?> list) {
+            int size = 0;
+            for (Object ignored : list) {
+                size++;
+            }
+            write(ARRAY);
+            varint(size);
+            for (Object item : list) {
+                value(item);
+            }
+        }
+    }
+
+    private static final class Reader {
+        final byte[] buf;
+        int pos;
+
+        Reader(byte[] buf) {
+            this.buf = buf;
+        }
+
+        private byte read() {
+            if (pos >= buf.length) {
+                throw new DecodeException("Unexpected end of input");
+            }
+            return buf[pos++];
+        }
+
+        private long varint() {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                final byte b = read();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return v;
+                }
+            }
+            throw new DecodeException("Malformed varint");
+        }
+
+        private long fixed(int bytes) {
+            long v = 0;
+            for (int i = 0; i < bytes; i++) {
+                v = (v << 8) | (read() & 0xFF);
+            }
+            return v;
+        }
+
+        private int length() {
+            final long n = varint();
+            if (n < 0 || n > buf.length - pos) {
+                throw new DecodeException("Invalid length " + n);
+            }
+            return (int) n;
+        }
+
+        private String string() {
+            final int n = length();
+            final String s = new String(buf, pos, n, StandardCharsets.UTF_8);
+            pos += n;
+            return s;
+        }
+
+        Object value() {
+            final byte tag = read();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case TRUE:
+                    return Boolean.TRUE;
+                case FALSE:
+                    return Boolean.FALSE;
+                case INT: {
+                    final int i = (int) varint();
+                    return (i >>> 1) ^ -(i & 1);
+                }
+                case LONG: {
+                    final long l = varint();
+                    return (l >>> 1) ^ -(l & 1);
+                }
+                case DOUBLE:
+                    return Double.longBitsToDouble(fixed(8));
+                case FLOAT:
+                    return Float.intBitsToFloat((int) fixed(4));
+                case STRING:
+                    return string();
+                case BIG_INTEGER:
+                    return new BigInteger(string());
+                case BIG_DECIMAL:
+                    return new BigDecimal(string());
+                case BINARY: {
+                    final int n = length();
+                    final byte[] bytes = Arrays.copyOfRange(buf, pos, pos + n);
+                    pos += n;
+                    return bytes;
+                }
+                case OBJECT: {
+                    final long size = varint();
+                    final JsonObject json = new JsonObject();
+                    for (long i = 0; i < size; i++) {
+                        final String key = string();
+                        json.putValue(key, value());
+                    }
+                    return json;
+                }
+                case ARRAY: {
+                    final long size = varint();
+                    final JsonArray json = new JsonArray();
+                    for (long i = 0; i < size; i++) {
+                        json.add(value());
+                    }
+                    return json;
+                }
+                default:
+                    throw new DecodeException("Unknown tag " + tag);
+            }
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.store;
+
+import org.jetbrains.annotations.NotNull;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.eventbus.Message;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * # CachingSessionStore
+ *
+ * Near cache in front of any other `SessionStore`. Recently used sessions are kept in memory so that a request that
+ * only reads its session does not need a round trip to the backing store.
+ *
+ * The cache belongs to the verticle (and therefore the event loop) that creates it, it is not thread safe and needs no
+ * locking. Entries live at most `ttl` ms and the least recently used ones are dropped once `maxSessions` is reached.
+ *
+ * Writes go to the backing store first. Updates without changed fields (as tracked by `SessionObject`) are skipped and
+ * the others are passed on as updates when the backing store is a `DeltaSessionStore`. Every write or delete is published on
+ * `INVALIDATE_ADDRESS` so the caches of the other verticle instances (in the cluster too, when the event bus is
+ * clustered) drop their copy. The invalidation is asynchronous, the ttl bounds how long another
+ * instance can serve a stale session.
+ *
+ * <pre>
+ * yoke.store(new CachingSessionStore(vertx, new RedisSessionStore(vertx, "redis", "sess:")));
+ * </pre>
+ */
+public class CachingSessionStore implements DeltaSessionStore {
+
+    /**
+     * Event bus address where cache invalidations are published
+     */
+    public static final String INVALIDATE_ADDRESS = "yoke.session.invalidate";
+
+    private static final class Entry {
+        final JsonObject session;
+        final long expires;
+
+        Entry(JsonObject session, long expires) {
+            this.session = session;
+            this.expires = expires;
+        }
+    }
+
+    private final Vertx vertx;
+    private final SessionStore store;
+    private final long ttl;
+    private final Map<String, Entry> cache;
+
+    // identifies the invalidations published by this instance
+    private final String origin = UUID.randomUUID().toString();
+
+    private long hits;
+    private long misses;
+
+    private final Handler<Message<JsonObject>> invalidateHandler = new Handler<Message<JsonObject>>() {
+        @Override
+        public void handle(Message<JsonObject> message) {
+            final JsonObject body = message.body();
+            if (origin.equals(body.getString("origin"))) {
+                return;
+            }
+
+            final String sid = body.getString("sid");
+            if (sid == null) {
+                cache.clear();
+            } else {
+                cache.remove(sid);
+            }
+        }
+    };
+
+    /**
+     * @param vertx       vertx instance of the verticle using the store
+     * @param store       backing store
+     * @param maxSessions maximum number of sessions kept in memory
+     * @param ttl         maximum time in ms a session is kept in memory
+     */
+    public CachingSessionStore(@NotNull Vertx vertx, @NotNull SessionStore store, final int maxSessions, long ttl) {
+        this.vertx = vertx;
+        this.store = store;
+        this.ttl = ttl;
+
+        cache = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSessions;
+            }
+        };
+
+        vertx.eventBus().registerHandler(INVALIDATE_ADDRESS, invalidateHandler);
+    }
+
+    public CachingSessionStore(@NotNull Vertx vertx, @NotNull SessionStore store) {
+        this(vertx, store, 10000, 30000);
+    }
+
+    @Override
+    public void get(final String sid, final Handler<JsonObject> callback) {
+        final Entry entry = cache.get(sid);
+
+        if (entry != null) {
+            if (entry.expires > System.currentTimeMillis()) {
+                hits++;
+                // the request modifies the session in place, never expose the cached instance
+                callback.handle(entry.session.copy());
+                return;
+            }
+            cache.remove(sid);
+        }
+
+        misses++;
+
+        store.get(sid, new Handler<JsonObject>() {
+            @Override
+            public void handle(JsonObject session) {
+                if (session != null) {
+                    cache(sid, session);
+                }
+                callback.handle(session);
+            }
+        });
+    }
+
+    @Override
+    public void set(String sid, JsonObject sess, Handler<Object> callback) {
+        write(sid, sess, null, callback);
+    }
+
+    @Override
+    public void update(String sid, JsonObject sess, Set<String> changed, Handler<Object> callback) {
+        write(sid, sess, changed, callback);
+    }
+
+    private void write(final String sid, final JsonObject sess, Set<String> changed, final Handler<Object> callback) {
+        if (changed != null && changed.isEmpty()) {
+            // nothing changed since the session was read
+            callback.handle(null);
+            return;
+        }
+
+        // the write happens later, keep the current value
+        final JsonObject copy = sess.copy();
+
+        final Handler<Object> handler = new Handler<Object>() {
+            @Override
+            public void handle(Object error) {
+                if (error == null) {
+                    cache.put(sid, new Entry(copy, System.currentTimeMillis() + ttl));
+                } else {
+                    cache.remove(sid);
+                }
+                invalidate(sid);
+                callback.handle(error);
+            }
+        };
+
+        if (changed != null && store instanceof DeltaSessionStore) {
+            ((DeltaSessionStore) store).update(sid, sess, changed, handler);
+        } else {
+            store.set(sid, sess, handler);
+        }
+    }
+
+    @Override
+    public void destroy(final String sid, final Handler<Object> callback) {
+        cache.remove(sid);
+
+        store.destroy(sid, new Handler<Object>() {
+            @Override
+            public void handle(Object error) {
+                invalidate(sid);
+                callback.handle(error);
+            }
+        });
+    }
+
+    @Override
+    public void all(Handler<JsonArray> next) {
+        store.all(next);
+    }
+
+    @Override
+    public void clear(final Handler<Object> next) {
+        cache.clear();
+
+        store.clear(new Handler<Object>() {
+            @Override
+            public void handle(Object error) {
+                invalidate(null);
+                next.handle(error);
+            }
+        });
+    }
+
+    @Override
+    public void length(Handler<Integer> next) {
+        store.length(next);
+    }
+
+    /**
+     * Stops listening for invalidations and drops all cached sessions.
+     */
+    public void close() {
+        vertx.eventBus().unregisterHandler(INVALIDATE_ADDRESS, invalidateHandler);
+        cache.clear();
+    }
+
+    /**
+     * Number of sessions in memory, including expired sessions not yet removed.
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    private void cache(String sid, JsonObject session) {
+        final long now = System.currentTimeMillis();
+        cache.put(sid, new Entry(session.copy(), now + ttl));
+
+        // the LRU bound drops old entries, expired entries at the head can go as well
+        final Iterator<Entry> it = cache.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().expires > now) {
+                break;
+            }
+            it.remove();
+        }
+    }
+
+    private void invalidate(String sid) {
+        final JsonObject message = new JsonObject().putString("origin", origin);
+        if (sid != null) {
+            message.putString("sid", sid);
+        }
+        vertx.eventBus().publish(INVALIDATE_ADDRESS, message);
+    }
+}
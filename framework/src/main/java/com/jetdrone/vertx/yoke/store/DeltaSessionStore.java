@@ -0,0 +1,20 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.store;
+
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.Set;
+
+/** # DeltaSessionStore
+ *
+ * A `SessionStore` that can save a session by writing only the top level fields that changed. `YokeRequest` uses it
+ * for sessions loaded from the store, new sessions are always saved with `set`.
+ */
+public interface DeltaSessionStore extends SessionStore {
+
+    // Commit the `changed` top level fields of `sess`, fields not present in `sess` have been removed.
+    void update(String sid, JsonObject sess, Set<String> changed, Handler<Object> callback);
+}
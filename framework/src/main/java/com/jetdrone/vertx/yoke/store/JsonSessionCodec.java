@@ -0,0 +1,48 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.store;
+
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+import org.vertx.java.core.json.impl.Json;
+
+import java.util.Map;
+
+/**
+ * # JsonSessionCodec
+ *
+ * Encodes each field as a JSON string. On decode the values are spliced in a single document that is parsed once.
+ */
+public class JsonSessionCodec implements SessionCodec<String> {
+
+    @Override
+    public String encode(Object value) {
+        if (value instanceof JsonObject) {
+            return ((JsonObject) value).encode();
+        }
+        if (value instanceof JsonArray) {
+            return ((JsonArray) value).encode();
+        }
+        return Json.encode(value);
+    }
+
+    @Override
+    public JsonObject decode(Map<String, String> fields) {
+        if (fields.isEmpty()) {
+            return null;
+        }
+
+        final StringBuilder json = new StringBuilder();
+        json.append('{');
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append(Json.encode(field.getKey())).append(':').append(field.getValue());
+        }
+        json.append('}');
+
+        return new JsonObject(json.toString());
+    }
+}
@@ -9,13 +9,17 @@ import org.vertx.java.core.eventbus.Message;
 import org.vertx.java.core.json.JsonArray;
 import org.vertx.java.core.json.JsonObject;
 
+import java.util.Set;
+
 /** # MongoDBSessionStore
  *
  * mongo db collection *MUST* have a TTL index on updatedAt
  *
  *     db.collection.ensureIndex({updatedAt: 1}, {expireAfterSeconds: 3600});
+ *
+ * Updates of loaded sessions only `$set` and `$unset` the fields that changed.
  */
-public class MongoDBSessionStore implements SessionStore {
+public class MongoDBSessionStore implements DeltaSessionStore {
 
     private final EventBus eventBus;
 
@@ -84,6 +88,58 @@ public class MongoDBSessionStore implements SessionStore {
         });
     }
 
+    @Override
+    public void update(final String sid, final JsonObject sess, Set<String> changed, final Handler<Object> next) {
+        final JsonObject set = new JsonObject();
+        final JsonObject unset = new JsonObject();
+
+        for (String field : changed) {
+            // dotted or $ names would be taken as paths or operators
+            if (field.indexOf('.') != -1 || field.startsWith("$") || "id".equals(field)) {
+                set(sid, sess, next);
+                return;
+            }
+            if (sess.containsField(field)) {
+                set.putValue(field, sess.getField(field));
+            } else {
+                unset.putString(field, "");
+            }
+        }
+
+        // updated at
+        set.putObject("updatedAt", new JsonObject().putNumber("$date", System.currentTimeMillis()));
+
+        final JsonObject objNew = new JsonObject().putObject("$set", set);
+        if (unset.size() > 0) {
+            objNew.putObject("$unset", unset);
+        }
+
+        JsonObject mongo = new JsonObject()
+                .putString("action", "update")
+                .putString("collection", collection)
+                .putObject("criteria", new JsonObject().putString("id", sid))
+                .putObject("objNew", objNew)
+                .putBoolean("upsert", false)
+                .putBoolean("multi", false);
+
+        eventBus.send(mongoAddress, mongo, new Handler<Message<JsonObject>>() {
+            @Override
+            public void handle(Message<JsonObject> reply) {
+                if ("ok".equals(reply.body().getString("status"))) {
+                    Integer number = reply.body().getInteger("number");
+                    if (number != null && number == 0) {
+                        // the document expired, a partial upsert would store an incomplete session
+                        set(sid, sess, next);
+                        return;
+                    }
+                    next.handle(null);
+                } else {
+                    next.handle(reply.body().getString("message"));
+                }
+            }
+        });
+    }
+
     @Override
     public void destroy(String sid, final Handler<Object> next) {
         JsonObject mongo = new JsonObject()
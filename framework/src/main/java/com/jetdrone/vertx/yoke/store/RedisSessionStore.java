@@ -3,60 +3,200 @@
  */
 package com.jetdrone.vertx.yoke.store;
 
-import com.jetdrone.vertx.yoke.util.AsyncIterator;
 import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
 import org.vertx.java.core.eventbus.EventBus;
 import org.vertx.java.core.eventbus.Message;
 import org.vertx.java.core.json.JsonArray;
 import org.vertx.java.core.json.JsonObject;
 
-/** # RedisSessionStore */
-public class RedisSessionStore implements SessionStore {
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+/**
+ * # RedisSessionStore
+ *
+ * Session store backed by a Redis server through the redis bus module.
+ *
+ * Enumeration (`all`, `clear` and `length`) walks the key space with `SCAN` in pages of `SCAN_COUNT` keys, reading
+ * each page with a single `MGET` and deleting it with a single multi key `DEL`, so large stores neither block the Redis
+ * server with `KEYS` nor pay one bus round trip per session.
+ *
+ * When the store is created with a `Vertx` instance, the `get` and `set` calls issued in the same event loop tick are
+ * pipelined: all writes are sent as one `EVAL` of the `MSETEX` script and all reads as one `MGET`. Writes are flushed
+ * before reads so a session read in the same tick it was saved sees the new value. A pipelined store must only be used
+ * from the context that created it.
+ *
+ * By default a session is stored as a single JSON string. With `hashes(true)` each session is a Redis hash with one
+ * field per top level session field, so updates of loaded sessions only write (`HMSET`) and delete (`HDEL`) the fields
+ * that changed. The two layouts are not compatible, switch on an empty store.
+ */
+public class RedisSessionStore implements DeltaSessionStore {
+
+    /**
+     * Lua script that stores several sessions, each one with its own time to live, in a single command.
+     * `KEYS` are the session keys and `ARGV` holds a ttl and value pair per key.
+     */
+    public static final String MSETEX = "for i = 1, #KEYS do redis.call('setex', KEYS[i], ARGV[2 * i - 1], ARGV[2 * i]) end return #KEYS";
+
+    /**
+     * Lua script that reads several hash sessions in a single command, returns the `HGETALL` reply of each key.
+     */
+    public static final String HREAD = "local r = {} for i = 1, #KEYS do r[i] = redis.call('hgetall', KEYS[i]) end return r";
+
+    /**
+     * Lua script that writes several hash sessions in a single command. For each key `ARGV` holds: full write flag,
+     * ttl, number of fields to set, field and value pairs, number of fields to delete and the fields to delete. A partial
+     * write is skipped when the session has expired in the mean time, it would leave an incomplete session behind.
+     */
+    public static final String HWRITE =
+            "local a = 1 " +
+            "for i = 1, #KEYS do " +
+            "local k = KEYS[i] " +
+            "local full = ARGV[a] == '1' " +
+            "local ttl = ARGV[a + 1] " +
+            "local n = tonumber(ARGV[a + 2]) " +
+            "local d = tonumber(ARGV[a + 3 + 2 * n]) " +
+            "if full or redis.call('exists', k) == 1 then " +
+            "if full then redis.call('del', k) end " +
+            "if n > 0 then redis.call('hmset', k, unpack(ARGV, a + 3, a + 2 + 2 * n)) end " +
+            "if d > 0 then redis.call('hdel', k, unpack(ARGV, a + 4 + 2 * n, a + 3 + 2 * n + d)) end " +
+            "redis.call('expire', k, ttl) " +
+            "end " +
+            "a = a + 4 + 2 * n + d " +
+            "end " +
+            "return #KEYS";
+
+    /**
+     * Number of keys requested from the server on each `SCAN` call
+     */
+    public static final int SCAN_COUNT = 1000;
+
+    // hash fields hold JSON text
+    private static final JsonSessionCodec CODEC = new JsonSessionCodec();
+
+    private final Vertx vertx;
     private final EventBus eventBus;
 
     private final int ttl;
     private final String prefix;
     private final String redisAddress;
 
-    public RedisSessionStore(EventBus eventBus, String redisAddress, String prefix, Integer ttl) {
+    private boolean hashes;
+
+    // calls waiting for the end of the current tick (only used when pipelining)
+    private List<PendingGet> gets = new ArrayList<>();
+    private List<PendingSet> sets = new ArrayList<>();
+    private boolean flushScheduled;
+
+    private final Handler<Void> flush = new Handler<Void>() {
+        @Override
+        public void handle(Void event) {
+            flushScheduled = false;
+
+            if (!sets.isEmpty()) {
+                final List<PendingSet> batch = sets;
+                sets = new ArrayList<>();
+                flushSets(batch);
+            }
+            if (!gets.isEmpty()) {
+                final List<PendingGet> batch = gets;
+                gets = new ArrayList<>();
+                flushGets(batch);
+            }
+        }
+    };
+
+    private static final class PendingGet {
+        final String key;
+        final Handler<JsonObject> callback;
+
+        PendingGet(String key, Handler<JsonObject> callback) {
+            this.key = key;
+            this.callback = callback;
+        }
+    }
+
+    private static final class PendingSet {
+        final String key;
+        // script arguments for this key, ttl and value or the HWRITE arguments
+        final JsonArray args;
+        final Handler<Object> callback;
+
+        PendingSet(String key, JsonArray args, Handler<Object> callback) {
+            this.key = key;
+            this.args = args;
+            this.callback = callback;
+        }
+    }
+
+    private RedisSessionStore(Vertx vertx, EventBus eventBus, String redisAddress, String prefix, Integer ttl) {
+        this.vertx = vertx;
         this.redisAddress = redisAddress;
         this.prefix = prefix;
         this.ttl = ttl;
         this.eventBus = eventBus;
     }
 
+    public RedisSessionStore(EventBus eventBus, String redisAddress, String prefix, Integer ttl) {
+        this(null, eventBus, redisAddress, prefix, ttl);
+    }
+
     public RedisSessionStore(EventBus eventBus, String redisAddress, String prefix) {
         this(eventBus, redisAddress, prefix, 86400);
     }
 
+    /**
+     * Creates a store that pipelines the `get` and `set` calls issued in the same event loop tick.
+     */
+    public RedisSessionStore(Vertx vertx, String redisAddress, String prefix, Integer ttl) {
+        this(vertx, vertx.eventBus(), redisAddress, prefix, ttl);
+    }
+
+    public RedisSessionStore(Vertx vertx, String redisAddress, String prefix) {
+        this(vertx, redisAddress, prefix, 86400);
+    }
+
+    /**
+     * Stores each session as a hash, one field per top level session field.
+     *
+     * @param hashes use hashes
+     * @return self
+     */
+    public RedisSessionStore hashes(boolean hashes) {
+        this.hashes = hashes;
+        return this;
+    }
+
     @Override
     public void get(String sid, final Handler<JsonObject> callback) {
-        sid = this.prefix + sid;
+        final PendingGet get = new PendingGet(this.prefix + sid, callback);
 
-        JsonObject redis = new JsonObject();
-        redis.putString("command", "get");
-        redis.putArray("args", new JsonArray().add(sid));
-
-        eventBus.send(redisAddress, redis, new Handler<Message<JsonObject>>() {
-            @Override
-            public void handle(Message<JsonObject> reply) {
-                if ("ok".equals(reply.body().getString("status"))) {
-                    String value = reply.body().getString("value");
-                    if (value == null || "".equals(value)) {
-                        callback.handle(null);
-                        return;
-                    }
-                    callback.handle(new JsonObject(value));
-                } else {
-                    callback.handle(null);
-                }
-            }
-        });
+        if (vertx != null) {
+            gets.add(get);
+            scheduleFlush();
+        } else {
+            flushGets(Collections.singletonList(get));
+        }
     }
 
     @Override
     public void set(String sid, JsonObject sess, final Handler<Object> callback) {
+        write(sid, sess, null, callback);
+    }
+
+    @Override
+    public void update(String sid, JsonObject sess, Set<String> changed, Handler<Object> callback) {
+        // a JSON string can only be written in full
+        write(sid, sess, hashes ? changed : null, callback);
+    }
+
+    private void write(String sid, JsonObject sess, Set<String> changed, Handler<Object> callback) {
         sid = prefix + sid;
 
         Integer maxAge = null;
@@ -66,7 +206,6 @@ public class RedisSessionStore implements SessionStore {
             maxAge = obj.getInteger("maxAge");
         }
 
-        String session = sess.encode();
         int ttl;
 
         if (maxAge != null) {
@@ -75,34 +214,54 @@ public class RedisSessionStore implements SessionStore {
             ttl = this.ttl;
         }
 
-        JsonObject redis = new JsonObject();
-        redis.putString("command", "setex");
-        redis.putArray("args", new JsonArray().add(sid).add(ttl).add(session));
+        // encode now, the session can still be modified before the flush
+        final JsonArray args = new JsonArray();
 
-        eventBus.send(redisAddress, redis, new Handler<Message<JsonObject>>() {
-            @Override
-            public void handle(Message<JsonObject> reply) {
-                if ("ok".equals(reply.body().getString("status"))) {
-                    callback.handle(null);
+        if (!hashes) {
+            args.add(ttl).add(sess.encode());
+        } else {
+            final Set<String> fields = changed == null ? sess.getFieldNames() : changed;
+            final List<String> removed = new ArrayList<>();
+
+            args.add(changed == null ? "1" : "0").add(ttl);
+
+            final JsonArray values = new JsonArray();
+            for (String field : fields) {
+                if (sess.containsField(field)) {
+                    values.add(field).add(CODEC.encode(sess.getField(field)));
                 } else {
-                    callback.handle(reply.body().getString("message"));
+                    removed.add(field);
                 }
             }
-        });
+
+            args.add(values.size() / 2);
+            for (Object value : values) {
+                args.add(value);
+            }
+            args.add(removed.size());
+            for (String field : removed) {
+                args.add(field);
+            }
+        }
+
+        final PendingSet set = new PendingSet(sid, args, callback);
+
+        if (vertx != null) {
+            sets.add(set);
+            scheduleFlush();
+        } else {
+            flushSets(Collections.singletonList(set));
+        }
     }
 
     @Override
     public void destroy(String sid, final Handler<Object> callback) {
         sid = this.prefix + sid;
 
-        JsonObject redis = new JsonObject();
-        redis.putString("command", "del");
-        redis.putArray("args", new JsonArray().add(sid));
-
-        eventBus.send(redisAddress, redis, new Handler<Message<JsonObject>>() {
+        send("del", new JsonArray().add(sid), new Handler<Message<JsonObject>>() {
             @Override
             public void handle(Message<JsonObject> reply) {
-                if ("ok".equals(reply.body().getString("status"))) {
+                if (isOk(reply)) {
                     callback.handle(null);
                 } else {
                     callback.handle(reply.body().getString("message"));
@@ -113,138 +272,289 @@ public class RedisSessionStore implements SessionStore {
 
     @Override
     public void all(final Handler<JsonArray> next) {
-        JsonObject redis = new JsonObject();
-        redis.putString("command", "keys");
-        redis.putArray("args", new JsonArray().add(prefix + "*"));
-
         final JsonArray results = new JsonArray();
+        // SCAN may return a key more than once
+        final Set<String> seen = new HashSet<>();
 
-        eventBus.send(redisAddress, redis, new Handler<Message<JsonObject>>() {
+        new Scan() {
             @Override
-            public void handle(Message<JsonObject> message) {
-                if (!"ok".equals(message.body().getString("status"))) {
-                    next.handle(null);
-                } else {
-                    JsonArray keys = message.body().getArray("value");
+            void page(JsonArray keys, final Handler<Void> more) {
+                final JsonArray unseen = new JsonArray();
+                for (Object key : keys) {
+                    if (seen.add((String) key)) {
+                        unseen.add(key);
+                    }
+                }
 
-                    new AsyncIterator<Object>(keys.iterator()) {
-                        @Override
-                        public void handle(Object key) {
-                            if (hasNext()) {
-                                JsonObject redis = new JsonObject();
-                                redis.putString("command", "get");
-                                redis.putArray("args", new JsonArray().add(key));
-
-                                eventBus.send(redisAddress, redis, new Handler<Message<JsonObject>>() {
-                                    @Override
-                                    public void handle(Message<JsonObject> message) {
-                                        if (!"ok".equals(message.body().getString("status"))) {
-                                            next.handle(null);
-                                        } else {
-                                            String value = message.body().getString("value");
-                                            if (value != null) {
-                                                results.add(new JsonObject(value));
-                                            }
-                                            next();
-                                        }
-                                    }
-                                });
-                            } else {
-                                next.handle(results);
+                if (unseen.size() == 0) {
+                    more.handle(null);
+                    return;
+                }
+
+                read(unseen, new Handler<JsonObject[]>() {
+                    @Override
+                    public void handle(JsonObject[] sessions) {
+                        if (sessions == null) {
+                            end("read failed");
+                            return;
+                        }
+
+                        for (JsonObject session : sessions) {
+                            // the session might have expired after the scan
+                            if (session != null) {
+                                results.add(session);
                             }
                         }
-                    };
-                }
+                        more.handle(null);
+                    }
+                });
             }
-        });
+
+            @Override
+            void end(String error) {
+                next.handle(error == null ? results : null);
+            }
+        }.start();
     }
 
     @Override
     public void clear(final Handler<Object> next) {
-        JsonObject redis = new JsonObject();
-        redis.putString("command", "keys");
-        redis.putArray("args", new JsonArray().add(prefix + "*"));
+        new Scan() {
+            @Override
+            void page(JsonArray keys, final Handler<Void> more) {
+                send("del", keys, new Handler<Message<JsonObject>>() {
+                    @Override
+                    public void handle(Message<JsonObject> reply) {
+                        if (!isOk(reply)) {
+                            end(reply.body().getString("message"));
+                            return;
+                        }
+                        more.handle(null);
+                    }
+                });
+            }
 
-        eventBus.send(redisAddress, redis, new Handler<Message<JsonObject>>() {
             @Override
-            public void handle(Message<JsonObject> message) {
-                if (!"ok".equals(message.body().getString("status"))) {
-                    next.handle(message.body().getString("status"));
-                } else {
-                    JsonArray keys = message.body().getArray("value");
+            void end(String error) {
+                next.handle(error);
+            }
+        }.start();
+    }
 
-                    new AsyncIterator<Object>(keys.iterator()) {
-                        @Override
-                        public void handle(Object key) {
-                            if (hasNext()) {
-                                JsonObject redis = new JsonObject();
-                                redis.putString("command", "del");
-                                redis.putArray("args", new JsonArray().add(key));
-
-                                eventBus.send(redisAddress, redis, new Handler<Message<JsonObject>>() {
-                                    @Override
-                                    public void handle(Message<JsonObject> message) {
-                                        if (!"ok".equals(message.body().getString("status"))) {
-                                            next.handle(message.body().getString("status"));
-                                        } else {
-                                            next();
-                                        }
-                                    }
-                                });
-                            } else {
-                                next.handle(null);
-                            }
-                        }
-                    };
+    @Override
+    public void length(final Handler<Integer> next) {
+        // SCAN may return a key more than once
+        final Set<String> seen = new HashSet<>();
+
+        new Scan() {
+            @Override
+            void page(JsonArray keys, Handler<Void> more) {
+                for (Object key : keys) {
+                    seen.add((String) key);
+                }
+                more.handle(null);
+            }
+
+            @Override
+            void end(String error) {
+                next.handle(error == null ? seen.size() : 0);
+            }
+        }.start();
+    }
+
+    private void scheduleFlush() {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            vertx.runOnContext(flush);
+        }
+    }
+
+    private void flushSets(final List<PendingSet> batch) {
+        final String command;
+        final JsonArray args;
+
+        if (!hashes && batch.size() == 1) {
+            final PendingSet set = batch.get(0);
+            command = "setex";
+            args = new JsonArray().add(set.key).add(set.args.get(0)).add(set.args.get(1));
+        } else {
+            command = "eval";
+            args = new JsonArray().add(hashes ? HWRITE : MSETEX).add(batch.size());
+            for (PendingSet set : batch) {
+                args.add(set.key);
+            }
+            for (PendingSet set : batch) {
+                for (Object arg : set.args) {
+                    args.add(arg);
+                }
+            }
+        }
+
+        send(command, args, new Handler<Message<JsonObject>>() {
+            @Override
+            public void handle(Message<JsonObject> reply) {
+                final String error = isOk(reply) ? null : reply.body().getString("message");
+                for (PendingSet set : batch) {
+                    set.callback.handle(error);
                 }
             }
         });
     }
 
-    @Override
-    public void length(final Handler<Integer> next) {
-        JsonObject redis = new JsonObject();
-        redis.putString("command", "keys");
-        redis.putArray("args", new JsonArray().add(prefix + "*"));
+    private void flushGets(final List<PendingGet> batch) {
+        final JsonArray keys = new JsonArray();
+        for (PendingGet get : batch) {
+            keys.add(get.key);
+        }
 
-        eventBus.send(redisAddress, redis, new Handler<Message<JsonObject>>() {
+        read(keys, new Handler<JsonObject[]>() {
             @Override
-            public void handle(Message<JsonObject> message) {
-                if (!"ok".equals(message.body().getString("status"))) {
-                    next.handle(0);
-                } else {
-                    JsonArray keys = message.body().getArray("value");
-                    next.handle(keys.size());
+            public void handle(JsonObject[] sessions) {
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).callback.handle(sessions == null ? null : sessions[i]);
                 }
             }
         });
     }
 
-    @SuppressWarnings("unused")
-    private void getKeys(final Handler<JsonArray> next) {
-        JsonObject redis = new JsonObject();
-        redis.putString("command", "keys");
-        redis.putArray("args", new JsonArray().add(prefix + "*"));
+    /**
+     * Reads the sessions stored under the given keys with a single command.
+     *
+     * @param keys    redis keys
+     * @param handler sessions in the same order as the keys (null when missing), or null if the command failed
+     */
+    private void read(final JsonArray keys, final Handler<JsonObject[]> handler) {
+        final String command;
+        final JsonArray args;
+
+        if (hashes) {
+            command = "eval";
+            args = new JsonArray().add(HREAD).add(keys.size());
+            for (Object key : keys) {
+                args.add(key);
+            }
+        } else if (keys.size() == 1) {
+            command = "get";
+            args = keys;
+        } else {
+            command = "mget";
+            args = keys;
+        }
 
-        eventBus.send(redisAddress, redis, new Handler<Message<JsonObject>>() {
+        send(command, args, new Handler<Message<JsonObject>>() {
             @Override
-            public void handle(Message<JsonObject> message) {
-                if (!"ok".equals(message.body().getString("status"))) {
-                    next.handle(new JsonArray());
-                } else {
-                    JsonArray keys = message.body().getArray("value");
+            public void handle(Message<JsonObject> reply) {
+                if (!isOk(reply)) {
+                    handler.handle(null);
+                    return;
+                }
 
-                    JsonArray result = new JsonArray();
-                    int len = prefix.length();
+                final JsonObject[] sessions = new JsonObject[keys.size()];
 
-                    for (Object o : keys) {
-                        String key = (String) o;
-                        result.add(key.substring(len));
+                if ("get".equals(command)) {
+                    sessions[0] = parse(reply.body().getString("value"));
+                } else {
+                    final JsonArray values = reply.body().getArray("value");
+                    for (int i = 0; i < sessions.length; i++) {
+                        final Object value = values.get(i);
+                        sessions[i] = hashes ? parseHash(value) : parse((String) value);
                     }
-
-                    next.handle(result);
                 }
+
+                handler.handle(sessions);
             }
         });
     }
+
+    private void send(String command, JsonArray args, Handler<Message<JsonObject>> handler) {
+        JsonObject redis = new JsonObject();
+        redis.putString("command", command);
+        redis.putArray("args", args);
+
+        eventBus.send(redisAddress, redis, handler);
+    }
+
+    private static boolean isOk(Message<JsonObject> reply) {
+        return "ok".equals(reply.body().getString("status"));
+    }
+
+    private static JsonObject parseHash(Object value) {
+        final Map<String, String> fields = new LinkedHashMap<>();
+
+        if (value instanceof JsonArray) {
+            // field and value pairs
+            final JsonArray pairs = (JsonArray) value;
+            for (int i = 0; i < pairs.size() - 1; i += 2) {
+                fields.put((String) pairs.get(i), (String) pairs.get(i + 1));
+            }
+        } else if (value instanceof JsonObject) {
+            final JsonObject hash = (JsonObject) value;
+            for (String field : hash.getFieldNames()) {
+                fields.put(field, hash.getString(field));
+            }
+        }
+
+        return CODEC.decode(fields);
+    }
+
+    private static JsonObject parse(String value) {
+        if (value == null || "".equals(value)) {
+            return null;
+        }
+        return new JsonObject(value);
+    }
+
+    /**
+     * Walks all the keys of this store with `SCAN`, one page at a time. A page is only requested after the previous
+     * one has been processed.
+     */
+    private abstract class Scan {
+
+        /**
+         * Processes a page of keys, calls `more` to continue the scan or `end` to stop it.
+         */
+        abstract void page(JsonArray keys, Handler<Void> more);
+
+        /**
+         * Called once, with null when all keys have been processed or the error message.
+         */
+        abstract void end(String error);
+
+        final void start() {
+            fetch("0");
+        }
+
+        private void fetch(String cursor) {
+            send("scan", new JsonArray().add(cursor).add("MATCH").add(prefix + "*").add("COUNT").add(SCAN_COUNT), new Handler<Message<JsonObject>>() {
+                @Override
+                public void handle(Message<JsonObject> reply) {
+                    if (!isOk(reply)) {
+                        end(reply.body().getString("message"));
+                        return;
+                    }
+
+                    final JsonArray value = reply.body().getArray("value");
+                    final String cursor = value.get(0).toString();
+                    final JsonArray keys = value.get(1);
+
+                    final Handler<Void> more = new Handler<Void>() {
+                        @Override
+                        public void handle(Void event) {
+                            if ("0".equals(cursor)) {
+                                end(null);
+                            } else {
+                                fetch(cursor);
+                            }
+                        }
+                    };
+
+                    if (keys == null || keys.size() == 0) {
+                        more.handle(null);
+                    } else {
+                        page(keys, more);
+                    }
+                }
+            });
+        }
+    }
 }
@@ -0,0 +1,23 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.store;
+
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.Map;
+
+/** # SessionCodec
+ *
+ * Serialization used by the stores that keep each top level field of a session as a separately encoded value.
+ *
+ * @param <T> encoded form, must be accepted by the store (e.g.: `String` or `byte[]` for shared data)
+ */
+public interface SessionCodec<T> {
+
+    // Encode the value of a top level field, as returned by `JsonObject.getField`.
+    T encode(Object value);
+
+    // Rebuild a session from its encoded top level fields, null if there are no fields.
+    JsonObject decode(Map<String, T> fields);
+}
@@ -7,54 +7,286 @@ import org.vertx.java.core.Handler;
 import org.vertx.java.core.Vertx;
 import org.vertx.java.core.json.JsonArray;
 import org.vertx.java.core.json.JsonObject;
+import org.vertx.java.core.shareddata.SharedData;
 
+import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
 
-/** #SharedDataSessionStore */
-public class SharedDataSessionStore implements SessionStore {
+/** #SharedDataSessionStore
+ *
+ * Each session is kept in its own shared map, one entry per top level field holding the encoded field value, so an
+ * update only encodes and replaces the fields that changed. The map called `name` indexes the session ids.
+ *
+ * The index holds a version per session that is odd while a writer changes the fields: writers take turns on it, a
+ * reader retries until it read the fields without the version changing, so a session is never seen half updated and
+ * `destroy` waits for the write in progress instead of leaving its fields behind. An operation that keeps finding
+ * another writer at work gives the event loop back and is tried again later.
+ *
+ * Fields are encoded as JSON strings unless another `SessionCodec` is given, e.g.: `BinarySessionCodec`.
+ */
+public class SharedDataSessionStore implements DeltaSessionStore {
+
+    // attempts to get past a writer before the operation is tried again later
+    private static final int SPINS = 64;
 
-    private final ConcurrentMap<String, String> storage;
+    // the session is being written, try again later
+    private static final long BUSY = -2;
+    private static final JsonObject BUSY_SESSION = new JsonObject();
+
+    private final Vertx vertx;
+    private final SharedData sharedData;
+    private final String name;
+    // session id to version
+    private final ConcurrentMap<String, Long> storage;
+    private final SessionCodec<Object> codec;
+
+    @SuppressWarnings("unchecked")
+    public SharedDataSessionStore(Vertx vertx, String name, SessionCodec<?> codec) {
+        this.vertx = vertx;
+        this.sharedData = vertx.sharedData();
+        this.name = name;
+        this.codec = (SessionCodec<Object>) codec;
+        storage = sharedData.getMap(name);
+    }
 
     public SharedDataSessionStore(Vertx vertx, String name) {
-        storage = vertx.sharedData().getMap(name);
+        this(vertx, name, new JsonSessionCodec());
+    }
+
+    // creates the map when it does not exist, only to be called while the session is known to exist
+    private ConcurrentMap<String, Object> fields(String sid) {
+        return sharedData.getMap(name + ":" + sid);
+    }
+
+    // a thread outside of Vert.x has no event loop to give back, it waits for the writer
+    private int spins() {
+        return vertx.currentContext() == null ? Integer.MAX_VALUE : SPINS;
+    }
+
+    /**
+     * Waits for the writer of the session to finish and marks it as being written. Returns the version to pass to
+     * unlock, -1 if there is no such session, BUSY if the writer did not finish in time.
+     */
+    private long lock(String sid) {
+        final int spins = spins();
+        for (int i = 0; i < spins; i++) {
+            final Long version = storage.get(sid);
+            if (version == null) {
+                return -1;
+            }
+            if ((version & 1) == 0 && storage.replace(sid, version, version + 1)) {
+                return version;
+            }
+            Thread.yield();
+        }
+        return BUSY;
+    }
+
+    private void unlock(String sid, long version) {
+        storage.replace(sid, version + 1, version + 2);
+    }
+
+    /**
+     * Decodes the fields of a session, null if there is no such session, BUSY_SESSION if a writer kept changing it.
+     */
+    private JsonObject read(String sid) {
+        final int spins = spins();
+        for (int i = 0; i < spins; i++) {
+            final Long version = storage.get(sid);
+            if (version == null) {
+                return null;
+            }
+            if ((version & 1) == 0) {
+                final JsonObject sess = codec.decode(fields(sid));
+                final Long current = storage.get(sid);
+                // no writer came in between
+                if (version.equals(current)) {
+                    // a session without fields is still a session
+                    return sess == null ? new JsonObject() : sess;
+                }
+                if (current == null) {
+                    // destroyed during the read, which may have created its fields map again
+                    discard(sid);
+                    return null;
+                }
+            }
+            Thread.yield();
+        }
+        return BUSY_SESSION;
+    }
+
+    /**
+     * Removes the fields map of a session that does not exist, unless a new session with that id comes first.
+     */
+    private void discard(String sid) {
+        // locked as a new session so no one writes the fields meanwhile
+        if (storage.putIfAbsent(sid, 1L) == null) {
+            sharedData.removeMap(name + ":" + sid);
+            storage.remove(sid);
+        }
+    }
+
+    // runs the operation again once the event loop had a chance to run something else
+    private void later(Handler<Void> retry) {
+        vertx.runOnContext(retry);
     }
 
     @Override
-    public void get(String sid, Handler<JsonObject> callback) {
-        String sess = storage.get(sid);
+    public void get(final String sid, final Handler<JsonObject> callback) {
+        final JsonObject sess = read(sid);
 
-        if (sess == null) {
-            callback.handle(null);
+        if (sess == BUSY_SESSION) {
+            later(new Handler<Void>() {
+                @Override
+                public void handle(Void event) {
+                    get(sid, callback);
+                }
+            });
             return;
         }
 
-        callback.handle(new JsonObject(sess));
+        callback.handle(sess);
     }
 
     @Override
-    public void set(String sid, JsonObject sess, Handler<Object> callback) {
-        storage.put(sid, sess.encode());
+    public void set(final String sid, final JsonObject sess, final Handler<Object> callback) {
+        long version = lock(sid);
+        while (version == -1) {
+            // a new session is created locked
+            if (storage.putIfAbsent(sid, 1L) == null) {
+                version = 0;
+            } else {
+                version = lock(sid);
+            }
+        }
+
+        if (version == BUSY) {
+            later(new Handler<Void>() {
+                @Override
+                public void handle(Void event) {
+                    set(sid, sess, callback);
+                }
+            });
+            return;
+        }
+
+        try {
+            final ConcurrentMap<String, Object> fields = fields(sid);
+            final Set<String> names = sess.getFieldNames();
+
+            for (String field : names) {
+                fields.put(field, codec.encode(sess.getField(field)));
+            }
+            // drop the fields that are not in the new session
+            fields.keySet().retainAll(names);
+        } finally {
+            unlock(sid, version);
+        }
+
         callback.handle(null);
     }
 
     @Override
-    public void destroy(String sid, Handler<Object> callback) {
-        storage.remove(sid);
+    public void update(final String sid, final JsonObject sess, final Set<String> changed, final Handler<Object> callback) {
+        final long version = lock(sid);
+
+        if (version == -1) {
+            // destroyed in the mean time, write it back in full
+            set(sid, sess, callback);
+            return;
+        }
+
+        if (version == BUSY) {
+            later(new Handler<Void>() {
+                @Override
+                public void handle(Void event) {
+                    update(sid, sess, changed, callback);
+                }
+            });
+            return;
+        }
+
+        try {
+            final ConcurrentMap<String, Object> fields = fields(sid);
+
+            for (String field : changed) {
+                if (sess.containsField(field)) {
+                    fields.put(field, codec.encode(sess.getField(field)));
+                } else {
+                    fields.remove(field);
+                }
+            }
+        } finally {
+            unlock(sid, version);
+        }
+
+        callback.handle(null);
+    }
+
+    /**
+     * Removes a session once the write in progress completed, false if that write did not complete in time.
+     */
+    private boolean remove(String sid) {
+        final long version = lock(sid);
+        if (version == BUSY) {
+            return false;
+        }
+        if (version != -1) {
+            sharedData.removeMap(name + ":" + sid);
+            storage.remove(sid);
+        }
+        return true;
+    }
+
+    @Override
+    public void destroy(final String sid, final Handler<Object> callback) {
+        if (!remove(sid)) {
+            later(new Handler<Void>() {
+                @Override
+                public void handle(Void event) {
+                    destroy(sid, callback);
+                }
+            });
+            return;
+        }
         callback.handle(null);
     }
 
     @Override
-    public void all(Handler<JsonArray> callback) {
+    public void all(final Handler<JsonArray> callback) {
         JsonArray items = new JsonArray();
-        for (String s : storage.values()) {
-            items.add(new JsonObject(s));
+        for (String sid : storage.keySet()) {
+            JsonObject sess = read(sid);
+            if (sess == BUSY_SESSION) {
+                later(new Handler<Void>() {
+                    @Override
+                    public void handle(Void event) {
+                        all(callback);
+                    }
+                });
+                return;
+            }
+            if (sess != null) {
+                items.add(sess);
+            }
         }
         callback.handle(items);
     }
 
     @Override
-    public void clear(Handler<Object> callback) {
-        storage.clear();
+    public void clear(final Handler<Object> callback) {
+        for (String sid : storage.keySet()) {
+            if (!remove(sid)) {
+                // the sessions removed so far stay removed
+                later(new Handler<Void>() {
+                    @Override
+                    public void handle(Void event) {
+                        clear(callback);
+                    }
+                });
+                return;
+            }
+        }
         callback.handle(null);
     }
 
@@ -83,7 +83,7 @@ public class ChangeAwareJsonArray extends ChangeAwareJsonElement {
     public <T> T get(int index) {
 	    Object value = inner.get(index);
 	    if (value != null) {
-		    if (value instanceof ChangeAwareJsonArray) {
+		    if (value instanceof JsonArray) {
 		    	value = new ChangeAwareJsonArray((JsonArray) value, notifier != null ? notifier : this);
 		    } else if (value instanceof JsonObject) {
 		    	value = new ChangeAwareJsonObject((JsonObject) value, notifier != null ? notifier : this);
@@ -1,5 +1,7 @@
 package com.jetdrone.vertx.yoke.store.json;
 
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -10,6 +12,7 @@ import org.vertx.java.core.json.JsonObject;
 public class ChangeAwareJsonObject extends ChangeAwareJsonElement {
 
 	private final JsonObject inner;
+	private final Set<String> changedFields = new LinkedHashSet<>();
 
 	protected ChangeAwareJsonObject(JsonObject jsonObject, ChangeAware notifier) {
 	    super(notifier);
@@ -27,49 +30,49 @@ public class ChangeAwareJsonObject extends ChangeAwareJsonElement {
 	}
 
 	public ChangeAwareJsonObject putString(String fieldName, String value) {
-		setChanged();
+		setChanged(fieldName);
 	    inner.putString(fieldName, value);
 	    return this;
     }
 
 	public ChangeAwareJsonObject putObject(String fieldName, JsonObject value) {
-		setChanged();
+		setChanged(fieldName);
 	    inner.putObject(fieldName, value);
 	    return this;
     }
 
 	public ChangeAwareJsonObject putArray(String fieldName, JsonArray value) {
-		setChanged();
+		setChanged(fieldName);
 	    inner.putArray(fieldName, value);
 	    return this;
     }
 
 	public ChangeAwareJsonObject putElement(String fieldName, JsonElement value) {
-		setChanged();
+		setChanged(fieldName);
 	    inner.putElement(fieldName, value);
 	    return this;
     }
 
 	public ChangeAwareJsonObject putNumber(String fieldName, Number value) {
-		setChanged();
+		setChanged(fieldName);
 	    inner.putNumber(fieldName, value);
 	    return this;
     }
 
 	public ChangeAwareJsonObject putBoolean(String fieldName, Boolean value) {
-		setChanged();
+		setChanged(fieldName);
 	    inner.putBoolean(fieldName, value);
 	    return this;
     }
 
 	public ChangeAwareJsonObject putBinary(String fieldName, byte[] binary) {
-		setChanged();
+		setChanged(fieldName);
 	    inner.putBinary(fieldName, binary);
 	    return this;
     }
 
 	public ChangeAwareJsonObject putValue(String fieldName, Object value) {
-		setChanged();
+		setChanged(fieldName);
 	    inner.putValue(fieldName, value);
 	    return this;
     }
@@ -79,19 +82,19 @@ public class ChangeAwareJsonObject extends ChangeAwareJsonElement {
     }
 
 	public ChangeAwareJsonObject getObject(String fieldName) {
-	    return convertJsonObject(inner.getObject(fieldName));
+	    return convertJsonObject(fieldName, inner.getObject(fieldName));
     }
 
 	public ChangeAwareJsonArray getArray(String fieldName) {
-	    return convertJsonArray(inner.getArray(fieldName));
+	    return convertJsonArray(fieldName, inner.getArray(fieldName));
     }
 
 	public ChangeAwareJsonElement getElement(String fieldName) {
 	    JsonElement value = inner.getElement(fieldName);
 	    if (value.isArray()) {
-	    	return convertJsonArray(value.asArray());
+	    	return convertJsonArray(fieldName, value.asArray());
 	    } else {
-	    	return convertJsonObject(value.asObject());
+	    	return convertJsonObject(fieldName, value.asObject());
 	    }
     }
 
@@ -120,19 +123,19 @@ public class ChangeAwareJsonObject extends ChangeAwareJsonElement {
     }
 
 	public ChangeAwareJsonObject getObject(String fieldName, JsonObject def) {
-	    return convertJsonObject(inner.getObject(fieldName, def));
+	    return convertJsonObject(fieldName, inner.getObject(fieldName, def));
     }
 
 	public ChangeAwareJsonArray getArray(String fieldName, JsonArray def) {
-	    return convertJsonArray(inner.getArray(fieldName, def));
+	    return convertJsonArray(fieldName, inner.getArray(fieldName, def));
     }
 
 	public ChangeAwareJsonElement getElement(String fieldName, JsonElement def) {
 	    JsonElement value = inner.getElement(fieldName, def);
 	    if (value.isArray()) {
-	    	return convertJsonArray(value.asArray());
+	    	return convertJsonArray(fieldName, value.asArray());
 	    } else {
-	    	return convertJsonObject(value.asObject());
+	    	return convertJsonObject(fieldName, value.asObject());
 	    }
     }
 
@@ -168,15 +171,15 @@ public class ChangeAwareJsonObject extends ChangeAwareJsonElement {
     public <T> T getField(String fieldName) {
 	    Object value = inner.getField(fieldName);
 	    if (value instanceof JsonArray) {
-	    	value = convertJsonArray((JsonArray) value);
+	    	value = convertJsonArray(fieldName, (JsonArray) value);
 	    } else if (value instanceof JsonObject) {
-	    	value = convertJsonObject((JsonObject) value);
+	    	value = convertJsonObject(fieldName, (JsonObject) value);
 	    }
 	    return (T) value;
     }
 
 	public Object removeField(String fieldName) {
-		setChanged();
+		setChanged(fieldName);
 	    return inner.removeField(fieldName);
     }
 
@@ -189,7 +192,9 @@ public class ChangeAwareJsonObject extends ChangeAwareJsonElement {
     }
 
 	public ChangeAwareJsonObject mergeIn(JsonObject other) {
-		setChanged();
+		for (String fieldName : other.getFieldNames()) {
+			setChanged(fieldName);
+		}
 	    inner.mergeIn(other);
 	    return this;
     }
@@ -222,13 +227,49 @@ public class ChangeAwareJsonObject extends ChangeAwareJsonElement {
 		return inner;
 	}
 
-	private ChangeAwareJsonArray convertJsonArray(JsonArray value) {
+	/**
+	 * Top level fields set or removed since this object was created. Changes made through nested objects and arrays
+	 * are reported as a change of the top level field that contains them. Only the root object keeps track of the
+	 * fields, nested objects return an empty set.
+	 *
+	 * @return read only set of field names
+	 */
+	public Set<String> changedFields() {
+		return Collections.unmodifiableSet(changedFields);
+	}
+
+	private void setChanged(String fieldName) {
+		if (notifier == null) {
+			changedFields.add(fieldName);
+		}
+		setChanged();
+	}
+
+	private ChangeAwareJsonArray convertJsonArray(String fieldName, JsonArray value) {
 		if (value == null) return null;
-    	return new ChangeAwareJsonArray(value, notifier != null ? notifier : this);
+    	return new ChangeAwareJsonArray(value, notifier != null ? notifier : new FieldNotifier(fieldName));
 	}
 	
-	private ChangeAwareJsonObject convertJsonObject(JsonObject value) {
+	private ChangeAwareJsonObject convertJsonObject(String fieldName, JsonObject value) {
 		if (value == null) return null;
-    	return new ChangeAwareJsonObject(value, notifier != null ? notifier : this);
+    	return new ChangeAwareJsonObject(value, notifier != null ? notifier : new FieldNotifier(fieldName));
+	}
+
+	/**
+	 * Notifier given to the nested elements of a root object, records the top level field they belong to.
+	 */
+	private final class FieldNotifier implements ChangeAware {
+
+		private final String fieldName;
+
+		FieldNotifier(String fieldName) {
+			this.fieldName = fieldName;
+		}
+
+		@Override
+		public void notifyChanged(ChangeAwareJsonElement jsonElement) {
+			changedFields.add(fieldName);
+			ChangeAwareJsonObject.this.notifyChanged(jsonElement);
+		}
 	}
 }
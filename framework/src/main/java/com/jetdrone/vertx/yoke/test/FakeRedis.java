@@ -0,0 +1,339 @@
+/**
+ * Copyright 2011-2014 the original author or authors.
+ */
+package com.jetdrone.vertx.yoke.test;
+
+import com.jetdrone.vertx.yoke.store.RedisSessionStore;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.eventbus.Message;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * # FakeRedis
+ *
+ * In process replacement for the redis bus module, good enough to test and benchmark `RedisSessionStore` without a
+ * Redis server. It speaks the same message format (`{command, args}` answered with `{status, value}` or
+ * `{status, message}`) and implements the commands the store uses: `get`, `set`, `setex`, `mget`, `hget`, `hgetall`,
+ * `hset`, `hmset`, `hdel`, `expire`, `del`, `exists`, `keys`, `scan`, `dbsize`, `flushdb` and `eval` of the
+ * `RedisSessionStore` scripts.
+ *
+ * <pre>
+ * vertx.eventBus().registerHandler("redis", new FakeRedis());
+ * </pre>
+ */
+public class FakeRedis implements Handler<Message<JsonObject>> {
+
+    private static final class Value {
+        // String or Map for hashes
+        final Object value;
+        long expires;
+
+        Value(Object value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+
+    private final TreeMap<String, Value> data = new TreeMap<>();
+    private long commands;
+
+    /**
+     * @return number of commands received so far
+     */
+    public long commands() {
+        return commands;
+    }
+
+    @Override
+    public void handle(Message<JsonObject> message) {
+        commands++;
+
+        final String command = message.body().getString("command");
+        final JsonArray args = message.body().getArray("args");
+
+        try {
+            message.reply(new JsonObject().putString("status", "ok").putValue("value", execute(command, args)));
+        } catch (RuntimeException e) {
+            message.reply(new JsonObject().putString("status", "error").putString("message", e.getMessage()));
+        }
+    }
+
+    private Object execute(String command, JsonArray args) {
+        switch (command.toLowerCase()) {
+            case "get":
+                return get(arg(args, 0));
+            case "set":
+                data.put(arg(args, 0), new Value(arg(args, 1), 0));
+                return "OK";
+            case "setex":
+                setex(arg(args, 0), arg(args, 1), arg(args, 2));
+                return "OK";
+            case "mget": {
+                final JsonArray values = new JsonArray();
+                for (Object key : args) {
+                    final Value value = lookup((String) key);
+                    values.add(value != null && value.value instanceof String ? value.value : null);
+                }
+                return values;
+            }
+            case "hget": {
+                final Map<String, String> hash = hash(arg(args, 0), false);
+                return hash == null ? null : hash.get(arg(args, 1));
+            }
+            case "hgetall":
+                return hgetall(arg(args, 0));
+            case "hset":
+            case "hmset": {
+                final Map<String, String> hash = hash(arg(args, 0), true);
+                for (int i = 1; i < args.size() - 1; i += 2) {
+                    hash.put(arg(args, i), arg(args, i + 1));
+                }
+                return "hset".equalsIgnoreCase(command) ? 1 : "OK";
+            }
+            case "hdel": {
+                final Map<String, String> hash = hash(arg(args, 0), false);
+                int count = 0;
+                if (hash != null) {
+                    for (int i = 1; i < args.size(); i++) {
+                        if (hash.remove(arg(args, i)) != null) {
+                            count++;
+                        }
+                    }
+                    if (hash.isEmpty()) {
+                        data.remove(arg(args, 0));
+                    }
+                }
+                return count;
+            }
+            case "expire": {
+                final Value value = lookup(arg(args, 0));
+                if (value == null) {
+                    return 0;
+                }
+                value.expires = System.currentTimeMillis() + Long.parseLong(arg(args, 1)) * 1000;
+                return 1;
+            }
+            case "del": {
+                int count = 0;
+                for (Object key : args) {
+                    if (lookup((String) key) != null) {
+                        data.remove(key);
+                        count++;
+                    }
+                }
+                return count;
+            }
+            case "exists":
+                return lookup(arg(args, 0)) != null ? 1 : 0;
+            case "keys":
+                return scan(null, glob(arg(args, 0)), Integer.MAX_VALUE).get(1);
+            case "scan": {
+                Pattern match = null;
+                int count = 10;
+                for (int i = 1; i < args.size() - 1; i += 2) {
+                    String option = arg(args, i);
+                    if ("match".equalsIgnoreCase(option)) {
+                        match = glob(arg(args, i + 1));
+                    } else if ("count".equalsIgnoreCase(option)) {
+                        count = Integer.parseInt(arg(args, i + 1));
+                    }
+                }
+                return scan(arg(args, 0), match, count);
+            }
+            case "dbsize":
+                expire();
+                return data.size();
+            case "flushdb":
+                data.clear();
+                return "OK";
+            case "eval":
+                return eval(args);
+            default:
+                throw new RuntimeException("ERR unknown command '" + command + "'");
+        }
+    }
+
+    private Value lookup(String key) {
+        final Value value = data.get(key);
+        if (value == null) {
+            return null;
+        }
+        if (value.expires != 0 && value.expires <= System.currentTimeMillis()) {
+            data.remove(key);
+            return null;
+        }
+        return value;
+    }
+
+    private String get(String key) {
+        final Value value = lookup(key);
+        if (value == null) {
+            return null;
+        }
+        if (!(value.value instanceof String)) {
+            throw new RuntimeException("WRONGTYPE Operation against a key holding the wrong kind of value");
+        }
+        return (String) value.value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, String> hash(String key, boolean create) {
+        final Value value = lookup(key);
+        if (value == null) {
+            if (!create) {
+                return null;
+            }
+            final Map<String, String> hash = new LinkedHashMap<>();
+            data.put(key, new Value(hash, 0));
+            return hash;
+        }
+        if (!(value.value instanceof Map)) {
+            throw new RuntimeException("WRONGTYPE Operation against a key holding the wrong kind of value");
+        }
+        return (Map<String, String>) value.value;
+    }
+
+    private JsonArray hgetall(String key) {
+        final JsonArray pairs = new JsonArray();
+        final Map<String, String> hash = hash(key, false);
+        if (hash != null) {
+            for (Map.Entry<String, String> field : hash.entrySet()) {
+                pairs.add(field.getKey()).add(field.getValue());
+            }
+        }
+        return pairs;
+    }
+
+    private void setex(String key, String ttl, String value) {
+        final long seconds = Long.parseLong(ttl);
+        if (seconds <= 0) {
+            throw new RuntimeException("ERR invalid expire time in setex");
+        }
+        data.put(key, new Value(value, System.currentTimeMillis() + seconds * 1000));
+    }
+
+    private Object eval(JsonArray args) {
+        final String script = arg(args, 0);
+        final int numKeys = Integer.parseInt(arg(args, 1));
+
+        if (RedisSessionStore.MSETEX.equals(script)) {
+            for (int i = 0; i < numKeys; i++) {
+                setex(arg(args, 2 + i), arg(args, 2 + numKeys + 2 * i), arg(args, 3 + numKeys + 2 * i));
+            }
+            return numKeys;
+        }
+
+        if (RedisSessionStore.HREAD.equals(script)) {
+            final JsonArray values = new JsonArray();
+            for (int i = 0; i < numKeys; i++) {
+                values.add(hgetall(arg(args, 2 + i)));
+            }
+            return values;
+        }
+
+        if (RedisSessionStore.HWRITE.equals(script)) {
+            int a = 2 + numKeys;
+            for (int i = 0; i < numKeys; i++) {
+                final String key = arg(args, 2 + i);
+                final boolean full = "1".equals(arg(args, a));
+                final long ttl = Long.parseLong(arg(args, a + 1));
+                final int n = Integer.parseInt(arg(args, a + 2));
+                final int d = Integer.parseInt(arg(args, a + 3 + 2 * n));
+
+                if (full || lookup(key) != null) {
+                    if (full) {
+                        data.remove(key);
+                    }
+                    for (int j = 0; j < n; j++) {
+                        hash(key, true).put(arg(args, a + 3 + 2 * j), arg(args, a + 4 + 2 * j));
+                    }
+                    final Map<String, String> hash = hash(key, false);
+                    if (hash != null) {
+                        for (int j = 0; j < d; j++) {
+                            hash.remove(arg(args, a + 4 + 2 * n + j));
+                        }
+                        if (hash.isEmpty()) {
+                            data.remove(key);
+                        } else {
+                            data.get(key).expires = System.currentTimeMillis() + ttl * 1000;
+                        }
+                    }
+                }
+                a += 4 + 2 * n + d;
+            }
+            return numKeys;
+        }
+
+        throw new RuntimeException("NOSCRIPT only the RedisSessionStore scripts are supported");
+    }
+
+    /**
+     * The cursor is the last key returned (or "0" to start), so keys deleted between calls do not shift the iteration
+     * the way a numeric offset would.
+     */
+    private JsonArray scan(String cursor, Pattern match, int count) {
+        expire();
+
+        final NavigableMap<String, Value> view = cursor == null || "0".equals(cursor) ? data : data.tailMap(cursor, false);
+        final JsonArray keys = new JsonArray();
+        String last = null;
+        int visited = 0;
+
+        for (String key : view.keySet()) {
+            if (visited == count) {
+                break;
+            }
+            visited++;
+            last = key;
+            if (match == null || match.matcher(key).matches()) {
+                keys.add(key);
+            }
+        }
+
+        final boolean done = last == null || data.higherKey(last) == null;
+        return new JsonArray().add(done ? "0" : last).add(keys);
+    }
+
+    private void expire() {
+        final long now = System.currentTimeMillis();
+        final Iterator<Map.Entry<String, Value>> it = data.entrySet().iterator();
+        while (it.hasNext()) {
+            final Value value = it.next().getValue();
+            if (value.expires != 0 && value.expires <= now) {
+                it.remove();
+            }
+        }
+    }
+
+    private static String arg(JsonArray args, int index) {
+        // numbers are accepted wherever Redis expects a string
+        final Object value = args.get(index);
+        return value == null ? null : value.toString();
+    }
+
+    private static Pattern glob(String glob) {
+        final StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            final char c = glob.charAt(i);
+            switch (c) {
+                case '*':
+                    regex.append(".*");
+                    break;
+                case '?':
+                    regex.append('.');
+                    break;
+                default:
+                    regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+}
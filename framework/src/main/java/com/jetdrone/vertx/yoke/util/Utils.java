@@ -40,36 +40,44 @@ public final class Utils {
         return new String(hexChars);
     }
 
-    private static final String BASE64ALPHA = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
-
-    private static byte[] zeroPad(final int length, final byte[] bytes) {
-        final byte[] padded = new byte[length];
-        System.arraycopy(bytes, 0, padded, 0, bytes.length);
-        return padded;
-    }
+    private static final char[] BASE64ALPHA = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
 
+    /**
+     * Base64 without padding
+     */
     public static String base64(final @NotNull byte[] stringArray) {
+        final int length = stringArray.length;
+        final char[] encoded = new char[(length * 4 + 2) / 3];
+
+        int i = 0;
+        int o = 0;
+        // process 3 bytes at a time, churning out 4 output chars
+        for (; i + 2 < length; i += 3) {
+            final int j = ((stringArray[i] & 0xff) << 16) +
+                    ((stringArray[i + 1] & 0xff) << 8) +
+                    (stringArray[i + 2] & 0xff);
+
+            encoded[o++] = BASE64ALPHA[(j >> 18) & 0x3f];
+            encoded[o++] = BASE64ALPHA[(j >> 12) & 0x3f];
+            encoded[o++] = BASE64ALPHA[(j >> 6) & 0x3f];
+            encoded[o++] = BASE64ALPHA[j & 0x3f];
+        }
+
+        // the remaining 1 or 2 bytes
+        if (i < length) {
+            int j = (stringArray[i] & 0xff) << 16;
+            if (i + 1 < length) {
+                j += (stringArray[i + 1] & 0xff) << 8;
+            }
 
-        final StringBuilder encoded = new StringBuilder();
-
-        // determine how many padding bytes to add to the output
-        final int paddingCount = (3 - (stringArray.length % 3)) % 3;
-        // add any necessary padding to the input
-        final byte[] paddedArray = zeroPad(stringArray.length + paddingCount, stringArray);
-        // process 3 bytes at a time, churning out 4 output bytes
-        for (int i = 0; i < paddedArray.length; i += 3) {
-            final int j = ((paddedArray[i] & 0xff) << 16) +
-                    ((paddedArray[i + 1] & 0xff) << 8) +
-                    (paddedArray[i + 2] & 0xff);
-
-            encoded.append(BASE64ALPHA.charAt((j >> 18) & 0x3f));
-            encoded.append(BASE64ALPHA.charAt((j >> 12) & 0x3f));
-            encoded.append(BASE64ALPHA.charAt((j >> 6) & 0x3f));
-            encoded.append(BASE64ALPHA.charAt(j & 0x3f));
+            encoded[o++] = BASE64ALPHA[(j >> 18) & 0x3f];
+            encoded[o++] = BASE64ALPHA[(j >> 12) & 0x3f];
+            if (i + 1 < length) {
+                encoded[o] = BASE64ALPHA[(j >> 6) & 0x3f];
+            }
         }
 
-        encoded.setLength(encoded.length() - paddingCount);
-        return encoded.toString();
+        return new String(encoded);
     }
 
     /**
@@ -1,11 +1,11 @@
 package com.jetdrone.vertx.yoke.util;
 
-import com.jetdrone.vertx.yoke.core.YokeException;
 import com.jetdrone.vertx.yoke.middleware.YokeRequest;
 import com.jetdrone.vertx.yoke.util.validation.Assertion;
 import com.jetdrone.vertx.yoke.util.validation.That;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class Validator {
@@ -18,6 +18,9 @@ public class Validator {
         this.assertions = assertions;
     }
 
+    /**
+     * When false validate collects the failures of all assertions, default true.
+     */
     public void setFailOnFirstError(boolean failOnFirstError) {
         this.failOnFirstError = failOnFirstError;
     }
@@ -27,27 +30,44 @@ public class Validator {
     }
 
     public boolean isValid(final YokeRequest request) {
-        return validate(request).size() == 0;
+        return check(request) == null;
     }
 
+    /**
+     * The message of the first failing assertion, null when the request is valid.
+     */
+    public String check(final YokeRequest request) {
+        for (Assertion assertion : assertions) {
+            final String failure = assertion.check(request);
+            if (failure != null) {
+                return failure;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * The failure messages, an empty list when the request is valid. Nothing is allocated for valid requests.
+     */
     public List<String> validate(final YokeRequest request) {
 
-        final List<String> failures = new ArrayList<>();
+        List<String> failures = null;
 
         // check all items
         for (Assertion assertion : assertions) {
-            try {
-                assertion.ok(request);
-            } catch (YokeException e) {
+            final String failure = assertion.check(request);
+            if (failure != null) {
                 if (failOnFirstError) {
-                    failures.add(e.getMessage());
-                    return failures;
-                } else {
-                    failures.add(e.getMessage());
+                    return Collections.singletonList(failure);
+                }
+                if (failures == null) {
+                    failures = new ArrayList<>();
                 }
+                failures.add(failure);
             }
         }
 
-        return failures;
+        return failures == null ? Collections.<String>emptyList() : failures;
     }
 }
@@ -16,4 +16,17 @@ public abstract class Assertion {
     }
 
     public abstract void ok(YokeRequest request) throws YokeException;
-}
\ No newline at end of file
+
+    /**
+     * Validates without throwing: null when the request passes, otherwise the failure message. The assertions from
+     * `That` implement this directly, other assertions fall back to catching the exception from ok.
+     */
+    public String check(YokeRequest request) {
+        try {
+            ok(request);
+            return null;
+        } catch (YokeException e) {
+            return e.getMessage();
+        }
+    }
+}
@@ -60,8 +60,33 @@ public final class That {
         }
     }
 
+    /**
+     * Returned by get instead of a value when the value cannot be read, so a failing request does not throw.
+     */
+    private static final class Failure {
+        private final String message;
+
+        private Failure(String message) {
+            this.message = message;
+        }
+    }
+
+    private static final Failure NO_BODY = new Failure("No Body");
+    private static final Failure NOT_JSON = new Failure("Body is not JSON");
+
+    // returned by millis for anything that is not a date
+    private static final long NO_DATE = Long.MIN_VALUE;
+
     private final int type;
     private final String path;
+    private final boolean optional;
+
+    // body paths are split once, the '?' markers are removed from the keys
+    private final String[] keys;
+    private final boolean[] optionalKeys;
+    private final Failure[] missingKeys;
+
+    private final String nullMessage;
 
     public That(String path) {
         int sep = path.indexOf(":");
@@ -96,9 +121,50 @@ public final class That {
             default:
                 throw new RuntimeException("Unknown type: " + type);
         }
+
+        optional = this.path.charAt(0) == '?' || this.path.contains(".?");
+        nullMessage = "'" + this.path + "' cannot be NULL";
+
+        if (this.type == 2) {
+            keys = this.path.split("\\.");
+            optionalKeys = new boolean[keys.length];
+            missingKeys = new Failure[keys.length];
+
+            for (int i = 0; i < keys.length; i++) {
+                missingKeys[i] = new Failure("Parameter '" + keys[i] + "' is not present or is null");
+                optionalKeys[i] = keys[i].charAt(0) == '?';
+                if (optionalKeys[i]) {
+                    keys[i] = keys[i].substring(1);
+                }
+            }
+        } else {
+            keys = null;
+            optionalKeys = null;
+            missingKeys = null;
+        }
     }
 
-    private Object get(final YokeRequest request) throws YokeException {
+    /**
+     * Base for the assertions created here: they report failures from check, ok only throws for callers using the
+     * assertion directly.
+     */
+    private abstract class Check extends Assertion {
+        @Override
+        public final void ok(final YokeRequest request) throws YokeException {
+            final String failure = check(request);
+            if (failure != null) {
+                throw new YokeException(errorCode, failure);
+            }
+        }
+
+        @Override
+        public abstract String check(final YokeRequest request);
+    }
+
+    /**
+     * Reads the value under validation, a Failure when it cannot be read.
+     */
+    private Object get(final YokeRequest request) {
         switch (type) {
             case 0:
                 return request.getParameter(path);
@@ -106,675 +172,448 @@ public final class That {
                 return request.getFormParameter(path);
             case 2:
                 if (!request.hasBody()) {
-                    throw new YokeException(400, "No Body");
+                    return NO_BODY;
                 }
 
                 Object obj = request.body();
                 if (!(obj instanceof JsonObject)) {
-                    throw new YokeException(400, "Body is not JSON");
+                    return NOT_JSON;
                 }
 
                 JsonObject json = (JsonObject) obj;
 
-                String[] keys = path.split("\\.");
-
-                for (int i = 0; i < keys.length - 1; i++) {
-                    boolean optional = keys[i].charAt(0) == '?';
+                final int last = keys.length - 1;
 
+                for (int i = 0; i < last; i++) {
                     if (json == null) {
-                        if (optional) {
+                        if (optionalKeys[i]) {
                             json = EMPTY;
                         } else {
-                            throw new YokeException(400, "Parameter '" + keys[i] + "' is not present or is null");
+                            return missingKeys[i];
                         }
                     }
 
-                    json = json.getObject(optional ? keys[i].substring(1) : keys[i]);
+                    json = json.getObject(keys[i]);
                 }
 
-                boolean optional = keys[keys.length - 1].charAt(0) == '?';
-
                 if (json == null) {
-                    if (optional) {
+                    if (optionalKeys[last]) {
                         json = EMPTY;
                     } else {
-                        throw new YokeException(400, "Parameter '" + keys[keys.length - 1] + "' is not present or is null");
+                        return missingKeys[last];
                     }
                 }
 
-                return json.getField(optional ? keys[keys.length - 1].substring(1) : keys[keys.length - 1]);
+                return json.getField(keys[last]);
             case 3:
                 return request.get(path);
             case 4:
                 return request.getHeader(path);
             default:
-                throw new YokeException(400, "Unknown source " + type);
+                return new Failure("Unknown source " + type);
         }
     }
 
-    private boolean isOptional() {
-        return path.charAt(0) == '?' || path.contains(".?");
+    /**
+     * Length of strings and arrays, -1 for anything else.
+     */
+    private static int size(final Object field) {
+        if (field instanceof String) {
+            return ((String) field).length();
+        }
+        if (field instanceof List) {
+            return ((List) field).size();
+        }
+        if (field instanceof JsonArray) {
+            return ((JsonArray) field).size();
+        }
+        return -1;
+    }
+
+    /**
+     * Time of a date-time or date string, NO_DATE for anything else.
+     */
+    private static long millis(final Object field) {
+        if (field instanceof String) {
+            try {
+                if (DATETIME.matcher((CharSequence) field).matches()) {
+                    return DATEFORMAT.parse((String) field).getTime();
+                }
+                if (DATE.matcher((CharSequence) field).matches()) {
+                    return DATEFORMAT.parse(field + "T00:00:00Z").getTime();
+                }
+            } catch (ParseException e) {
+                return NO_DATE;
+            }
+        }
+        return NO_DATE;
+    }
+
+    private static Pattern pattern(final Type type) {
+        switch (type) {
+            case DateTime:
+                return DATETIME;
+            case Date:
+                return DATE;
+            case Time:
+                return TIME;
+            case Email:
+                return EMAIL;
+            case IPAddress:
+                return IPADDRESS;
+            case IPV6Address:
+                return IPV6ADDRESS;
+            case URI:
+                return URI;
+            case Hostname:
+                return HOSTNAME;
+            case Alpha:
+                return ALPHA;
+            case Alphanumeric:
+                return ALPHANUMERIC;
+            default:
+                return null;
+        }
     }
 
     public Assertion is(final Type type) {
-        return new Assertion() {
+        final String message = "'" + path + "' is not " + type.name();
+        final Pattern pattern = pattern(type);
+
+        return new Check() {
             @Override
-            public void ok(final YokeRequest request) throws YokeException {
+            public String check(final YokeRequest request) {
 
                 final Object field = get(request);
-                final boolean optional = isOptional();
+
+                if (field instanceof Failure) {
+                    return ((Failure) field).message;
+                }
 
                 // null is handled as a special case
                 if (field == null) {
                     if (optional || type == Type.Null) {
-                        return;
+                        return null;
                     }
-                    throw new YokeException(errorCode, "'" + path + "' cannot be NULL");
+                    return nullMessage;
                 }
 
                 switch (type) {
                     case Any:
-                        return;
+                        return null;
                     // base json types
                     case JsonObject:
-                        if (field instanceof JsonObject || field instanceof Map) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' is not " + type.name());
+                        return field instanceof JsonObject || field instanceof Map ? null : message;
                     case JsonArray:
-                        if (field instanceof JsonArray || field instanceof List) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' is not " + type.name());
+                        return field instanceof JsonArray || field instanceof List ? null : message;
                     case String:
-                        if (field instanceof String) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' is not " + type.name());
+                        return field instanceof String ? null : message;
                     case Number:
-                        if (field instanceof Number) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' is not " + type.name());
+                        return field instanceof Number ? null : message;
                     case Boolean:
-                        if (field instanceof Boolean) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' is not " + type.name());
-                        // specific types
+                        return field instanceof Boolean ? null : message;
+                    // specific types
                     case Integer:
-                        if (field instanceof Integer) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' is not " + type.name());
+                        return field instanceof Integer ? null : message;
                     case Long:
-                        if (field instanceof Long) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' is not " + type.name());
+                        return field instanceof Long ? null : message;
                     case Double:
-                        if (field instanceof Double) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' is not " + type.name());
-                        // json schema validations
-                    case DateTime:
-                        if (field instanceof CharSequence && DATETIME.matcher((CharSequence) field).matches()) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' is not " + type.name());
-                    case Date:
-                        if (field instanceof CharSequence && DATE.matcher((CharSequence) field).matches()) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' is not " + type.name());
-                    case Time:
-                        if (field instanceof CharSequence && TIME.matcher((CharSequence) field).matches()) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' is not " + type.name());
-                    case Email:
-                        if (field instanceof CharSequence && EMAIL.matcher((CharSequence) field).matches()) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' is not " + type.name());
-                    case IPAddress:
-                        if (field instanceof CharSequence && IPADDRESS.matcher((CharSequence) field).matches()) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' is not " + type.name());
-                    case IPV6Address:
-                        if (field instanceof CharSequence && IPV6ADDRESS.matcher((CharSequence) field).matches()) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' is not " + type.name());
-                    case URI:
-                        if (field instanceof CharSequence && URI.matcher((CharSequence) field).matches()) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' is not " + type.name());
-                    case Hostname:
-                        if (field instanceof CharSequence && HOSTNAME.matcher((CharSequence) field).matches()) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' is not " + type.name());
-                    case Alpha:
-                        if (field instanceof CharSequence && ALPHA.matcher((CharSequence) field).matches()) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' is not " + type.name());
-                    case Alphanumeric:
-                        if (field instanceof CharSequence && ALPHANUMERIC.matcher((CharSequence) field).matches()) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' is not " + type.name());
+                        return field instanceof Double ? null : message;
+                }
+
+                // json schema validations
+                if (pattern != null) {
+                    return field instanceof CharSequence && pattern.matcher((CharSequence) field).matches() ? null : message;
                 }
 
                 // unknown
-                throw new YokeException(errorCode, "Failed to validate");
+                return "Failed to validate";
             }
         };
     }
 
     public Assertion exists() {
-        return new Assertion() {
+        return new Check() {
             @Override
-            public void ok(final YokeRequest request) throws YokeException {
+            public String check(final YokeRequest request) {
 
                 final Object field = get(request);
 
-                if (field == null) {
-                    throw new YokeException(errorCode, "'" + path + "' cannot be NULL");
+                if (field instanceof Failure) {
+                    return ((Failure) field).message;
                 }
+
+                return field == null ? nullMessage : null;
             }
         };
     }
 
     public Assertion between(final Number min, final Number max) {
-        return new Assertion() {
+        final String message = "'" + path + "' is outside the range [" + min + ":" + max + "] be NULL";
+
+        return new Check() {
             @Override
-            public void ok(final YokeRequest request) throws YokeException {
+            public String check(final YokeRequest request) {
 
                 final Object field = get(request);
 
-                if (field == null) {
-                    throw new YokeException(errorCode, "'" + path + "' cannot be NULL");
+                if (field instanceof Failure) {
+                    return ((Failure) field).message;
                 }
 
-                if (field instanceof String) {
-                    int len = ((String) field).length();
-                    if (len >= min.intValue() && len <= max.intValue()) {
-                        return;
-                    }
-                    throw new YokeException(errorCode, "'" + path + "' is outside the range [" + min + ":" + max + "] be NULL");
-                }
-                if (field instanceof Number) {
-                    if (NUMBERCOMPARATOR.compare((Number) field, min) >= 0 && NUMBERCOMPARATOR.compare((Number) field, max) <= 0) {
-                        return;
-                    }
-                    throw new YokeException(errorCode, "'" + path + "' is outside the range [" + min + ":" + max + "] be NULL");
+                if (field == null) {
+                    return nullMessage;
                 }
 
-                if (field instanceof List) {
-                    int len = ((List) field).size();
-                    if (len >= min.intValue() && len <= max.intValue()) {
-                        return;
-                    }
-                    throw new YokeException(errorCode, "'" + path + "' is outside the range [" + min + ":" + max + "] be NULL");
+                if (field instanceof Number) {
+                    return NUMBERCOMPARATOR.compare((Number) field, min) >= 0 && NUMBERCOMPARATOR.compare((Number) field, max) <= 0 ? null : message;
                 }
 
-                if (field instanceof JsonArray) {
-                    int len = ((JsonArray) field).size();
-                    if (len >= min.intValue() && len <= max.intValue()) {
-                        return;
-                    }
-                    throw new YokeException(errorCode, "'" + path + "' is outside the range [" + min + ":" + max + "] be NULL");
+                final int len = size(field);
+                if (len != -1) {
+                    return len >= min.intValue() && len <= max.intValue() ? null : message;
                 }
 
                 // unknown
-                throw new YokeException(errorCode, "Failed to validate");
+                return "Failed to validate";
             }
         };
     }
 
     public Assertion between(final Date min, final Date max) {
-        return new Assertion() {
+        final String message = "'" + path + "' is outside the range [" + min + ":" + max + "] be NULL";
+
+        return new Check() {
             @Override
-            public void ok(final YokeRequest request) throws YokeException {
+            public String check(final YokeRequest request) {
 
                 final Object field = get(request);
 
+                if (field instanceof Failure) {
+                    return ((Failure) field).message;
+                }
+
                 if (field == null) {
-                    throw new YokeException(errorCode, "'" + path + "' cannot be NULL");
+                    return nullMessage;
                 }
 
-                if (field instanceof String) {
-                    if (DATETIME.matcher((CharSequence) field).matches()) {
-                        long millis;
-                        try {
-                            millis = DATEFORMAT.parse((String) field).getTime();
-                        } catch (ParseException e) {
-                            throw new YokeException(errorCode, "Failed to validate", e);
-                        }
-                        if (millis >= min.getTime() && millis <= max.getTime()) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' is outside the range [" + min + ":" + max + "] be NULL");
-                    }
-                    if (DATE.matcher((CharSequence) field).matches()) {
-                        long millis;
-                        try {
-                            millis = DATEFORMAT.parse(field + "T00:00:00Z").getTime();
-                        } catch (ParseException e) {
-                            throw new YokeException(errorCode, "Failed to validate", e);
-                        }
-                        if (millis >= min.getTime() && millis <= max.getTime()) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' is outside the range [" + min + ":" + max + "] be NULL");
-                    }
+                final long millis = millis(field);
+                if (millis != NO_DATE) {
+                    return millis >= min.getTime() && millis <= max.getTime() ? null : message;
                 }
+
                 // unknown
-                throw new YokeException(errorCode, "Failed to validate");
+                return "Failed to validate";
             }
         };
     }
 
     public Assertion lessThan(final Number max) {
-        return new Assertion() {
+        final String message = "'" + path + "' is outside greater than [" + max + "] be NULL";
+
+        return new Check() {
             @Override
-            public void ok(final YokeRequest request) throws YokeException {
+            public String check(final YokeRequest request) {
 
                 final Object field = get(request);
 
-                if (field == null) {
-                    throw new YokeException(errorCode, "'" + path + "' cannot be NULL");
+                if (field instanceof Failure) {
+                    return ((Failure) field).message;
                 }
 
-                if (field instanceof String) {
-                    int len = ((String) field).length();
-                    if (len < max.intValue()) {
-                        return;
-                    }
-                    throw new YokeException(errorCode, "'" + path + "' is outside greater than [" + max + "] be NULL");
-                }
-                if (field instanceof Number) {
-                    if (NUMBERCOMPARATOR.compare((Number) field, max) < 0) {
-                        return;
-                    }
-                    throw new YokeException(errorCode, "'" + path + "' is outside greater than [" + max + "] be NULL");
+                if (field == null) {
+                    return nullMessage;
                 }
 
-                if (field instanceof List) {
-                    int len = ((List) field).size();
-                    if (len < max.intValue()) {
-                        return;
-                    }
-                    throw new YokeException(errorCode, "'" + path + "' is outside greater than [" + max + "] be NULL");
+                if (field instanceof Number) {
+                    return NUMBERCOMPARATOR.compare((Number) field, max) < 0 ? null : message;
                 }
 
-                if (field instanceof JsonArray) {
-                    int len = ((JsonArray) field).size();
-                    if (len < max.intValue()) {
-                        return;
-                    }
-                    throw new YokeException(errorCode, "'" + path + "' is outside greater than [" + max + "] be NULL");
+                final int len = size(field);
+                if (len != -1) {
+                    return len < max.intValue() ? null : message;
                 }
 
                 // unknown
-                throw new YokeException(errorCode, "Failed to validate");
+                return "Failed to validate";
             }
         };
     }
 
     public Assertion greaterThan(final Number min) {
-        return new Assertion() {
+        final String message = "'" + path + "' is less than [" + min + "] be NULL";
+
+        return new Check() {
             @Override
-            public void ok(final YokeRequest request) throws YokeException {
+            public String check(final YokeRequest request) {
 
                 final Object field = get(request);
 
-                if (field == null) {
-                    throw new YokeException(errorCode, "'" + path + "' cannot be NULL");
+                if (field instanceof Failure) {
+                    return ((Failure) field).message;
                 }
 
-                if (field instanceof String) {
-                    int len = ((String) field).length();
-                    if (len > min.intValue()) {
-                        return;
-                    }
-                    throw new YokeException(errorCode, "'" + path + "' is less than [" + min + "] be NULL");
-                }
-                if (field instanceof Number) {
-                    if (NUMBERCOMPARATOR.compare((Number) field, min) > 0) {
-                        return;
-                    }
-                    throw new YokeException(errorCode, "'" + path + "' is less than [" + min + "] be NULL");
+                if (field == null) {
+                    return nullMessage;
                 }
 
-                if (field instanceof List) {
-                    int len = ((List) field).size();
-                    if (len > min.intValue()) {
-                        return;
-                    }
-                    throw new YokeException(errorCode, "'" + path + "' is less than [" + min + "] be NULL");
+                if (field instanceof Number) {
+                    return NUMBERCOMPARATOR.compare((Number) field, min) > 0 ? null : message;
                 }
 
-                if (field instanceof JsonArray) {
-                    int len = ((JsonArray) field).size();
-                    if (len > min.intValue()) {
-                        return;
-                    }
-                    throw new YokeException(errorCode, "'" + path + "' is less than [" + min + "] be NULL");
+                final int len = size(field);
+                if (len != -1) {
+                    return len > min.intValue() ? null : message;
                 }
 
                 // unknown
-                throw new YokeException(errorCode, "Failed to validate");
+                return "Failed to validate";
             }
         };
     }
 
     public Assertion before(final Date max) {
-        return new Assertion() {
+        final String message = "'" + path + "' is after [" + max + "] be NULL";
+
+        return new Check() {
             @Override
-            public void ok(final YokeRequest request) throws YokeException {
+            public String check(final YokeRequest request) {
 
                 final Object field = get(request);
 
+                if (field instanceof Failure) {
+                    return ((Failure) field).message;
+                }
+
                 if (field == null) {
-                    throw new YokeException(errorCode, "'" + path + "' cannot be NULL");
+                    return nullMessage;
                 }
 
-                if (field instanceof String) {
-                    if (DATETIME.matcher((CharSequence) field).matches()) {
-                        long millis;
-                        try {
-                            millis = DATEFORMAT.parse((String) field).getTime();
-                        } catch (ParseException e) {
-                            throw new YokeException(errorCode, "Failed to validate", e);
-                        }
-                        if (millis < max.getTime()) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' is after [" + max + "] be NULL");
-                    }
-                    if (DATE.matcher((CharSequence) field).matches()) {
-                        long millis;
-                        try {
-                            millis = DATEFORMAT.parse(field + "T00:00:00Z").getTime();
-                        } catch (ParseException e) {
-                            throw new YokeException(errorCode, "Failed to validate", e);
-                        }
-                        if (millis < max.getTime()) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' is after [" + max + "] be NULL");
-                    }
+                final long millis = millis(field);
+                if (millis != NO_DATE) {
+                    return millis < max.getTime() ? null : message;
                 }
+
                 // unknown
-                throw new YokeException(errorCode, "Failed to validate");
+                return "Failed to validate";
             }
         };
     }
 
     public Assertion after(final Date min) {
-        return new Assertion() {
+        final String message = "'" + path + "' is before [" + min + "] be NULL";
+
+        return new Check() {
             @Override
-            public void ok(final YokeRequest request) throws YokeException {
+            public String check(final YokeRequest request) {
 
                 final Object field = get(request);
 
+                if (field instanceof Failure) {
+                    return ((Failure) field).message;
+                }
+
                 if (field == null) {
-                    throw new YokeException(errorCode, "'" + path + "' cannot be NULL");
+                    return nullMessage;
                 }
 
-                if (field instanceof String) {
-                    if (DATETIME.matcher((CharSequence) field).matches()) {
-                        long millis;
-                        try {
-                            millis = DATEFORMAT.parse((String) field).getTime();
-                        } catch (ParseException e) {
-                            throw new YokeException(errorCode, "Failed to validate", e);
-                        }
-                        if (millis > min.getTime()) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' is before [" + min + "] be NULL");
-                    }
-                    if (DATE.matcher((CharSequence) field).matches()) {
-                        long millis;
-                        try {
-                            millis = DATEFORMAT.parse(field + "T00:00:00Z").getTime();
-                        } catch (ParseException e) {
-                            throw new YokeException(errorCode, "Failed to validate", e);
-                        }
-                        if (millis > min.getTime()) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' is before [" + min + "] be NULL");
-                    }
+                final long millis = millis(field);
+                if (millis != NO_DATE) {
+                    return millis > min.getTime() ? null : message;
                 }
+
                 // unknown
-                throw new YokeException(errorCode, "Failed to validate");
+                return "Failed to validate";
             }
         };
     }
 
-    public Assertion equals(final String value) {
-        return new Assertion() {
+    /**
+     * Equality of values of the given class, values of other classes pass.
+     */
+    private Assertion equality(final Class<?> clazz, final Object value, final boolean equal) {
+        final String message = "'" + path + "' does not equal [" + value + "] be NULL";
+
+        return new Check() {
             @Override
-            public void ok(final YokeRequest request) throws YokeException {
+            public String check(final YokeRequest request) {
                 final Object field = get(request);
-                final boolean optional = isOptional();
 
-                // null is handled as a special case
-                if (field == null) {
-                    throw new YokeException(errorCode, "'" + path + "' cannot be NULL");
+                if (field instanceof Failure) {
+                    return ((Failure) field).message;
                 }
 
-                if (field instanceof String) {
-                    if (value.equals(field)) {
-                        return;
-                    }
-                    throw new YokeException(errorCode, "'" + path + "' does not equal [" + value + "] be NULL");
-                }
-            }
-        };
-    }
-
-    public Assertion equals(final Number value) {
-        return new Assertion() {
-            @Override
-            public void ok(final YokeRequest request) throws YokeException {
-                final Object field = get(request);
-                final boolean optional = isOptional();
-
                 // null is handled as a special case
                 if (field == null) {
-                    throw new YokeException(errorCode, "'" + path + "' cannot be NULL");
+                    return nullMessage;
                 }
 
-                if (field instanceof Number) {
-                    if (value.equals(field)) {
-                        return;
-                    }
-                    throw new YokeException(errorCode, "'" + path + "' does not equal [" + value + "] be NULL");
+                if (clazz.isInstance(field) && value.equals(field) != equal) {
+                    return message;
                 }
+
+                return null;
             }
         };
     }
 
-    public Assertion equals(final Date value) {
-        return new Assertion() {
+    private Assertion dateEquality(final Date value, final boolean equal) {
+        final String message = "'" + path + "' does not equal [" + value + "] be NULL";
+
+        return new Check() {
             @Override
-            public void ok(final YokeRequest request) throws YokeException {
+            public String check(final YokeRequest request) {
 
                 final Object field = get(request);
 
+                if (field instanceof Failure) {
+                    return ((Failure) field).message;
+                }
+
                 if (field == null) {
-                    throw new YokeException(errorCode, "'" + path + "' cannot be NULL");
+                    return nullMessage;
                 }
 
-                if (field instanceof String) {
-                    if (DATETIME.matcher((CharSequence) field).matches()) {
-                        Date date;
-                        try {
-                            date = DATEFORMAT.parse((String) field);
-                        } catch (ParseException e) {
-                            throw new YokeException(errorCode, "Failed to validate", e);
-                        }
-                        if (value.equals(date)) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' does not equal [" + value + "] be NULL");
-                    }
-                    if (DATE.matcher((CharSequence) field).matches()) {
-                        Date date;
-                        try {
-                            date = DATEFORMAT.parse(field + "T00:00:00Z");
-                        } catch (ParseException e) {
-                            throw new YokeException(errorCode, "Failed to validate", e);
-                        }
-                        if (value.equals(date)) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' does not equal [" + value + "] be NULL");
-                    }
+                final long millis = millis(field);
+                if (millis != NO_DATE) {
+                    return (millis == value.getTime()) == equal ? null : message;
                 }
+
                 // unknown
-                throw new YokeException(errorCode, "Failed to validate");
+                return "Failed to validate";
             }
         };
     }
 
-    public Assertion equals(final Boolean value) {
-        return new Assertion() {
-            @Override
-            public void ok(final YokeRequest request) throws YokeException {
-                final Object field = get(request);
-                final boolean optional = isOptional();
-
-                // null is handled as a special case
-                if (field == null) {
-                    throw new YokeException(errorCode, "'" + path + "' cannot be NULL");
-                }
+    public Assertion equals(final String value) {
+        return equality(String.class, value, true);
+    }
 
-                if (field instanceof Boolean) {
-                    if (value.equals(field)) {
-                        return;
-                    }
-                    throw new YokeException(errorCode, "'" + path + "' does not equal [" + value + "] be NULL");
-                }
-            }
-        };
+    public Assertion equals(final Number value) {
+        return equality(Number.class, value, true);
     }
 
-    public Assertion notEquals(final String value) {
-        return new Assertion() {
-            @Override
-            public void ok(final YokeRequest request) throws YokeException {
-                final Object field = get(request);
-                final boolean optional = isOptional();
+    public Assertion equals(final Date value) {
+        return dateEquality(value, true);
+    }
 
-                // null is handled as a special case
-                if (field == null) {
-                    throw new YokeException(errorCode, "'" + path + "' cannot be NULL");
-                }
+    public Assertion equals(final Boolean value) {
+        return equality(Boolean.class, value, true);
+    }
 
-                if (field instanceof String) {
-                    if (!value.equals(field)) {
-                        return;
-                    }
-                    throw new YokeException(errorCode, "'" + path + "' does not equal [" + value + "] be NULL");
-                }
-            }
-        };
+    public Assertion notEquals(final String value) {
+        return equality(String.class, value, false);
     }
 
     public Assertion notEquals(final Number value) {
-        return new Assertion() {
-            @Override
-            public void ok(final YokeRequest request) throws YokeException {
-                final Object field = get(request);
-                final boolean optional = isOptional();
-
-                // null is handled as a special case
-                if (field == null) {
-                    throw new YokeException(errorCode, "'" + path + "' cannot be NULL");
-                }
-
-                if (field instanceof Number) {
-                    if (!value.equals(field)) {
-                        return;
-                    }
-                    throw new YokeException(errorCode, "'" + path + "' does not equal [" + value + "] be NULL");
-                }
-            }
-        };
+        return equality(Number.class, value, false);
     }
 
     public Assertion notEquals(final Date value) {
-        return new Assertion() {
-            @Override
-            public void ok(final YokeRequest request) throws YokeException {
-
-                final Object field = get(request);
-
-                if (field == null) {
-                    throw new YokeException(errorCode, "'" + path + "' cannot be NULL");
-                }
-
-                if (field instanceof String) {
-                    if (DATETIME.matcher((CharSequence) field).matches()) {
-                        Date date;
-                        try {
-                            date = DATEFORMAT.parse((String) field);
-                        } catch (ParseException e) {
-                            throw new YokeException(errorCode, "Failed to validate", e);
-                        }
-                        if (!value.equals(date)) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' does not equal [" + value + "] be NULL");
-                    }
-                    if (DATE.matcher((CharSequence) field).matches()) {
-                        Date date;
-                        try {
-                            date = DATEFORMAT.parse(field + "T00:00:00Z");
-                        } catch (ParseException e) {
-                            throw new YokeException(errorCode, "Failed to validate", e);
-                        }
-                        if (!value.equals(date)) {
-                            return;
-                        }
-                        throw new YokeException(errorCode, "'" + path + "' does not equal [" + value + "] be NULL");
-                    }
-                }
-                // unknown
-                throw new YokeException(errorCode, "Failed to validate");
-            }
-        };
+        return dateEquality(value, false);
     }
 
     public Assertion notEquals(final Boolean value) {
-        return new Assertion() {
-            @Override
-            public void ok(final YokeRequest request) throws YokeException {
-                final Object field = get(request);
-                final boolean optional = isOptional();
-
-                // null is handled as a special case
-                if (field == null) {
-                    throw new YokeException(errorCode, "'" + path + "' cannot be NULL");
-                }
-
-                if (field instanceof Boolean) {
-                    if (!value.equals(field)) {
-                        return;
-                    }
-                    throw new YokeException(errorCode, "'" + path + "' does not equal [" + value + "] be NULL");
-                }
-            }
-        };
+        return equality(Boolean.class, value, false);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,94 @@
+package test.json
+
+import com.jetdrone.vertx.yoke.json.CompiledSchema
+import com.jetdrone.vertx.yoke.json.JsonSchema
+import com.jetdrone.vertx.yoke.json.JsonSchemaResolver
+import org.junit.Test
+import org.vertx.java.core.json.JsonObject
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+import static org.junit.Assert.*
+
+class Compiled {
+
+    static final Map CART = [
+            'type'      : 'object',
+            'required'  : ['id', 'items'],
+            'properties': [
+                    'id'      : ['type': 'string', 'pattern': '^[0-9a-f]{8}$'],
+                    'currency': ['type': 'string', 'enum': ['EUR', 'USD']],
+                    'items'   : [
+                            'type'       : 'array',
+                            'minItems'   : 1,
+                            'uniqueItems': true,
+                            'items'      : [
+                                    'type'      : 'object',
+                                    'required'  : ['sku', 'qty'],
+                                    'properties': [
+                                            'sku': ['type': 'string', 'minLength': 3],
+                                            'qty': ['type': 'integer', 'minimum': 1]
+                                    ]
+                            ]
+                    ]
+            ]
+    ]
+
+    @Test
+    void it_should_validate_maps_and_json_objects() {
+        CompiledSchema schema = JsonSchema.compile(new JsonSchemaResolver.Schema(CART))
+
+        def cart = ['id': 'cafebabe', 'currency': 'EUR', 'items': [['sku': 'abc', 'qty': 1], ['sku': 'def', 'qty': 2]]]
+        assertTrue(schema.isValid(cart))
+        assertTrue(schema.isValid(new JsonObject(cart)))
+
+        def invalid = ['id': 'cafebabe', 'currency': 'GBP', 'items': [['sku': 'abc', 'qty': 1]]]
+        assertFalse(schema.isValid(invalid))
+        assertFalse(schema.isValid(new JsonObject(invalid)))
+
+        def duplicates = ['id': 'cafebabe', 'items': [['sku': 'abc', 'qty': 1], ['sku': 'abc', 'qty': 1]]]
+        assertFalse(schema.isValid(duplicates))
+        assertFalse(schema.isValid(new JsonObject(duplicates)))
+
+        assertFalse(schema.isValid(['id': 'nothex!!', 'items': [['sku': 'abc', 'qty': 1]]]))
+        assertFalse(schema.isValid(['id': 'cafebabe', 'items': [['sku': 'abc', 'qty': 0]]]))
+        assertFalse(schema.isValid(['id': 'cafebabe']))
+    }
+
+    @Test
+    void it_should_resolve_references_on_use() {
+        CompiledSchema schema = JsonSchema.compile(new JsonSchemaResolver.Schema([
+                'type'      : 'object',
+                'properties': [
+                        'name'   : ['type': 'string'],
+                        'address': ['$ref': 'classpath:///address.json']
+                ]
+        ]))
+
+        assertTrue(schema.isValid(['name': 'Paulo', 'address': ['locality': 'Amsterdam', 'region': 'North Holland', 'country-name': 'The Netherlands']]))
+        // required by the referenced schema
+        assertFalse(schema.isValid(['name': 'Paulo', 'address': ['locality': 'Amsterdam']]))
+        // dependencies of the referenced schema
+        assertFalse(schema.isValid(['name': 'Paulo', 'address': ['locality': 'Amsterdam', 'region': 'North Holland', 'country-name': 'The Netherlands', 'post-office-box': '1']]))
+    }
+
+    @Test
+    void it_should_compile_resolved_schemas_once() {
+        assertSame(JsonSchema.compile('classpath:///address.json'), JsonSchema.compile('classpath:///address.json'))
+    }
+
+    @Test
+    void it_should_resolve_concurrently() {
+        def pool = Executors.newFixedThreadPool(4)
+        try {
+            def tasks = (1..16).collect { i ->
+                return { JsonSchemaResolver.resolveSchema('classpath:///Person.json#properties') } as Callable
+            }
+            def schemas = pool.invokeAll(tasks)*.get()
+            schemas.each { assertSame(schemas[0], it) }
+        } finally {
+            pool.shutdown()
+        }
+    }
+}
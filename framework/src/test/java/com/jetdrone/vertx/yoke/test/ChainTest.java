@@ -0,0 +1,188 @@
+package com.jetdrone.vertx.yoke.test;
+
+import com.jetdrone.vertx.yoke.Middleware;
+import com.jetdrone.vertx.yoke.Yoke;
+import com.jetdrone.vertx.yoke.middleware.YokeRequest;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+import org.vertx.java.core.Handler;
+import org.vertx.testtools.TestVerticle;
+
+import javax.management.Attribute;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.vertx.testtools.VertxAssert.*;
+
+public class ChainTest extends TestVerticle {
+
+    // the middleware that ran for the current request, in order
+    private final StringBuilder trace = new StringBuilder();
+
+    private final class Mark implements Middleware {
+        private final String label;
+
+        Mark(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public void handle(@NotNull YokeRequest request, @NotNull Handler<Object> next) {
+            trace.append(label);
+            next.handle(null);
+        }
+    }
+
+    private final class End implements Middleware {
+        @Override
+        public void handle(@NotNull YokeRequest request, @NotNull Handler<Object> next) {
+            request.response().end(trace.toString());
+            trace.setLength(0);
+        }
+    }
+
+    private final class Guard implements Middleware {
+        @Override
+        public void handle(@NotNull YokeRequest request, @NotNull Handler<Object> next) {
+            trace.setLength(0);
+            next.handle(401);
+        }
+    }
+
+    @Test
+    public void testSkipMountGroup() {
+        final Yoke yoke = new Yoke(this);
+        // three groups: "/" [a], "/admin" [b, c], "/" [d, end]
+        yoke.use(new Mark("a"));
+        yoke.use("/admin", new Mark("b"), new Mark("c"));
+        yoke.use(new Mark("d"), new End());
+
+        final YokeTester tester = new YokeTester(yoke);
+
+        tester.request("GET", "/api", new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                // the whole admin group is skipped
+                assertEquals(200, resp.getStatusCode());
+                assertEquals("ad", resp.body.toString());
+
+                tester.request("GET", "/admin/users", new Handler<Response>() {
+                    @Override
+                    public void handle(Response resp) {
+                        assertEquals(200, resp.getStatusCode());
+                        assertEquals("abcd", resp.body.toString());
+                        testComplete();
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testUseAfterListen() {
+        final Yoke yoke = new Yoke(this);
+        final Handler<?>[] held = new Handler<?>[1];
+
+        // holds the first request half way through the chain
+        yoke.use(new Middleware() {
+            @Override
+            public void handle(@NotNull YokeRequest request, @NotNull Handler<Object> next) {
+                if (held[0] == null) {
+                    held[0] = next;
+                } else {
+                    next.handle(null);
+                }
+            }
+        });
+
+        final YokeTester tester = new YokeTester(yoke);
+
+        tester.request("GET", "/", new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                // the chain of the first request was taken before the use
+                assertEquals(404, resp.getStatusCode());
+                testComplete();
+            }
+        });
+
+        assertNotNull(held[0]);
+        yoke.use(new Mark("late"), new End());
+
+        tester.request("GET", "/", new Handler<Response>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public void handle(Response resp) {
+                // a new request sees the middleware
+                assertEquals(200, resp.getStatusCode());
+                assertEquals("late", resp.body.toString());
+
+                ((Handler<Object>) held[0]).handle(null);
+            }
+        });
+    }
+
+    @Test
+    public void testDisabledInSkippedGroup() throws JMException {
+        final Yoke yoke = new Yoke(this);
+        yoke.use(new Mark("a"));
+        yoke.use("/admin", new Guard(), new Mark("b"));
+        yoke.use(new End());
+
+        final MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        ObjectName guard = null;
+        for (ObjectName name : mbs.queryNames(new ObjectName("com.jetdrone.yoke:type=Middleware@" + yoke.hashCode() + ",*"), null)) {
+            if (name.getKeyProperty("name").startsWith("Guard@")) {
+                guard = name;
+            }
+        }
+        assertNotNull(guard);
+        final ObjectName enabled = guard;
+
+        final YokeTester tester = new YokeTester(yoke);
+
+        mbs.setAttribute(enabled, new Attribute("enabled", false));
+
+        tester.request("GET", "/admin", new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                // the rest of the group still runs
+                assertEquals(200, resp.getStatusCode());
+                assertEquals("ab", resp.body.toString());
+
+                tester.request("GET", "/api", new Handler<Response>() {
+                    @Override
+                    public void handle(Response resp) {
+                        assertEquals(200, resp.getStatusCode());
+                        assertEquals("a", resp.body.toString());
+
+                        try {
+                            mbs.setAttribute(enabled, new Attribute("enabled", true));
+                        } catch (JMException e) {
+                            fail(e.getMessage());
+                        }
+
+                        tester.request("GET", "/api", new Handler<Response>() {
+                            @Override
+                            public void handle(Response resp) {
+                                // enabled again, the group is still skipped
+                                assertEquals(200, resp.getStatusCode());
+                                assertEquals("a", resp.body.toString());
+
+                                tester.request("GET", "/admin", new Handler<Response>() {
+                                    @Override
+                                    public void handle(Response resp) {
+                                        assertEquals(401, resp.getStatusCode());
+                                        testComplete();
+                                    }
+                                });
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+}
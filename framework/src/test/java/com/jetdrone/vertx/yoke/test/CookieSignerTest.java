@@ -0,0 +1,127 @@
+package com.jetdrone.vertx.yoke.test;
+
+import com.jetdrone.vertx.yoke.Yoke;
+import com.jetdrone.vertx.yoke.YokeSecurity;
+import com.jetdrone.vertx.yoke.middleware.CookieParser;
+import com.jetdrone.vertx.yoke.middleware.Router;
+import com.jetdrone.vertx.yoke.middleware.YokeRequest;
+import com.jetdrone.vertx.yoke.security.CookieSigner;
+import com.jetdrone.vertx.yoke.security.SecretSecurity;
+import org.junit.Test;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.MultiMap;
+import org.vertx.java.core.http.CaseInsensitiveMultiMap;
+import org.vertx.testtools.TestVerticle;
+
+import javax.crypto.Mac;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.vertx.testtools.VertxAssert.*;
+
+public class CookieSignerTest extends TestVerticle {
+
+    private static Mac mac(String secret) {
+        return new SecretSecurity(secret).getMac("HmacSHA256");
+    }
+
+    @Test
+    public void testSignUnsign() {
+        final Mac mac = mac("keyboard cat");
+        final String signed = YokeSecurity.sign("s3ss10n", mac);
+
+        assertEquals("s3ss10n", YokeSecurity.unsign(signed, mac));
+        // tampered value, signature or encoding
+        assertNull(YokeSecurity.unsign("s3ss10m" + signed.substring(7), mac));
+        assertNull(YokeSecurity.unsign(signed.substring(0, signed.length() - 1) + "A", mac));
+        assertNull(YokeSecurity.unsign(signed.substring(0, signed.length() - 1), mac));
+        assertNull(YokeSecurity.unsign(signed + "!", mac));
+        assertNull(YokeSecurity.unsign("s3ss10n", mac));
+
+        testComplete();
+    }
+
+    @Test
+    public void testRotation() {
+        final CookieSigner old = new CookieSigner(mac("old secret"));
+        final CookieSigner rotated = new CookieSigner(mac("new secret"), mac("old secret"));
+        final CookieSigner retired = new CookieSigner(mac("new secret"));
+
+        final String oldCookie = old.sign("s3ss10n");
+        final String newCookie = rotated.sign("s3ss10n");
+
+        // the new secret signs, both verify
+        assertEquals(YokeSecurity.sign("s3ss10n", mac("new secret")), newCookie);
+        assertEquals("s3ss10n", rotated.unsign(oldCookie));
+        assertEquals("s3ss10n", rotated.unsign(newCookie));
+
+        assertNull(retired.unsign(oldCookie));
+        assertNull(old.unsign(newCookie));
+
+        testComplete();
+    }
+
+    @Test
+    public void testThreads() throws InterruptedException {
+        final CookieSigner signer = new CookieSigner(new SecretSecurity("keyboard cat"), "HmacSHA256");
+        final String expected = signer.sign("s3ss10n");
+        final AtomicReference<String> failure = new AtomicReference<>();
+
+        final Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        if (!expected.equals(signer.sign("s3ss10n")) || signer.unsign(expected) == null) {
+                            failure.set("signature mismatch");
+                            return;
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(failure.get());
+        testComplete();
+    }
+
+    @Test
+    public void testCookieParserRotation() {
+        final Yoke yoke = new Yoke(this);
+
+        yoke.use(new CookieParser(new CookieSigner(mac("new secret"), mac("old secret"))));
+        yoke.use(new Router().get("/", new Handler<YokeRequest>() {
+            @Override
+            public void handle(YokeRequest request) {
+                request.response().end(request.getCookie("sid").getUnsignedValue());
+            }
+        }));
+
+        final YokeTester yokeAssert = new YokeTester(yoke);
+
+        final MultiMap oldCookie = new CaseInsensitiveMultiMap()
+                .add("cookie", "sid=s:" + YokeSecurity.sign("s3ss10n", mac("old secret")));
+        final MultiMap forged = new CaseInsensitiveMultiMap()
+                .add("cookie", "sid=s:" + YokeSecurity.sign("s3ss10n", mac("guessed secret")));
+
+        yokeAssert.request("GET", "/", oldCookie, new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                assertEquals(200, resp.getStatusCode());
+                assertEquals("s3ss10n", resp.body.toString());
+
+                yokeAssert.request("GET", "/", forged, new Handler<Response>() {
+                    @Override
+                    public void handle(Response resp) {
+                        assertEquals(400, resp.getStatusCode());
+                        testComplete();
+                    }
+                });
+            }
+        });
+    }
+}
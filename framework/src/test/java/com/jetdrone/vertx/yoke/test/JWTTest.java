@@ -1,15 +1,28 @@
 package com.jetdrone.vertx.yoke.test;
 
 import com.jetdrone.vertx.yoke.Yoke;
+import com.jetdrone.vertx.yoke.YokeSecurity;
+import com.jetdrone.vertx.yoke.middleware.Router;
+import com.jetdrone.vertx.yoke.middleware.YokeRequest;
 import com.jetdrone.vertx.yoke.security.JWT;
+import com.jetdrone.vertx.yoke.security.SecretSecurity;
+import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.MultiMap;
+import org.vertx.java.core.http.CaseInsensitiveMultiMap;
 import org.vertx.java.core.json.JsonArray;
 import org.vertx.java.core.json.JsonObject;
 import org.vertx.testtools.TestVerticle;
 
-import static org.vertx.testtools.VertxAssert.assertEquals;
-import static org.vertx.testtools.VertxAssert.assertTrue;
-import static org.vertx.testtools.VertxAssert.testComplete;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.*;
+import java.security.spec.ECGenParameterSpec;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.vertx.testtools.VertxAssert.*;
 
 public class JWTTest extends TestVerticle {
 
@@ -51,4 +64,272 @@ public class JWTTest extends TestVerticle {
 
         testComplete();
     }
+
+    /**
+     * Keys kept in memory: secrets for HMAC and key pairs for RSA and EC, by alias.
+     */
+    private static class KeySecurity extends YokeSecurity {
+        final Map<String, Key> keys = new HashMap<>();
+        final Map<String, PublicKey> publicKeys = new HashMap<>();
+
+        KeySecurity secret(String alias, String secret) {
+            keys.put(alias, new SecretKeySpec(secret.getBytes(), "HmacSHA256"));
+            return this;
+        }
+
+        KeySecurity keyPair(String alias, KeyPair keyPair) {
+            keys.put(alias, keyPair.getPrivate());
+            publicKeys.put(alias, keyPair.getPublic());
+            return this;
+        }
+
+        @Override
+        public Mac getMac(@NotNull String alias) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Signature getSignature(@NotNull String alias) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Key getKey(@NotNull String alias) {
+            return keys.get(alias);
+        }
+
+        @Override
+        public PublicKey getPublicKey(@NotNull String alias) {
+            return publicKeys.get(alias);
+        }
+    }
+
+    private static KeyPair keyPair(String algorithm, int size) throws GeneralSecurityException {
+        final KeyPairGenerator generator = KeyPairGenerator.getInstance(algorithm);
+        generator.initialize(size);
+        return generator.generateKeyPair();
+    }
+
+    private static String tamper(String token, JsonObject payload) {
+        // same header and signature, different payload
+        final String[] segments = token.split("\\.");
+        final String encoded = new JWT(new SecretSecurity("other")).encode(payload).split("\\.")[1];
+        return segments[0] + "." + encoded + "." + segments[2];
+    }
+
+    @Test
+    public void testInterop() {
+        // https://jwt.io example token
+        JWT jwt = new JWT(new SecretSecurity("your-256-bit-secret"));
+
+        JsonObject decoded = jwt.decode("eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9." +
+                "eyJzdWIiOiIxMjM0NTY3ODkwIiwibmFtZSI6IkpvaG4gRG9lIiwiaWF0IjoxNTE2MjM5MDIyfQ." +
+                "SflKxwRJSMeKKF2QT4fwpMeJf36POk6yJV_adQssw5c");
+
+        assertEquals("John Doe", decoded.getString("name"));
+        testComplete();
+    }
+
+    @Test
+    public void testAlgorithms() throws GeneralSecurityException {
+        final ECGenParameterSpec p256 = new ECGenParameterSpec("secp256r1");
+        final KeyPairGenerator ec = KeyPairGenerator.getInstance("EC");
+        ec.initialize(p256);
+
+        final KeyPair rsa = keyPair("RSA", 2048);
+
+        final KeySecurity security = new KeySecurity()
+                .secret("HS256", "keyboard cat")
+                .secret("HS384", "keyboard cat")
+                .secret("HS512", "keyboard cat")
+                .keyPair("RS256", rsa)
+                .keyPair("RS384", rsa)
+                .keyPair("RS512", rsa)
+                .keyPair("ES256", ec.generateKeyPair());
+
+        final JWT jwt = new JWT(security);
+        final JsonObject payload = new JsonObject().putString("name", "Paulo Lopes").putString("text", "\u00e7\u00e3o");
+
+        for (String algorithm : new String[] {"HS256", "HS384", "HS512", "RS256", "RS384", "RS512", "ES256"}) {
+            String token = jwt.encode(payload, algorithm);
+            assertEquals(algorithm, payload, jwt.decode(token));
+
+            // signature does not match the payload
+            try {
+                jwt.decode(tamper(token, new JsonObject().putString("name", "Mallory")));
+                fail(algorithm + " accepted a tampered token");
+            } catch (RuntimeException e) {
+                assertEquals("Signature verification failed", e.getMessage());
+            }
+        }
+
+        // JWS ECDSA signatures are R and S, 32 bytes each
+        String token = jwt.encode(payload, "ES256");
+        assertEquals(86, token.length() - token.lastIndexOf('.') - 1);
+
+        // a verifier without the private keys
+        final KeySecurity publicOnly = new KeySecurity();
+        publicOnly.publicKeys.put("RS256", rsa.getPublic());
+        assertEquals(payload, new JWT(publicOnly).decode(jwt.encode(payload, "RS256")));
+
+        testComplete();
+    }
+
+    @Test
+    public void testKeyRotation() {
+        final KeySecurity security = new KeySecurity()
+                .secret("jwt-2014-01", "old secret")
+                .secret("jwt-2014-02", "new secret");
+
+        final JWT jwt = new JWT(security, 16)
+                .addKey("2014-01", "jwt-2014-01")
+                .addKey("2014-02", "jwt-2014-02");
+
+        final JsonObject payload = new JsonObject()
+                .putString("name", "Paulo Lopes")
+                .putNumber("exp", System.currentTimeMillis() + 60000);
+
+        final String oldToken = jwt.encode(payload, "HS256", "2014-01");
+        final String newToken = jwt.encode(payload, "HS256", "2014-02");
+
+        assertFalse(oldToken.equals(newToken));
+        assertEquals(payload, jwt.decode(oldToken));
+        assertEquals(payload, jwt.decode(newToken));
+
+        // the old key is retired, the token verified before is not remembered
+        jwt.removeKey("2014-01");
+        try {
+            jwt.decode(oldToken);
+            fail("token of a retired key accepted");
+        } catch (RuntimeException e) {
+            assertEquals("Unknown key id", e.getMessage());
+        }
+        assertEquals(payload, jwt.decode(newToken));
+
+        testComplete();
+    }
+
+    @Test
+    public void testKeyIdAllowlist() throws GeneralSecurityException {
+        final KeyPair rsa = keyPair("RSA", 2048);
+
+        final KeySecurity security = new KeySecurity()
+                .secret("cookie", "cookie secret")
+                .secret("jwt-hs", "jwt secret")
+                .keyPair("jwt-rs", rsa);
+
+        final JWT jwt = new JWT(security)
+                .addKey("hs", "jwt-hs")
+                .addKey("rs", "jwt-rs");
+
+        final JsonObject payload = new JsonObject().putString("name", "Mallory");
+
+        // a token cannot name any other key of the security as its kid
+        final JWT forger = new JWT(security).addKey("cookie", "cookie");
+        try {
+            jwt.decode(forger.encode(payload, "HS256", "cookie"));
+            fail("token signed with the cookie secret accepted");
+        } catch (RuntimeException e) {
+            assertEquals("Unknown key id", e.getMessage());
+        }
+
+        // an RSA key is not an HMAC secret
+        try {
+            jwt.encode(payload, "HS256", "rs");
+            fail("RSA key used for HMAC");
+        } catch (RuntimeException e) {
+            assertEquals("Algorithm not supported", e.getMessage());
+        }
+        // the classic confusion: HMAC with the public key as the secret
+        security.keys.put("public", new SecretKeySpec(rsa.getPublic().getEncoded(), "HmacSHA256"));
+        final String forged = new JWT(security).addKey("rs", "public").encode(payload, "HS256", "rs");
+        try {
+            jwt.decode(forged);
+            fail("HMAC token verified with the RSA key");
+        } catch (RuntimeException e) {
+            assertEquals("Algorithm not supported", e.getMessage());
+        }
+
+        // nor is an HMAC secret an RSA or EC key
+        try {
+            jwt.encode(payload, "RS256", "hs");
+            fail("HMAC secret used for RSA");
+        } catch (RuntimeException e) {
+            assertEquals("Algorithm not supported", e.getMessage());
+        }
+
+        assertEquals(payload, jwt.decode(jwt.encode(payload, "RS256", "rs")));
+        testComplete();
+    }
+
+    @Test
+    public void testVerifiedTokenCache() {
+        final JWT jwt = new JWT(new SecretSecurity("keyboard cat"), 16);
+        final long now = System.currentTimeMillis();
+
+        final String token = jwt.encode(new JsonObject().putString("name", "Paulo Lopes").putNumber("exp", now + 60000));
+
+        // modifying a decoded payload does not change the cached token
+        jwt.decode(token).putString("name", "Mallory");
+        assertEquals("Paulo Lopes", jwt.decode(token).getString("name"));
+
+        // the signature of a cached token does not vouch for another payload
+        try {
+            jwt.decode(tamper(token, new JsonObject().putString("name", "Mallory").putNumber("exp", now + 60000)));
+            fail("tampered token accepted");
+        } catch (RuntimeException e) {
+            assertEquals("Signature verification failed", e.getMessage());
+        }
+
+        testComplete();
+    }
+
+    @Test
+    public void testMiddleware() {
+        final Yoke yoke = new Yoke(this);
+        yoke.secretSecurity("keyboard cat");
+
+        final JWT jwt = new JWT(yoke.security());
+        final long now = System.currentTimeMillis();
+
+        yoke.use(new com.jetdrone.vertx.yoke.middleware.JWT());
+        yoke.use(new Router().get("/protected", new Handler<YokeRequest>() {
+            @Override
+            public void handle(YokeRequest request) {
+                JsonObject token = request.get("jwt");
+                request.response().end(token.getString("name"));
+            }
+        }));
+
+        final MultiMap valid = new CaseInsensitiveMultiMap()
+                .add("authorization", "Bearer " + jwt.encode(new JsonObject().putString("name", "Paulo").putNumber("exp", now + 60000)));
+        final MultiMap expired = new CaseInsensitiveMultiMap()
+                .add("authorization", "bearer " + jwt.encode(new JsonObject().putString("name", "Paulo").putNumber("exp", now - 1)));
+
+        final YokeTester yokeAssert = new YokeTester(yoke);
+
+        yokeAssert.request("GET", "/protected", valid, new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                assertEquals(200, resp.getStatusCode());
+                assertEquals("Paulo", resp.body.toString());
+
+                // the same token again, served from the verified token cache
+                yokeAssert.request("GET", "/protected", valid, new Handler<Response>() {
+                    @Override
+                    public void handle(Response resp) {
+                        assertEquals(200, resp.getStatusCode());
+
+                        yokeAssert.request("GET", "/protected", expired, new Handler<Response>() {
+                            @Override
+                            public void handle(Response resp) {
+                                assertEquals(401, resp.getStatusCode());
+                                testComplete();
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
 }
@@ -0,0 +1,139 @@
+package com.jetdrone.vertx.yoke.test;
+
+import com.jetdrone.vertx.yoke.Middleware;
+import com.jetdrone.vertx.yoke.Yoke;
+import com.jetdrone.vertx.yoke.core.LatencyHistogram;
+import com.jetdrone.vertx.yoke.middleware.Router;
+import com.jetdrone.vertx.yoke.middleware.YokeRequest;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+import org.vertx.java.core.Handler;
+import org.vertx.testtools.TestVerticle;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.vertx.testtools.VertxAssert.*;
+
+public class LatencyTest extends TestVerticle {
+
+    @Test
+    public void testHistogram() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        // 1..1000 microseconds, half of them from another thread
+        for (int i = 1; i <= 500; i++) {
+            histogram.record(i * 1000L, i % 100 == 0);
+        }
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 501; i <= 1000; i++) {
+                    histogram.record(i * 1000L, false);
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.count());
+        assertEquals(5, snapshot.errors());
+
+        // at most 1/16 above the real value
+        assertBetween(500000, snapshot.percentile(0.5));
+        assertBetween(990000, snapshot.percentile(0.99));
+        assertBetween(1000000, snapshot.percentile(1));
+        // the bucket of 100 us also holds values up to 1/16 above
+        assertBetween(100, snapshot.countAtOrBelow(100000));
+
+        // values below 16 ns are exact
+        final LatencyHistogram small = new LatencyHistogram();
+        small.record(7, false);
+        assertEquals(7, small.snapshot().percentile(0.5));
+        assertEquals(0, new LatencyHistogram().snapshot().percentile(0.5));
+
+        testComplete();
+    }
+
+    private static void assertBetween(long expected, long actual) {
+        assertTrue(actual + " < " + expected, actual >= expected);
+        assertTrue(actual + " > " + expected + " + 1/16", actual <= expected + expected / 16);
+    }
+
+    @Test
+    public void testJMX() {
+        final Yoke yoke = new Yoke(this);
+
+        final Middleware pass = new Middleware() {
+            @Override
+            public void handle(@NotNull YokeRequest request, @NotNull Handler<Object> next) {
+                next.handle(null);
+            }
+        };
+
+        final Router router = new Router()
+                .get("/slow", new Handler<YokeRequest>() {
+                    @Override
+                    public void handle(final YokeRequest request) {
+                        vertx.setTimer(20, new Handler<Long>() {
+                            @Override
+                            public void handle(Long event) {
+                                request.response().end();
+                            }
+                        });
+                    }
+                })
+                .get("/fail", new Middleware() {
+                    @Override
+                    public void handle(@NotNull YokeRequest request, @NotNull Handler<Object> next) {
+                        next.handle(500);
+                    }
+                });
+
+        yoke.use(pass);
+        yoke.use(router);
+
+        final YokeTester yokeAssert = new YokeTester(yoke);
+
+        yokeAssert.request("GET", "/slow", new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                assertEquals(200, resp.getStatusCode());
+
+                yokeAssert.request("GET", "/fail", new Handler<Response>() {
+                    @Override
+                    public void handle(Response resp) {
+                        assertEquals(500, resp.getStatusCode());
+
+                        try {
+                            final MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+                            final String routes = "com.jetdrone.yoke:type=Route@" + router.hashCode() + ",method=GET,path=";
+
+                            final ObjectName slow = new ObjectName(routes + ObjectName.quote("/slow"));
+                            assertEquals(1L, mbs.getAttribute(slow, "count"));
+                            assertEquals(0L, mbs.getAttribute(slow, "errors"));
+                            assertTrue((Double) mbs.getAttribute(slow, "p99") >= 20000.0);
+
+                            final ObjectName fail = new ObjectName(routes + ObjectName.quote("/fail"));
+                            assertEquals(1L, mbs.getAttribute(fail, "count"));
+                            assertEquals(1L, mbs.getAttribute(fail, "errors"));
+
+                            // the router middleware includes the time of its routes
+                            final ObjectName middleware = new ObjectName("com.jetdrone.yoke:type=Middleware@" + yoke.hashCode() +
+                                    ",route=" + ObjectName.quote("/") + ",name=Router@" + router.hashCode());
+                            assertEquals(2L, mbs.getAttribute(middleware, "count"));
+                            assertEquals(1L, mbs.getAttribute(middleware, "errors"));
+                            assertTrue((Double) mbs.getAttribute(middleware, "p999") >= 20000.0);
+                        } catch (Exception e) {
+                            fail(e.toString());
+                        }
+
+                        testComplete();
+                    }
+                });
+            }
+        });
+    }
+}
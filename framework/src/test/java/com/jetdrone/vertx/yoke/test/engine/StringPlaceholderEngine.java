@@ -2,6 +2,7 @@ package com.jetdrone.vertx.yoke.test.engine;
 
 import com.jetdrone.vertx.yoke.Middleware;
 import com.jetdrone.vertx.yoke.Yoke;
+import com.jetdrone.vertx.yoke.engine.FreshnessPolicy;
 import com.jetdrone.vertx.yoke.engine.Function;
 import com.jetdrone.vertx.yoke.middleware.YokeRequest;
 import com.jetdrone.vertx.yoke.test.Response;
@@ -11,9 +12,14 @@ import org.junit.Test;
 import org.vertx.java.core.Handler;
 import org.vertx.testtools.TestVerticle;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
 import java.util.Map;
+import java.util.Set;
 
 import static org.vertx.testtools.VertxAssert.*;
 
@@ -91,6 +97,152 @@ public class StringPlaceholderEngine extends TestVerticle {
         }
     }
 
+    @Test
+    public void testEngineFreshnessNever() {
+        try {
+            // create a temp template
+            final File temp = File.createTempFile("template", ".shtml");
+            FileOutputStream out = new FileOutputStream(temp);
+            out.write("Hello ${name}!".getBytes());
+            out.close();
+            final String location = temp.getAbsolutePath();
+
+            Yoke yoke = new Yoke(this);
+            yoke.engine("shtml", new com.jetdrone.vertx.yoke.engine.StringPlaceholderEngine("").setFreshnessPolicy(FreshnessPolicy.NEVER));
+            yoke.use(new Middleware() {
+                @Override
+                public void handle(@NotNull YokeRequest request, @NotNull Handler<Object> next) {
+                    request.put("name", "Paulo");
+                    request.response().render(location, next);
+                }
+            });
+
+            final YokeTester yokeAssert = new YokeTester(yoke);
+
+            yokeAssert.request("GET", "/", new Handler<Response>() {
+                @Override
+                public void handle(Response resp) {
+                    assertEquals(200, resp.getStatusCode());
+                    assertEquals("Hello Paulo!", resp.body.toString());
+
+                    // the cached template is not verified again
+                    assertTrue(temp.delete());
+
+                    yokeAssert.request("GET", "/", new Handler<Response>() {
+                        @Override
+                        public void handle(Response resp) {
+                            assertEquals(200, resp.getStatusCode());
+                            assertEquals("Hello Paulo!", resp.body.toString());
+                            testComplete();
+                        }
+                    });
+                }
+            });
+        } catch (Exception e) {
+            fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void testEngineCacheStatistics() {
+        try {
+            // create a temp template
+            File temp = File.createTempFile("template", ".shtml");
+            FileOutputStream out = new FileOutputStream(temp);
+            out.write("Hello ${name}!".getBytes());
+            out.close();
+            final String location = temp.getAbsolutePath();
+
+            final com.jetdrone.vertx.yoke.engine.StringPlaceholderEngine engine = new com.jetdrone.vertx.yoke.engine.StringPlaceholderEngine("");
+
+            Yoke yoke = new Yoke(this);
+            yoke.engine("shtml", engine);
+            yoke.use(new Middleware() {
+                @Override
+                public void handle(@NotNull YokeRequest request, @NotNull Handler<Object> next) {
+                    request.put("name", "Paulo");
+                    request.response().render(location, next);
+                }
+            });
+
+            final YokeTester yokeAssert = new YokeTester(yoke);
+
+            yokeAssert.request("GET", "/", new Handler<Response>() {
+                @Override
+                public void handle(Response resp) {
+                    yokeAssert.request("GET", "/", new Handler<Response>() {
+                        @Override
+                        public void handle(Response resp) {
+                            assertEquals("Hello Paulo!", resp.body.toString());
+
+                            try {
+                                MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+                                Set<ObjectName> names = mbs.queryNames(new ObjectName("com.jetdrone.yoke:name=StringPlaceholderEngine@" + engine.hashCode() + ",*"), null);
+                                assertEquals(1, names.size());
+                                ObjectName name = names.iterator().next();
+
+                                assertEquals(1L, mbs.getAttribute(name, "misses"));
+                                assertEquals(1L, mbs.getAttribute(name, "hits"));
+                                assertEquals(1, mbs.getAttribute(name, "size"));
+                                assertEquals((long) "Hello ${name}!".length(), mbs.getAttribute(name, "weight"));
+                            } catch (Exception e) {
+                                fail(e.getMessage());
+                            }
+                            testComplete();
+                        }
+                    });
+                }
+            });
+        } catch (Exception e) {
+            fail(e.getMessage());
+        }
+    }
+
+    @Test
+    public void testWatchPolicy() throws Exception {
+        final File dir = Files.createTempDirectory("views").toFile();
+        final File template = new File(dir, "index.shtml");
+        final File other = new File(dir, "other.shtml");
+        Files.write(template.toPath(), "v1".getBytes());
+        Files.write(other.toPath(), "v1".getBytes());
+
+        final FreshnessPolicy policy = FreshnessPolicy.watch(dir.getAbsolutePath());
+
+        policy.checked(other.getPath(), policy.checking(other.getPath()));
+        assertFalse(policy.mustCheck(other.getPath()));
+
+        // the template changes while it is read
+        final long token = policy.checking(template.getPath());
+        Files.write(template.toPath(), "v2".getBytes());
+        for (int i = 0; i < 500 && !policy.mustCheck(other.getPath()); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(policy.mustCheck(other.getPath()));
+        policy.checked(template.getPath(), token);
+
+        // the change was not seen by that read
+        assertTrue(policy.mustCheck(template.getPath()));
+
+        // closing ends the watch thread
+        policy.close();
+        for (int i = 0; i < 500 && watchThreads() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, watchThreads());
+
+        testComplete();
+    }
+
+    private static int watchThreads() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if ("yoke-template-watch".equals(thread.getName())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
 //    @Test
 //    public void testRG() {
 //        String funcName = "([a-zA-Z0-9]+)";
@@ -11,9 +11,13 @@ import org.vertx.java.core.http.CaseInsensitiveMultiMap;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.MultiMap;
 import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.json.JsonArray;
 import org.vertx.java.core.json.JsonObject;
 import org.vertx.testtools.TestVerticle;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.vertx.testtools.VertxAssert.*;
 
 public class BodyParser extends TestVerticle {
@@ -237,4 +241,71 @@ public class BodyParser extends TestVerticle {
             }
         });
     }
+
+    @Test
+    public void testJsonArrayElementHandler() {
+
+        final List<Object> elements = new ArrayList<>();
+
+        Yoke yoke = new Yoke(this);
+        yoke.use(new com.jetdrone.vertx.yoke.middleware.BodyParser().arrayElementHandler(new com.jetdrone.vertx.yoke.middleware.BodyParser.ArrayElementHandler() {
+            @Override
+            public void handle(YokeRequest request, Object element) {
+                elements.add(element);
+            }
+        }));
+        yoke.use(new Handler<YokeRequest>() {
+            @Override
+            public void handle(YokeRequest request) {
+                // elements are not kept in the body
+                assertEquals(0, ((JsonArray) request.body()).size());
+                assertEquals(3, elements.size());
+                assertEquals("value", ((JsonObject) elements.get(0)).getString("key"));
+                assertEquals(2, ((JsonArray) elements.get(1)).size());
+                assertEquals(42, elements.get(2));
+                request.response().end();
+            }
+        });
+
+        Buffer body = new Buffer("[{\"key\": \"value\"}, [1, 2], 42]");
+
+        MultiMap headers = new CaseInsensitiveMultiMap();
+        headers.add("content-type", "application/json");
+        headers.add("content-length", Integer.toString(body.length()));
+
+        new YokeTester(yoke).request("POST", "/upload", headers, body, new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                assertEquals(200, resp.getStatusCode());
+                testComplete();
+            }
+        });
+    }
+
+    @Test
+    public void testInvalidJsonBody() {
+
+        Yoke yoke = new Yoke(this);
+        yoke.use(new com.jetdrone.vertx.yoke.middleware.BodyParser());
+        yoke.use(new Handler<YokeRequest>() {
+            @Override
+            public void handle(YokeRequest request) {
+                fail("invalid body should not be parsed");
+            }
+        });
+
+        Buffer body = new Buffer("{\"key\": }");
+
+        MultiMap headers = new CaseInsensitiveMultiMap();
+        headers.add("content-type", "application/json");
+        headers.add("content-length", Integer.toString(body.length()));
+
+        new YokeTester(yoke).request("POST", "/upload", headers, body, new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                assertEquals(400, resp.getStatusCode());
+                testComplete();
+            }
+        });
+    }
 }
@@ -7,14 +7,26 @@ import com.jetdrone.vertx.yoke.test.Response;
 import com.jetdrone.vertx.yoke.test.YokeTester;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
+import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.MultiMap;
+import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.http.CaseInsensitiveMultiMap;
 import org.vertx.java.core.json.JsonObject;
+import org.vertx.java.core.net.NetSocket;
 import org.vertx.testtools.TestVerticle;
 
-import static org.vertx.testtools.VertxAssert.assertEquals;
-import static org.vertx.testtools.VertxAssert.testComplete;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.vertx.testtools.VertxAssert.*;
 
 public class Compress extends TestVerticle {
   @Test
@@ -44,6 +56,185 @@ public class Compress extends TestVerticle {
       });
   }
 
+  private static String inflate(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buf = new byte[1024];
+    int len;
+    while ((len = in.read(buf)) != -1) {
+      out.write(buf, 0, len);
+    }
+    return out.toString("UTF-8");
+  }
+
+  @Test
+  public void testGzipStream() {
+    final StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      expected.append("hello0000000000000000000000000000000000000000000000000\n");
+    }
+
+    final long[] written = new long[1];
+
+    Yoke yoke = new Yoke(this);
+    yoke.use(new com.jetdrone.vertx.yoke.middleware.Compress(Pattern.compile("text"), 9, 1024));
+    yoke.use(new Middleware() {
+      @Override
+      public void handle(@NotNull final YokeRequest request, @NotNull Handler<Object> next) {
+        request.response().endHandler(new Handler<Void>() {
+          @Override
+          public void handle(Void event) {
+            written[0] = request.response().bytesWritten();
+          }
+        });
+        request.response().setContentType("text/plain", "UTF-8");
+        request.response().setChunked(true);
+        for (int i = 0; i < 999; i++) {
+          request.response().write("hello0000000000000000000000000000000000000000000000000\n");
+        }
+        request.response().end("hello0000000000000000000000000000000000000000000000000\n");
+      }
+    });
+
+    MultiMap headers = new CaseInsensitiveMultiMap();
+    headers.add("Accept-Encoding", "gzip,deflate,sdch");
+
+    new YokeTester(yoke).request("GET", "/", headers, new Handler<Response>() {
+      @Override
+      public void handle(Response resp) {
+        assertEquals(200, resp.getStatusCode());
+        assertEquals("gzip", resp.headers.get("content-encoding"));
+        assertTrue(resp.body.length() < expected.length());
+        // the chunks the filter wrote itself are counted too
+        assertEquals(resp.body.length(), written[0]);
+        try {
+          assertEquals(expected.toString(), inflate(new GZIPInputStream(new ByteArrayInputStream(resp.body.getBytes()))));
+        } catch (IOException e) {
+          fail(e.getMessage());
+        }
+        testComplete();
+      }
+    });
+  }
+
+  @Test
+  public void testDeflate() {
+    final String expected = new JsonObject().putString("hello", "world").encode();
+
+    Yoke yoke = new Yoke(this);
+    yoke.use(new com.jetdrone.vertx.yoke.middleware.Compress());
+    yoke.use(new Middleware() {
+      @Override
+      public void handle(@NotNull YokeRequest request, @NotNull Handler<Object> next) {
+        request.response().end(new JsonObject().putString("hello", "world"));
+      }
+    });
+
+    MultiMap headers = new CaseInsensitiveMultiMap();
+    headers.add("Accept-Encoding", "deflate");
+
+    new YokeTester(yoke).request("GET", "/", headers, new Handler<Response>() {
+      @Override
+      public void handle(Response resp) {
+        assertEquals(200, resp.getStatusCode());
+        assertEquals("deflate", resp.headers.get("content-encoding"));
+        try {
+          // deflate is the zlib format
+          assertEquals(expected, inflate(new InflaterInputStream(new ByteArrayInputStream(resp.body.getBytes()))));
+        } catch (IOException e) {
+          fail(e.getMessage());
+        }
+        testComplete();
+      }
+    });
+  }
+
+  @Test
+  public void testThreshold() {
+    Yoke yoke = new Yoke(this);
+    yoke.use(new com.jetdrone.vertx.yoke.middleware.Compress(Pattern.compile("json"), -1, 1024));
+    yoke.use(new Middleware() {
+      @Override
+      public void handle(@NotNull YokeRequest request, @NotNull Handler<Object> next) {
+        request.response().end(new JsonObject().putString("hello", "world"));
+      }
+    });
+
+    MultiMap headers = new CaseInsensitiveMultiMap();
+    headers.add("Accept-Encoding", "gzip");
+
+    new YokeTester(yoke).request("GET", "/", headers, new Handler<Response>() {
+      @Override
+      public void handle(Response resp) {
+        assertEquals(200, resp.getStatusCode());
+        assertNull(resp.headers.get("content-encoding"));
+        assertEquals(new JsonObject().putString("hello", "world").encode(), resp.body.toString());
+        testComplete();
+      }
+    });
+  }
+
+  @Test
+  public void testClientDisconnect() throws IOException {
+    final int port;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      port = socket.getLocalPort();
+    }
+
+    final byte[] chunk = new byte[4096];
+    new Random(1).nextBytes(chunk);
+
+    Yoke yoke = new Yoke(this);
+    yoke.use(new com.jetdrone.vertx.yoke.middleware.Compress(Pattern.compile("octet"), 1, 1024));
+    yoke.use(new Middleware() {
+      @Override
+      public void handle(@NotNull final YokeRequest request, @NotNull Handler<Object> next) {
+        request.response().setContentType("application/octet-stream");
+        request.response().setChunked(true);
+
+        final long timerID = vertx.setPeriodic(10, new Handler<Long>() {
+          @Override
+          public void handle(Long event) {
+            request.response().write(new Buffer(chunk));
+          }
+        });
+
+        // the response never ends, the client goes away
+        request.response().endHandler(new Handler<Void>() {
+          @Override
+          public void handle(Void event) {
+            vertx.cancelTimer(timerID);
+            assertTrue(request.response().bytesWritten() > 0);
+            // discarded
+            request.response().write(new Buffer(chunk));
+            testComplete();
+          }
+        });
+      }
+    });
+
+    yoke.listen(port, "localhost", new Handler<Boolean>() {
+      @Override
+      public void handle(Boolean listening) {
+        assertTrue(listening);
+
+        vertx.createNetClient().connect(port, "localhost", new Handler<AsyncResult<NetSocket>>() {
+          @Override
+          public void handle(AsyncResult<NetSocket> connect) {
+            assertTrue(connect.succeeded());
+            final NetSocket socket = connect.result();
+            socket.dataHandler(new Handler<Buffer>() {
+              @Override
+              public void handle(Buffer data) {
+                socket.close();
+              }
+            });
+            socket.write("GET / HTTP/1.1\r\nHost: localhost\r\nAccept-Encoding: gzip\r\n\r\n");
+          }
+        });
+      }
+    });
+  }
+
 //  @Test
 //  public void testGZip() {
 //    Yoke yoke = new Yoke(vertx);
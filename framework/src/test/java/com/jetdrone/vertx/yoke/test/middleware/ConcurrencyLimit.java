@@ -0,0 +1,281 @@
+package com.jetdrone.vertx.yoke.test.middleware;
+
+import com.jetdrone.vertx.yoke.Middleware;
+import com.jetdrone.vertx.yoke.Yoke;
+import com.jetdrone.vertx.yoke.middleware.Router;
+import com.jetdrone.vertx.yoke.middleware.YokeRequest;
+import com.jetdrone.vertx.yoke.test.Response;
+import com.jetdrone.vertx.yoke.test.YokeTester;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.net.NetSocket;
+import org.vertx.testtools.TestVerticle;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.util.Set;
+
+import static org.vertx.testtools.VertxAssert.*;
+
+public class ConcurrencyLimit extends TestVerticle {
+
+    // ends the response after the given ms
+    private Middleware slow(final long millis) {
+        return new Middleware() {
+            @Override
+            public void handle(@NotNull final YokeRequest request, @NotNull Handler<Object> next) {
+                vertx.setTimer(millis, new Handler<Long>() {
+                    @Override
+                    public void handle(Long event) {
+                        request.response().end();
+                    }
+                });
+            }
+        };
+    }
+
+    @Test
+    public void testQueue() {
+        final com.jetdrone.vertx.yoke.middleware.ConcurrencyLimit limit = new com.jetdrone.vertx.yoke.middleware.ConcurrencyLimit(1)
+                .setMaxLimit(1)
+                .setMaxQueue(1);
+
+        Yoke yoke = new Yoke(this);
+        yoke.use(limit);
+        yoke.use(slow(50));
+
+        final YokeTester tester = new YokeTester(yoke);
+
+        final int[] statuses = new int[3];
+        final int[] done = new int[1];
+
+        for (int i = 0; i < 3; i++) {
+            final int index = i;
+            tester.request("GET", "/", new Handler<Response>() {
+                @Override
+                public void handle(Response resp) {
+                    statuses[index] = resp.getStatusCode();
+                    if (++done[0] == 3) {
+                        // the first runs, the second waits for it, the third does not fit in the queue
+                        assertEquals(200, statuses[0]);
+                        assertEquals(200, statuses[1]);
+                        assertEquals(503, statuses[2]);
+                        assertEquals(1L, limit.getRejected());
+                        testComplete();
+                    }
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testQueueTimeout() {
+        final com.jetdrone.vertx.yoke.middleware.ConcurrencyLimit limit = new com.jetdrone.vertx.yoke.middleware.ConcurrencyLimit(1)
+                .setMaxLimit(1)
+                .setQueueTimeout(20);
+
+        Yoke yoke = new Yoke(this);
+        yoke.use(limit);
+        yoke.use(slow(200));
+
+        final YokeTester tester = new YokeTester(yoke);
+
+        tester.request("GET", "/", new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                assertEquals(200, resp.getStatusCode());
+                testComplete();
+            }
+        });
+
+        tester.request("GET", "/", new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                assertEquals(503, resp.getStatusCode());
+                assertEquals(0, limit.getQueued());
+            }
+        });
+    }
+
+    @Test
+    public void testAdaptiveLimit() throws Exception {
+        final com.jetdrone.vertx.yoke.middleware.ConcurrencyLimit limit = new com.jetdrone.vertx.yoke.middleware.ConcurrencyLimit(20)
+                .setWindow(5);
+
+        final int[] latency = new int[1];
+
+        Yoke yoke = new Yoke(this);
+        yoke.use(limit);
+        yoke.use(new Middleware() {
+            @Override
+            public void handle(@NotNull final YokeRequest request, @NotNull Handler<Object> next) {
+                if (latency[0] == 0) {
+                    request.response().end();
+                    return;
+                }
+                vertx.setTimer(latency[0], new Handler<Long>() {
+                    @Override
+                    public void handle(Long event) {
+                        request.response().end();
+                    }
+                });
+            }
+        });
+
+        final MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        final Set<ObjectName> names = mbs.queryNames(new ObjectName("com.jetdrone.yoke:type=ConcurrencyLimit@" + yoke.hashCode() + ",*"), null);
+        assertEquals(1, names.size());
+        final ObjectName name = names.iterator().next();
+
+        final YokeTester tester = new YokeTester(yoke);
+
+        // 20 fast requests then 20 requests taking 20 ms, one at a time
+        tester.request("GET", "/", new Handler<Response>() {
+            int count = 0;
+
+            @Override
+            public void handle(Response resp) {
+                assertEquals(200, resp.getStatusCode());
+
+                if (++count == 20) {
+                    latency[0] = 20;
+                }
+
+                if (count < 40) {
+                    tester.request("GET", "/", this);
+                    return;
+                }
+
+                try {
+                    // the latency went up, the limit came down
+                    assertTrue(limit.getLimit() < 20);
+                    assertEquals(limit.getLimit(), mbs.getAttribute(name, "limit"));
+                    assertEquals(0L, mbs.getAttribute(name, "rejected"));
+                } catch (Exception e) {
+                    fail(e.getMessage());
+                }
+                testComplete();
+            }
+        });
+    }
+
+    @Test
+    public void testRoute() {
+        final com.jetdrone.vertx.yoke.middleware.ConcurrencyLimit limit = new com.jetdrone.vertx.yoke.middleware.ConcurrencyLimit(1)
+                .setMaxLimit(1)
+                .setMaxQueue(0);
+
+        Yoke yoke = new Yoke(this);
+        yoke.use(new Router()
+                .get("/reports", limit, slow(50))
+                .get("/health", new Handler<YokeRequest>() {
+                    @Override
+                    public void handle(YokeRequest request) {
+                        request.response().end("ok");
+                    }
+                }));
+
+        final YokeTester tester = new YokeTester(yoke);
+
+        tester.request("GET", "/reports", new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                assertEquals(200, resp.getStatusCode());
+                assertEquals(0, limit.getInFlight());
+                testComplete();
+            }
+        });
+
+        tester.request("GET", "/reports", new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                assertEquals(503, resp.getStatusCode());
+            }
+        });
+
+        // other routes are not limited
+        tester.request("GET", "/health", new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                assertEquals(200, resp.getStatusCode());
+                assertEquals(1, limit.getInFlight());
+            }
+        });
+    }
+
+    @Test
+    public void testClientDisconnect() throws IOException {
+        final int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        final com.jetdrone.vertx.yoke.middleware.ConcurrencyLimit limit = new com.jetdrone.vertx.yoke.middleware.ConcurrencyLimit(1)
+                .setMaxLimit(1)
+                .setMaxQueue(0);
+
+        Yoke yoke = new Yoke(this);
+        yoke.use(limit);
+        yoke.use(new Middleware() {
+            @Override
+            public void handle(@NotNull YokeRequest request, @NotNull Handler<Object> next) {
+                // never ends, the client gives up
+                if (!"/hang".equals(request.path())) {
+                    request.response().end();
+                }
+            }
+        });
+
+        final YokeTester tester = new YokeTester(yoke);
+
+        yoke.listen(port, "localhost", new Handler<Boolean>() {
+            @Override
+            public void handle(Boolean listening) {
+                assertTrue(listening);
+
+                vertx.createNetClient().connect(port, "localhost", new Handler<AsyncResult<NetSocket>>() {
+                    @Override
+                    public void handle(AsyncResult<NetSocket> connect) {
+                        assertTrue(connect.succeeded());
+                        final NetSocket socket = connect.result();
+                        socket.write("GET /hang HTTP/1.1\r\nHost: localhost\r\n\r\n");
+
+                        vertx.setTimer(100, new Handler<Long>() {
+                            @Override
+                            public void handle(Long event) {
+                                assertEquals(1, limit.getInFlight());
+                                tester.request("GET", "/", new Handler<Response>() {
+                                    @Override
+                                    public void handle(Response resp) {
+                                        assertEquals(503, resp.getStatusCode());
+                                        socket.close();
+
+                                        vertx.setTimer(100, new Handler<Long>() {
+                                            @Override
+                                            public void handle(Long event) {
+                                                // the slot was released with the connection
+                                                assertEquals(0, limit.getInFlight());
+                                                tester.request("GET", "/", new Handler<Response>() {
+                                                    @Override
+                                                    public void handle(Response resp) {
+                                                        assertEquals(200, resp.getStatusCode());
+                                                        testComplete();
+                                                    }
+                                                });
+                                            }
+                                        });
+                                    }
+                                });
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+}
@@ -0,0 +1,105 @@
+package com.jetdrone.vertx.yoke.test.middleware;
+
+import com.jetdrone.vertx.yoke.Middleware;
+import com.jetdrone.vertx.yoke.Yoke;
+import com.jetdrone.vertx.yoke.core.AccessLogWriter;
+import com.jetdrone.vertx.yoke.middleware.YokeRequest;
+import com.jetdrone.vertx.yoke.test.Response;
+import com.jetdrone.vertx.yoke.test.YokeTester;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.VoidHandler;
+import org.vertx.testtools.TestVerticle;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.vertx.testtools.VertxAssert.*;
+
+public class Logger extends TestVerticle {
+
+    @Test
+    public void testAccessLog() throws IOException {
+        final File file = File.createTempFile("access", ".log");
+        file.deleteOnExit();
+
+        final AccessLogWriter writer = new AccessLogWriter(file.getPath());
+
+        Yoke yoke = new Yoke(this);
+        yoke.use(new com.jetdrone.vertx.yoke.middleware.Logger(com.jetdrone.vertx.yoke.middleware.Logger.Format.DEFAULT, writer));
+        yoke.use(new Middleware() {
+            @Override
+            public void handle(@NotNull YokeRequest request, @NotNull Handler<Object> next) {
+                request.response().end();
+            }
+        });
+
+        new YokeTester(yoke).request("GET", "/items?page=1", new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                assertEquals(200, resp.getStatusCode());
+
+                // the line is queued by the end handlers, after the response went out
+                vertx.runOnContext(new VoidHandler() {
+                    @Override
+                    protected void handle() {
+                        writer.close();
+
+                        try {
+                            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+                            assertEquals(1, lines.size());
+                            assertTrue(lines.get(0), lines.get(0).matches(
+                                    ".* - - \\[\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}\\.\\d{3}Z\\] \"GET /items\\?page=1 HTTP/1.1\" 200 0 \"\" \"\""));
+                            assertEquals(0, writer.dropped());
+                        } catch (IOException e) {
+                            fail(e.getMessage());
+                        }
+                        testComplete();
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testDropWhenFull() throws InterruptedException {
+        final CountDownLatch flushing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        // holds the writer thread in the first flush
+        final StringWriter out = new StringWriter() {
+            @Override
+            public void flush() {
+                flushing.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        final AccessLogWriter writer = new AccessLogWriter(out, 2, AccessLogWriter.Overflow.DROP);
+
+        assertTrue(writer.write("a"));
+        assertTrue(flushing.await(5, TimeUnit.SECONDS));
+
+        assertTrue(writer.write("b"));
+        assertTrue(writer.write("c"));
+        assertFalse(writer.write("d"));
+        assertEquals(1, writer.dropped());
+
+        release.countDown();
+        writer.close();
+
+        assertEquals("a\nb\nc\n", out.toString());
+        testComplete();
+    }
+}
@@ -0,0 +1,159 @@
+package com.jetdrone.vertx.yoke.test.middleware;
+
+import com.jetdrone.vertx.yoke.Middleware;
+import com.jetdrone.vertx.yoke.Yoke;
+import com.jetdrone.vertx.yoke.middleware.BodyParser;
+import com.jetdrone.vertx.yoke.middleware.Router;
+import com.jetdrone.vertx.yoke.middleware.YokeRequest;
+import com.jetdrone.vertx.yoke.test.Response;
+import com.jetdrone.vertx.yoke.test.YokeTester;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.MultiMap;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.CaseInsensitiveMultiMap;
+import org.vertx.java.core.net.NetSocket;
+import org.vertx.testtools.TestVerticle;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+import static org.vertx.testtools.VertxAssert.*;
+
+public class Metrics extends TestVerticle {
+
+    @Test
+    public void testMetrics() {
+        final Yoke yoke = new Yoke(this);
+        yoke.use(new com.jetdrone.vertx.yoke.middleware.Metrics("/metrics", new com.jetdrone.vertx.yoke.middleware.Metrics.Registry()));
+        yoke.use(new BodyParser());
+        yoke.use(new Router()
+                .get("/users/:id", new Handler<YokeRequest>() {
+                    @Override
+                    public void handle(YokeRequest request) {
+                        request.response().end("user " + request.getParameter("id"));
+                    }
+                })
+                .post("/users", new Handler<YokeRequest>() {
+                    @Override
+                    public void handle(YokeRequest request) {
+                        request.response().setStatusCode(500);
+                        request.response().end();
+                    }
+                }));
+
+        final YokeTester tester = new YokeTester(yoke);
+
+        final MultiMap headers = new CaseInsensitiveMultiMap();
+        headers.add("content-type", "text/plain");
+        headers.add("content-length", "5");
+
+        tester.request("GET", "/users/1", new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                assertEquals(200, resp.getStatusCode());
+                tester.request("GET", "/users/22", new Handler<Response>() {
+                    @Override
+                    public void handle(Response resp) {
+                        tester.request("POST", "/users", headers, new Buffer("hello"), new Handler<Response>() {
+                            @Override
+                            public void handle(Response resp) {
+                                assertEquals(500, resp.getStatusCode());
+                                tester.request("GET", "/nowhere", new Handler<Response>() {
+                                    @Override
+                                    public void handle(Response resp) {
+                                        assertEquals(404, resp.getStatusCode());
+                                        tester.request("GET", "/metrics", new Handler<Response>() {
+                                            @Override
+                                            public void handle(Response resp) {
+                                                assertEquals(200, resp.getStatusCode());
+                                                assertTrue(resp.headers().get("content-type").startsWith("text/plain; version=0.0.4"));
+
+                                                final String body = resp.body.toString();
+                                                assertTrue(body.contains("yoke_requests_total{method=\"GET\",route=\"/users/:id\",status=\"2xx\"} 2\n"));
+                                                assertTrue(body.contains("yoke_requests_total{method=\"POST\",route=\"/users\",status=\"5xx\"} 1\n"));
+                                                assertTrue(body.contains("yoke_requests_total{method=\"GET\",route=\"\",status=\"4xx\"} 1\n"));
+                                                // the scrape is not counted
+                                                assertFalse(body.contains("/metrics"));
+                                                assertTrue(body.contains("yoke_requests_in_flight 0\n"));
+                                                assertTrue(body.contains("yoke_request_bytes_total{method=\"POST\",route=\"/users\"} 5\n"));
+                                                assertTrue(body.contains("yoke_response_bytes_total{method=\"GET\",route=\"/users/:id\"} 13\n"));
+                                                assertTrue(body.contains("yoke_request_duration_seconds_bucket{method=\"GET\",route=\"/users/:id\",le=\"+Inf\"} 2\n"));
+                                                assertTrue(body.contains("yoke_request_duration_seconds_bucket{method=\"GET\",route=\"/users/:id\",le=\"10\"} 2\n"));
+                                                assertTrue(body.contains("yoke_request_duration_seconds_count{method=\"POST\",route=\"/users\"} 1\n"));
+                                                testComplete();
+                                            }
+                                        });
+                                    }
+                                });
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testClientDisconnect() throws IOException {
+        final int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        final Yoke yoke = new Yoke(this);
+        yoke.use(new com.jetdrone.vertx.yoke.middleware.Metrics("/metrics", new com.jetdrone.vertx.yoke.middleware.Metrics.Registry()));
+        yoke.use(new Middleware() {
+            @Override
+            public void handle(@NotNull YokeRequest request, @NotNull Handler<Object> next) {
+                // never ends, the client gives up
+            }
+        });
+
+        final YokeTester tester = new YokeTester(yoke);
+
+        yoke.listen(port, "localhost", new Handler<Boolean>() {
+            @Override
+            public void handle(Boolean listening) {
+                assertTrue(listening);
+
+                vertx.createNetClient().connect(port, "localhost", new Handler<AsyncResult<NetSocket>>() {
+                    @Override
+                    public void handle(AsyncResult<NetSocket> connect) {
+                        assertTrue(connect.succeeded());
+                        final NetSocket socket = connect.result();
+                        socket.write("GET /slow HTTP/1.1\r\nHost: localhost\r\n\r\n");
+
+                        vertx.setTimer(100, new Handler<Long>() {
+                            @Override
+                            public void handle(Long event) {
+                                tester.request("GET", "/metrics", new Handler<Response>() {
+                                    @Override
+                                    public void handle(Response resp) {
+                                        assertTrue(resp.body.toString().contains("yoke_requests_in_flight 1\n"));
+                                        socket.close();
+
+                                        vertx.setTimer(100, new Handler<Long>() {
+                                            @Override
+                                            public void handle(Long event) {
+                                                tester.request("GET", "/metrics", new Handler<Response>() {
+                                                    @Override
+                                                    public void handle(Response resp) {
+                                                        assertTrue(resp.body.toString().contains("yoke_requests_in_flight 0\n"));
+                                                        testComplete();
+                                                    }
+                                                });
+                                            }
+                                        });
+                                    }
+                                });
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+}
@@ -0,0 +1,267 @@
+package com.jetdrone.vertx.yoke.test.middleware;
+
+import com.jetdrone.vertx.yoke.Yoke;
+import com.jetdrone.vertx.yoke.test.Response;
+import com.jetdrone.vertx.yoke.test.YokeTester;
+import org.junit.Test;
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.MultiMap;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.CaseInsensitiveMultiMap;
+import org.vertx.java.core.http.HttpServer;
+import org.vertx.java.core.http.HttpServerRequest;
+import org.vertx.java.core.net.NetSocket;
+import org.vertx.testtools.TestVerticle;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.vertx.testtools.VertxAssert.*;
+
+public class RequestProxy extends TestVerticle {
+
+    // chosen for each test, so a test never binds a port still held by the previous one
+    private int portA;
+    private int portB;
+    // nothing listens here
+    private int portDead;
+
+    private final List<HttpServer> upstreams = new ArrayList<>();
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // echoes the name of the server, the uri and the body
+    private void upstream(final String name, int port, final Handler<Void> ready) {
+        vertx.createHttpServer().requestHandler(new Handler<HttpServerRequest>() {
+            @Override
+            public void handle(final HttpServerRequest request) {
+                request.bodyHandler(new Handler<Buffer>() {
+                    @Override
+                    public void handle(Buffer body) {
+                        request.response().putHeader("x-upstream", name);
+                        request.response().end(name + " " + request.uri() + " " + body);
+                    }
+                });
+            }
+        }).listen(port, new Handler<AsyncResult<HttpServer>>() {
+            @Override
+            public void handle(AsyncResult<HttpServer> event) {
+                assertTrue(event.succeeded());
+                upstreams.add(event.result());
+                ready.handle(null);
+            }
+        });
+    }
+
+    @Override
+    public void start() {
+        initialize();
+        portA = freePort();
+        portB = freePort();
+        portDead = freePort();
+        upstream("a", portA, new Handler<Void>() {
+            @Override
+            public void handle(Void event) {
+                upstream("b", portB, new Handler<Void>() {
+                    @Override
+                    public void handle(Void event) {
+                        startTests();
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public void stop() {
+        for (HttpServer upstream : upstreams) {
+            upstream.close();
+        }
+    }
+
+    @Test
+    public void testRoundRobin() {
+        Yoke yoke = new Yoke(this);
+        yoke.use(new com.jetdrone.vertx.yoke.middleware.RequestProxy("/api", false, "localhost:" + portA, "localhost:" + portB));
+
+        final YokeTester tester = new YokeTester(yoke);
+
+        tester.request("GET", "/api/items?page=2", new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                assertEquals(200, resp.getStatusCode());
+                assertEquals("a", resp.headers().get("x-upstream"));
+                assertEquals("a /items?page=2 ", resp.body.toString());
+
+                tester.request("GET", "/api/items", new Handler<Response>() {
+                    @Override
+                    public void handle(Response resp) {
+                        assertEquals(200, resp.getStatusCode());
+                        assertEquals("b /items ", resp.body.toString());
+
+                        tester.request("GET", "/api", new Handler<Response>() {
+                            @Override
+                            public void handle(Response resp) {
+                                assertEquals("a / ", resp.body.toString());
+                                testComplete();
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testBody() {
+        Yoke yoke = new Yoke(this);
+        yoke.use(new com.jetdrone.vertx.yoke.middleware.RequestProxy("/api", portA, false));
+
+        MultiMap headers = new CaseInsensitiveMultiMap();
+        headers.add("content-type", "text/plain");
+        headers.add("content-length", "5");
+
+        new YokeTester(yoke).request("POST", "/api/echo", headers, new Buffer("hello"), new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                assertEquals(200, resp.getStatusCode());
+                assertEquals("a /echo hello", resp.body.toString());
+                testComplete();
+            }
+        });
+    }
+
+    @Test
+    public void testEjection() {
+        Yoke yoke = new Yoke(this);
+        yoke.use(new com.jetdrone.vertx.yoke.middleware.RequestProxy("/api", false, "localhost:" + portDead, "localhost:" + portB)
+                .setMaxFailures(1)
+                .setEjectTime(60000));
+
+        final YokeTester tester = new YokeTester(yoke);
+
+        tester.request("GET", "/api/items", new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                // the dead upstream fails and is ejected
+                assertEquals(502, resp.getStatusCode());
+
+                tester.request("GET", "/api/items", new Handler<Response>() {
+                    @Override
+                    public void handle(Response resp) {
+                        assertEquals("b", resp.headers().get("x-upstream"));
+
+                        tester.request("GET", "/api/items", new Handler<Response>() {
+                            @Override
+                            public void handle(Response resp) {
+                                assertEquals("b", resp.headers().get("x-upstream"));
+                                testComplete();
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testNotProxied() {
+        Yoke yoke = new Yoke(this);
+        yoke.use(new com.jetdrone.vertx.yoke.middleware.RequestProxy("/api", portA, false));
+
+        new YokeTester(yoke).request("GET", "/other", new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                assertEquals(404, resp.getStatusCode());
+                testComplete();
+            }
+        });
+    }
+
+    @Test
+    public void testClientDisconnect() {
+        final int portBig = freePort();
+        final int port = freePort();
+
+        // far more than the socket buffers hold, the pump is paused when the client leaves
+        vertx.createHttpServer().requestHandler(new Handler<HttpServerRequest>() {
+            @Override
+            public void handle(HttpServerRequest request) {
+                if ("/big".equals(request.path())) {
+                    request.response().end(new Buffer(new byte[32 * 1024 * 1024]));
+                } else {
+                    request.response().end("small");
+                }
+            }
+        }).listen(portBig, new Handler<AsyncResult<HttpServer>>() {
+            @Override
+            public void handle(AsyncResult<HttpServer> event) {
+                assertTrue(event.succeeded());
+                upstreams.add(event.result());
+
+                final com.jetdrone.vertx.yoke.middleware.RequestProxy proxy =
+                        new com.jetdrone.vertx.yoke.middleware.RequestProxy("/api", portBig, false).setMaxPoolSize(1);
+
+                final Yoke yoke = new Yoke(RequestProxy.this);
+                yoke.use(proxy);
+
+                yoke.listen(port, "localhost", new Handler<Boolean>() {
+                    @Override
+                    public void handle(Boolean listening) {
+                        assertTrue(listening);
+
+                        vertx.createNetClient().connect(port, "localhost", new Handler<AsyncResult<NetSocket>>() {
+                            @Override
+                            public void handle(AsyncResult<NetSocket> connect) {
+                                assertTrue(connect.succeeded());
+                                final NetSocket socket = connect.result();
+
+                                socket.dataHandler(new Handler<Buffer>() {
+                                    boolean closed;
+
+                                    @Override
+                                    public void handle(Buffer data) {
+                                        if (closed) {
+                                            return;
+                                        }
+                                        closed = true;
+                                        // the download is under way, abort it
+                                        assertEquals(1, proxy.getInFlight());
+                                        socket.close();
+
+                                        vertx.setTimer(200, new Handler<Long>() {
+                                            @Override
+                                            public void handle(Long event) {
+                                                assertEquals(0, proxy.getInFlight());
+
+                                                // the only pooled connection is available again
+                                                new YokeTester(yoke).request("GET", "/api/small", new Handler<Response>() {
+                                                    @Override
+                                                    public void handle(Response resp) {
+                                                        assertEquals(200, resp.getStatusCode());
+                                                        assertEquals("small", resp.body.toString());
+                                                        testComplete();
+                                                    }
+                                                });
+                                            }
+                                        });
+                                    }
+                                });
+                                socket.write("GET /api/big HTTP/1.1\r\nHost: localhost\r\n\r\n");
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+}
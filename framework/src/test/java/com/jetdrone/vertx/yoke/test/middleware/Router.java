@@ -200,6 +200,146 @@ public class Router extends TestVerticle {
         });
     }
 
+    @Test
+    public void testManyRoutes() {
+        final Yoke yoke = new Yoke(this);
+        yoke.use(new com.jetdrone.vertx.yoke.middleware.Router() {{
+            for (int i = 0; i < 100; i++) {
+                final String name = "r" + i;
+                get("/api/" + name + "/:id/items/:item", new Middleware() {
+                    @Override
+                    public void handle(@NotNull final YokeRequest request, @NotNull final Handler<Object> next) {
+                        request.response().end(name + ":" + request.params().get("id") + ":" + request.params().get("item"));
+                    }
+                });
+            }
+        }});
+
+        final YokeTester yokeAssert = new YokeTester(yoke);
+
+        yokeAssert.request("GET", "/api/r42/7/items/abc/", new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                assertEquals(200, resp.getStatusCode());
+                assertEquals("r42:7:abc", resp.body.toString());
+
+                yokeAssert.request("GET", "/api/r42/7/items", new Handler<Response>() {
+                    @Override
+                    public void handle(Response resp) {
+                        assertEquals(404, resp.getStatusCode());
+                        testComplete();
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testRouteOrder() {
+        final Yoke yoke = new Yoke(this);
+        yoke.use(new com.jetdrone.vertx.yoke.middleware.Router() {{
+            get(Pattern.compile("/api/.*"), new Middleware() {
+                @Override
+                public void handle(@NotNull final YokeRequest request, @NotNull final Handler<Object> next) {
+                    request.put("trace", "regex");
+                    next.handle(null);
+                }
+            });
+            get("/api/:id", new Middleware() {
+                @Override
+                public void handle(@NotNull final YokeRequest request, @NotNull final Handler<Object> next) {
+                    request.put("trace", request.get("trace") + ",param");
+                    next.handle(null);
+                }
+            });
+            get("/api/users", new Middleware() {
+                @Override
+                public void handle(@NotNull final YokeRequest request, @NotNull final Handler<Object> next) {
+                    request.response().end(request.get("trace") + ",literal");
+                }
+            });
+        }});
+
+        new YokeTester(yoke).request("GET", "/api/users", new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                assertEquals(200, resp.getStatusCode());
+                assertEquals("regex,param,literal", resp.body.toString());
+                testComplete();
+            }
+        });
+    }
+
+    @Test
+    public void testStrictTrailingSlash() {
+        final Yoke yoke = new Yoke(this);
+        yoke.use(new com.jetdrone.vertx.yoke.middleware.Router() {{
+            get("/api/", new Middleware() {
+                @Override
+                public void handle(@NotNull final YokeRequest request, @NotNull final Handler<Object> next) {
+                    request.response().end("OK");
+                }
+            });
+        }});
+
+        final YokeTester yokeAssert = new YokeTester(yoke);
+
+        yokeAssert.request("GET", "/api/", new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                assertEquals(200, resp.getStatusCode());
+
+                yokeAssert.request("GET", "/api", new Handler<Response>() {
+                    @Override
+                    public void handle(Response resp) {
+                        assertEquals(404, resp.getStatusCode());
+                        testComplete();
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testDirectDispatch() {
+        final Yoke yoke = new Yoke(this);
+
+        final Middleware count = new Middleware() {
+            @Override
+            public void handle(@NotNull final YokeRequest request, @NotNull final Handler<Object> next) {
+                Integer calls = request.get("calls");
+                request.put("calls", calls == null ? 1 : calls + 1);
+                next.handle(null);
+            }
+        };
+
+        final Middleware[] chain = new Middleware[5000];
+        for (int i = 0; i < chain.length; i++) {
+            chain[i] = count;
+        }
+
+        yoke.use(new com.jetdrone.vertx.yoke.middleware.Router() {{
+            directDispatch(16);
+            get("/api/:id", chain);
+            get("/api/:id", new Middleware() {
+                @Override
+                public void handle(@NotNull final YokeRequest request, @NotNull final Handler<Object> next) {
+                    request.response().end(request.get("calls") + ":" + request.params().get("id"));
+                }
+            });
+            param("id", count);
+        }});
+
+        new YokeTester(yoke).request("GET", "/api/1", new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                assertEquals(200, resp.getStatusCode());
+                assertEquals("5001:1", resp.body.toString());
+                testComplete();
+            }
+        });
+    }
+
     public static class R2 {
 
         @RegExParam("userId")
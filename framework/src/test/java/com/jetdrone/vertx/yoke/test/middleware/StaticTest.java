@@ -1,19 +1,38 @@
 package com.jetdrone.vertx.yoke.test.middleware;
 
+import com.jetdrone.vertx.yoke.MimeType;
 import com.jetdrone.vertx.yoke.Yoke;
 import com.jetdrone.vertx.yoke.middleware.Static;
 import com.jetdrone.vertx.yoke.test.Response;
 import com.jetdrone.vertx.yoke.test.YokeTester;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.vertx.java.core.AsyncResult;
 import org.vertx.java.core.Handler;
+import org.vertx.java.core.MultiMap;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.CaseInsensitiveMultiMap;
 import org.vertx.java.core.file.impl.PathAdjuster;
 import org.vertx.java.core.impl.VertxInternal;
+import org.vertx.java.core.net.NetSocket;
 import org.vertx.testtools.TestVerticle;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 
 import static org.vertx.testtools.VertxAssert.assertEquals;
+import static org.vertx.testtools.VertxAssert.assertFalse;
+import static org.vertx.testtools.VertxAssert.assertNull;
+import static org.vertx.testtools.VertxAssert.assertTrue;
+import static org.vertx.testtools.VertxAssert.fail;
 import static org.vertx.testtools.VertxAssert.testComplete;
 
 public class StaticTest extends TestVerticle {
@@ -61,4 +80,383 @@ public class StaticTest extends TestVerticle {
             }
         });
     }
+
+    @Test
+    public void testStaticCache() throws IOException {
+        final File root = Files.createTempDirectory("static").toFile();
+        final File file = new File(root, "file.txt");
+        Files.write(file.toPath(), "cached".getBytes("UTF-8"));
+
+        Yoke yoke = new Yoke(this);
+        yoke.use(new Static(root.getAbsolutePath()).cache(1024 * 1024, 64 * 1024, 0));
+
+        final YokeTester yokeAssert = new YokeTester(yoke);
+
+        yokeAssert.request("GET", "/file.txt", new Handler<Response>() {
+            @Override
+            public void handle(final Response resp) {
+                assertEquals(200, resp.getStatusCode());
+                assertEquals("cached", resp.body.toString());
+                // the second request must not touch the file system
+                assertEquals(true, file.delete());
+
+                yokeAssert.request("GET", "/file.txt", new Handler<Response>() {
+                    @Override
+                    public void handle(Response resp2) {
+                        assertEquals(200, resp2.getStatusCode());
+                        assertEquals("cached", resp2.body.toString());
+                        assertEquals(resp.headers().get("etag"), resp2.headers().get("etag"));
+                        assertEquals(resp.headers().get("last-modified"), resp2.headers().get("last-modified"));
+                        testComplete();
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testStaticCacheRevalidate() throws IOException {
+        final File root = Files.createTempDirectory("static").toFile();
+        final File file = new File(root, "file.txt");
+        Files.write(file.toPath(), "cached".getBytes("UTF-8"));
+
+        Yoke yoke = new Yoke(this);
+        yoke.use(new Static(root.getAbsolutePath()).cache(1024 * 1024, 64 * 1024, 50));
+
+        final YokeTester yokeAssert = new YokeTester(yoke);
+
+        yokeAssert.request("GET", "/file.txt", new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                assertEquals(200, resp.getStatusCode());
+                assertEquals(true, file.delete());
+
+                vertx.setTimer(300, new Handler<Long>() {
+                    @Override
+                    public void handle(Long event) {
+                        yokeAssert.request("GET", "/file.txt", new Handler<Response>() {
+                            @Override
+                            public void handle(Response resp) {
+                                assertEquals(404, resp.getStatusCode());
+                                testComplete();
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testStaticPrecompress() throws IOException {
+        final File root = Files.createTempDirectory("static").toFile();
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            content.append("var x").append(i).append(" = ").append(i).append(";\n");
+        }
+        final String expected = content.toString();
+        Files.write(new File(root, "app.js").toPath(), expected.getBytes("UTF-8"));
+
+        Yoke yoke = new Yoke(this);
+        yoke.use(new Static(root.getAbsolutePath()).cache(1024 * 1024, 64 * 1024, 0).precompress(Pattern.compile("javascript")));
+
+        final YokeTester yokeAssert = new YokeTester(yoke);
+        final MultiMap headers = new CaseInsensitiveMultiMap();
+        headers.add("accept-encoding", "gzip, deflate");
+
+        yokeAssert.request("GET", "/app.js", headers, new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                assertEquals(200, resp.getStatusCode());
+                assertEquals("gzip", resp.headers().get("content-encoding"));
+                assertEquals("accept-encoding", resp.headers().get("vary"));
+                assertEquals(Integer.toString(resp.body.length()), resp.headers().get("content-length"));
+                assertEquals(expected, gunzip(resp.body));
+
+                // clients that do not accept gzip get the plain body
+                yokeAssert.request("GET", "/app.js", new Handler<Response>() {
+                    @Override
+                    public void handle(Response resp) {
+                        assertEquals(200, resp.getStatusCode());
+                        assertNull(resp.headers().get("content-encoding"));
+                        assertEquals(expected, resp.body.toString());
+                        testComplete();
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testStaticCompressedSiblings() throws IOException {
+        final File root = Files.createTempDirectory("static").toFile();
+        Files.write(new File(root, "app.js").toPath(), "plain".getBytes("UTF-8"));
+        Files.write(new File(root, "app.js.gz").toPath(), "gzipped".getBytes("UTF-8"));
+        Files.write(new File(root, "app.js.br").toPath(), "brotli".getBytes("UTF-8"));
+
+        Yoke yoke = new Yoke(this);
+        yoke.use(new Static(root.getAbsolutePath()).compressedSiblings(true));
+
+        final YokeTester yokeAssert = new YokeTester(yoke);
+        final MultiMap gzip = new CaseInsensitiveMultiMap();
+        gzip.add("accept-encoding", "gzip, deflate, br;q=0");
+
+        yokeAssert.request("GET", "/app.js", gzip, new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                assertEquals(200, resp.getStatusCode());
+                assertEquals("gzip", resp.headers().get("content-encoding"));
+                assertEquals("accept-encoding", resp.headers().get("vary"));
+                assertEquals("application/javascript", resp.headers().get("content-type"));
+                assertEquals("7", resp.headers().get("content-length"));
+                assertEquals("gzipped", resp.body.toString());
+
+                final MultiMap br = new CaseInsensitiveMultiMap();
+                br.add("accept-encoding", "gzip, br");
+
+                yokeAssert.request("GET", "/app.js", br, new Handler<Response>() {
+                    @Override
+                    public void handle(Response resp) {
+                        assertEquals("br", resp.headers().get("content-encoding"));
+                        assertEquals("brotli", resp.body.toString());
+
+                        yokeAssert.request("GET", "/app.js", new Handler<Response>() {
+                            @Override
+                            public void handle(Response resp) {
+                                assertNull(resp.headers().get("content-encoding"));
+                                assertEquals("plain", resp.body.toString());
+                                testComplete();
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testStaticCachedSiblingsRevalidate() throws IOException {
+        final File root = Files.createTempDirectory("static").toFile();
+        final File gz = new File(root, "app.js.gz");
+        Files.write(new File(root, "app.js").toPath(), "plain".getBytes("UTF-8"));
+        Files.write(gz.toPath(), "gzipped".getBytes("UTF-8"));
+
+        Yoke yoke = new Yoke(this);
+        // no file fits in memory, the entries keep the sibling sizes
+        yoke.use(new Static(root.getAbsolutePath()).cache(1024 * 1024, 0, 50).compressedSiblings(true));
+
+        final YokeTester yokeAssert = new YokeTester(yoke);
+        final MultiMap gzip = new CaseInsensitiveMultiMap();
+        gzip.add("accept-encoding", "gzip");
+
+        yokeAssert.request("GET", "/app.js", gzip, new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                assertEquals("gzip", resp.headers().get("content-encoding"));
+                assertEquals("7", resp.headers().get("content-length"));
+
+                // only the sibling changes
+                try {
+                    Files.write(gz.toPath(), "gzipped again".getBytes("UTF-8"));
+                } catch (IOException e) {
+                    fail(e.getMessage());
+                }
+
+                vertx.setTimer(300, new Handler<Long>() {
+                    @Override
+                    public void handle(Long event) {
+                        yokeAssert.request("GET", "/app.js", gzip, new Handler<Response>() {
+                            @Override
+                            public void handle(Response resp) {
+                                assertEquals("13", resp.headers().get("content-length"));
+                                assertEquals("gzipped again", resp.body.toString());
+                                testComplete();
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testStaticRange() throws IOException {
+        final File root = Files.createTempDirectory("static").toFile();
+        final byte[] data = new byte[200 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + i % 26);
+        }
+        Files.write(new File(root, "data.txt").toPath(), data);
+
+        Yoke yoke = new Yoke(this);
+        yoke.use(new Static(root.getAbsolutePath()));
+
+        final YokeTester yokeAssert = new YokeTester(yoke);
+        final MultiMap headers = new CaseInsensitiveMultiMap();
+        headers.add("range", "bytes=1000-150999");
+
+        yokeAssert.request("GET", "/data.txt", headers, new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                assertEquals(206, resp.getStatusCode());
+                assertEquals("bytes", resp.headers().get("accept-ranges"));
+                assertEquals("bytes 1000-150999/204800", resp.headers().get("content-range"));
+                assertEquals("150000", resp.headers().get("content-length"));
+                assertEquals(150000, resp.body.length());
+                assertEquals(new String(data, 1000, 150000), resp.body.toString());
+
+                final MultiMap unsatisfiable = new CaseInsensitiveMultiMap();
+                unsatisfiable.add("range", "bytes=300000-");
+
+                yokeAssert.request("GET", "/data.txt", unsatisfiable, new Handler<Response>() {
+                    @Override
+                    public void handle(Response resp) {
+                        assertEquals(416, resp.getStatusCode());
+                        assertEquals("bytes */204800", resp.headers().get("content-range"));
+
+                        final MultiMap ifRange = new CaseInsensitiveMultiMap();
+                        ifRange.add("range", "bytes=0-9");
+                        ifRange.add("if-range", "\"stale\"");
+
+                        yokeAssert.request("GET", "/data.txt", ifRange, new Handler<Response>() {
+                            @Override
+                            public void handle(Response resp) {
+                                assertEquals(200, resp.getStatusCode());
+                                assertEquals(data.length, resp.body.length());
+                                testComplete();
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testStaticMultiRange() throws IOException {
+        final File root = Files.createTempDirectory("static").toFile();
+        Files.write(new File(root, "data.txt").toPath(), "0123456789".getBytes("UTF-8"));
+
+        Yoke yoke = new Yoke(this);
+        // served from memory
+        yoke.use(new Static(root.getAbsolutePath()).cache(1024 * 1024, 64 * 1024, 0));
+
+        final YokeTester yokeAssert = new YokeTester(yoke);
+        final MultiMap headers = new CaseInsensitiveMultiMap();
+        headers.add("range", "bytes=0-1, -2");
+
+        yokeAssert.request("GET", "/data.txt", headers, new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                assertEquals(206, resp.getStatusCode());
+                String contentType = resp.headers().get("content-type");
+                assertEquals(true, contentType.startsWith("multipart/byteranges; boundary="));
+                String boundary = contentType.substring(contentType.indexOf('=') + 1);
+
+                String expected =
+                        "--" + boundary + "\r\n" +
+                        "Content-Type: text/plain;charset=" + MimeType.getCharset("text/plain") + "\r\n" +
+                        "Content-Range: bytes 0-1/10\r\n\r\n" +
+                        "01" +
+                        "\r\n--" + boundary + "\r\n" +
+                        "Content-Type: text/plain;charset=" + MimeType.getCharset("text/plain") + "\r\n" +
+                        "Content-Range: bytes 8-9/10\r\n\r\n" +
+                        "89" +
+                        "\r\n--" + boundary + "--\r\n";
+
+                assertEquals(expected, resp.body.toString());
+                assertEquals(Integer.toString(resp.body.length()), resp.headers().get("content-length"));
+                testComplete();
+            }
+        });
+    }
+
+    @Test
+    public void testStaticRangeClientDisconnect() throws IOException {
+        final int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        final File root = Files.createTempDirectory("static").toFile();
+        final File file = new File(root, "data.bin");
+        // far more than the socket buffers hold, the writer waits for a drain when the client leaves
+        Files.write(file.toPath(), new byte[32 * 1024 * 1024]);
+        file.deleteOnExit();
+
+        Yoke yoke = new Yoke(this);
+        yoke.use(new Static(root.getAbsolutePath()));
+
+        yoke.listen(port, "localhost", new Handler<Boolean>() {
+            @Override
+            public void handle(Boolean listening) {
+                assertTrue(listening);
+
+                vertx.createNetClient().connect(port, "localhost", new Handler<AsyncResult<NetSocket>>() {
+                    @Override
+                    public void handle(AsyncResult<NetSocket> connect) {
+                        assertTrue(connect.succeeded());
+                        final NetSocket socket = connect.result();
+
+                        socket.dataHandler(new Handler<Buffer>() {
+                            boolean closed;
+
+                            @Override
+                            public void handle(Buffer data) {
+                                if (closed) {
+                                    return;
+                                }
+                                closed = true;
+                                assertTrue(isOpen(file));
+                                socket.close();
+
+                                vertx.setTimer(200, new Handler<Long>() {
+                                    @Override
+                                    public void handle(Long event) {
+                                        // the aborted download does not keep the file open
+                                        assertFalse(isOpen(file));
+                                        testComplete();
+                                    }
+                                });
+                            }
+                        });
+                        socket.write("GET /data.bin HTTP/1.1\r\nHost: localhost\r\nRange: bytes=1000-\r\n\r\n");
+                    }
+                });
+            }
+        });
+    }
+
+    // looks for the file in the open descriptors of the process
+    private static boolean isOpen(File file) {
+        try (DirectoryStream<Path> fds = Files.newDirectoryStream(new File("/proc/self/fd").toPath())) {
+            for (Path fd : fds) {
+                try {
+                    if (Files.readSymbolicLink(fd).equals(file.toPath())) {
+                        return true;
+                    }
+                } catch (IOException e) {
+                    // closed since the listing
+                }
+            }
+            return false;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String gunzip(Buffer body) {
+        try {
+            GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body.getBytes()));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[1024];
+            int len;
+            while ((len = in.read(buf)) != -1) {
+                out.write(buf, 0, len);
+            }
+            return out.toString("UTF-8");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
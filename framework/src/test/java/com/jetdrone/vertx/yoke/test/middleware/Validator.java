@@ -16,6 +16,8 @@ import org.vertx.java.core.http.CaseInsensitiveMultiMap;
 import org.vertx.java.core.json.JsonObject;
 import org.vertx.testtools.TestVerticle;
 
+import java.util.Arrays;
+
 import static com.jetdrone.vertx.yoke.util.Validator.that;
 import static org.vertx.testtools.VertxAssert.assertEquals;
 import static org.vertx.testtools.VertxAssert.testComplete;
@@ -170,6 +172,51 @@ public class Validator extends TestVerticle {
         headers.add("content-type", "application/json");
         headers.add("content-length", Integer.toString(body.length()));
 
+        new YokeTester(yoke).request("POST", "/", headers, body, new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                assertEquals(200, resp.getStatusCode());
+                testComplete();
+            }
+        });
+    }
+    @Test
+    public void testCollectAllErrors() {
+
+        final JsonObject json = new JsonObject().putObject("user", new JsonObject().putString("login", "paulo").putNumber("age", 200));
+
+        Yoke yoke = new Yoke(this);
+        yoke.use(new com.jetdrone.vertx.yoke.middleware.BodyParser());
+        yoke.use(new Middleware() {
+            @Override
+            public void handle(@NotNull YokeRequest request, @NotNull Handler<Object> next) {
+                com.jetdrone.vertx.yoke.util.Validator validator = new com.jetdrone.vertx.yoke.util.Validator(
+                    that("body:user.login").is(Type.Alpha),
+                    that("body:user.age").between(0, 150),
+                    that("body:user.password").exists(),
+                    that("body:account.id").exists(),
+                    that("body:?account.?id").is(Type.Integer)
+                );
+
+                validator.setFailOnFirstError(false);
+
+                assertEquals(Arrays.asList(
+                        "'user.age' is outside the range [0:150] be NULL",
+                        "'user.password' cannot be NULL",
+                        "Parameter 'id' is not present or is null"), validator.validate(request));
+
+                assertEquals("'user.age' is outside the range [0:150] be NULL", validator.check(request));
+
+                request.response().end();
+            }
+        });
+
+        Buffer body = new Buffer(json.encode());
+
+        MultiMap headers = new CaseInsensitiveMultiMap();
+        headers.add("content-type", "application/json");
+        headers.add("content-length", Integer.toString(body.length()));
+
         new YokeTester(yoke).request("POST", "/", headers, body, new Handler<Response>() {
             @Override
             public void handle(Response resp) {
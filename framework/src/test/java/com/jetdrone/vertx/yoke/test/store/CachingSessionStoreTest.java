@@ -0,0 +1,216 @@
+package com.jetdrone.vertx.yoke.test.store;
+
+import com.jetdrone.vertx.yoke.Yoke;
+import com.jetdrone.vertx.yoke.middleware.CookieParser;
+import com.jetdrone.vertx.yoke.middleware.Router;
+import com.jetdrone.vertx.yoke.middleware.Session;
+import com.jetdrone.vertx.yoke.middleware.YokeRequest;
+import com.jetdrone.vertx.yoke.store.CachingSessionStore;
+import com.jetdrone.vertx.yoke.store.SessionStore;
+import com.jetdrone.vertx.yoke.store.SharedDataSessionStore;
+import com.jetdrone.vertx.yoke.store.json.SessionObject;
+import com.jetdrone.vertx.yoke.test.Response;
+import com.jetdrone.vertx.yoke.test.YokeTester;
+import org.junit.Test;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.MultiMap;
+import org.vertx.java.core.http.CaseInsensitiveMultiMap;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+import org.vertx.testtools.TestVerticle;
+
+import javax.crypto.Mac;
+
+import static org.vertx.testtools.VertxAssert.*;
+
+public class CachingSessionStoreTest extends TestVerticle {
+
+    /**
+     * Counts the calls reaching the backing store.
+     */
+    private static class CountingStore implements SessionStore {
+        final SessionStore store;
+        int gets;
+        int sets;
+
+        CountingStore(SessionStore store) {
+            this.store = store;
+        }
+
+        @Override
+        public void get(String sid, Handler<JsonObject> callback) {
+            gets++;
+            store.get(sid, callback);
+        }
+
+        @Override
+        public void set(String sid, JsonObject sess, Handler<Object> callback) {
+            sets++;
+            store.set(sid, sess, callback);
+        }
+
+        @Override
+        public void destroy(String sid, Handler<Object> callback) {
+            store.destroy(sid, callback);
+        }
+
+        @Override
+        public void all(Handler<JsonArray> next) {
+            store.all(next);
+        }
+
+        @Override
+        public void clear(Handler<Object> next) {
+            store.clear(next);
+        }
+
+        @Override
+        public void length(Handler<Integer> next) {
+            store.length(next);
+        }
+    }
+
+    @Test
+    public void testReadOnlyRequestsSkipTheStore() {
+        final CountingStore backend = new CountingStore(new SharedDataSessionStore(vertx, "caching.test1"));
+
+        final Yoke yoke = new Yoke(this);
+        yoke.secretSecurity("keyboard cat");
+        yoke.store(new CachingSessionStore(vertx, backend));
+
+        final Mac hmac = yoke.security().getMac("HmacSHA256");
+        yoke.use(new CookieParser(hmac));
+        yoke.use(new Session(hmac));
+        yoke.use(new Router() {{
+            get("/", new Handler<YokeRequest>() {
+                @Override
+                public void handle(YokeRequest request) {
+                    SessionObject session = request.get("session");
+                    request.response().end(session == null ? "none" : session.getString("user"));
+                }
+            });
+            get("/new", new Handler<YokeRequest>() {
+                @Override
+                public void handle(YokeRequest request) {
+                    request.createSession().putString("user", "paulo");
+                    request.response().end();
+                }
+            });
+        }});
+
+        final YokeTester yokeAssert = new YokeTester(yoke);
+
+        yokeAssert.request("GET", "/new", new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                assertEquals(200, resp.getStatusCode());
+                assertEquals(1, backend.sets);
+
+                final MultiMap headers = new CaseInsensitiveMultiMap();
+                headers.add("cookie", resp.headers.get("set-cookie"));
+
+                yokeAssert.request("GET", "/", headers, new Handler<Response>() {
+                    @Override
+                    public void handle(Response resp) {
+                        assertEquals("paulo", resp.body.toString());
+
+                        yokeAssert.request("GET", "/", headers, new Handler<Response>() {
+                            @Override
+                            public void handle(Response resp) {
+                                assertEquals("paulo", resp.body.toString());
+                                // the session written by /new was cached, nothing else reached the store
+                                assertEquals(0, backend.gets);
+                                assertEquals(1, backend.sets);
+                                testComplete();
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testUnchangedUpdateAndCopies() {
+        final CountingStore backend = new CountingStore(new SharedDataSessionStore(vertx, "caching.test2"));
+        final CachingSessionStore store = new CachingSessionStore(vertx, backend);
+
+        store.set("s1", new JsonObject().putString("user", "paulo"), new Handler<Object>() {
+            @Override
+            public void handle(Object error) {
+                assertNull(error);
+
+                store.get("s1", new Handler<JsonObject>() {
+                    @Override
+                    public void handle(JsonObject session) {
+                        // changes to the returned session do not leak into the cache
+                        session.putString("user", "changed");
+
+                        final SessionObject unchanged = new SessionObject(new JsonObject().putString("user", "paulo"));
+
+                        store.update("s1", unchanged.jsonObject(), unchanged.changedFields(), new Handler<Object>() {
+                            @Override
+                            public void handle(Object error) {
+                                assertNull(error);
+                                assertEquals(0, backend.gets);
+                                assertEquals(1, backend.sets);
+
+                                store.get("s1", new Handler<JsonObject>() {
+                                    @Override
+                                    public void handle(JsonObject session) {
+                                        assertEquals("paulo", session.getString("user"));
+                                        assertEquals(2, store.hits());
+                                        testComplete();
+                                    }
+                                });
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testInvalidation() {
+        final SessionStore backend = new SharedDataSessionStore(vertx, "caching.test3");
+        // two verticle instances sharing the same backing store
+        final CachingSessionStore store1 = new CachingSessionStore(vertx, backend);
+        final CachingSessionStore store2 = new CachingSessionStore(vertx, backend);
+
+        store1.set("s1", new JsonObject().putNumber("v", 1), new Handler<Object>() {
+            @Override
+            public void handle(Object error) {
+                store2.get("s1", new Handler<JsonObject>() {
+                    @Override
+                    public void handle(JsonObject session) {
+                        assertEquals(1, session.getInteger("v").intValue());
+                        assertEquals(1, store2.size());
+
+                        store1.set("s1", new JsonObject().putNumber("v", 2), new Handler<Object>() {
+                            @Override
+                            public void handle(Object error) {
+                                vertx.setTimer(100, new Handler<Long>() {
+                                    @Override
+                                    public void handle(Long event) {
+                                        assertEquals(0, store2.size());
+
+                                        store2.get("s1", new Handler<JsonObject>() {
+                                            @Override
+                                            public void handle(JsonObject session) {
+                                                assertEquals(2, session.getInteger("v").intValue());
+                                                store1.close();
+                                                store2.close();
+                                                testComplete();
+                                            }
+                                        });
+                                    }
+                                });
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+}
@@ -0,0 +1,397 @@
+package com.jetdrone.vertx.yoke.test.store;
+
+import com.jetdrone.vertx.yoke.Yoke;
+import com.jetdrone.vertx.yoke.middleware.CookieParser;
+import com.jetdrone.vertx.yoke.middleware.Router;
+import com.jetdrone.vertx.yoke.middleware.Session;
+import com.jetdrone.vertx.yoke.middleware.YokeRequest;
+import com.jetdrone.vertx.yoke.store.BinarySessionCodec;
+import com.jetdrone.vertx.yoke.store.DeltaSessionStore;
+import com.jetdrone.vertx.yoke.store.RedisSessionStore;
+import com.jetdrone.vertx.yoke.store.SharedDataSessionStore;
+import com.jetdrone.vertx.yoke.store.json.SessionObject;
+import com.jetdrone.vertx.yoke.test.FakeRedis;
+import com.jetdrone.vertx.yoke.test.Response;
+import com.jetdrone.vertx.yoke.test.YokeTester;
+import org.junit.Test;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.MultiMap;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.http.CaseInsensitiveMultiMap;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+import org.vertx.java.core.shareddata.ConcurrentSharedMap;
+import org.vertx.java.core.shareddata.SharedData;
+import org.vertx.testtools.TestVerticle;
+
+import javax.crypto.Mac;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.vertx.testtools.VertxAssert.*;
+
+public class DeltaSessionStoreTest extends TestVerticle {
+
+    private static JsonObject cart() {
+        return new JsonObject()
+                .putString("id", "s1")
+                .putNumber("visits", 1)
+                .putString("user", "paulo")
+                .putObject("cart", new JsonObject().putArray("items", new JsonArray().addString("book")));
+    }
+
+    @Test
+    public void testChangedFields() {
+        final SessionObject session = new SessionObject(cart());
+        assertFalse(session.isChanged());
+        assertTrue(session.changedFields().isEmpty());
+
+        // nested changes are reported on the top level field
+        session.getObject("cart").getArray("items").addString("pen");
+        assertTrue(session.isChanged());
+        assertEquals(new HashSet<>(Arrays.asList("cart")), session.changedFields());
+
+        session.putNumber("visits", 2);
+        session.removeField("user");
+        assertEquals(new HashSet<>(Arrays.asList("cart", "visits", "user")), session.changedFields());
+
+        testComplete();
+    }
+
+    private void testUpdate(final DeltaSessionStore store) {
+        store.set("s1", cart(), new Handler<Object>() {
+            @Override
+            public void handle(Object error) {
+                assertNull(error);
+
+                final SessionObject session = new SessionObject(cart());
+                session.putNumber("visits", 2);
+                session.removeField("user");
+
+                store.update("s1", session.jsonObject(), session.changedFields(), new Handler<Object>() {
+                    @Override
+                    public void handle(Object error) {
+                        assertNull(error);
+
+                        store.get("s1", new Handler<JsonObject>() {
+                            @Override
+                            public void handle(JsonObject session) {
+                                assertEquals("s1", session.getString("id"));
+                                assertEquals(2, session.getInteger("visits").intValue());
+                                assertFalse(session.containsField("user"));
+                                assertEquals("book", session.getObject("cart").getArray("items").get(0));
+                                testComplete();
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testSharedDataUpdate() {
+        testUpdate(new SharedDataSessionStore(vertx, "delta.test"));
+    }
+
+    @Test
+    public void testSharedDataBinaryUpdate() {
+        testUpdate(new SharedDataSessionStore(vertx, "delta.test.binary", new BinarySessionCodec()));
+    }
+
+    @Test
+    public void testSharedDataConsistentReads() throws InterruptedException {
+        final SharedDataSessionStore store = new SharedDataSessionStore(vertx, "delta.test.consistent");
+        final Set<String> changed = new HashSet<>(Arrays.asList("a", "b"));
+        final Handler<Object> ignore = new Handler<Object>() {
+            @Override
+            public void handle(Object error) {
+            }
+        };
+
+        store.set("s1", new JsonObject().putNumber("a", 0).putNumber("b", 0), ignore);
+
+        // a and b always change together
+        final Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= 20000; i++) {
+                    store.update("s1", new JsonObject().putNumber("a", i).putNumber("b", i), changed, ignore);
+                }
+            }
+        });
+        writer.start();
+
+        final Handler<JsonObject> check = new Handler<JsonObject>() {
+            @Override
+            public void handle(JsonObject session) {
+                assertEquals(session.getInteger("a"), session.getInteger("b"));
+            }
+        };
+
+        while (writer.isAlive()) {
+            store.get("s1", check);
+        }
+        writer.join();
+
+        store.get("s1", new Handler<JsonObject>() {
+            @Override
+            public void handle(JsonObject session) {
+                assertEquals(20000, session.getInteger("a").intValue());
+                testComplete();
+            }
+        });
+    }
+
+    @Test
+    public void testSharedDataDestroyDuringUpdates() throws InterruptedException {
+        final SharedDataSessionStore store = new SharedDataSessionStore(vertx, "delta.test.destroy");
+        final Set<String> changed = new HashSet<>(Arrays.asList("visits"));
+        final Handler<Object> ignore = new Handler<Object>() {
+            @Override
+            public void handle(Object error) {
+            }
+        };
+
+        for (int i = 0; i < 200; i++) {
+            final String sid = "s" + i;
+            store.set(sid, cart(), ignore);
+
+            final Thread writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 50; j++) {
+                        store.update(sid, cart().putNumber("visits", j), changed, ignore);
+                    }
+                }
+            });
+            writer.start();
+            store.destroy(sid, ignore);
+            writer.join();
+
+            // an update after the destroy writes the session back in full, never a part of it
+            final JsonObject session = new JsonObject();
+            store.get(sid, new Handler<JsonObject>() {
+                @Override
+                public void handle(JsonObject sess) {
+                    if (sess != null) {
+                        session.mergeIn(sess);
+                    }
+                }
+            });
+
+            if (session.size() == 0) {
+                assertTrue(vertx.sharedData().getMap("delta.test.destroy:" + sid).isEmpty());
+            } else {
+                assertEquals(cart().getFieldNames(), session.getFieldNames());
+            }
+        }
+
+        testComplete();
+    }
+
+    @Test
+    public void testSharedDataGetDuringDestroy() {
+        final SharedDataSessionStore[] store = new SharedDataSessionStore[1];
+        final boolean[] race = new boolean[1];
+        final Handler<Object> ignore = new Handler<Object>() {
+            @Override
+            public void handle(Object error) {
+            }
+        };
+
+        // the session is destroyed right before a read gets its fields map
+        final SharedData sharedData = new SharedData() {
+            @Override
+            public <K, V> ConcurrentSharedMap<K, V> getMap(String name) {
+                if (race[0] && name.equals("delta.test.race:s1")) {
+                    race[0] = false;
+                    store[0].destroy("s1", ignore);
+                }
+                return super.getMap(name);
+            }
+        };
+
+        final Vertx vertx = (Vertx) Proxy.newProxyInstance(Vertx.class.getClassLoader(), new Class<?>[] {Vertx.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if ("sharedData".equals(method.getName())) {
+                    return sharedData;
+                }
+                return method.invoke(DeltaSessionStoreTest.this.vertx, args);
+            }
+        });
+
+        store[0] = new SharedDataSessionStore(vertx, "delta.test.race");
+        store[0].set("s1", cart(), ignore);
+
+        race[0] = true;
+        store[0].get("s1", new Handler<JsonObject>() {
+            @Override
+            public void handle(JsonObject session) {
+                assertFalse(race[0]);
+                assertNull(session);
+                // the read did not leave the fields map behind
+                assertFalse(sharedData.removeMap("delta.test.race:s1"));
+                testComplete();
+            }
+        });
+    }
+
+    @Test
+    public void testSharedDataWriterDoesNotBlockTheLoop() {
+        final SharedDataSessionStore store = new SharedDataSessionStore(vertx, "delta.test.busy");
+        final ConcurrentMap<String, Long> versions = vertx.sharedData().getMap("delta.test.busy");
+
+        store.set("s1", cart(), new Handler<Object>() {
+            @Override
+            public void handle(Object error) {
+                final long version = versions.get("s1");
+                // a writer on another thread is at work
+                versions.put("s1", version + 1);
+
+                final boolean[] read = new boolean[1];
+                store.get("s1", new Handler<JsonObject>() {
+                    @Override
+                    public void handle(JsonObject session) {
+                        read[0] = true;
+                        assertEquals("paulo", session.getString("user"));
+                        testComplete();
+                    }
+                });
+
+                // the read gave the event loop back, it completes once the writer is done
+                assertFalse(read[0]);
+                vertx.setTimer(20, new Handler<Long>() {
+                    @Override
+                    public void handle(Long event) {
+                        assertFalse(read[0]);
+                        versions.put("s1", version + 2);
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testSharedDataEmptySession() {
+        final SharedDataSessionStore store = new SharedDataSessionStore(vertx, "delta.test.empty");
+
+        store.set("s1", new JsonObject(), new Handler<Object>() {
+            @Override
+            public void handle(Object error) {
+                assertNull(error);
+
+                store.get("s1", new Handler<JsonObject>() {
+                    @Override
+                    public void handle(JsonObject session) {
+                        // exists, without fields
+                        assertNotNull(session);
+                        assertEquals(0, session.size());
+                        testComplete();
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testRedisHashUpdate() {
+        final FakeRedis redis = new FakeRedis();
+        vertx.eventBus().registerHandler("redis", redis);
+
+        testUpdate(new RedisSessionStore(vertx, "redis", "sess:").hashes(true));
+    }
+
+    @Test
+    public void testRedisHashUpdateOfExpiredSession() {
+        final FakeRedis redis = new FakeRedis();
+        vertx.eventBus().registerHandler("redis", redis);
+
+        final RedisSessionStore store = new RedisSessionStore(vertx, "redis", "sess:").hashes(true);
+        final Set<String> changed = new HashSet<>(Arrays.asList("visits"));
+
+        // a partial write must not create an incomplete session
+        store.update("gone", cart(), changed, new Handler<Object>() {
+            @Override
+            public void handle(Object error) {
+                assertNull(error);
+
+                store.get("gone", new Handler<JsonObject>() {
+                    @Override
+                    public void handle(JsonObject session) {
+                        assertNull(session);
+                        testComplete();
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testRequestWritesChangedFields() {
+        final Set<String> written = new HashSet<>();
+
+        final Yoke yoke = new Yoke(this);
+        yoke.secretSecurity("keyboard cat");
+        yoke.store(new SharedDataSessionStore(vertx, "delta.test.request") {
+            @Override
+            public void update(String sid, JsonObject sess, Set<String> changed, Handler<Object> callback) {
+                written.addAll(changed);
+                super.update(sid, sess, changed, callback);
+            }
+        });
+
+        final Mac hmac = yoke.security().getMac("HmacSHA256");
+        yoke.use(new CookieParser(hmac));
+        yoke.use(new Session(hmac));
+        yoke.use(new Router() {{
+            get("/new", new Handler<YokeRequest>() {
+                @Override
+                public void handle(YokeRequest request) {
+                    request.createSession().putNumber("visits", 1).putString("user", "paulo");
+                    request.response().end();
+                }
+            });
+            get("/visit", new Handler<YokeRequest>() {
+                @Override
+                public void handle(YokeRequest request) {
+                    SessionObject session = request.get("session");
+                    session.putNumber("visits", session.getInteger("visits") + 1);
+                    request.response().end(session.getInteger("visits").toString());
+                }
+            });
+        }});
+
+        final YokeTester yokeAssert = new YokeTester(yoke);
+
+        yokeAssert.request("GET", "/new", new Handler<Response>() {
+            @Override
+            public void handle(Response resp) {
+                final MultiMap headers = new CaseInsensitiveMultiMap();
+                headers.add("cookie", resp.headers.get("set-cookie"));
+
+                yokeAssert.request("GET", "/visit", headers, new Handler<Response>() {
+                    @Override
+                    public void handle(Response resp) {
+                        assertEquals("2", resp.body.toString());
+                        assertEquals(new HashSet<>(Arrays.asList("visits")), written);
+
+                        yokeAssert.request("GET", "/visit", headers, new Handler<Response>() {
+                            @Override
+                            public void handle(Response resp) {
+                                assertEquals("3", resp.body.toString());
+                                testComplete();
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+}
@@ -0,0 +1,128 @@
+package com.jetdrone.vertx.yoke.test.store;
+
+import com.jetdrone.vertx.yoke.store.RedisSessionStore;
+import com.jetdrone.vertx.yoke.test.FakeRedis;
+import org.junit.Test;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+import org.vertx.testtools.TestVerticle;
+
+import static org.vertx.testtools.VertxAssert.*;
+
+public class RedisSessionStoreTest extends TestVerticle {
+
+    @Test
+    public void testPipelinedGetSet() {
+        final FakeRedis redis = new FakeRedis();
+        vertx.eventBus().registerHandler("redis", redis);
+
+        final RedisSessionStore store = new RedisSessionStore(vertx, "redis", "sess:");
+        final int sessions = 10;
+        final int[] pending = {sessions};
+
+        // all sets in the same tick go out as a single message
+        for (int i = 0; i < sessions; i++) {
+            store.set("s" + i, new JsonObject().putNumber("id", i), new Handler<Object>() {
+                @Override
+                public void handle(Object error) {
+                    assertNull(error);
+                    if (--pending[0] == 0) {
+                        assertEquals(1, redis.commands());
+
+                        pending[0] = sessions;
+                        for (int i = 0; i < sessions; i++) {
+                            final int id = i;
+                            store.get("s" + i, new Handler<JsonObject>() {
+                                @Override
+                                public void handle(JsonObject session) {
+                                    assertNotNull(session);
+                                    assertEquals(id, session.getInteger("id").intValue());
+
+                                    if (--pending[0] == 0) {
+                                        // and so do all gets
+                                        assertEquals(2, redis.commands());
+
+                                        store.get("missing", new Handler<JsonObject>() {
+                                            @Override
+                                            public void handle(JsonObject session) {
+                                                assertNull(session);
+                                                testComplete();
+                                            }
+                                        });
+                                    }
+                                }
+                            });
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testScanEnumeration() {
+        final FakeRedis redis = new FakeRedis();
+        vertx.eventBus().registerHandler("redis", redis);
+
+        final RedisSessionStore store = new RedisSessionStore(vertx, "redis", "sess:");
+        final RedisSessionStore other = new RedisSessionStore(vertx, "redis", "other:");
+        // more than one SCAN page
+        final int sessions = RedisSessionStore.SCAN_COUNT * 2 + 500;
+        final int[] pending = {sessions};
+
+        other.set("o", new JsonObject(), new Handler<Object>() {
+            @Override
+            public void handle(Object error) {
+                assertNull(error);
+            }
+        });
+
+        for (int i = 0; i < sessions; i++) {
+            store.set("s" + i, new JsonObject().putNumber("id", i), new Handler<Object>() {
+                @Override
+                public void handle(Object error) {
+                    assertNull(error);
+                    if (--pending[0] == 0) {
+                        store.length(new Handler<Integer>() {
+                            @Override
+                            public void handle(Integer length) {
+                                assertEquals(sessions, length.intValue());
+
+                                store.all(new Handler<JsonArray>() {
+                                    @Override
+                                    public void handle(JsonArray all) {
+                                        assertEquals(sessions, all.size());
+
+                                        store.clear(new Handler<Object>() {
+                                            @Override
+                                            public void handle(Object error) {
+                                                assertNull(error);
+
+                                                store.length(new Handler<Integer>() {
+                                                    @Override
+                                                    public void handle(Integer length) {
+                                                        assertEquals(0, length.intValue());
+
+                                                        // sessions with another prefix are not touched
+                                                        other.length(new Handler<Integer>() {
+                                                            @Override
+                                                            public void handle(Integer length) {
+                                                                assertEquals(1, length.intValue());
+                                                                testComplete();
+                                                            }
+                                                        });
+                                                    }
+                                                });
+                                            }
+                                        });
+                                    }
+                                });
+                            }
+                        });
+                    }
+                }
+            });
+        }
+    }
+}
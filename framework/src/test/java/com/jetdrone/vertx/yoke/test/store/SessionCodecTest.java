@@ -0,0 +1,72 @@
+package com.jetdrone.vertx.yoke.test.store;
+
+import com.jetdrone.vertx.yoke.store.BinarySessionCodec;
+import com.jetdrone.vertx.yoke.store.JsonSessionCodec;
+import com.jetdrone.vertx.yoke.store.SessionCodec;
+import org.junit.Test;
+import org.vertx.java.core.json.JsonArray;
+import org.vertx.java.core.json.JsonObject;
+import org.vertx.testtools.TestVerticle;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.vertx.testtools.VertxAssert.*;
+
+public class SessionCodecTest extends TestVerticle {
+
+    private static JsonObject session() {
+        return new JsonObject()
+                .putString("id", "3b5d5c37-3e40-4d1b-9b3f-0d1b2a4d7a4e")
+                .putObject("cookie", new JsonObject().putNumber("maxAge", 1800000).putBoolean("secure", false))
+                .putNumber("visits", -42)
+                .putNumber("lastSeen", 1413456789123L)
+                .putNumber("score", 0.75)
+                .putString("name", "Jos\u00e9 \u2603")
+                .putValue("nothing", null)
+                .putBinary("token", new byte[] {0, 1, 2, (byte) 0xff})
+                .putArray("cart", new JsonArray()
+                        .addObject(new JsonObject().putString("sku", "A-1").putNumber("qty", 2))
+                        .addArray(new JsonArray().addString("nested").addBoolean(true))
+                        .add(null));
+    }
+
+    private static <T> void roundTrip(SessionCodec<T> codec) {
+        final JsonObject session = session();
+
+        final Map<String, T> fields = new LinkedHashMap<>();
+        for (String field : session.getFieldNames()) {
+            fields.put(field, codec.encode(session.getField(field)));
+        }
+
+        final JsonObject decoded = codec.decode(fields);
+        assertEquals(session.encode(), decoded.encode());
+        assertArrayEquals(session.getBinary("token"), decoded.getBinary("token"));
+        assertEquals(1413456789123L, decoded.getLong("lastSeen").longValue());
+
+        assertNull(codec.decode(new LinkedHashMap<String, T>()));
+    }
+
+    @Test
+    public void testJsonCodec() {
+        roundTrip(new JsonSessionCodec());
+        testComplete();
+    }
+
+    @Test
+    public void testBinaryCodec() {
+        roundTrip(new BinarySessionCodec());
+
+        // smaller than the JSON text
+        final JsonObject session = session();
+        int json = 0;
+        int binary = 0;
+        for (String field : session.getFieldNames()) {
+            json += new JsonSessionCodec().encode(session.getField(field)).length();
+            binary += new BinarySessionCodec().encode(session.getField(field)).length;
+        }
+        assertTrue(binary < json);
+
+        testComplete();
+    }
+}
@@ -5,15 +5,24 @@ import static org.vertx.java.core.http.HttpHeaders.CONTENT_LENGTH;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.lang.reflect.Type;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.security.Principal;
-import java.util.Arrays;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
@@ -36,7 +45,9 @@ import org.glassfish.jersey.server.spi.Container;
 import org.glassfish.jersey.server.spi.ContainerLifecycleListener;
 import org.glassfish.jersey.server.spi.ContainerResponseWriter;
 import org.glassfish.jersey.server.spi.RequestScopedInitializer;
+import io.netty.buffer.ByteBuf;
 import org.jetbrains.annotations.NotNull;
+import org.vertx.java.core.Context;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.Vertx;
 import org.vertx.java.core.buffer.Buffer;
@@ -94,6 +105,12 @@ import com.jetdrone.vertx.yoke.Yoke;
  * {@link javax.inject.Inject} annotation.
  * </p>
  * <p>
+ * By default the resources run on the event loop and must not block. Resources that block (JDBC, remote calls...)
+ * should run on a worker pool configured with {@link #withWorkerPool(int, int)}: requests are then queued for the
+ * workers, rejected with 503 when the queue is full, and request bodies are streamed to the resources while they
+ * arrive instead of being buffered first.
+ * </p>
+ * <p>
  * Implementation inspired by <a href=
  * "https://github.com/jersey/jersey/blob/master/containers/simple-http/src/main/java/org/glassfish/jersey/simple/SimpleContainer.java"
  * >Jersey's SimpleContainer</a> and <a href=
@@ -105,13 +122,258 @@ public class Jersey extends AbstractMiddleware implements Container {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Jersey.class);
 
+    /**
+     * Runs response operations on the event loop of the request: queued to its context when the resources run on a
+     * worker, inline otherwise. Queued operations run in order.
+     */
+    private static final class EventLoop {
+        private final Context context;
+
+        private EventLoop(final Context context) {
+            this.context = context;
+        }
+
+        void run(final Handler<Void> task) {
+            if (context == null) {
+                task.handle(null);
+            } else {
+                context.runOnContext(task);
+            }
+        }
+
+        boolean isInline() {
+            return context == null;
+        }
+    }
+
+    /**
+     * Request body read by a worker while it arrives. The request is paused while more than
+     * <code>HIGH_WATER_MARK</code> bytes wait to be read and resumed once half of them have been. Reads fail once the
+     * client went away.
+     */
+    private static final class YokeInputStream extends InputStream {
+        private static final int HIGH_WATER_MARK = 64 * 1024;
+
+        private final YokeRequest request;
+        private final EventLoop loop;
+
+        private final ArrayDeque<ByteBuf> chunks = new ArrayDeque<>();
+        private int buffered;
+        private boolean paused;
+        private boolean ended;
+        private Throwable error;
+
+        private YokeInputStream(final YokeRequest request, final EventLoop loop) {
+            this.request = request;
+            this.loop = loop;
+
+            request.dataHandler(new Handler<Buffer>() {
+                @Override
+                public void handle(final Buffer chunk) {
+                    synchronized (YokeInputStream.this) {
+                        chunks.add(chunk.getByteBuf());
+                        buffered += chunk.length();
+                        if (!paused && buffered > HIGH_WATER_MARK) {
+                            paused = true;
+                            request.pause();
+                        }
+                        YokeInputStream.this.notifyAll();
+                    }
+                }
+            });
+            request.endHandler(new Handler<Void>() {
+                @Override
+                public void handle(final Void event) {
+                    synchronized (YokeInputStream.this) {
+                        ended = true;
+                        YokeInputStream.this.notifyAll();
+                    }
+                }
+            });
+            request.exceptionHandler(new Handler<Throwable>() {
+                @Override
+                public void handle(final Throwable t) {
+                    synchronized (YokeInputStream.this) {
+                        error = t;
+                        YokeInputStream.this.notifyAll();
+                    }
+                }
+            });
+            // also called when the client goes away, the request may then neither end nor fail
+            request.response().endHandler(new Handler<Void>() {
+                @Override
+                public void handle(final Void event) {
+                    synchronized (YokeInputStream.this) {
+                        if (!ended && error == null) {
+                            error = new IOException("Connection closed");
+                        }
+                        YokeInputStream.this.notifyAll();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public synchronized int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            ByteBuf chunk;
+            while ((chunk = chunks.peek()) == null) {
+                if (error != null) {
+                    throw new IOException(error);
+                }
+                if (ended) {
+                    return -1;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+
+            final int n = Math.min(len, chunk.readableBytes());
+            chunk.readBytes(b, off, n);
+            if (!chunk.isReadable()) {
+                chunks.poll();
+            }
+
+            buffered -= n;
+            if (paused && buffered < HIGH_WATER_MARK / 2) {
+                paused = false;
+                loop.run(new Handler<Void>() {
+                    @Override
+                    public void handle(final Void event) {
+                        synchronized (YokeInputStream.this) {
+                            // the request may have been paused again meanwhile
+                            if (!paused) {
+                                request.resume();
+                            }
+                        }
+                    }
+                });
+            }
+
+            return n;
+        }
+
+        @Override
+        public synchronized int available() {
+            return buffered;
+        }
+    }
+
+    /**
+     * Response body written by a worker. The worker waits while more than <code>HIGH_WATER_MARK</code> bytes are on
+     * their way to the event loop or the response write queue is full, writes fail once the client went away.
+     */
+    private static final class ResponseFlow {
+        private static final int HIGH_WATER_MARK = 64 * 1024;
+
+        private final YokeResponse response;
+        private final EventLoop loop;
+        // created on the event loop
+        private final Thread eventLoop = Thread.currentThread();
+
+        private int queued;
+        private boolean full;
+        private boolean closed;
+
+        private ResponseFlow(final YokeResponse response, final EventLoop loop) {
+            this.response = response;
+            this.loop = loop;
+
+            if (!loop.isInline()) {
+                // also called when the client goes away, the drain would never come
+                response.endHandler(new Handler<Void>() {
+                    @Override
+                    public void handle(final Void event) {
+                        synchronized (ResponseFlow.this) {
+                            closed = true;
+                            ResponseFlow.this.notifyAll();
+                        }
+                    }
+                });
+            }
+        }
+
+        void write(final Buffer chunk) throws IOException {
+            if (loop.isInline()) {
+                // on the event loop, waiting would never see the drain
+                response.write(chunk);
+                return;
+            }
+
+            synchronized (this) {
+                // an asynchronous resource may write from the event loop too, it must never wait
+                while (!closed && (full || queued > HIGH_WATER_MARK) && Thread.currentThread() != eventLoop) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                }
+                if (closed) {
+                    throw new IOException("Connection closed");
+                }
+                queued += chunk.length();
+            }
+
+            loop.run(new Handler<Void>() {
+                @Override
+                public void handle(final Void event) {
+                    synchronized (ResponseFlow.this) {
+                        queued -= chunk.length();
+                        ResponseFlow.this.notifyAll();
+                        if (closed) {
+                            return;
+                        }
+                    }
+
+                    response.write(chunk);
+
+                    if (response.writeQueueFull()) {
+                        synchronized (ResponseFlow.this) {
+                            full = true;
+                        }
+                        response.drainHandler(new Handler<Void>() {
+                            @Override
+                            public void handle(final Void event) {
+                                synchronized (ResponseFlow.this) {
+                                    full = false;
+                                    ResponseFlow.this.notifyAll();
+                                }
+                            }
+                        });
+                    }
+                }
+            });
+        }
+    }
+
     private static class YokeOutputStream extends OutputStream {
         final YokeResponse response;
+        final EventLoop loop;
+        final ResponseFlow flow;
+        final boolean hasContentLength;
         Buffer buffer = new Buffer();
         boolean isClosed;
 
-        private YokeOutputStream(final YokeResponse response) {
-            this.response = response;
+        private YokeOutputStream(final ResponseFlow flow, final boolean hasContentLength) {
+            this.response = flow.response;
+            this.loop = flow.loop;
+            this.flow = flow;
+            this.hasContentLength = hasContentLength;
         }
 
         @Override
@@ -129,20 +391,17 @@ public class Jersey extends AbstractMiddleware implements Container {
         @Override
         public void write(final byte[] b, final int off, final int len) throws IOException {
             checkState();
-            if (off == 0 && len == b.length) {
-                buffer.appendBytes(b);
-            } else {
-                buffer.appendBytes(Arrays.copyOfRange(b, off, off + len));
-            }
+            buffer.appendBytes(b, off, len);
         }
 
         @Override
         public void flush() throws IOException {
             checkState();
             // Only flush to underlying very.x response if the content-length has been set
-            if (buffer.length() > 0 && response.headers().contains(CONTENT_LENGTH)) {
-                response.write(buffer);
+            if (buffer.length() > 0 && hasContentLength) {
+                final Buffer chunk = buffer;
                 buffer = new Buffer();
+                flow.write(chunk);
             }
         }
 
@@ -151,10 +410,16 @@ public class Jersey extends AbstractMiddleware implements Container {
             // Write any remaining buffer to the vert.x response
             // Set content-length if not set yet
             if (buffer != null && buffer.length() > 0) {
-                if (!response.headers().contains(HttpHeaders.CONTENT_LENGTH)) {
-                    response.headers().add(HttpHeaders.CONTENT_LENGTH, String.valueOf(buffer.length()));
-                }
-                response.write(buffer);
+                final Buffer chunk = buffer;
+                loop.run(new Handler<Void>() {
+                    @Override
+                    public void handle(final Void event) {
+                        if (!response.headers().contains(HttpHeaders.CONTENT_LENGTH)) {
+                            response.headers().add(HttpHeaders.CONTENT_LENGTH, String.valueOf(chunk.length()));
+                        }
+                        response.write(chunk);
+                    }
+                });
             }
             buffer = null;
             isClosed = true;
@@ -168,42 +433,69 @@ public class Jersey extends AbstractMiddleware implements Container {
     }
 
     private static class YokeChunkedOutputStream extends OutputStream {
-        private final YokeResponse response;
+        // small writes are gathered up to this size, or until flushed, before becoming a chunk
+        private static final int CHUNK_SIZE = 8192;
+
+        private final ResponseFlow flow;
+        private Buffer pending;
         private boolean isClosed;
 
-        private YokeChunkedOutputStream(final YokeResponse response) {
-            this.response = response;
+        private YokeChunkedOutputStream(final ResponseFlow flow) {
+            this.flow = flow;
         }
 
         @Override
         public void write(final int b) throws IOException {
             checkState();
-            final Buffer buffer = new Buffer();
-            buffer.appendByte((byte) b);
-            response.write(buffer);
+            if (pending == null) {
+                pending = new Buffer(CHUNK_SIZE);
+            }
+            pending.appendByte((byte) b);
+            if (pending.length() >= CHUNK_SIZE) {
+                flushPending();
+            }
         }
 
         @Override
         public void write(final byte[] b) throws IOException {
-            checkState();
-            response.write(new Buffer(b));
+            write(b, 0, b.length);
         }
 
         @Override
         public void write(final byte[] b, final int off, final int len) throws IOException {
             checkState();
-            final Buffer buffer = new Buffer();
-            if (off == 0 && len == b.length) {
-                buffer.appendBytes(b);
+            if (pending != null && pending.length() + len < CHUNK_SIZE) {
+                pending.appendBytes(b, off, len);
+                return;
+            }
+            flushPending();
+            if (len < CHUNK_SIZE) {
+                pending = new Buffer(CHUNK_SIZE).appendBytes(b, off, len);
             } else {
-                buffer.appendBytes(Arrays.copyOfRange(b, off, off + len));
+                flow.write(new Buffer(len).appendBytes(b, off, len));
             }
-            response.write(buffer);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            checkState();
+            flushPending();
         }
 
         @Override
         public void close() throws IOException {
-            isClosed = true;
+            if (!isClosed) {
+                flushPending();
+                isClosed = true;
+            }
+        }
+
+        private void flushPending() throws IOException {
+            final Buffer chunk = pending;
+            pending = null;
+            if (chunk != null && chunk.length() > 0) {
+                flow.write(chunk);
+            }
         }
 
         void checkState() {
@@ -327,13 +619,17 @@ public class Jersey extends AbstractMiddleware implements Container {
     private static final class YokeResponseWriter implements ContainerResponseWriter {
         private final YokeResponse response;
         private final Vertx vertx;
+        private final EventLoop loop;
+        private final ResponseFlow flow;
 
         private TimeoutHandler timeoutHandler;
         private long suspendTimerId;
 
-        public YokeResponseWriter(final YokeResponse response, final Vertx vertx) {
+        public YokeResponseWriter(final YokeResponse response, final Vertx vertx, final EventLoop loop) {
             this.response = response;
             this.vertx = vertx;
+            this.loop = loop;
+            this.flow = new ResponseFlow(response, loop);
             this.suspendTimerId = 0;
         }
 
@@ -341,43 +637,68 @@ public class Jersey extends AbstractMiddleware implements Container {
         public OutputStream writeResponseStatusAndHeaders(final long contentLength,
                                                           final ContainerResponse responseContext)
                 throws ContainerException {
-            response.setStatusCode(responseContext.getStatus());
-            response.setStatusMessage(responseContext.getStatusInfo().getReasonPhrase());
+            // read on the calling thread, written on the event loop
+            final int status = responseContext.getStatus();
+            final String reasonPhrase = responseContext.getStatusInfo().getReasonPhrase();
+            final List<Entry<String, List<String>>> headers = new ArrayList<>(responseContext.getStringHeaders().entrySet());
+            final boolean chunked = responseContext.isChunked();
 
-            if (contentLength != -1) {
-                response.putHeader(CONTENT_LENGTH, Long.toString(contentLength));
-            }
+            loop.run(new Handler<Void>() {
+                @Override
+                public void handle(final Void event) {
+                    response.setStatusCode(status);
+                    response.setStatusMessage(reasonPhrase);
+
+                    if (contentLength != -1) {
+                        response.putHeader(CONTENT_LENGTH, Long.toString(contentLength));
+                    }
 
-            for (final Entry<String, List<String>> header : responseContext.getStringHeaders().entrySet()) {
-                for (final String value : header.getValue()) {
-                    response.putHeader(header.getKey(), value);
+                    for (final Entry<String, List<String>> header : headers) {
+                        for (final String value : header.getValue()) {
+                            response.putHeader(header.getKey(), value);
+                        }
+                    }
+
+                    if (chunked) {
+                        response.setChunked(true);
+                    }
                 }
-            }
+            });
 
-            if (responseContext.isChunked()) {
-                response.setChunked(true);
-                return new YokeChunkedOutputStream(response);
+            if (chunked) {
+                return new YokeChunkedOutputStream(flow);
             } else {
-                return new YokeOutputStream(response);
+                return new YokeOutputStream(flow,
+                        contentLength != -1 || responseContext.getStringHeaders().containsKey(CONTENT_LENGTH.toString()));
             }
         }
 
         @Override
         public void commit() {
-            endResponse(response);
+            loop.run(new Handler<Void>() {
+                @Override
+                public void handle(final Void event) {
+                    endResponse(response);
+                }
+            });
         }
 
         @Override
         public void failure(final Throwable t) {
             LOGGER.error(t.getMessage(), t);
 
-            try {
-                response.setStatusCode(500);
-                response.setStatusMessage("Internal Server Error");
-                response.end();
-            } catch (final Exception e) {
-                LOGGER.error("Failed to write failure response", e);
-            }
+            loop.run(new Handler<Void>() {
+                @Override
+                public void handle(final Void event) {
+                    try {
+                        response.setStatusCode(500);
+                        response.setStatusMessage("Internal Server Error");
+                        response.end();
+                    } catch (final Exception e) {
+                        LOGGER.error("Failed to write failure response", e);
+                    }
+                }
+            });
         }
 
         @Override
@@ -407,9 +728,15 @@ public class Jersey extends AbstractMiddleware implements Container {
                 throw new IllegalStateException("Request not currently suspended");
             }
 
-            if (suspendTimerId != 0) {
-                vertx.cancelTimer(suspendTimerId);
-            }
+            loop.run(new Handler<Void>() {
+                @Override
+                public void handle(final Void event) {
+                    if (suspendTimerId != 0) {
+                        vertx.cancelTimer(suspendTimerId);
+                        suspendTimerId = 0;
+                    }
+                }
+            });
 
             doSuspend(timeOut, timeUnit);
         }
@@ -421,10 +748,16 @@ public class Jersey extends AbstractMiddleware implements Container {
             }
 
             final long ms = timeUnit.toMillis(timeOut);
-            suspendTimerId = vertx.setTimer(ms, new Handler<Long>() {
+            // timers belong to the event loop
+            loop.run(new Handler<Void>() {
                 @Override
-                public void handle(final Long $) {
-                    YokeResponseWriter.this.timeoutHandler.onTimeout(YokeResponseWriter.this);
+                public void handle(final Void event) {
+                    suspendTimerId = vertx.setTimer(ms, new Handler<Long>() {
+                        @Override
+                        public void handle(final Long $) {
+                            YokeResponseWriter.this.timeoutHandler.onTimeout(YokeResponseWriter.this);
+                        }
+                    });
                 }
             });
         }
@@ -440,6 +773,8 @@ public class Jersey extends AbstractMiddleware implements Container {
     private org.vertx.java.platform.Container vertxContainer;
     private ApplicationHandler applicationHandler;
     private ContainerLifecycleListener containerListener;
+    // runs the resources, null to run them on the event loop
+    private Executor executor;
 
     public Jersey() {
         resourceConfig = new ResourceConfig();
@@ -475,6 +810,33 @@ public class Jersey extends AbstractMiddleware implements Container {
         return this;
     }
 
+    /**
+     * Runs the resources on a pool of <code>threads</code> daemon threads so they can block. Up to
+     * <code>queueSize</code> requests wait for a free thread, further requests get a 503.
+     */
+    public Jersey withWorkerPool(final int threads, final int queueSize) {
+        final AtomicInteger count = new AtomicInteger();
+        final ThreadFactory factory = new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, "yoke-jersey-worker-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+
+        return withExecutor(new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), factory));
+    }
+
+    /**
+     * Runs the resources on the given executor so they can block. A request rejected by the executor gets a 503.
+     */
+    public Jersey withExecutor(final Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
     public Jersey withInjectables(final Object... instances) {
         resourceConfig.register(new AbstractBinder() {
             @SuppressWarnings("unchecked")
@@ -536,7 +898,8 @@ public class Jersey extends AbstractMiddleware implements Container {
     @Override
     public void handle(@NotNull final YokeRequest request, @NotNull final Handler<Object> next) {
         final YokeResponse response = request.response();
-        final YokeResponseWriter responseWriter = new YokeResponseWriter(response, vertx());
+        final EventLoop loop = new EventLoop(executor == null ? null : vertx().currentContext());
+        final YokeResponseWriter responseWriter = new YokeResponseWriter(response, vertx(), loop);
         final URI baseUri = getBaseUri(request);
 
         try {
@@ -558,11 +921,16 @@ public class Jersey extends AbstractMiddleware implements Container {
                 }
             });
 
-            if (request.hasBody()) {
+            if (executor != null) {
+                if (request.hasBody()) {
+                    requestContext.setEntityStream(new YokeInputStream(request, loop));
+                }
+                execute(requestContext, loop, next);
+            } else if (request.hasBody()) {
                 request.bodyHandler(new Handler<Buffer>() {
                     @Override
                     public void handle(final Buffer body) {
-                        // TODO review this to handle large payloads gracefully
+                        // on the event loop the body is buffered first so reading it never blocks
                         requestContext.setEntityStream(new ByteArrayInputStream(body.getBytes()));
                         applicationHandler.handle(requestContext);
                     }
@@ -575,6 +943,28 @@ public class Jersey extends AbstractMiddleware implements Container {
         }
     }
 
+    private void execute(final ContainerRequest requestContext, final EventLoop loop, final Handler<Object> next) {
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        applicationHandler.handle(requestContext);
+                    } catch (final Exception ex) {
+                        loop.run(new Handler<Void>() {
+                            @Override
+                            public void handle(final Void event) {
+                                next.handle(ex);
+                            }
+                        });
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException ex) {
+            next.handle(503);
+        }
+    }
+
     private static URI getBaseUri(final YokeRequest request) {
         try {
             final URI uri = request.absoluteURI();
@@ -0,0 +1,361 @@
+package com.jetdrone.vertx.yoke.middleware;
+
+import com.jetdrone.vertx.yoke.Yoke;
+import org.junit.Test;
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.HttpClient;
+import org.vertx.java.core.http.HttpClientResponse;
+import org.vertx.java.core.net.NetSocket;
+import org.vertx.testtools.TestVerticle;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.vertx.testtools.VertxAssert.*;
+
+public class JerseyTest extends TestVerticle {
+
+    @Path("/sleep")
+    public static class SleepResource {
+        @GET
+        public String sleep() throws InterruptedException {
+            // blocks, must not run on the event loop
+            Thread.sleep(50);
+            return Thread.currentThread().getName();
+        }
+    }
+
+    // held until the test releases it
+    private static CountDownLatch entered;
+    private static CountDownLatch release;
+
+    @Path("/hold")
+    public static class HoldResource {
+        @GET
+        public String hold() throws InterruptedException {
+            entered.countDown();
+            assertTrue(release.await(10, TimeUnit.SECONDS));
+            return "released";
+        }
+    }
+
+    @Path("/upload")
+    public static class UploadResource {
+        @POST
+        public String upload(InputStream in) throws IOException {
+            final byte[] b = new byte[4096];
+            long total = 0;
+            long sum = 0;
+            int n;
+            while ((n = in.read(b)) != -1) {
+                for (int i = 0; i < n; i++) {
+                    sum += b[i] & 0xff;
+                }
+                total += n;
+            }
+            return total + " " + sum;
+        }
+    }
+
+    private static final int DOWNLOAD_SIZE = 64 * 1024 * 1024;
+
+    // what the stream resources saw when they were done
+    private static CountDownLatch done;
+    private static AtomicReference<Throwable> failure;
+    private static AtomicLong written;
+
+    @Path("/drain")
+    public static class DrainResource {
+        @POST
+        public String drain(InputStream in) {
+            try {
+                final byte[] b = new byte[4096];
+                while (in.read(b) != -1) {
+                    // discard
+                }
+                return "read";
+            } catch (IOException e) {
+                failure.set(e);
+                return "failed";
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+
+    @Path("/download")
+    public static class DownloadResource {
+        @GET
+        public Response download() {
+            return Response.ok(new StreamingOutput() {
+                @Override
+                public void write(OutputStream out) throws IOException {
+                    final byte[] b = new byte[64 * 1024];
+                    try {
+                        while (written.get() < DOWNLOAD_SIZE) {
+                            out.write(b);
+                            out.flush();
+                            written.addAndGet(b.length);
+                        }
+                    } catch (IOException e) {
+                        failure.set(e);
+                        throw e;
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).header("Content-Length", DOWNLOAD_SIZE).build();
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private void listen(final Yoke yoke, final Handler<HttpClient> handler) throws IOException {
+        final int port = freePort();
+
+        yoke.listen(port, "localhost", new Handler<Boolean>() {
+            @Override
+            public void handle(Boolean listening) {
+                assertTrue(listening);
+                // one connection per request, so they are in flight together
+                handler.handle(vertx.createHttpClient().setHost("localhost").setPort(port).setMaxPoolSize(8));
+            }
+        });
+    }
+
+    @Test
+    public void testBlockingResource() throws IOException {
+        final Yoke yoke = new Yoke(this);
+        yoke.use(new Jersey().withClasses(SleepResource.class).withWorkerPool(2, 10));
+
+        listen(yoke, new Handler<HttpClient>() {
+            @Override
+            public void handle(HttpClient client) {
+                client.getNow("/sleep", new Handler<HttpClientResponse>() {
+                    @Override
+                    public void handle(final HttpClientResponse resp) {
+                        assertEquals(200, resp.statusCode());
+                        resp.bodyHandler(new Handler<Buffer>() {
+                            @Override
+                            public void handle(Buffer body) {
+                                assertTrue(body.toString(), body.toString().startsWith("yoke-jersey-worker-"));
+                                testComplete();
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testQueueFull() throws IOException {
+        entered = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+
+        // one worker and room for one request in the queue
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(1));
+
+        final Yoke yoke = new Yoke(this);
+        yoke.use(new Jersey().withClasses(HoldResource.class).withExecutor(executor));
+
+        listen(yoke, new Handler<HttpClient>() {
+            @Override
+            public void handle(final HttpClient client) {
+                final int[] ok = new int[1];
+
+                final Handler<HttpClientResponse> released = new Handler<HttpClientResponse>() {
+                    @Override
+                    public void handle(HttpClientResponse resp) {
+                        assertEquals(200, resp.statusCode());
+                        if (++ok[0] == 2) {
+                            executor.shutdown();
+                            testComplete();
+                        }
+                    }
+                };
+
+                // the worker is busy
+                client.getNow("/hold", released);
+
+                vertx.setPeriodic(10, new Handler<Long>() {
+                    boolean queued;
+
+                    @Override
+                    public void handle(Long timerID) {
+                        if (!queued && entered.getCount() == 0) {
+                            // waits in the queue
+                            queued = true;
+                            client.getNow("/hold", released);
+                            return;
+                        }
+
+                        if (queued && executor.getQueue().size() == 1) {
+                            vertx.cancelTimer(timerID);
+
+                            // nowhere to go
+                            client.getNow("/hold", new Handler<HttpClientResponse>() {
+                                @Override
+                                public void handle(HttpClientResponse resp) {
+                                    assertEquals(503, resp.statusCode());
+                                    release.countDown();
+                                }
+                            });
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testLargeUpload() throws IOException {
+        // many times the high water mark of the request body stream
+        final byte[] data = new byte[1024 * 1024];
+        long sum = 0;
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+            sum += data[i] & 0xff;
+        }
+        final String expected = data.length + " " + sum;
+
+        final Yoke yoke = new Yoke(this);
+        yoke.use(new Jersey().withClasses(UploadResource.class).withWorkerPool(1, 10));
+
+        listen(yoke, new Handler<HttpClient>() {
+            @Override
+            public void handle(HttpClient client) {
+                client.post("/upload", new Handler<HttpClientResponse>() {
+                    @Override
+                    public void handle(final HttpClientResponse resp) {
+                        assertEquals(200, resp.statusCode());
+                        resp.bodyHandler(new Handler<Buffer>() {
+                            @Override
+                            public void handle(Buffer body) {
+                                assertEquals(expected, body.toString());
+                                testComplete();
+                            }
+                        });
+                    }
+                }).putHeader("content-type", "application/octet-stream").end(new Buffer(data));
+            }
+        });
+    }
+
+    // sends a request on a raw connection, the test decides when the client goes away
+    private void connect(final Yoke yoke, final Handler<NetSocket> handler) throws IOException {
+        final int port = freePort();
+
+        yoke.listen(port, "localhost", new Handler<Boolean>() {
+            @Override
+            public void handle(Boolean listening) {
+                assertTrue(listening);
+                vertx.createNetClient().connect(port, "localhost", new Handler<AsyncResult<NetSocket>>() {
+                    @Override
+                    public void handle(AsyncResult<NetSocket> connect) {
+                        assertTrue(connect.succeeded());
+                        handler.handle(connect.result());
+                    }
+                });
+            }
+        });
+    }
+
+    // completes the test once the resource is done, it must have failed with an IOException
+    private void awaitFailure() {
+        vertx.setPeriodic(10, new Handler<Long>() {
+            @Override
+            public void handle(Long timerID) {
+                if (done.getCount() == 0) {
+                    vertx.cancelTimer(timerID);
+                    assertTrue(String.valueOf(failure.get()), failure.get() instanceof IOException);
+                    testComplete();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testUploadClientDisconnect() throws IOException {
+        done = new CountDownLatch(1);
+        failure = new AtomicReference<>();
+
+        final Yoke yoke = new Yoke(this);
+        yoke.use(new Jersey().withClasses(DrainResource.class).withWorkerPool(1, 10));
+
+        connect(yoke, new Handler<NetSocket>() {
+            @Override
+            public void handle(final NetSocket socket) {
+                // a part of the body, more than the high water mark so the request is paused
+                socket.write("POST /drain HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/octet-stream\r\n" +
+                        "Content-Length: 10485760\r\n\r\n");
+                socket.write(new Buffer(new byte[256 * 1024]));
+
+                vertx.setTimer(100, new Handler<Long>() {
+                    @Override
+                    public void handle(Long event) {
+                        // the worker waits for the rest of the body
+                        assertEquals(1, done.getCount());
+                        socket.close();
+                        awaitFailure();
+                    }
+                });
+            }
+        });
+    }
+
+    @Test
+    public void testSlowClientDownload() throws IOException {
+        done = new CountDownLatch(1);
+        failure = new AtomicReference<>();
+        written = new AtomicLong();
+
+        final Yoke yoke = new Yoke(this);
+        yoke.use(new Jersey().withClasses(DownloadResource.class).withWorkerPool(1, 10));
+
+        connect(yoke, new Handler<NetSocket>() {
+            @Override
+            public void handle(final NetSocket socket) {
+                socket.dataHandler(new Handler<Buffer>() {
+                    @Override
+                    public void handle(Buffer data) {
+                        // the client stops reading
+                        socket.pause();
+                    }
+                });
+                socket.write("GET /download HTTP/1.1\r\nHost: localhost\r\n\r\n");
+
+                vertx.setTimer(500, new Handler<Long>() {
+                    @Override
+                    public void handle(Long event) {
+                        // the worker waits for the response to drain instead of queueing the whole body
+                        assertTrue(Long.toString(written.get()), written.get() < DOWNLOAD_SIZE / 4);
+                        assertEquals(1, done.getCount());
+                        socket.close();
+                        awaitFailure();
+                    }
+                });
+            }
+        });
+    }
+}
@@ -5,19 +5,151 @@ import com.jetdrone.vertx.yoke.Yoke;
 import org.jetbrains.annotations.NotNull;
 import org.vertx.java.core.Handler;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/** # TooBusy
+ *
+ * Sheds load when the event loop cannot keep up. A periodic timer measures how late the event loop runs it (the lag)
+ * and samples the number of requests in flight, both are kept in a sliding window and the shedding decision uses a
+ * percentile of each, so a single slow tick does not reject traffic and a sustained stall does. Ticks skipped while
+ * the loop was blocked are recorded too, as the lag they would have seen.
+ *
+ * The load is the larger of the lag percentile relative to `highWaterMark` and the in flight percentile relative to
+ * `maxInFlight`. Requests are rejected with a probability that rises with the load inside the band of their priority:
+ *
+ * * `LOW`: from 0.25 to 0.75,
+ * * `NORMAL`: from 0.5 to 1, all normal requests are rejected once the lag reaches the high water mark,
+ * * `HIGH`: from 1 to 2,
+ * * `CRITICAL`: from 2 to 4, critical requests are the last to go.
+ *
+ * Rejected requests get a 503 with a `Retry-After` estimated from the lag and from how fast the requests in flight
+ * have been completing.
+ *
+ * As Yoke itself an instance belongs to one verticle, so the measurements are those of its event loop.
+ *
+ * <pre>
+ * yoke.use(new TooBusy(70)
+ *     .setPriority("/health", TooBusy.Priority.CRITICAL)
+ *     .setPriority("/reports", TooBusy.Priority.LOW));
+ * </pre>
+ */
 public final class TooBusy extends AbstractMiddleware {
 
+    public enum Priority {
+        LOW(0.25, 0.75),
+        NORMAL(0.5, 1),
+        HIGH(1, 2),
+        CRITICAL(2, 4);
+
+        private final double from;
+        private final double to;
+
+        Priority(double from, double to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Probability of rejecting a request of this priority at the given load.
+         */
+        double rejection(double load) {
+            if (load <= from) {
+                return 0;
+            }
+            if (load >= to) {
+                return 1;
+            }
+            return (load - from) / (to - from);
+        }
+    }
+
+    /**
+     * The last samples in a ring, with their percentile and sum.
+     */
+    private static final class Window {
+        private final long[] samples;
+        private final long[] sorted;
+        private int next;
+        private int size;
+
+        Window(int capacity) {
+            samples = new long[capacity];
+            sorted = new long[capacity];
+        }
+
+        void add(long sample) {
+            samples[next] = sample;
+            next = (next + 1) % samples.length;
+            if (size < samples.length) {
+                size++;
+            }
+        }
+
+        long percentile(double percentile) {
+            if (size == 0) {
+                return 0;
+            }
+            System.arraycopy(samples, 0, sorted, 0, size);
+            Arrays.sort(sorted, 0, size);
+            return sorted[(int) Math.ceil(percentile * size) - 1];
+        }
+
+        long sum() {
+            long sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += samples[i];
+            }
+            return sum;
+        }
+    }
+
+    private static final class Route {
+        private final String prefix;
+        private final Priority priority;
+
+        private Route(String prefix, Priority priority) {
+            this.prefix = prefix;
+            this.priority = priority;
+        }
+    }
+
     private final long highWaterMark;
     private final String message;
 
+    private long interval = 50;
+    private long window = 1000;
+    private double percentile = 0.95;
+    private int maxInFlight = 0;
+    private int maxRetryAfter = 60;
+    private Priority defaultPriority = Priority.NORMAL;
+    private final List<Route> routes = new ArrayList<>();
+
     private long timerID;
     private long t0;
-    private long dt;
+
+    private Window lags;
+    private Window inFlights;
+    private Window completions;
+
+    // updated on every tick
+    private long lag;
+    private long inFlightPercentile;
+    private double load;
+    private double drainRate;
+
+    private int inFlight;
+    private long completed;
 
     public TooBusy() {
         this(70);
     }
 
+    /**
+     * @param highWaterMark lag in ms at which normal requests are all rejected
+     */
     public TooBusy(long highWaterMark) {
         this(highWaterMark, "Server is too busy. Please, try again later.");
     }
@@ -27,43 +159,182 @@ public final class TooBusy extends AbstractMiddleware {
         this.message = message;
     }
 
+    /**
+     * How often the lag is sampled in ms, default 50.
+     */
+    public TooBusy setInterval(long interval) {
+        this.interval = interval;
+        return this;
+    }
+
+    /**
+     * Length of the sliding window in ms, default 1000.
+     */
+    public TooBusy setWindow(long window) {
+        this.window = window;
+        return this;
+    }
+
+    /**
+     * Percentile of the window the decisions are based on, default 0.95.
+     */
+    public TooBusy setPercentile(double percentile) {
+        if (percentile <= 0 || percentile > 1) {
+            throw new IllegalArgumentException("percentile must be in ]0, 1]");
+        }
+        this.percentile = percentile;
+        return this;
+    }
+
+    /**
+     * Requests in flight at which normal requests are all rejected, 0 (the default) only looks at the lag.
+     */
+    public TooBusy setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * Upper bound of the Retry-After hint in seconds, default 60.
+     */
+    public TooBusy setMaxRetryAfter(int maxRetryAfter) {
+        this.maxRetryAfter = maxRetryAfter;
+        return this;
+    }
+
+    /**
+     * Priority of the requests whose path starts with the prefix, the first matching prefix wins.
+     */
+    public TooBusy setPriority(@NotNull String prefix, @NotNull Priority priority) {
+        routes.add(new Route(prefix, priority));
+        return this;
+    }
+
+    /**
+     * Priority of the requests not matching any prefix, default NORMAL.
+     */
+    public TooBusy setDefaultPriority(@NotNull Priority priority) {
+        this.defaultPriority = priority;
+        return this;
+    }
+
     @Override
     public Middleware init(@NotNull final Yoke yoke, @NotNull final String mount) {
         super.init(yoke, mount);
 
+        final int samples = (int) Math.max(1, window / interval);
+        lags = new Window(samples);
+        inFlights = new Window(samples);
+        completions = new Window(samples);
+
         t0 = System.nanoTime();
-        dt = 500 * 1000000; // nano time
 
-        timerID = yoke.vertx().setPeriodic(500, new Handler<Long>() {
+        timerID = yoke.vertx().setPeriodic(interval, new Handler<Long>() {
             @Override
             public void handle(Long timerID) {
-                final long t1 = System.nanoTime();
-                dt = t1 - t0;
-                t0 = t1;
+                tick(System.nanoTime());
             }
         });
 
         return this;
     }
 
+    private void tick(long t1) {
+        final long expected = interval * 1000000;
+        long late = t1 - t0 - expected;
+        t0 = t1;
+
+        lags.add(Math.max(0, late));
+        // the ticks that could not run while the loop was blocked would have seen these lags
+        for (int i = 0; late > expected && i < lags.samples.length; i++) {
+            late -= expected;
+            lags.add(late);
+        }
+
+        inFlights.add(inFlight);
+        completions.add(completed);
+        completed = 0;
+
+        lag = lags.percentile(percentile);
+        inFlightPercentile = inFlights.percentile(percentile);
+        drainRate = completions.sum() * 1000.0 / (completions.size * interval);
+
+        double load = (double) lag / highWaterMark;
+        if (maxInFlight > 0) {
+            load = Math.max(load, (double) inFlightPercentile / maxInFlight);
+        }
+        this.load = load;
+    }
+
+    /**
+     * Lag percentile of the event loop in ns.
+     */
     public long getLag() {
-        return dt - 500 * 1000000;
+        return lag;
+    }
+
+    /**
+     * Load relative to the high water mark, normal requests are all rejected at 1.
+     */
+    public double getLoad() {
+        return load;
+    }
+
+    /**
+     * Requests completed per second over the window.
+     */
+    public double getDrainRate() {
+        return drainRate;
     }
 
     public void shutdown() {
         yoke.vertx().cancelTimer(timerID);
     }
 
+    private Priority priority(String path) {
+        for (Route route : routes) {
+            if (path.startsWith(route.prefix)) {
+                return route.priority;
+            }
+        }
+        return defaultPriority;
+    }
+
+    /**
+     * Seconds until the lag is gone and the requests in flight are completed at the current rate.
+     */
+    private int retryAfter() {
+        double seconds = lag / 1e9;
+        if (inFlight > 0) {
+            seconds += drainRate > 0 ? inFlight / drainRate : window / 1000.0;
+        }
+        return (int) Math.min(maxRetryAfter, Math.max(1, Math.ceil(seconds)));
+    }
+
     @Override
     public void handle(@NotNull YokeRequest request, @NotNull Handler<Object> next) {
-        if (dt - 500 * 1000000 > highWaterMark) {
+        final double rejection = priority(request.path()).rejection(load);
+
+        if (rejection > 0 && (rejection >= 1 || ThreadLocalRandom.current().nextDouble() < rejection)) {
             final YokeResponse response = request.response();
 
             response.setStatusCode(503);
             response.setStatusMessage(message);
+            response.putHeader("Retry-After", Integer.toString(retryAfter()));
             response.end();
-        } else {
-            next.handle(null);
+            return;
         }
+
+        inFlight++;
+        // also called when the client goes away before the end
+        request.response().endHandler(new Handler<Void>() {
+            @Override
+            public void handle(Void event) {
+                inFlight--;
+                completed++;
+            }
+        });
+
+        next.handle(null);
     }
 }
@@ -12,6 +12,8 @@ import org.vertx.java.core.Handler;
 import org.vertx.testtools.TestVerticle;
 
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.vertx.testtools.VertxAssert.*;
 
@@ -67,4 +69,84 @@ public class TooBusyTest extends TestVerticle {
             }
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testPriorities() {
+
+        final Yoke yoke = new Yoke(this);
+        // the load only comes from the requests in flight, the lag is never near the mark
+        final TooBusy tooBusy = new TooBusy(10000)
+                .setInterval(10)
+                .setPercentile(1)
+                .setMaxInFlight(4)
+                .setPriority("/health", TooBusy.Priority.CRITICAL)
+                .setPriority("/orders", TooBusy.Priority.HIGH);
+
+        final List<YokeRequest> held = new ArrayList<>();
+
+        yoke.use(tooBusy);
+        yoke.use(new Middleware() {
+            @Override
+            public void handle(@NotNull YokeRequest request, @NotNull Handler<Object> next) {
+                if (request.path().startsWith("/hold")) {
+                    held.add(request);
+                    return;
+                }
+                request.response().end();
+            }
+        });
+
+        final YokeTester tester = new YokeTester(yoke, false);
+
+        // 4 requests in flight, a load of 1 once sampled
+        for (int i = 0; i < 4; i++) {
+            tester.request("GET", "/hold", new Handler<Response>() {
+                @Override
+                public void handle(Response response) {
+                    assertEquals(200, response.getStatusCode());
+                }
+            });
+        }
+
+        vertx.setPeriodic(10, new Handler<Long>() {
+            @Override
+            public void handle(Long timerID) {
+                if (tooBusy.getLoad() < 1) {
+                    return;
+                }
+                vertx.cancelTimer(timerID);
+                tooBusy.shutdown();
+
+                assertEquals(1.0, tooBusy.getLoad(), 0.01);
+
+                // normal requests are all rejected at a load of 1, high and critical ones are not
+                tester.request("GET", "/checkout", new Handler<Response>() {
+                    @Override
+                    public void handle(Response response) {
+                        assertEquals(503, response.getStatusCode());
+                        assertTrue(Integer.parseInt(response.headers().get("retry-after")) >= 1);
+
+                        tester.request("GET", "/orders", new Handler<Response>() {
+                            @Override
+                            public void handle(Response response) {
+                                assertEquals(200, response.getStatusCode());
+
+                                tester.request("GET", "/health", new Handler<Response>() {
+                                    @Override
+                                    public void handle(Response response) {
+                                        assertEquals(200, response.getStatusCode());
+
+                                        for (YokeRequest request : held) {
+                                            request.response().end();
+                                        }
+                                        testComplete();
+                                    }
+                                });
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+}